@@ -1,9 +1,15 @@
 package com.leavesfly.iac.async;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -125,6 +131,78 @@ public final class AsyncExecutorManager {
         return CompletableFuture.supplyAsync(() -> forkJoinPool.invoke(task));
     }
 
+    /**
+     * 并行执行一组计算任务，全部完成后按任务顺序返回结果
+     * 
+     * 任务在Fork/Join池中执行：调用线程是该池的工作线程时直接分叉，等待期间会执行排队中的任务；
+     * 否则提交到该池后等待。与executeCompute之后再join不同，在计算密集型池的任务中调用或嵌套调用时，
+     * 不会因为所有线程都在等待子任务而死锁，任务内部需要并行的计算应使用该方法。
+     * 
+     * @param tasks 计算任务列表
+     * @return 结果列表，与任务顺序一致
+     * @throws CompletionException 有任务失败，原因为第一个失败的任务抛出的异常，其余异常作为被抑制的异常
+     */
+    public <T> List<T> invokeAllCompute(List<? extends java.util.function.Supplier<T>> tasks) {
+        checkShutdown();
+        final List<SupplierTask<T>> forkJoinTasks = new ArrayList<SupplierTask<T>>(tasks.size());
+        for (java.util.function.Supplier<T> task : tasks) {
+            forkJoinTasks.add(new SupplierTask<T>(task));
+        }
+        Thread current = Thread.currentThread();
+        if (current instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) current).getPool() == forkJoinPool) {
+            ForkJoinTask.invokeAll(forkJoinTasks);
+        } else {
+            forkJoinPool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(forkJoinTasks);
+                }
+            });
+        }
+
+        List<T> results = new ArrayList<T>(forkJoinTasks.size());
+        CompletionException failure = null;
+        for (SupplierTask<T> task : forkJoinTasks) {
+            if (task.failure == null) {
+                results.add(task.result);
+            } else if (failure == null) {
+                failure = new CompletionException(task.failure);
+            } else {
+                failure.addSuppressed(task.failure);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * 记录结果或异常的Fork/Join任务，任务失败不会中断同一批的其他任务
+     */
+    private static final class SupplierTask<T> extends RecursiveAction {
+
+        private final java.util.function.Supplier<T> supplier;
+
+        private T result;
+
+        private Throwable failure;
+
+        SupplierTask(java.util.function.Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                result = supplier.get();
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+    }
+
     /**
      * 组合多个异步任务
      */
@@ -123,6 +123,16 @@ public class AppContextConstant {
 	 */
 	public static final int POWER_UTILITY_UNIT = 1_000;
 
+	/**
+	 * 评估结果排行榜保留的结果数量
+	 */
+	public static final int EVALUTE_RESULT_TOP_K = 100;
+
+	/**
+	 * 代理模型允许的最大预测误差（摄氏度），蒸馏得到的代理模型达到该精度时评估改用代理模型
+	 */
+	public static final float SURROGATE_MAX_ERROR = 0.05f;
+
 	/**
 	 * 解决方案名称前缀
 	 */
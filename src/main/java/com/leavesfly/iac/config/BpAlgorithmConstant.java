@@ -66,6 +66,46 @@ public class BpAlgorithmConstant {
 	 */
 	public static final float MIN_ERROR = 0.000_001f;
 	
+	/**
+	 * 默认小批量大小，为1时逐样本更新
+	 */
+	public static final int BATCH_SIZE = 1;
+
+	/**
+	 * 动量法和Nesterov方法的默认动量系数
+	 */
+	public static final float MOMENTUM = 0.9f;
+
+	/**
+	 * Adam一阶矩衰减率
+	 */
+	public static final float ADAM_BETA1 = 0.9f;
+
+	/**
+	 * Adam二阶矩衰减率
+	 */
+	public static final float ADAM_BETA2 = 0.999f;
+
+	/**
+	 * Adam数值稳定项
+	 */
+	public static final float ADAM_EPSILON = 1e-8f;
+
+	/**
+	 * 用于早停的验证集比例，训练结束后恢复验证误差最小时的参数
+	 */
+	public static final float VALIDATION_RATIO = 0.2f;
+
+	/**
+	 * 验证集的最少样本数，不足时以训练误差驱动早停
+	 */
+	public static final int MIN_VALIDATION_SAMPLE_NUM = 5;
+
+	/**
+	 * 早停容忍轮数，验证误差有波动，过小会在平台期过早停止
+	 */
+	public static final int EARLY_STOP_PATIENCE = 25;
+
 	/**
 	 * 最大结果归一化值，等于空调最高温度
 	 */
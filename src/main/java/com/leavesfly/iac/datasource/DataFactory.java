@@ -6,18 +6,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 
 import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.GeoGridIndex;
 import com.leavesfly.iac.domain.GeoPoint;
 import com.leavesfly.iac.domain.PtFitFunc;
 import com.leavesfly.iac.domain.PowerRange;
 import com.leavesfly.iac.evalute.EvaluteResult;
+import com.leavesfly.iac.evalute.EvaluteResultRanking;
+import com.leavesfly.iac.execute.domain.BatchComfortKernel;
 import com.leavesfly.iac.execute.domain.UserComfortFunc;
 
 /**
@@ -69,30 +72,30 @@ public final class DataFactory {
 	private volatile Map<String, List<String>> userIdSensorIdsMap;
 
 	/**
-	 * 用户ID与周围传感器温度预测函数列表的映射表
+	 * 按舒适度参数和周围传感器分组的批量舒适度计算核心
 	 */
-	private volatile Map<String, List<PtFitFunc>> userIdSensorFuncsMap;
+	private volatile BatchComfortKernel<List<String>> comfortKernel;
 
 	/**
-	 * 功率范围数组
+	 * 传感器地理位置网格索引
 	 */
-	private volatile PowerRange[] powerRangeArray;
+	private volatile GeoGridIndex sensorGeoIndex;
 
 	/**
-	 * 传感器温度预测函数集合
+	 * 功率范围数组
 	 */
-	private volatile Collection<PtFitFunc> sensorFitFuncSet;
+	private volatile PowerRange[] powerRangeArray;
 
 	/**
-	 * 传感器温度预测函数映射表（传感器ID -> 温度预测函数）
+	 * 当前一代传感器温度预测函数，为null表示尚未注册；只在持有本对象锁时替换
 	 */
-	private volatile Map<String, PtFitFunc> sensorFitFuncMap;
+	private volatile FitFuncGeneration fitFuncGeneration;
 
 	/**
-	 * 评估结果映射表（解决方案名称 -> 评估结果）
+	 * 评估结果排行榜，只保留各项指标前k个结果
 	 */
-	private Map<String, EvaluteResult> evaluteResultMap = Collections
-			.synchronizedMap(new LinkedHashMap<String, EvaluteResult>());
+	private final EvaluteResultRanking evaluteResultRanking = new EvaluteResultRanking(
+			AppContextConstant.EVALUTE_RESULT_TOP_K);
 
 	/**
 	 * 私有构造函数，防止外部实例化
@@ -207,39 +210,79 @@ public final class DataFactory {
 	/**
 	 * 注册传感器的温度预测函数集合
 	 *
+	 * 先构建完整的新一代预测函数再一次性替换，正在读取的线程继续使用旧的一代，不会读到新旧混合的结果；
+	 * 用户周围传感器温度预测函数的映射表在下次获取时按新的一代重新计算
+	 *
+	 * @param registerFitFuncOfPTSet 温度预测函数集合
+	 * @return 新一代的代号
+	 */
+	public synchronized long registerFitFunc(Collection<PtFitFunc> registerFitFuncOfPTSet) {
+		FitFuncGeneration current = fitFuncGeneration;
+		FitFuncGeneration generation = new FitFuncGeneration(current == null ? 1
+				: current.getNumber() + 1, registerFitFuncOfPTSet);
+		fitFuncGeneration = generation;
+		return generation.getNumber();
+	}
+
+	/**
+	 * 当前一代仍为指定代号时注册新的温度预测函数集合
+	 *
+	 * 用于在旧的一代基础上更新模型：计算期间有其他线程注册了新的一代时不覆盖，由调用方决定是否重试。
+	 *
+	 * @param expectedNumber 计算所基于的一代的代号
 	 * @param registerFitFuncOfPTSet 温度预测函数集合
+	 * @return 注册成功时返回true
+	 */
+	public synchronized boolean replaceFitFunc(long expectedNumber,
+			Collection<PtFitFunc> registerFitFuncOfPTSet) {
+		FitFuncGeneration current = fitFuncGeneration;
+		if (current == null || current.getNumber() != expectedNumber) {
+			return false;
+		}
+		registerFitFunc(registerFitFuncOfPTSet);
+		return true;
+	}
+
+	/**
+	 * 获取当前一代传感器温度预测函数
+	 *
+	 * 需要同时使用集合、映射表或用户周围传感器预测函数时，应先取得一代再从中读取
+	 *
+	 * @return 当前一代温度预测函数
 	 */
-	public void registerFitFunc(Collection<PtFitFunc> registerFitFuncOfPTSet) {
-		sensorFitFuncSet = registerFitFuncOfPTSet;
-		sensorFitFuncMap = new HashMap<String, PtFitFunc>();
-		for (PtFitFunc ptfitFunc : registerFitFuncOfPTSet) {
-			sensorFitFuncMap.put(ptfitFunc.getSensorId(), ptfitFunc);
+	public FitFuncGeneration getFitFuncGeneration() {
+		FitFuncGeneration generation = fitFuncGeneration;
+		if (generation == null) {
+			throw new RuntimeException("DataFactory.getFitFuncGeneration-fitFuncGeneration is null!");
 		}
+		return generation;
 	}
 
 	/**
 	 * 获取传感器的温度预测函数集合
 	 *
-	 * @return 温度预测函数集合
+	 * @return 温度预测函数集合，不可修改
 	 */
 	public Collection<PtFitFunc> getSensorFitFuncSet() {
-		if (sensorFitFuncSet == null) {
+		FitFuncGeneration generation = fitFuncGeneration;
+		if (generation == null) {
 			throw new RuntimeException("DataFactory.getSensorFitFuncSet-sensorFitFuncSet is null!");
 		}
-		return sensorFitFuncSet;
+		return generation.getFitFuncSet();
 
 	}
 
 	/**
 	 * 获取传感器的温度预测函数映射表
 	 *
-	 * @return 温度预测函数映射表（传感器ID -> 温度预测函数）
+	 * @return 温度预测函数映射表（传感器ID -> 温度预测函数），不可修改
 	 */
 	public Map<String, PtFitFunc> getSensorFitFuncMap() {
-		if (sensorFitFuncMap == null) {
+		FitFuncGeneration generation = fitFuncGeneration;
+		if (generation == null) {
 			throw new RuntimeException("DataFactory.getSensorFitFuncMap-sensorFitFuncMap is null!");
 		}
-		return sensorFitFuncMap;
+		return generation.getFitFuncMap();
 
 	}
 
@@ -253,7 +296,7 @@ public final class DataFactory {
 	 * @throws IOException 文件读取异常
 	 */
 	private Map<String, GeoPoint> genGeoInfoTable(String resourceName) throws IOException {
-		Map<String, GeoPoint> geoInfoTable = new HashMap<String, GeoPoint>();
+		Map<String, GeoPoint> geoInfoTable = new ConcurrentHashMap<String, GeoPoint>();
 		try (BufferedReader reader = ResourceUtil.loadTxtResource(resourceName)) {
 			String strLine = null;
 			while (StringUtils.isNotBlank(strLine = reader.readLine())) {
@@ -277,7 +320,8 @@ public final class DataFactory {
 	/**
 	 * 获取用户ID周围一定范围内的传感器ID列表的映射表
 	 *
-	 * 根据用户和传感器的地理位置信息，计算每个用户周围范围内的传感器列表
+	 * 根据用户和传感器的地理位置信息，通过传感器网格索引计算每个用户周围范围内的传感器列表；
+	 * 周围没有传感器的用户不在映射表中
 	 *
 	 * @return 用户ID与周围传感器ID列表的映射表
 	 */
@@ -286,23 +330,17 @@ public final class DataFactory {
 			return userIdSensorIdsMap;
 		}
 		synchronized (this) {
-			Map<String, GeoPoint> userGeoTable = getUserGeoInfo();
-			Map<String, GeoPoint> sensorGeoTbale = getSensorGeoInfo();
-			userIdSensorIdsMap = new HashMap<String, List<String>>();
-
-			for (Map.Entry<String, GeoPoint> userEntry : userGeoTable.entrySet()) {
-				for (Map.Entry<String, GeoPoint> sensorEntry : sensorGeoTbale.entrySet()) {
-					if (userEntry.getValue().getDistance(sensorEntry.getValue()) <= AppContextConstant.MAX_DISTANCE) {
-						String userId = userEntry.getKey();
-						if (userIdSensorIdsMap.containsKey(userId)) {
-							userIdSensorIdsMap.get(userId).add(sensorEntry.getKey());
-						} else {
-							List<String> sersonIdList = new ArrayList<String>();
-							sersonIdList.add(sensorEntry.getKey());
-							userIdSensorIdsMap.put(userId, sersonIdList);
-						}
+			if (userIdSensorIdsMap == null) {
+				GeoGridIndex sensorGeoIndex = getSensorGeoIndex();
+				Map<String, List<String>> sensorIdsMap = new ConcurrentHashMap<String, List<String>>();
+				for (Map.Entry<String, GeoPoint> userEntry : getUserGeoInfo().entrySet()) {
+					List<String> sensorIdList = sensorGeoIndex.queryRadius(userEntry.getValue(),
+							AppContextConstant.MAX_DISTANCE);
+					if (!sensorIdList.isEmpty()) {
+						sensorIdsMap.put(userEntry.getKey(), sensorIdList);
 					}
 				}
+				userIdSensorIdsMap = sensorIdsMap;
 			}
 		}
 		return userIdSensorIdsMap;
@@ -311,36 +349,108 @@ public final class DataFactory {
 	/**
 	 * 获取用户ID周围一定范围内的传感器的功率-温度映射函数的映射表
 	 *
-	 * 根据用户和传感器的地理位置信息，计算每个用户周围范围内的传感器温度预测函数列表
+	 * 根据用户周围的传感器ID列表，查找每个传感器在当前一代中对应的温度预测函数
 	 *
 	 * @return 用户ID与周围传感器温度预测函数列表的映射表
 	 */
 	public Map<String, List<PtFitFunc>> getSensorFuncByUserId() {
-		if (userIdSensorFuncsMap != null) {
-			return userIdSensorFuncsMap;
+		FitFuncGeneration generation = getFitFuncGeneration();
+		Map<String, List<PtFitFunc>> sensorFuncsMap = generation.getUserIdSensorFuncsMap();
+		if (sensorFuncsMap != null) {
+			return sensorFuncsMap;
+		}
+		synchronized (this) {
+			sensorFuncsMap = generation.getUserIdSensorFuncsMap();
+			if (sensorFuncsMap == null) {
+				sensorFuncsMap = new ConcurrentHashMap<String, List<PtFitFunc>>();
+				for (Map.Entry<String, List<String>> entry : getSensorIdsByUserId().entrySet()) {
+					sensorFuncsMap.put(entry.getKey(), generation.toSensorFuncList(entry.getValue()));
+				}
+				generation.setUserIdSensorFuncsMap(sensorFuncsMap);
+			}
+		}
+		return sensorFuncsMap;
+	}
+
+	/**
+	 * 获取传感器地理位置网格索引，网格边长为最大影响距离
+	 *
+	 * @return 传感器地理位置网格索引
+	 */
+	public GeoGridIndex getSensorGeoIndex() {
+		if (sensorGeoIndex != null) {
+			return sensorGeoIndex;
+		}
+		synchronized (this) {
+			if (sensorGeoIndex == null) {
+				sensorGeoIndex = GeoGridIndex.of(getSensorGeoInfo(), AppContextConstant.MAX_DISTANCE);
+			}
+		}
+		return sensorGeoIndex;
+	}
+
+	/**
+	 * 获取批量舒适度计算核心
+	 *
+	 * 舒适度参数相同且周围传感器相同的用户归为一组，组的位置键为排序后的周围传感器ID列表，
+	 * 周围没有传感器的用户位置键为null
+	 *
+	 * @return 批量舒适度计算核心
+	 */
+	public BatchComfortKernel<List<String>> getComfortKernel() {
+		if (comfortKernel != null) {
+			return comfortKernel;
 		}
 		synchronized (this) {
-			Map<String, GeoPoint> userGeoTable = getUserGeoInfo();
-			Map<String, GeoPoint> sensorGeoTbale = getSensorGeoInfo();
-			userIdSensorFuncsMap = new HashMap<String, List<PtFitFunc>>();
-
-			for (Map.Entry<String, GeoPoint> userEntry : userGeoTable.entrySet()) {
-				for (Map.Entry<String, GeoPoint> sensorEntry : sensorGeoTbale.entrySet()) {
-					if (userEntry.getValue().getDistance(sensorEntry.getValue()) <= AppContextConstant.MAX_DISTANCE) {
-						String userId = userEntry.getKey();
-						if (userIdSensorFuncsMap.containsKey(userId)) {
-							userIdSensorFuncsMap.get(userId).add(
-									sensorFitFuncMap.get(sensorEntry.getKey()));
-						} else {
-							List<PtFitFunc> sersonFuncList = new ArrayList<PtFitFunc>();
-							sersonFuncList.add(sensorFitFuncMap.get(sensorEntry.getKey()));
-							userIdSensorFuncsMap.put(userId, sersonFuncList);
-						}
+			if (comfortKernel == null) {
+				Map<String, List<String>> sensorIdsMap = getSensorIdsByUserId();
+				BatchComfortKernel.Builder<List<String>> builder = BatchComfortKernel.builder();
+				for (UserComfortFunc userComfortFunc : getUserComfortFuncCollection()) {
+					List<String> sensorIdList = sensorIdsMap.get(userComfortFunc.getUserId());
+					if (sensorIdList != null) {
+						sensorIdList = new ArrayList<String>(sensorIdList);
+						Collections.sort(sensorIdList);
 					}
+					builder.add(userComfortFunc, sensorIdList);
 				}
+				comfortKernel = builder.build();
+			}
+		}
+		return comfortKernel;
+	}
+
+	/**
+	 * 更新用户的地理位置
+	 *
+	 * 只重新查询该用户周围的传感器，并替换两个用户映射表中该用户的条目，不重建整个映射表；
+	 * 批量舒适度计算核心在下次获取时重建
+	 *
+	 * @param userId 用户ID
+	 * @param geoPoint 新的地理位置
+	 */
+	public synchronized void updateUserGeoInfo(String userId, GeoPoint geoPoint) {
+		getUserGeoInfo().put(userId, geoPoint);
+		comfortKernel = null;
+		if (userIdSensorIdsMap == null) {
+			return;
+		}
+		List<String> sensorIdList = getSensorGeoIndex().queryRadius(geoPoint,
+				AppContextConstant.MAX_DISTANCE);
+		if (sensorIdList.isEmpty()) {
+			userIdSensorIdsMap.remove(userId);
+		} else {
+			userIdSensorIdsMap.put(userId, sensorIdList);
+		}
+		FitFuncGeneration generation = fitFuncGeneration;
+		Map<String, List<PtFitFunc>> sensorFuncsMap = generation == null ? null : generation
+				.getUserIdSensorFuncsMap();
+		if (sensorFuncsMap != null) {
+			if (sensorIdList.isEmpty()) {
+				sensorFuncsMap.remove(userId);
+			} else {
+				sensorFuncsMap.put(userId, generation.toSensorFuncList(sensorIdList));
 			}
 		}
-		return userIdSensorFuncsMap;
 	}
 
 	/**
@@ -348,7 +458,7 @@ public final class DataFactory {
 	 *
 	 * @return 用户地理位置信息映射表（用户ID -> 地理位置）
 	 */
-	private Map<String, GeoPoint> getUserGeoInfo() {
+	public Map<String, GeoPoint> getUserGeoInfo() {
 		if (userGeoTable != null) {
 			return userGeoTable;
 		}
@@ -368,7 +478,7 @@ public final class DataFactory {
 	 *
 	 * @return 传感器地理位置信息映射表（传感器ID -> 地理位置）
 	 */
-	private Map<String, GeoPoint> getSensorGeoInfo() {
+	public Map<String, GeoPoint> getSensorGeoInfo() {
 		if (sensorGeoTbale != null) {
 			return sensorGeoTbale;
 		}
@@ -405,10 +515,21 @@ public final class DataFactory {
 	/**
 	 * 获取评估结果映射表
 	 *
+	 * 返回排行榜中当前保留结果的快照，不再包含被淘汰的结果
+	 *
 	 * @return 评估结果映射表（解决方案名称 -> 评估结果）
 	 */
 	public Map<String, EvaluteResult> getEvaluteResultMap() {
-		return evaluteResultMap;
+		return evaluteResultRanking.toResultMap();
+	}
+
+	/**
+	 * 获取评估结果排行榜
+	 *
+	 * @return 评估结果排行榜
+	 */
+	public EvaluteResultRanking getEvaluteResultRanking() {
+		return evaluteResultRanking;
 	}
 
 	/**
@@ -417,7 +538,7 @@ public final class DataFactory {
 	 * @param evaluteResult 评估结果
 	 */
 	public void addEvaluteResult(EvaluteResult evaluteResult) {
-		evaluteResultMap.put(evaluteResult.getSolutionName(), evaluteResult);
+		evaluteResultRanking.add(evaluteResult);
 	}
 
 	/**
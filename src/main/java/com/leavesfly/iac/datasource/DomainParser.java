@@ -9,6 +9,7 @@ import org.apache.commons.lang.math.NumberUtils;
 
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.domain.GeoPoint;
+import com.leavesfly.iac.domain.PowerBounds;
 import com.leavesfly.iac.domain.PowerVector;
 import com.leavesfly.iac.execute.domain.ContiUserComfortFunc;
 import com.leavesfly.iac.execute.domain.UserComfortFunc;
@@ -59,14 +60,13 @@ public class DomainParser {
 			float temperature = NumberUtils.toFloat(strArray[1]);
 			float outsideTemp = NumberUtils.toFloat(strArray[2]);
 			strArray = SPLITER_COMMA.split(strArray[3]);
-			Float[] powerValueArray = new Float[strArray.length];
+			float[] powerValueArray = new float[strArray.length];
 
 			for (int i = 0; i < strArray.length; i++) {
-				float value = NumberUtils.toFloat(strArray[i]);
-				powerValueArray[i] = value;
+				powerValueArray[i] = NumberUtils.toFloat(strArray[i]);
 			}
 			PowerVector powerVector = new PowerVector(powerValueArray,
-					AppContextConstant.AIR_CONDITION_NUM);
+					PowerBounds.airCondition(AppContextConstant.AIR_CONDITION_NUM));
 			result = new IntellacTrainDataItem(sensorId, powerVector, temperature, outsideTemp);
 
 		} else {
@@ -0,0 +1,109 @@
+package com.leavesfly.iac.datasource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.leavesfly.iac.domain.PtFitFunc;
+
+/**
+ * 一代已注册的传感器温度预测函数
+ *
+ * 每次注册温度预测函数都会生成新的一代，{@link DataFactory}通过一个引用整体替换，
+ * 读取方拿到的集合、映射表和用户周围传感器的预测函数始终属于同一代，不会读到新旧混合的结果。
+ * 集合和映射表不可修改。
+ */
+public final class FitFuncGeneration {
+
+	/**
+	 * 代号，从1开始递增
+	 */
+	private final long number;
+
+	/**
+	 * 温度预测函数集合
+	 */
+	private final Collection<PtFitFunc> fitFuncSet;
+
+	/**
+	 * 温度预测函数映射表（传感器ID -> 温度预测函数）
+	 */
+	private final Map<String, PtFitFunc> fitFuncMap;
+
+	/**
+	 * 用户ID与周围传感器温度预测函数列表的映射表，第一次获取时由{@link DataFactory}计算
+	 */
+	private volatile Map<String, List<PtFitFunc>> userIdSensorFuncsMap;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param number 代号
+	 * @param fitFuncSet 温度预测函数集合
+	 */
+	FitFuncGeneration(long number, Collection<PtFitFunc> fitFuncSet) {
+		List<PtFitFunc> fitFuncList;
+		synchronized (fitFuncSet) {
+			fitFuncList = new ArrayList<PtFitFunc>(fitFuncSet);
+		}
+		Map<String, PtFitFunc> fitFuncMap = new HashMap<String, PtFitFunc>(fitFuncList.size() * 2);
+		for (PtFitFunc fitFunc : fitFuncList) {
+			fitFuncMap.put(fitFunc.getSensorId(), fitFunc);
+		}
+		this.number = number;
+		this.fitFuncSet = Collections.unmodifiableList(fitFuncList);
+		this.fitFuncMap = Collections.unmodifiableMap(fitFuncMap);
+	}
+
+	/**
+	 * 获取代号
+	 *
+	 * @return 代号，越大越新
+	 */
+	public long getNumber() {
+		return number;
+	}
+
+	/**
+	 * 获取温度预测函数集合
+	 *
+	 * @return 温度预测函数集合，不可修改
+	 */
+	public Collection<PtFitFunc> getFitFuncSet() {
+		return fitFuncSet;
+	}
+
+	/**
+	 * 获取温度预测函数映射表
+	 *
+	 * @return 温度预测函数映射表（传感器ID -> 温度预测函数），不可修改
+	 */
+	public Map<String, PtFitFunc> getFitFuncMap() {
+		return fitFuncMap;
+	}
+
+	Map<String, List<PtFitFunc>> getUserIdSensorFuncsMap() {
+		return userIdSensorFuncsMap;
+	}
+
+	void setUserIdSensorFuncsMap(Map<String, List<PtFitFunc>> userIdSensorFuncsMap) {
+		this.userIdSensorFuncsMap = userIdSensorFuncsMap;
+	}
+
+	/**
+	 * 获取该代中传感器的温度预测函数列表
+	 *
+	 * @param sensorIdList 传感器ID列表
+	 * @return 温度预测函数列表，没有注册的传感器对应null
+	 */
+	List<PtFitFunc> toSensorFuncList(List<String> sensorIdList) {
+		List<PtFitFunc> sensorFuncList = new ArrayList<PtFitFunc>(sensorIdList.size());
+		for (String sensorId : sensorIdList) {
+			sensorFuncList.add(fitFuncMap.get(sensorId));
+		}
+		return sensorFuncList;
+	}
+}
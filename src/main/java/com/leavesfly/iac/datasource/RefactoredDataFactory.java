@@ -3,18 +3,18 @@ package com.leavesfly.iac.datasource;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.GeoGridIndex;
 import com.leavesfly.iac.domain.GeoPoint;
 import com.leavesfly.iac.domain.PtFitFunc;
 import com.leavesfly.iac.domain.PowerRange;
 import com.leavesfly.iac.evalute.EvaluteResult;
+import com.leavesfly.iac.evalute.EvaluteResultRanking;
 import com.leavesfly.iac.execute.domain.UserComfortFunc;
 import com.leavesfly.iac.datasource.impl.UserComfortDataSource;
 
@@ -63,10 +63,10 @@ public class RefactoredDataFactory {
     private volatile PowerRange[] powerRangeArray;
     
     /**
-     * 评估结果映射表（解决方案名称 -> 评估结果）
+     * 评估结果排行榜，只保留各项指标前k个结果
      */
-    private final Map<String, EvaluteResult> evaluteResultMap = Collections
-            .synchronizedMap(new LinkedHashMap<String, EvaluteResult>());
+    private final EvaluteResultRanking evaluteResultRanking = new EvaluteResultRanking(
+            AppContextConstant.EVALUTE_RESULT_TOP_K);
     
     /**
      * 建造者类
@@ -229,20 +229,13 @@ public class RefactoredDataFactory {
      */
     private Map<String, List<String>> calculateUserSensorMapping() {
         Map<String, GeoPoint> userGeoTable = getUserGeoInfo();
-        Map<String, GeoPoint> sensorGeoTable = getSensorGeoInfo();
+        GeoGridIndex sensorGeoIndex = GeoGridIndex.of(getSensorGeoInfo(), AppContextConstant.MAX_DISTANCE);
         Map<String, List<String>> mapping = new HashMap<>();
         
         for (Map.Entry<String, GeoPoint> userEntry : userGeoTable.entrySet()) {
-            String userId = userEntry.getKey();
-            GeoPoint userGeo = userEntry.getValue();
-            
-            for (Map.Entry<String, GeoPoint> sensorEntry : sensorGeoTable.entrySet()) {
-                String sensorId = sensorEntry.getKey();
-                GeoPoint sensorGeo = sensorEntry.getValue();
-                
-                if (userGeo.getDistance(sensorGeo) <= AppContextConstant.MAX_DISTANCE) {
-                    mapping.computeIfAbsent(userId, k -> new ArrayList<>()).add(sensorId);
-                }
+            List<String> sensorIds = sensorGeoIndex.queryRadius(userEntry.getValue(), AppContextConstant.MAX_DISTANCE);
+            if (!sensorIds.isEmpty()) {
+                mapping.put(userEntry.getKey(), sensorIds);
             }
         }
         
@@ -359,10 +352,21 @@ public class RefactoredDataFactory {
     /**
      * 获取评估结果映射表
      * 
+     * 返回排行榜中当前保留结果的快照，不再包含被淘汰的结果
+     * 
      * @return 评估结果映射表（解决方案名称 -> 评估结果）
      */
     public Map<String, EvaluteResult> getEvaluteResultMap() {
-        return evaluteResultMap;
+        return evaluteResultRanking.toResultMap();
+    }
+    
+    /**
+     * 获取评估结果排行榜
+     * 
+     * @return 评估结果排行榜
+     */
+    public EvaluteResultRanking getEvaluteResultRanking() {
+        return evaluteResultRanking;
     }
     
     /**
@@ -372,7 +376,7 @@ public class RefactoredDataFactory {
      */
     public void addEvaluteResult(EvaluteResult evaluteResult) {
         if (evaluteResult != null && evaluteResult.getSolutionName() != null) {
-            evaluteResultMap.put(evaluteResult.getSolutionName(), evaluteResult);
+            evaluteResultRanking.add(evaluteResult);
         }
     }
     
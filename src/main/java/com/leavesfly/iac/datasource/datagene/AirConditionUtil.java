@@ -47,4 +47,11 @@ public class AirConditionUtil {
 				+ AppContextConstant.ABLE_ADJUST_FACTOR, 2);
 	}
 
+	public static float costPowerWhenTemp(float temp, float outsideTemp) {
+		if (temp > outsideTemp || temp < AppContextConstant.AIR_CONDITION_MIN_TEMP) {
+			throw new IllegalArgumentException();
+		}
+		return (float) Math.pow(outsideTemp - temp + AppContextConstant.ABLE_ADJUST_FACTOR, 2);
+	}
+
 }
@@ -8,6 +8,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.datasource.parser.DataParseStrategy;
 import com.leavesfly.iac.datasource.parser.ParseException;
+import com.leavesfly.iac.domain.PowerBounds;
 import com.leavesfly.iac.domain.PowerVector;
 import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
 
@@ -110,7 +111,7 @@ public class TrainDataParseStrategy implements DataParseStrategy<IntellacTrainDa
             throw new ParseException("功率值数组不能为空", dataLine, -1, getStrategyType());
         }
         
-        Float[] powerValueArray = new Float[powerValues.length];
+        float[] powerValueArray = new float[powerValues.length];
         
         for (int i = 0; i < powerValues.length; i++) {
             String powerValue = powerValues[i].trim();
@@ -122,7 +123,8 @@ public class TrainDataParseStrategy implements DataParseStrategy<IntellacTrainDa
         }
         
         try {
-            return new PowerVector(powerValueArray, AppContextConstant.AIR_CONDITION_NUM);
+            return new PowerVector(powerValueArray,
+                    PowerBounds.airCondition(AppContextConstant.AIR_CONDITION_NUM));
         } catch (Exception e) {
             throw new ParseException("创建PowerVector对象失败: " + e.getMessage(), 
                     e, dataLine, -1, getStrategyType());
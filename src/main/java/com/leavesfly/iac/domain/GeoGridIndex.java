@@ -0,0 +1,205 @@
+package com.leavesfly.iac.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 地理位置均匀网格索引类
+ *
+ * 该类把平面划分为边长固定的正方形网格，按所在网格登记各个点，
+ * 半径查询只检查与查询圆外接正方形相交的网格，并用整数距离平方判断是否命中。
+ * 网格边长取常用查询半径时，每次查询只需检查3×3个网格，
+ * 用户到传感器的映射总代价约为O(U×k)，k为邻域内的平均点数。
+ *
+ * 登记时会复制点的坐标，之后修改原GeoPoint对象不会影响索引，
+ * 点移动后需调用{@link #put(String, GeoPoint)}重新登记。所有方法都是线程安全的。
+ */
+public class GeoGridIndex {
+
+	/**
+	 * 网格边长
+	 */
+	private final float cellSize;
+
+	/**
+	 * 网格坐标到该网格内条目列表的映射表
+	 */
+	private final Map<Long, List<Entry>> cellTable = new HashMap<Long, List<Entry>>();
+
+	/**
+	 * 点ID到条目的映射表
+	 */
+	private final Map<String, Entry> entryTable = new HashMap<String, Entry>();
+
+	/**
+	 * 构造函数
+	 *
+	 * @param cellSize 网格边长，一般取常用的查询半径
+	 */
+	public GeoGridIndex(float cellSize) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("网格边长必须大于0: " + cellSize);
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * 根据地理位置映射表创建网格索引
+	 *
+	 * @param geoTable 地理位置映射表（ID -> 地理位置）
+	 * @param cellSize 网格边长
+	 * @return 网格索引
+	 */
+	public static GeoGridIndex of(Map<String, GeoPoint> geoTable, float cellSize) {
+		GeoGridIndex index = new GeoGridIndex(cellSize);
+		for (Map.Entry<String, GeoPoint> entry : geoTable.entrySet()) {
+			index.put(entry.getKey(), entry.getValue());
+		}
+		return index;
+	}
+
+	/**
+	 * 登记或移动一个点
+	 *
+	 * 点已存在且仍在原网格内时只更新坐标，否则从原网格移到新网格。
+	 *
+	 * @param id 点ID
+	 * @param geoPoint 地理位置
+	 */
+	public synchronized void put(String id, GeoPoint geoPoint) {
+		int x = geoPoint.getX();
+		int y = geoPoint.getY();
+		long cellKey = cellKey(cellIndex(x), cellIndex(y));
+
+		Entry entry = entryTable.get(id);
+		if (entry == null) {
+			entry = new Entry(id);
+			entryTable.put(id, entry);
+		} else if (entry.cellKey != cellKey) {
+			removeFromCell(entry);
+		} else {
+			entry.point = new GeoPoint(x, y);
+			return;
+		}
+		entry.point = new GeoPoint(x, y);
+		entry.cellKey = cellKey;
+		List<Entry> cell = cellTable.get(cellKey);
+		if (cell == null) {
+			cell = new ArrayList<Entry>(4);
+			cellTable.put(cellKey, cell);
+		}
+		cell.add(entry);
+	}
+
+	/**
+	 * 删除一个点
+	 *
+	 * @param id 点ID
+	 * @return 点存在并被删除返回true
+	 */
+	public synchronized boolean remove(String id) {
+		Entry entry = entryTable.remove(id);
+		if (entry == null) {
+			return false;
+		}
+		removeFromCell(entry);
+		return true;
+	}
+
+	/**
+	 * 查询到中心点距离不超过半径的所有点ID
+	 *
+	 * @param center 中心点
+	 * @param radius 查询半径
+	 * @return 点ID列表，顺序不固定
+	 */
+	public List<String> queryRadius(GeoPoint center, float radius) {
+		List<String> result = new ArrayList<String>();
+		queryRadius(center, radius, result);
+		return result;
+	}
+
+	/**
+	 * 查询到中心点距离不超过半径的所有点ID，结果追加到指定集合中
+	 *
+	 * @param center 中心点
+	 * @param radius 查询半径
+	 * @param result 结果集合
+	 * @return 命中的点数
+	 */
+	public synchronized int queryRadius(GeoPoint center, float radius, Collection<String> result) {
+		int x = center.getX();
+		int y = center.getY();
+		double squaredRadius = (double) radius * radius;
+		GeoPoint centerPoint = new GeoPoint(x, y);
+		int fromCellX = cellIndex(x - radius);
+		int toCellX = cellIndex(x + radius);
+		int fromCellY = cellIndex(y - radius);
+		int toCellY = cellIndex(y + radius);
+
+		int hitNum = 0;
+		for (int cellX = fromCellX; cellX <= toCellX; cellX++) {
+			for (int cellY = fromCellY; cellY <= toCellY; cellY++) {
+				List<Entry> cell = cellTable.get(cellKey(cellX, cellY));
+				if (cell == null) {
+					continue;
+				}
+				for (int i = 0; i < cell.size(); i++) {
+					Entry entry = cell.get(i);
+					if (centerPoint.getSquaredDistance(entry.point) <= squaredRadius) {
+						result.add(entry.id);
+						hitNum++;
+					}
+				}
+			}
+		}
+		return hitNum;
+	}
+
+	/**
+	 * 获取已登记的点数
+	 *
+	 * @return 点数
+	 */
+	public synchronized int size() {
+		return entryTable.size();
+	}
+
+	private void removeFromCell(Entry entry) {
+		List<Entry> cell = cellTable.get(entry.cellKey);
+		cell.remove(entry);
+		if (cell.isEmpty()) {
+			cellTable.remove(entry.cellKey);
+		}
+	}
+
+	private int cellIndex(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long cellKey(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 索引条目，保存点ID、登记时的坐标和所在网格
+	 */
+	private static final class Entry {
+
+		private final String id;
+
+		/**
+		 * 登记时复制的坐标
+		 */
+		private GeoPoint point;
+
+		private long cellKey;
+
+		private Entry(String id) {
+			this.id = id;
+		}
+	}
+}
@@ -71,6 +71,20 @@ public class GeoPoint {
 	 * @return 两点之间的距离
 	 */
 	public float getDistance(GeoPoint geoPoint) {
-		return (float) (Math.sqrt(Math.pow(geoPoint.getX() - x, 2) + Math.pow(geoPoint.getY() - y, 2)));
+		return (float) Math.sqrt(getSquaredDistance(geoPoint));
+	}
+
+	/**
+	 * 计算与另一个地理位置点之间距离的平方
+	 * 
+	 * 只做整数乘加，用于与半径的平方比较，避免开方。
+	 * 
+	 * @param geoPoint 另一个地理位置点
+	 * @return 两点之间距离的平方
+	 */
+	public long getSquaredDistance(GeoPoint geoPoint) {
+		long dx = geoPoint.getX() - x;
+		long dy = geoPoint.getY() - y;
+		return dx * dx + dy * dy;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package com.leavesfly.iac.domain;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.leavesfly.iac.config.AppContextConstant;
+
+/**
+ * 功率边界类
+ *
+ * 该类是不可变的功率取值范围描述，记录功率向量每个分量的最小值和最大值，
+ * 可在多个功率向量之间共享，避免为每个分量单独创建PowerRange对象。
+ */
+public final class PowerBounds implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 按向量长度缓存的空调默认功率边界
+	 */
+	private static final Map<Integer, PowerBounds> AIR_CONDITION_BOUNDS_CACHE = new ConcurrentHashMap<Integer, PowerBounds>();
+
+	/**
+	 * 每个分量的最小值
+	 */
+	private final float[] from;
+
+	/**
+	 * 每个分量的最大值
+	 */
+	private final float[] to;
+
+	/**
+	 * 是否所有分量的范围都相同
+	 */
+	private final boolean uniform;
+
+	private PowerBounds(float[] from, float[] to) {
+		this.from = from;
+		this.to = to;
+		boolean sameRange = true;
+		for (int i = 1; i < from.length && sameRange; i++) {
+			sameRange = from[i] == from[0] && to[i] == to[0];
+		}
+		this.uniform = sameRange;
+	}
+
+	/**
+	 * 创建所有分量范围相同的功率边界
+	 *
+	 * @param from 范围起始值
+	 * @param to 范围结束值
+	 * @param size 向量长度
+	 * @return 功率边界
+	 */
+	public static PowerBounds uniform(float from, float to, int size) {
+		if (size < 0 || from > to) {
+			throw new IllegalArgumentException();
+		}
+		float[] fromArray = new float[size];
+		float[] toArray = new float[size];
+		Arrays.fill(fromArray, from);
+		Arrays.fill(toArray, to);
+		return new PowerBounds(fromArray, toArray);
+	}
+
+	/**
+	 * 获取空调默认功率范围的边界，相同长度共享同一个实例
+	 *
+	 * @param size 向量长度
+	 * @return 功率边界
+	 */
+	public static PowerBounds airCondition(int size) {
+		PowerBounds bounds = AIR_CONDITION_BOUNDS_CACHE.get(size);
+		if (bounds == null) {
+			bounds = uniform(AppContextConstant.AIR_CONDITION_MIN_POWER,
+					AppContextConstant.AIR_CONDITION_MAX_POWER, size);
+			AIR_CONDITION_BOUNDS_CACHE.put(size, bounds);
+		}
+		return bounds;
+	}
+
+	/**
+	 * 根据功率值数组中各分量的范围创建功率边界
+	 *
+	 * 各分量范围均为空调默认范围时返回共享实例。
+	 *
+	 * @param powerValueArray 功率值数组
+	 * @return 功率边界
+	 */
+	public static PowerBounds of(PowerValue[] powerValueArray) {
+		int size = powerValueArray.length;
+		float[] fromArray = new float[size];
+		float[] toArray = new float[size];
+		boolean isDefault = true;
+		for (int i = 0; i < size; i++) {
+			if (powerValueArray[i] == null) {
+				throw new IllegalArgumentException("功率值数组中存在null元素: " + i);
+			}
+			fromArray[i] = powerValueArray[i].getFrom();
+			toArray[i] = powerValueArray[i].getTo();
+			isDefault = isDefault && fromArray[i] == AppContextConstant.AIR_CONDITION_MIN_POWER
+					&& toArray[i] == AppContextConstant.AIR_CONDITION_MAX_POWER;
+		}
+		return isDefault ? airCondition(size) : new PowerBounds(fromArray, toArray);
+	}
+
+	/**
+	 * 根据各分量的最小值和最大值数组创建功率边界，数组会被拷贝
+	 *
+	 * @param from 每个分量的最小值
+	 * @param to 每个分量的最大值
+	 * @return 功率边界
+	 */
+	public static PowerBounds of(float[] from, float[] to) {
+		if (from == null || to == null || from.length != to.length) {
+			throw new IllegalArgumentException();
+		}
+		for (int i = 0; i < from.length; i++) {
+			if (from[i] > to[i]) {
+				throw new IllegalArgumentException("功率范围起始值大于结束值: " + i);
+			}
+		}
+		return new PowerBounds(from.clone(), to.clone());
+	}
+
+	/**
+	 * 获取向量长度
+	 *
+	 * @return 向量长度
+	 */
+	public int size() {
+		return from.length;
+	}
+
+	/**
+	 * 获取指定分量的范围起始值
+	 *
+	 * @param index 分量下标
+	 * @return 范围起始值
+	 */
+	public float getFrom(int index) {
+		return from[index];
+	}
+
+	/**
+	 * 获取指定分量的范围结束值
+	 *
+	 * @param index 分量下标
+	 * @return 范围结束值
+	 */
+	public float getTo(int index) {
+		return to[index];
+	}
+
+	/**
+	 * 判断是否所有分量的范围都相同
+	 *
+	 * @return 范围都相同返回true
+	 */
+	public boolean isUniform() {
+		return uniform;
+	}
+
+	/**
+	 * 判断指定分量的值是否在范围内
+	 *
+	 * @param index 分量下标
+	 * @param value 待判断的值
+	 * @return 如果在范围内返回true，否则返回false
+	 */
+	public boolean isInRange(int index, float value) {
+		return value >= from[index] && value <= to[index];
+	}
+
+	/**
+	 * 生成指定分量的PowerRange对象
+	 *
+	 * @param index 分量下标
+	 * @return 功率范围
+	 */
+	public PowerRange toPowerRange(int index) {
+		return new PowerRange(from[index], to[index]);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PowerBounds)) {
+			return false;
+		}
+		PowerBounds other = (PowerBounds) obj;
+		return Arrays.equals(from, other.from) && Arrays.equals(to, other.to);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(from) + Arrays.hashCode(to);
+	}
+}
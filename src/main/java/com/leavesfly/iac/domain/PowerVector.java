@@ -3,13 +3,15 @@ package com.leavesfly.iac.domain;
 import java.io.Serializable;
 import java.text.DecimalFormat;
 
-import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.util.MathUtil;
 
 /**
  * 功率向量类
- * 
- * 该类表示一组空调设备的功率值集合，每个元素是一个PowerValue对象，
- * 包含功率值和对应的取值范围。实现了Serializable接口以支持序列化。
+ *
+ * 该类表示一组空调设备的功率值集合。功率值以float数组保存，
+ * 各分量的取值范围由共享的不可变PowerBounds描述，不再为每个分量创建对象；
+ * 原有基于PowerValue数组和Float数组的接口以适配方式保留。
+ * 实现了Serializable接口以支持序列化。
  */
 public class PowerVector implements Serializable {
 
@@ -17,31 +19,30 @@ public class PowerVector implements Serializable {
 	 * 数字格式化器，用于格式化输出
 	 */
 	private final static DecimalFormat DecimalFormat = new DecimalFormat(".0");
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 
 	/**
 	 * 功率值数组
 	 */
-	private PowerValue[] powerValueVector;
-	
+	private float[] values;
+
 	/**
-	 * 向量大小
+	 * 功率边界
 	 */
-	private int size;
+	private PowerBounds bounds;
 
 	/**
 	 * 构造函数
-	 * 
+	 *
 	 * @param powerValueVector 功率值数组
 	 */
 	public PowerVector(PowerValue[] powerValueVector) {
-		this.powerValueVector = powerValueVector;
-		this.size = powerValueVector.length;
+		setPowerValueVector(powerValueVector);
 	}
 
 	/**
 	 * 构造函数
-	 * 
+	 *
 	 * @param powerValueArray 功率值浮点数组
 	 * @param length 向量长度
 	 */
@@ -49,94 +50,167 @@ public class PowerVector implements Serializable {
 		if (powerValueArray == null || powerValueArray.length != length) {
 			throw new IllegalArgumentException();
 		}
-		powerValueVector = new PowerValue[length];
-		size = length;
-		for (int i = 0; i < size; i++) {
-			powerValueVector[i] = new PowerValue(powerValueArray[i], new PowerRange(
-					AppContextConstant.AIR_CONDITION_MIN_POWER, AppContextConstant.AIR_CONDITION_MAX_POWER));
+		values = new float[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = powerValueArray[i];
 		}
+		bounds = PowerBounds.airCondition(length);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * 直接持有传入的数组，不做拷贝，调用方之后不应再修改该数组。
+	 *
+	 * @param values 功率值数组
+	 * @param bounds 功率边界
+	 */
+	public PowerVector(float[] values, PowerBounds bounds) {
+		if (values == null || bounds == null || values.length != bounds.size()) {
+			throw new IllegalArgumentException();
+		}
+		this.values = values;
+		this.bounds = bounds;
+	}
+
+	/**
+	 * 使用空调默认功率范围包装功率值数组，不做拷贝
+	 *
+	 * @param values 功率值数组
+	 * @return 功率向量
+	 */
+	public static PowerVector wrap(float[] values) {
+		return new PowerVector(values, PowerBounds.airCondition(values.length));
 	}
 
 	/**
 	 * 获取功率值数组
-	 * 
+	 *
+	 * 每次调用都会按当前值创建新的PowerValue数组，修改返回的数组不会影响本向量。
+	 *
 	 * @return 功率值数组
 	 */
 	public PowerValue[] getPowerValueVector() {
+		PowerValue[] powerValueVector = new PowerValue[values.length];
+		for (int i = 0; i < values.length; i++) {
+			powerValueVector[i] = new PowerValue(values[i], bounds.toPowerRange(i));
+		}
 		return powerValueVector;
 	}
 
 	/**
 	 * 设置功率值数组
-	 * 
+	 *
 	 * @param powerValueVector 功率值数组
 	 */
 	public void setPowerValueVector(PowerValue[] powerValueVector) {
-		this.powerValueVector = powerValueVector;
+		PowerBounds newBounds = PowerBounds.of(powerValueVector);
+		float[] newValues = new float[powerValueVector.length];
+		for (int i = 0; i < newValues.length; i++) {
+			newValues[i] = powerValueVector[i].getValue();
+		}
+		this.values = newValues;
+		this.bounds = newBounds;
 	}
 
 	/**
 	 * 获取向量大小
-	 * 
+	 *
 	 * @return 向量大小
 	 */
 	public int getSize() {
-		return size;
+		return values.length;
 	}
 
 	/**
 	 * 设置向量大小
-	 * 
+	 *
+	 * 向量大小由功率值数组决定，仅保留用于兼容，传入值与当前大小不一致时抛出异常。
+	 *
 	 * @param size 向量大小
 	 */
 	public void setSize(int size) {
-		this.size = size;
+		if (size != values.length) {
+			throw new UnsupportedOperationException("功率向量大小由功率值数组决定");
+		}
+	}
+
+	/**
+	 * 获取指定分量的功率值
+	 *
+	 * @param index 分量下标
+	 * @return 功率值
+	 */
+	public float getPowerValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * 获取功率值数组的只读视图
+	 *
+	 * 返回内部数组本身，不做拷贝，用于模型推理等热点路径；调用方不得修改其内容。
+	 *
+	 * @return 功率值数组
+	 */
+	public float[] getPowerValueArray() {
+		return values;
+	}
+
+	/**
+	 * 获取功率边界
+	 *
+	 * @return 功率边界
+	 */
+	public PowerBounds getBounds() {
+		return bounds;
 	}
 
 	/**
 	 * 获取功率值浮点数组
-	 * 
+	 *
+	 * 每次调用都会创建装箱数组，热点路径请使用{@link #getPowerValueArray()}。
+	 *
 	 * @return 功率值浮点数组
 	 */
 	public Float[] getPowerValueFloatArray() {
-		Float[] value = new Float[powerValueVector.length];
+		Float[] value = new Float[values.length];
 		for (int i = 0; i < value.length; i++) {
-			value[i] = powerValueVector[i].getValue();
+			value[i] = values[i];
 		}
 		return value;
 	}
 
 	/**
-	 * 根据相同范围创建功率向量实例
-	 * 
+	 * 根据相同范围创建功率向量实例，各分量取范围内的随机值
+	 *
 	 * @param from 范围起始值
 	 * @param to 范围结束值
 	 * @param size 向量大小
 	 * @return 功率向量实例
 	 */
 	public static PowerVector getInstanceBySameRange(float from, float to, int size) {
-		PowerValue[] powerValueVector = new PowerValue[size];
+		float[] values = new float[size];
 		for (int i = 0; i < size; i++) {
-			powerValueVector[i] = new PowerValue(new PowerRange(from, to));
+			values[i] = MathUtil.nextFloat(from, to);
 		}
-		return new PowerVector(powerValueVector);
+		return new PowerVector(values, PowerBounds.uniform(from, to, size));
 	}
 
 	/**
 	 * 转换为字符串表示
-	 * 
+	 *
 	 * @return 字符串表示
 	 */
 	@Override
 	public String toString() {
 		StringBuilder strbuilder = new StringBuilder("[");
-		for (int i = 0; i < powerValueVector.length; i++) {
-			strbuilder.append(DecimalFormat.format(powerValueVector[i].getValue())).append(",");
+		for (int i = 0; i < values.length; i++) {
+			strbuilder.append(DecimalFormat.format(values[i])).append(",");
 		}
-		if (powerValueVector.length > 0) {
+		if (values.length > 0) {
 			strbuilder.deleteCharAt(strbuilder.length() - 1);
 		}
 		strbuilder.append("]");
 		return strbuilder.toString();
 	}
-}
\ No newline at end of file
+}
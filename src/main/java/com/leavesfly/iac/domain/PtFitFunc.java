@@ -46,7 +46,28 @@ public class PtFitFunc {
 	 * @return 计算得到的温度值
 	 */
 	public float calTemperature(PowerVector powerVector) {
-		return trainModel.useMode(powerVector.getPowerValueFloatArray());
+		return trainModel.predict(powerVector.getPowerValueArray());
+	}
+
+	/**
+	 * 根据功率值数组计算温度值，不做装箱和拷贝
+	 * 
+	 * @param powerValues 功率值数组
+	 * @return 计算得到的温度值
+	 */
+	public float predict(float[] powerValues) {
+		return trainModel.predict(powerValues);
+	}
+
+	/**
+	 * 批量计算温度值
+	 * 
+	 * @param rowsMajor 行优先存放的多组功率值
+	 * @param rows 组数
+	 * @param out 温度值结果数组，第r组的结果写入out[r]
+	 */
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		trainModel.predictBatch(rowsMajor, rows, out);
 	}
 
 	/**
@@ -67,6 +88,15 @@ public class PtFitFunc {
 		this.sensorId = sensorId;
 	}
 
+	/**
+	 * 获取训练模型
+	 * 
+	 * @return 训练模型
+	 */
+	public TrainModel getTrainModel() {
+		return trainModel;
+	}
+
 	/**
 	 * 获取室外温度
 	 * 
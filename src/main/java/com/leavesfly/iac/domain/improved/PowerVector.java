@@ -1,26 +1,36 @@
 package com.leavesfly.iac.domain.improved;
 
+import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.IntStream;
+import java.util.RandomAccess;
 
 import com.leavesfly.iac.exception.IntelliAirConditionException;
 
 /**
  * 功率向量（值对象）
- * 
+ *
  * 表示多个空调设备的功率值集合，提供向量运算和统计功能
  * 采用不可变设计，确保线程安全
+ *
+ * 功率值以float数组保存，总功率、平均功率和方差在构造时一次性计算并缓存；
+ * 需要反复修改的场景（如优化算法内循环）使用{@link Builder}原地修改，最后再构建不可变向量
  */
 public final class PowerVector {
-    
-    private final List<PowerValue> powers;
-    
+
+    private final float[] values;
+
+    private final PowerRange[] ranges;
+
+    private final float totalPower;
+
+    private final float averagePower;
+
+    private final float powerVariance;
+
     /**
      * 构造函数
-     * 
+     *
      * @param powers 功率值数组
      * @throws IntelliAirConditionException 如果参数无效
      */
@@ -28,117 +38,196 @@ public final class PowerVector {
         if (powers == null || powers.length == 0) {
             throw new IntelliAirConditionException("IAC_DOMAIN", "功率向量不能为空");
         }
-        
-        for (PowerValue power : powers) {
-            if (power == null) {
+
+        float[] powerValues = new float[powers.length];
+        PowerRange[] powerRanges = new PowerRange[powers.length];
+        for (int i = 0; i < powers.length; i++) {
+            if (powers[i] == null) {
                 throw new IntelliAirConditionException("IAC_DOMAIN", "功率值不能为null");
             }
+            powerValues[i] = powers[i].getValue();
+            powerRanges[i] = powers[i].getRange();
         }
-        
-        this.powers = Collections.unmodifiableList(Arrays.asList(powers.clone()));
+
+        this.values = powerValues;
+        this.ranges = powerRanges;
+        this.totalPower = sum(powerValues);
+        this.averagePower = totalPower / powerValues.length;
+        this.powerVariance = variance(powerValues, averagePower);
     }
-    
+
     /**
      * 从浮点数组和范围数组构造
-     * 
+     *
      * @param values 功率值数组
      * @param ranges 功率范围数组
      */
     public PowerVector(float[] values, PowerRange[] ranges) {
+        this(validate(values, ranges), ranges.clone(), true);
+    }
+
+    /**
+     * 内部构造函数，直接持有传入的数组，不做校验和拷贝
+     *
+     * @param owned 仅用于区分重载
+     */
+    private PowerVector(float[] values, PowerRange[] ranges, boolean owned) {
+        this.values = values;
+        this.ranges = ranges;
+        this.totalPower = sum(values);
+        this.averagePower = totalPower / values.length;
+        this.powerVariance = variance(values, averagePower);
+    }
+
+    private static float[] validate(float[] values, PowerRange[] ranges) {
         if (values == null || ranges == null || values.length != ranges.length) {
             throw new IntelliAirConditionException("IAC_DOMAIN", "值数组和范围数组长度必须相等");
         }
-        
-        PowerValue[] powerValues = IntStream.range(0, values.length)
-            .mapToObj(i -> new PowerValue(values[i], ranges[i]))
-            .toArray(PowerValue[]::new);
-            
-        this.powers = Collections.unmodifiableList(Arrays.asList(powerValues));
+        if (values.length == 0) {
+            throw new IntelliAirConditionException("IAC_DOMAIN", "功率向量不能为空");
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (ranges[i] == null) {
+                throw new IntelliAirConditionException("IAC_DOMAIN", "功率范围不能为null");
+            }
+            if (!ranges[i].isValid(values[i])) {
+                throw new IntelliAirConditionException("IAC_DOMAIN",
+                    String.format("功率值%.2f超出有效范围%s", values[i], ranges[i]));
+            }
+        }
+        return values.clone();
     }
-    
+
+    /**
+     * 使用相同的功率范围构造
+     *
+     * @param values 功率值数组
+     * @param range 所有设备共用的功率范围
+     * @return 功率向量
+     */
+    public static PowerVector of(float[] values, PowerRange range) {
+        if (values == null) {
+            throw new IntelliAirConditionException("IAC_DOMAIN", "功率向量不能为空");
+        }
+        PowerRange[] ranges = new PowerRange[values.length];
+        Arrays.fill(ranges, range);
+        return new PowerVector(validate(values, ranges), ranges, true);
+    }
+
+    private static float sum(float[] values) {
+        double sum = 0.0;
+        for (float value : values) {
+            sum += value;
+        }
+        return (float) sum;
+    }
+
+    private static float variance(float[] values, float average) {
+        double squareSum = 0.0;
+        for (float value : values) {
+            double diff = value - average;
+            squareSum += diff * diff;
+        }
+        return (float) (squareSum / values.length);
+    }
+
     /**
      * 获取功率值列表（只读）
+     *
+     * 列表元素按需创建，频繁访问请使用{@link #getValue(int)}
      */
     public List<PowerValue> getPowers() {
-        return powers;
+        return new PowerValueList();
     }
-    
+
     /**
      * 获取向量大小
      */
     public int size() {
-        return powers.size();
+        return values.length;
     }
-    
+
     /**
      * 获取指定索引的功率值
-     * 
+     *
      * @param index 索引
      * @return 功率值
      */
     public PowerValue get(int index) {
-        return powers.get(index);
+        return new PowerValue(values[index], ranges[index]);
     }
-    
+
     /**
-     * 获取功率值数组
+     * 获取指定索引的功率值（原始类型）
+     *
+     * @param index 索引
+     * @return 功率值
+     */
+    public float getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * 获取指定索引的功率范围
+     *
+     * @param index 索引
+     * @return 功率范围
+     */
+    public PowerRange getRange(int index) {
+        return ranges[index];
+    }
+
+    /**
+     * 获取功率值数组（副本）
      */
     public float[] getValues() {
-        return powers.stream()
-            .mapToDouble(PowerValue::getValue)
-            .collect(
-                () -> new float[powers.size()],
-                (array, value) -> {
-                    int index = IntStream.range(0, array.length)
-                        .filter(i -> array[i] == 0)
-                        .findFirst()
-                        .orElse(array.length - 1);
-                    array[index] = (float) value;
-                },
-                (a1, a2) -> {}
-            );
-    }
-    
+        return values.clone();
+    }
+
+    /**
+     * 将功率值拷贝到指定数组，避免分配新数组
+     *
+     * @param dest 目标数组，长度不小于向量大小
+     */
+    public void copyValuesTo(float[] dest) {
+        System.arraycopy(values, 0, dest, 0, values.length);
+    }
+
     /**
      * 计算总功率
      */
     public float getTotalPower() {
-        return (float) powers.stream()
-            .mapToDouble(PowerValue::getValue)
-            .sum();
+        return totalPower;
     }
-    
+
     /**
      * 计算平均功率
      */
     public float getAveragePower() {
-        return getTotalPower() / powers.size();
+        return averagePower;
     }
-    
+
     /**
      * 计算功率方差
      */
     public float getPowerVariance() {
-        float avg = getAveragePower();
-        return (float) powers.stream()
-            .mapToDouble(p -> Math.pow(p.getValue() - avg, 2))
-            .average()
-            .orElse(0.0);
+        return powerVariance;
     }
-    
+
     /**
      * 计算平均利用率
      */
     public float getAverageUtilization() {
-        return (float) powers.stream()
-            .mapToDouble(PowerValue::getUtilization)
-            .average()
-            .orElse(0.0);
+        double sum = 0.0;
+        for (int i = 0; i < values.length; i++) {
+            sum += (values[i] - ranges[i].getMinPower()) / ranges[i].getRange();
+        }
+        return (float) (sum / values.length);
     }
-    
+
     /**
      * 向量加法
-     * 
+     *
      * @param other 另一个功率向量
      * @return 新的功率向量
      */
@@ -146,52 +235,216 @@ public final class PowerVector {
         if (other.size() != this.size()) {
             throw new IntelliAirConditionException("IAC_DOMAIN", "向量维度不匹配");
         }
-        
-        PowerValue[] result = IntStream.range(0, powers.size())
-            .mapToObj(i -> powers.get(i).add(other.get(i).getValue()))
-            .toArray(PowerValue[]::new);
-            
-        return new PowerVector(result);
+        return toBuilder().add(other).build();
     }
-    
+
     /**
      * 标量乘法
-     * 
+     *
      * @param scalar 标量值
      * @return 新的功率向量
      */
     public PowerVector multiply(float scalar) {
-        PowerValue[] result = powers.stream()
-            .map(p -> p.multiply(scalar))
-            .toArray(PowerValue[]::new);
-            
-        return new PowerVector(result);
+        return toBuilder().multiply(scalar).build();
+    }
+
+    /**
+     * 以当前向量为初始值创建构建器
+     *
+     * @return 构建器
+     */
+    public Builder toBuilder() {
+        return new Builder(values.clone(), ranges);
     }
-    
+
+    /**
+     * 创建所有值为最小功率的构建器
+     *
+     * @param size 向量大小
+     * @param range 所有设备共用的功率范围
+     * @return 构建器
+     */
+    public static Builder builder(int size, PowerRange range) {
+        if (size <= 0 || range == null) {
+            throw new IntelliAirConditionException("IAC_DOMAIN", "功率向量不能为空");
+        }
+        PowerRange[] ranges = new PowerRange[size];
+        Arrays.fill(ranges, range);
+        float[] values = new float[size];
+        Arrays.fill(values, range.getMinPower());
+        return new Builder(values, ranges);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
-        
+
         PowerVector that = (PowerVector) obj;
-        return Objects.equals(powers, that.powers);
+        return Arrays.equals(values, that.values) && Arrays.equals(ranges, that.ranges);
     }
-    
+
     @Override
     public int hashCode() {
-        return Objects.hash(powers);
+        return 31 * Arrays.hashCode(values) + Arrays.hashCode(ranges);
     }
-    
+
     @Override
     public String toString() {
-        return String.format("PowerVector%s [total=%.1f, avg=%.1f]", 
-            powers.stream()
-                .map(p -> String.format("%.1f", p.getValue()))
-                .reduce((a, b) -> a + "," + b)
-                .map(s -> "[" + s + "]")
-                .orElse("[]"),
-            getTotalPower(),
-            getAveragePower()
-        );
-    }
-}
\ No newline at end of file
+        StringBuilder valueStr = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                valueStr.append(',');
+            }
+            valueStr.append(String.format("%.1f", values[i]));
+        }
+        valueStr.append(']');
+        return String.format("PowerVector%s [total=%.1f, avg=%.1f]",
+            valueStr, totalPower, averagePower);
+    }
+
+    /**
+     * 功率值列表视图，元素按需创建
+     */
+    private final class PowerValueList extends AbstractList<PowerValue> implements RandomAccess {
+
+        @Override
+        public PowerValue get(int index) {
+            return PowerVector.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    /**
+     * 功率向量构建器
+     *
+     * 所有修改都在内部数组上原地进行，结果始终约束在各自的功率范围内；
+     * 非线程安全，每个线程应使用独立的构建器
+     */
+    public static final class Builder {
+
+        private final float[] values;
+
+        private final PowerRange[] ranges;
+
+        private Builder(float[] values, PowerRange[] ranges) {
+            this.values = values;
+            this.ranges = ranges;
+        }
+
+        /**
+         * 获取向量大小
+         */
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * 获取指定索引的当前值
+         *
+         * @param index 索引
+         * @return 当前值
+         */
+        public float get(int index) {
+            return values[index];
+        }
+
+        /**
+         * 设置指定索引的值（约束在范围内）
+         *
+         * @param index 索引
+         * @param value 新的值
+         * @return 构建器本身
+         */
+        public Builder set(int index, float value) {
+            values[index] = ranges[index].constrain(value);
+            return this;
+        }
+
+        /**
+         * 指定索引的值增加增量（约束在范围内）
+         *
+         * @param index 索引
+         * @param delta 增量
+         * @return 构建器本身
+         */
+        public Builder add(int index, float delta) {
+            return set(index, values[index] + delta);
+        }
+
+        /**
+         * 原地加上另一个向量
+         *
+         * @param other 另一个功率向量
+         * @return 构建器本身
+         */
+        public Builder add(PowerVector other) {
+            if (other.size() != values.length) {
+                throw new IntelliAirConditionException("IAC_DOMAIN", "向量维度不匹配");
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ranges[i].constrain(values[i] + other.values[i]);
+            }
+            return this;
+        }
+
+        /**
+         * 原地加上 factor * delta，适用于粒子速度更新等场景
+         *
+         * @param delta 增量数组
+         * @param factor 系数
+         * @return 构建器本身
+         */
+        public Builder addScaled(float[] delta, float factor) {
+            if (delta == null || delta.length != values.length) {
+                throw new IntelliAirConditionException("IAC_DOMAIN", "向量维度不匹配");
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ranges[i].constrain(values[i] + factor * delta[i]);
+            }
+            return this;
+        }
+
+        /**
+         * 原地乘以标量
+         *
+         * @param scalar 标量值
+         * @return 构建器本身
+         */
+        public Builder multiply(float scalar) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ranges[i].constrain(values[i] * scalar);
+            }
+            return this;
+        }
+
+        /**
+         * 用另一个向量的值覆盖当前值（约束在范围内）
+         *
+         * @param source 源功率向量
+         * @return 构建器本身
+         */
+        public Builder setAll(PowerVector source) {
+            if (source.size() != values.length) {
+                throw new IntelliAirConditionException("IAC_DOMAIN", "向量维度不匹配");
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ranges[i].constrain(source.values[i]);
+            }
+            return this;
+        }
+
+        /**
+         * 构建不可变的功率向量，构建器之后仍可继续使用
+         *
+         * @return 功率向量
+         */
+        public PowerVector build() {
+            return new PowerVector(values.clone(), ranges, true);
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.leavesfly.iac.evalute;
 
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.datasource.DataFactory;
-import com.leavesfly.iac.domain.PowerValue;
 import com.leavesfly.iac.domain.PowerVector;
 import com.leavesfly.iac.domain.PtFitFunc;
-import com.leavesfly.iac.execute.domain.UserComfortFunc;
+import com.leavesfly.iac.execute.domain.BatchComfortKernel;
 
 /**
  * 评估器类
@@ -29,39 +30,44 @@ public class Evaluator {
 	 * @return 总满意度
 	 */
 	public static float calTotalSatisfaction(PowerVector powerVector) {
-
-		if (powerVector == null) {
-			throw new IllegalArgumentException();
-		}
-		float satisfaction = 0f;
-		PowerValue[] powerValueArray = powerVector.getPowerValueVector();
-
-		Collection<UserComfortFunc> userComfortFuncSet = DataFactory.getInstance()
-				.getUserComfortFuncCollection();
-		for (UserComfortFunc userComfortFunc : userComfortFuncSet) {
-
-			String userId = userComfortFunc.getUserId();
-			Collection<PtFitFunc> sensorFuncSet = getAroundFitFunc(userId);
-			float temperature = calUserPointTemp(sensorFuncSet, powerValueArray);
-			satisfaction += userComfortFunc.calUserComfort(temperature);
-		}
-		return satisfaction;
+		return calTotalSatisfaction(powerVector, DataFactory.getInstance().getSensorFitFuncMap());
 	}
 
 	/**
-	 * 获取用户周围的温度预测函数集合
+	 * 使用指定的传感器温度预测函数计算用户总的满意度
+	 * 
+	 * 每个传感器的温度只预测一次，再由周围的用户共享；
+	 * 用户周围没有传感器时，使用全部传感器的平均温度。
+	 * 舒适度参数和周围传感器都相同的用户温度相同，通过批量舒适度计算核心每组只计算一次。
+	 * 该方法不读写DataFactory中已注册的预测函数，可用于同时评估多组模型（如不同的室外温度）。
 	 * 
-	 * @param userId 用户ID
-	 * @return 用户周围的温度预测函数集合
+	 * @param powerVector 功率向量
+	 * @param sensorFitFuncMap 传感器温度预测函数映射表（传感器ID -> 温度预测函数）
+	 * @return 总满意度
 	 */
-	private static Collection<PtFitFunc> getAroundFitFunc(String userId) {
-		DataFactory dataFactory = DataFactory.getInstance();
-		Collection<PtFitFunc> sensorFuncSet = dataFactory.getSensorFuncByUserId().get(userId);
-		if (sensorFuncSet == null || sensorFuncSet.isEmpty()) {
-			return dataFactory.getSensorFitFuncSet();
+	public static float calTotalSatisfaction(PowerVector powerVector,
+			Map<String, PtFitFunc> sensorFitFuncMap) {
+
+		if (powerVector == null || sensorFitFuncMap == null || sensorFitFuncMap.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+
+		Map<String, Float> sensorTempMap = new HashMap<String, Float>(sensorFitFuncMap.size() * 2);
+		float allSensorTemp = 0.0f;
+		for (Map.Entry<String, PtFitFunc> entry : sensorFitFuncMap.entrySet()) {
+			float temperature = entry.getValue().calTemperature(powerVector);
+			sensorTempMap.put(entry.getKey(), temperature);
+			allSensorTemp += temperature;
 		}
+		allSensorTemp /= sensorTempMap.size();
 
-		return sensorFuncSet;
+		BatchComfortKernel<List<String>> comfortKernel = DataFactory.getInstance().getComfortKernel();
+		float[] groupTemps = new float[comfortKernel.getGroupNum()];
+		for (int g = 0; g < groupTemps.length; g++) {
+			groupTemps[g] = calUserPointTemp(comfortKernel.getGroupLocation(g), sensorTempMap,
+					allSensorTemp);
+		}
+		return comfortKernel.calGroupedSatisfaction(groupTemps);
 	}
 
 	/**
@@ -69,16 +75,44 @@ public class Evaluator {
 	 * 
 	 * 通过平均用户周围所有传感器的温度预测值得到用户位置的温度
 	 * 
-	 * @param sensorFuncSet 传感器温度预测函数集合
-	 * @param location 位置功率值数组
+	 * @param sensorIdList 用户周围的传感器ID列表
+	 * @param sensorTempMap 传感器温度预测值映射表
+	 * @param allSensorTemp 全部传感器的平均温度，用户周围没有可用传感器时使用
 	 * @return 用户位置的温度
 	 */
-	private static float calUserPointTemp(Collection<PtFitFunc> sensorFuncSet, PowerValue[] location) {
+	private static float calUserPointTemp(List<String> sensorIdList, Map<String, Float> sensorTempMap,
+			float allSensorTemp) {
+		if (sensorIdList == null) {
+			return allSensorTemp;
+		}
 		float result = 0.0f;
-		for (PtFitFunc fitFunc : sensorFuncSet) {
-			result += fitFunc.calTemperature(new PowerVector(location));
+		int count = 0;
+		for (String sensorId : sensorIdList) {
+			Float temperature = sensorTempMap.get(sensorId);
+			if (temperature != null) {
+				result += temperature;
+				count++;
+			}
 		}
-		return result / sensorFuncSet.size();
+		return count == 0 ? allSensorTemp : result / count;
+	}
+
+	/**
+	 * 按调度目标加权合并满意度与用电成本
+	 * 
+	 * 与粒子群调度的目标函数一致：用电成本按单台空调最大功率归一化，
+	 * 并按用户数与空调数之比缩放，使两项处于同一量级。
+	 * 
+	 * @param satisfaction 总满意度
+	 * @param powerCost 总用电成本
+	 * @param satisfyWeight 满意度权重，用电成本权重为(1 - satisfyWeight)
+	 * @return 目标值
+	 */
+	public static float calTargetValue(float satisfaction, float powerCost, float satisfyWeight) {
+		float powerCostWeight = 1.0f - satisfyWeight;
+		return satisfaction * satisfyWeight
+				- (powerCost * powerCostWeight / AppContextConstant.AIR_CONDITION_MAX_POWER)
+				* ((float) AppContextConstant.USER_NUM / AppContextConstant.AIR_CONDITION_NUM);
 	}
 
 	/**
@@ -94,9 +128,8 @@ public class Evaluator {
 			throw new IllegalArgumentException();
 		}
 		float powerCost = 0.0f;
-		PowerValue[] powerValueArray = powerVector.getPowerValueVector();
-		for (PowerValue powerValue : powerValueArray) {
-			powerCost += powerValue.getValue() * AppContextConstant.POWER_PRICE;
+		for (float powerValue : powerVector.getPowerValueArray()) {
+			powerCost += powerValue * AppContextConstant.POWER_PRICE;
 		}
 
 		return powerCost;
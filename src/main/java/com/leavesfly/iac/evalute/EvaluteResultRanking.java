@@ -0,0 +1,303 @@
+package com.leavesfly.iac.evalute;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 评估结果排行榜类
+ *
+ * 该类在并发环境下分别按功率效用、总满意度和总用电成本维护前k个最优的评估结果，
+ * 每个榜单基于跳表实现，插入操作无锁，读取操作为O(k)，内存占用与评估次数无关。
+ */
+public class EvaluteResultRanking {
+
+	/**
+	 * 按功率效用排序（越大越优）
+	 */
+	private static final Comparator<EvaluteResult> BY_POWER_UTILITY = new Comparator<EvaluteResult>() {
+		@Override
+		public int compare(EvaluteResult o1, EvaluteResult o2) {
+			return Float.compare(o1.getPowerUtility(), o2.getPowerUtility());
+		}
+	};
+
+	/**
+	 * 按总满意度排序（越大越优）
+	 */
+	private static final Comparator<EvaluteResult> BY_SATISFACTION = new Comparator<EvaluteResult>() {
+		@Override
+		public int compare(EvaluteResult o1, EvaluteResult o2) {
+			return Float.compare(o1.getTotalSatisfaction(), o2.getTotalSatisfaction());
+		}
+	};
+
+	/**
+	 * 按总用电成本排序（越小越优）
+	 */
+	private static final Comparator<EvaluteResult> BY_POWER_COST = new Comparator<EvaluteResult>() {
+		@Override
+		public int compare(EvaluteResult o1, EvaluteResult o2) {
+			return Float.compare(o2.getTotalPowerCost(), o1.getTotalPowerCost());
+		}
+	};
+
+	/**
+	 * 全局插入序号，用于区分评估指标相同的结果
+	 */
+	private final AtomicLong sequence = new AtomicLong(0L);
+
+	/**
+	 * 累计提交的评估结果数量
+	 */
+	private final AtomicLong totalCount = new AtomicLong(0L);
+
+	/**
+	 * 每个榜单保留的结果数量
+	 */
+	private final int capacity;
+
+	/**
+	 * 功率效用榜单
+	 */
+	private final BoundedRank powerUtilityRank;
+
+	/**
+	 * 满意度榜单
+	 */
+	private final BoundedRank satisfactionRank;
+
+	/**
+	 * 用电成本榜单
+	 */
+	private final BoundedRank powerCostRank;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param capacity 每个榜单保留的结果数量
+	 */
+	public EvaluteResultRanking(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("排行榜容量必须大于0");
+		}
+		this.capacity = capacity;
+		powerUtilityRank = new BoundedRank(BY_POWER_UTILITY);
+		satisfactionRank = new BoundedRank(BY_SATISFACTION);
+		powerCostRank = new BoundedRank(BY_POWER_COST);
+	}
+
+	/**
+	 * 提交一个评估结果
+	 *
+	 * 结果会分别尝试进入三个榜单，未进入任何榜单的结果不会被保留。
+	 *
+	 * @param evaluteResult 评估结果
+	 */
+	public void add(EvaluteResult evaluteResult) {
+		if (evaluteResult == null) {
+			throw new IllegalArgumentException();
+		}
+		totalCount.incrementAndGet();
+		long seq = sequence.incrementAndGet();
+		powerUtilityRank.offer(evaluteResult, seq);
+		satisfactionRank.offer(evaluteResult, seq);
+		powerCostRank.offer(evaluteResult, seq);
+	}
+
+	/**
+	 * 获取功率效用最高的前k个结果，按从优到劣排列
+	 *
+	 * @return 评估结果列表
+	 */
+	public List<EvaluteResult> getTopByPowerUtility() {
+		return powerUtilityRank.snapshot();
+	}
+
+	/**
+	 * 获取总满意度最高的前k个结果，按从优到劣排列
+	 *
+	 * @return 评估结果列表
+	 */
+	public List<EvaluteResult> getTopBySatisfaction() {
+		return satisfactionRank.snapshot();
+	}
+
+	/**
+	 * 获取总用电成本最低的前k个结果，按从优到劣排列
+	 *
+	 * @return 评估结果列表
+	 */
+	public List<EvaluteResult> getTopByPowerCost() {
+		return powerCostRank.snapshot();
+	}
+
+	/**
+	 * 获取功率效用最高的结果
+	 *
+	 * @return 评估结果，榜单为空时返回null
+	 */
+	public EvaluteResult getBestByPowerUtility() {
+		return powerUtilityRank.best();
+	}
+
+	/**
+	 * 获取总满意度最高的结果
+	 *
+	 * @return 评估结果，榜单为空时返回null
+	 */
+	public EvaluteResult getBestBySatisfaction() {
+		return satisfactionRank.best();
+	}
+
+	/**
+	 * 获取总用电成本最低的结果
+	 *
+	 * @return 评估结果，榜单为空时返回null
+	 */
+	public EvaluteResult getBestByPowerCost() {
+		return powerCostRank.best();
+	}
+
+	/**
+	 * 获取当前保留的全部结果（解决方案名称 -> 评估结果）
+	 *
+	 * 按功率效用、满意度、用电成本榜单的顺序合并，同名结果只保留第一次出现的。
+	 *
+	 * @return 评估结果映射表快照
+	 */
+	public Map<String, EvaluteResult> toResultMap() {
+		Map<String, EvaluteResult> resultMap = new LinkedHashMap<String, EvaluteResult>();
+		putAbsent(resultMap, powerUtilityRank.snapshot());
+		putAbsent(resultMap, satisfactionRank.snapshot());
+		putAbsent(resultMap, powerCostRank.snapshot());
+		return resultMap;
+	}
+
+	private static void putAbsent(Map<String, EvaluteResult> resultMap, List<EvaluteResult> results) {
+		for (EvaluteResult result : results) {
+			if (!resultMap.containsKey(result.getSolutionName())) {
+				resultMap.put(result.getSolutionName(), result);
+			}
+		}
+	}
+
+	/**
+	 * 获取每个榜单的容量
+	 *
+	 * @return 榜单容量
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 获取累计提交的评估结果数量
+	 *
+	 * @return 提交数量
+	 */
+	public long getTotalCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * 清空所有榜单
+	 */
+	public void clear() {
+		powerUtilityRank.clear();
+		satisfactionRank.clear();
+		powerCostRank.clear();
+		totalCount.set(0L);
+	}
+
+	/**
+	 * 榜单中的条目，携带插入序号以保证排序的全序性
+	 */
+	private static final class RankedEntry {
+
+		private final EvaluteResult result;
+
+		private final long seq;
+
+		RankedEntry(EvaluteResult result, long seq) {
+			this.result = result;
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * 有界榜单
+	 *
+	 * 跳表按从劣到优排序，头部即当前最差的结果；插入后若超出容量则淘汰头部。
+	 */
+	private final class BoundedRank {
+
+		private final ConcurrentSkipListSet<RankedEntry> entries;
+
+		private final AtomicInteger size = new AtomicInteger(0);
+
+		private final Comparator<RankedEntry> entryComparator;
+
+		BoundedRank(final Comparator<EvaluteResult> resultComparator) {
+			entryComparator = new Comparator<RankedEntry>() {
+				@Override
+				public int compare(RankedEntry o1, RankedEntry o2) {
+					int cmp = resultComparator.compare(o1.result, o2.result);
+					if (cmp != 0) {
+						return cmp;
+					}
+					// 指标相同时先到者更优
+					return Long.compare(o2.seq, o1.seq);
+				}
+			};
+			entries = new ConcurrentSkipListSet<RankedEntry>(entryComparator);
+		}
+
+		void offer(EvaluteResult result, long seq) {
+			RankedEntry entry = new RankedEntry(result, seq);
+			if (size.get() >= capacity) {
+				RankedEntry worst = firstOrNull();
+				if (worst != null && entryComparator.compare(entry, worst) <= 0) {
+					return;
+				}
+			}
+			entries.add(entry);
+			if (size.incrementAndGet() > capacity) {
+				if (entries.pollFirst() != null) {
+					size.decrementAndGet();
+				}
+			}
+		}
+
+		private RankedEntry firstOrNull() {
+			Iterator<RankedEntry> iterator = entries.iterator();
+			return iterator.hasNext() ? iterator.next() : null;
+		}
+
+		EvaluteResult best() {
+			Iterator<RankedEntry> iterator = entries.descendingIterator();
+			return iterator.hasNext() ? iterator.next().result : null;
+		}
+
+		List<EvaluteResult> snapshot() {
+			List<EvaluteResult> results = new ArrayList<EvaluteResult>(capacity);
+			Iterator<RankedEntry> iterator = entries.descendingIterator();
+			while (iterator.hasNext() && results.size() < capacity) {
+				results.add(iterator.next().result);
+			}
+			return results;
+		}
+
+		void clear() {
+			while (entries.pollFirst() != null) {
+				size.decrementAndGet();
+			}
+		}
+	}
+}
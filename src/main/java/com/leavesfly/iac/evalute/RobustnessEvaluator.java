@@ -0,0 +1,424 @@
+package com.leavesfly.iac.evalute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.domain.GeoPoint;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.exception.IntelliAirConditionException;
+import com.leavesfly.iac.execute.domain.BatchComfortKernel;
+import com.leavesfly.iac.execute.domain.UserComfortFunc;
+
+/**
+ * 鲁棒性评估器类
+ *
+ * 该类用蒙特卡洛方法评估功率向量在扰动下的总满意度，扰动包括：
+ * 1. 室外温度偏离训练时的温度，按敏感系数折算为室内温度的整体偏移
+ * 2. 用户在给定半径内移动，所在位置周围的传感器随之变化
+ * 3. 用户舒适温度范围的整体偏移
+ *
+ * 扰动样本在构造时一次性生成（公共随机数），所有功率向量都在同一组样本上评估，
+ * 因此不同方案之间的比较不受采样噪声影响；样本成对生成（对偶抽样），进一步降低估计方差。
+ * 每次评估中每个传感器的温度只预测一次，样本计算只涉及数组运算，
+ * 样本数较多时在Fork/Join池中分块并行，可直接用作粒子群调度的目标函数。
+ */
+public class RobustnessEvaluator {
+
+	/**
+	 * 样本数达到该值时并行计算
+	 */
+	private static final int PARALLEL_SAMPLE_THRESHOLD = 512;
+
+	/**
+	 * 并行计算时每块的样本数
+	 */
+	private static final int SAMPLE_CHUNK_SIZE = 128;
+
+	/**
+	 * 传感器ID数组
+	 */
+	private final String[] sensorIds;
+
+	/**
+	 * 用户舒适度批量计算核心，用户下标与舒适度函数集合的顺序一致
+	 */
+	private final BatchComfortKernel<Object> comfortKernel;
+
+	/**
+	 * 样本数量
+	 */
+	private final int sampleNum;
+
+	/**
+	 * 每个样本的室内温度偏移
+	 */
+	private final float[] tempShifts;
+
+	/**
+	 * 每个样本、每个用户的舒适温度偏移，下标为 sample * userNum + user
+	 */
+	private final float[] comfortShifts;
+
+	/**
+	 * 每个样本、每个用户周围传感器在neighbourIndexes中的起始位置（CSR格式）
+	 */
+	private final int[] neighbourStarts;
+
+	/**
+	 * 周围传感器下标
+	 */
+	private final int[] neighbourIndexes;
+
+	/**
+	 * 尾部比例
+	 */
+	private final float tailRatio;
+
+	/**
+	 * 鲁棒满意度中尾部均值的权重
+	 */
+	private final float tailWeight;
+
+	private RobustnessEvaluator(Builder builder) {
+		this.tailRatio = builder.tailRatio;
+		this.tailWeight = builder.tailWeight;
+		this.sampleNum = builder.sampleNum + (builder.sampleNum & 1);
+
+		Map<String, GeoPoint> sensorGeoMap = builder.sensorGeoMap;
+		sensorIds = sensorGeoMap.keySet().toArray(new String[sensorGeoMap.size()]);
+		float[] sensorX = new float[sensorIds.length];
+		float[] sensorY = new float[sensorIds.length];
+		for (int i = 0; i < sensorIds.length; i++) {
+			GeoPoint geoPoint = sensorGeoMap.get(sensorIds[i]);
+			sensorX[i] = geoPoint.getX();
+			sensorY[i] = geoPoint.getY();
+		}
+		comfortKernel = BatchComfortKernel.of(builder.userComfortFuncs);
+		int userNum = comfortKernel.getUserNum();
+
+		tempShifts = new float[sampleNum];
+		comfortShifts = new float[sampleNum * userNum];
+		neighbourStarts = new int[sampleNum * userNum + 1];
+		List<Integer> neighbourList = new ArrayList<Integer>();
+
+		float maxDistanceSquare = builder.maxDistance * builder.maxDistance;
+		float[] offsetX = new float[userNum];
+		float[] offsetY = new float[userNum];
+		float[] comfortNoise = new float[userNum];
+		Random random = new Random(builder.seed);
+		for (int pair = 0; pair < sampleNum / 2; pair++) {
+			float outsideNoise = (float) random.nextGaussian();
+			for (int u = 0; u < userNum; u++) {
+				double angle = 2 * Math.PI * random.nextDouble();
+				double radius = builder.locationRadius * Math.sqrt(random.nextDouble());
+				offsetX[u] = (float) (radius * Math.cos(angle));
+				offsetY[u] = (float) (radius * Math.sin(angle));
+				comfortNoise[u] = (float) random.nextGaussian();
+			}
+			// 对偶样本：所有扰动取反
+			for (int sign = 1; sign >= -1; sign -= 2) {
+				int sample = pair * 2 + (sign > 0 ? 0 : 1);
+				tempShifts[sample] = sign * outsideNoise * builder.outsideTempStdDev
+						* builder.outsideTempSensitivity;
+				for (int u = 0; u < userNum; u++) {
+					int slot = sample * userNum + u;
+					comfortShifts[slot] = sign * comfortNoise[u] * builder.comfortShiftStdDev;
+					neighbourStarts[slot] = neighbourList.size();
+					GeoPoint userPoint = builder.userGeoMap.get(comfortKernel.getUserId(u));
+					if (userPoint == null) {
+						continue;
+					}
+					float x = userPoint.getX() + sign * offsetX[u];
+					float y = userPoint.getY() + sign * offsetY[u];
+					for (int s = 0; s < sensorIds.length; s++) {
+						float dx = sensorX[s] - x;
+						float dy = sensorY[s] - y;
+						if (dx * dx + dy * dy <= maxDistanceSquare) {
+							neighbourList.add(s);
+						}
+					}
+				}
+			}
+		}
+		neighbourStarts[sampleNum * userNum] = neighbourList.size();
+		neighbourIndexes = new int[neighbourList.size()];
+		for (int i = 0; i < neighbourIndexes.length; i++) {
+			neighbourIndexes[i] = neighbourList.get(i);
+		}
+	}
+
+	/**
+	 * 使用DataFactory中已注册的温度预测函数评估功率向量
+	 *
+	 * @param powerVector 功率向量
+	 * @return 鲁棒性评估结果
+	 */
+	public RobustnessResult evaluate(PowerVector powerVector) {
+		return evaluate(powerVector, DataFactory.getInstance().getSensorFitFuncMap());
+	}
+
+	/**
+	 * 使用指定的温度预测函数评估功率向量
+	 *
+	 * @param powerVector 功率向量
+	 * @param sensorFitFuncMap 传感器温度预测函数映射表（传感器ID -> 温度预测函数）
+	 * @return 鲁棒性评估结果
+	 */
+	public RobustnessResult evaluate(PowerVector powerVector, Map<String, PtFitFunc> sensorFitFuncMap) {
+		if (powerVector == null || sensorFitFuncMap == null) {
+			throw new IllegalArgumentException();
+		}
+
+		final float[] sensorTemps = new float[sensorIds.length];
+		final boolean[] sensorValid = new boolean[sensorIds.length];
+		float allSensorTemp = 0.0f;
+		int validNum = 0;
+		for (int s = 0; s < sensorIds.length; s++) {
+			PtFitFunc fitFunc = sensorFitFuncMap.get(sensorIds[s]);
+			if (fitFunc != null) {
+				sensorTemps[s] = fitFunc.calTemperature(powerVector);
+				sensorValid[s] = true;
+				allSensorTemp += sensorTemps[s];
+				validNum++;
+			}
+		}
+		if (validNum == 0) {
+			throw new IllegalArgumentException("没有可用的传感器温度预测函数");
+		}
+		final float defaultTemp = allSensorTemp / validNum;
+
+		final float[] satisfactions = new float[sampleNum];
+		if (sampleNum < PARALLEL_SAMPLE_THRESHOLD) {
+			calSatisfactions(sensorTemps, sensorValid, defaultTemp, satisfactions, 0, sampleNum);
+		} else {
+			List<Supplier<Void>> taskList = new ArrayList<Supplier<Void>>();
+			for (int from = 0; from < sampleNum; from += SAMPLE_CHUNK_SIZE) {
+				final int start = from;
+				final int end = Math.min(from + SAMPLE_CHUNK_SIZE, sampleNum);
+				taskList.add(() -> {
+					calSatisfactions(sensorTemps, sensorValid, defaultTemp, satisfactions, start, end);
+					return null;
+				});
+			}
+			// 粒子群调度可能运行在计算线程池中，分块不能提交到同一个池后等待
+			try {
+				AsyncExecutorManager.getInstance().invokeAllCompute(taskList);
+			} catch (CompletionException e) {
+				throw new IntelliAirConditionException("IAC_EVALUATION", "鲁棒性评估失败", e.getCause());
+			}
+		}
+		return summarize(satisfactions);
+	}
+
+	/**
+	 * 计算鲁棒满意度：满意度均值与尾部均值的加权和，可替代粒子群目标函数中的总满意度
+	 *
+	 * @param powerVector 功率向量
+	 * @return 鲁棒满意度
+	 */
+	public float calRobustSatisfaction(PowerVector powerVector) {
+		RobustnessResult result = evaluate(powerVector);
+		return (1.0f - tailWeight) * result.getMeanSatisfaction()
+				+ tailWeight * result.getTailMeanSatisfaction();
+	}
+
+	/**
+	 * 计算[from, to)范围内每个样本的总满意度
+	 */
+	private void calSatisfactions(float[] sensorTemps, boolean[] sensorValid, float defaultTemp,
+			float[] satisfactions, int from, int to) {
+		int userNum = comfortKernel.getUserNum();
+		for (int sample = from; sample < to; sample++) {
+			float satisfaction = 0.0f;
+			for (int u = 0; u < userNum; u++) {
+				int slot = sample * userNum + u;
+				float temperature = 0.0f;
+				int count = 0;
+				for (int i = neighbourStarts[slot]; i < neighbourStarts[slot + 1]; i++) {
+					int s = neighbourIndexes[i];
+					if (sensorValid[s]) {
+						temperature += sensorTemps[s];
+						count++;
+					}
+				}
+				temperature = count == 0 ? defaultTemp : temperature / count;
+				// 舒适范围整体偏移delta，等价于以(temperature - delta)评估原舒适度函数
+				temperature += tempShifts[sample] - comfortShifts[slot];
+				satisfaction += comfortKernel.calUserComfort(u, temperature);
+			}
+			satisfactions[sample] = satisfaction;
+		}
+	}
+
+	private RobustnessResult summarize(float[] satisfactions) {
+		int n = satisfactions.length;
+		double sum = 0.0;
+		for (float value : satisfactions) {
+			sum += value;
+		}
+		double mean = sum / n;
+		double squareSum = 0.0;
+		for (float value : satisfactions) {
+			squareSum += (value - mean) * (value - mean);
+		}
+		float stdDev = n > 1 ? (float) Math.sqrt(squareSum / (n - 1)) : 0.0f;
+
+		float[] sorted = satisfactions.clone();
+		Arrays.sort(sorted);
+		int tailNum = Math.max(1, (int) Math.ceil(tailRatio * n));
+		double tailSum = 0.0;
+		for (int i = 0; i < tailNum; i++) {
+			tailSum += sorted[i];
+		}
+		return new RobustnessResult(n, (float) mean, stdDev, sorted[tailNum - 1],
+				(float) (tailSum / tailNum), sorted[0]);
+	}
+
+	/**
+	 * 获取样本数量（对偶抽样下总为偶数）
+	 *
+	 * @return 样本数量
+	 */
+	public int getSampleNum() {
+		return sampleNum;
+	}
+
+	/**
+	 * 创建构建器
+	 *
+	 * @return 构建器
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * 鲁棒性评估器构建器
+	 *
+	 * 未指定用户和传感器数据时从DataFactory读取。
+	 */
+	public static class Builder {
+
+		private int sampleNum = 64;
+
+		private float outsideTempStdDev = 1.0f;
+
+		/**
+		 * 室外温度每变化1度引起的室内温度变化；
+		 * 功率-温度模型只在单一室外温度下训练，因此按整体偏移近似
+		 */
+		private float outsideTempSensitivity = 1.0f;
+
+		private float locationRadius = 1.0f;
+
+		private float comfortShiftStdDev = 0.5f;
+
+		private float maxDistance = AppContextConstant.MAX_DISTANCE;
+
+		private float tailRatio = 0.1f;
+
+		private float tailWeight = 0.5f;
+
+		private long seed = 20140601L;
+
+		private Collection<UserComfortFunc> userComfortFuncs;
+
+		private Map<String, GeoPoint> userGeoMap;
+
+		private Map<String, GeoPoint> sensorGeoMap;
+
+		public Builder sampleNum(int sampleNum) {
+			this.sampleNum = sampleNum;
+			return this;
+		}
+
+		public Builder outsideTempStdDev(float outsideTempStdDev) {
+			this.outsideTempStdDev = outsideTempStdDev;
+			return this;
+		}
+
+		public Builder outsideTempSensitivity(float outsideTempSensitivity) {
+			this.outsideTempSensitivity = outsideTempSensitivity;
+			return this;
+		}
+
+		public Builder locationRadius(float locationRadius) {
+			this.locationRadius = locationRadius;
+			return this;
+		}
+
+		public Builder comfortShiftStdDev(float comfortShiftStdDev) {
+			this.comfortShiftStdDev = comfortShiftStdDev;
+			return this;
+		}
+
+		public Builder maxDistance(float maxDistance) {
+			this.maxDistance = maxDistance;
+			return this;
+		}
+
+		public Builder tailRatio(float tailRatio) {
+			this.tailRatio = tailRatio;
+			return this;
+		}
+
+		public Builder tailWeight(float tailWeight) {
+			this.tailWeight = tailWeight;
+			return this;
+		}
+
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public Builder userComfortFuncs(Collection<UserComfortFunc> userComfortFuncs) {
+			this.userComfortFuncs = userComfortFuncs;
+			return this;
+		}
+
+		public Builder userGeoMap(Map<String, GeoPoint> userGeoMap) {
+			this.userGeoMap = userGeoMap;
+			return this;
+		}
+
+		public Builder sensorGeoMap(Map<String, GeoPoint> sensorGeoMap) {
+			this.sensorGeoMap = sensorGeoMap;
+			return this;
+		}
+
+		public RobustnessEvaluator build() {
+			if (sampleNum <= 0 || outsideTempStdDev < 0 || locationRadius < 0
+					|| comfortShiftStdDev < 0 || maxDistance <= 0) {
+				throw new IllegalArgumentException("鲁棒性评估参数不合法");
+			}
+			if (tailRatio <= 0 || tailRatio > 1 || tailWeight < 0 || tailWeight > 1) {
+				throw new IllegalArgumentException("尾部比例必须在(0, 1]范围内，尾部权重必须在[0, 1]范围内");
+			}
+			DataFactory dataFactory = null;
+			if (userComfortFuncs == null || userGeoMap == null || sensorGeoMap == null) {
+				dataFactory = DataFactory.getInstance();
+			}
+			if (userComfortFuncs == null) {
+				userComfortFuncs = dataFactory.getUserComfortFuncCollection();
+			}
+			if (userGeoMap == null) {
+				userGeoMap = dataFactory.getUserGeoInfo();
+			}
+			if (sensorGeoMap == null) {
+				sensorGeoMap = dataFactory.getSensorGeoInfo();
+			}
+			return new RobustnessEvaluator(this);
+		}
+	}
+}
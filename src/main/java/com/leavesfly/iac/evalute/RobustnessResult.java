@@ -0,0 +1,131 @@
+package com.leavesfly.iac.evalute;
+
+/**
+ * 鲁棒性评估结果类
+ *
+ * 该类表示一个功率向量在多组随机扰动下总满意度的统计量，
+ * 包括均值、标准差以及最差部分样本的尾部统计。
+ */
+public class RobustnessResult {
+
+	/**
+	 * 样本数量
+	 */
+	private final int sampleNum;
+
+	/**
+	 * 满意度均值
+	 */
+	private final float meanSatisfaction;
+
+	/**
+	 * 满意度标准差
+	 */
+	private final float stdDevSatisfaction;
+
+	/**
+	 * 尾部分位数（最差tailRatio比例样本中的最好值）
+	 */
+	private final float tailQuantile;
+
+	/**
+	 * 尾部均值（最差tailRatio比例样本的均值）
+	 */
+	private final float tailMeanSatisfaction;
+
+	/**
+	 * 最差满意度
+	 */
+	private final float minSatisfaction;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param sampleNum 样本数量
+	 * @param meanSatisfaction 满意度均值
+	 * @param stdDevSatisfaction 满意度标准差
+	 * @param tailQuantile 尾部分位数
+	 * @param tailMeanSatisfaction 尾部均值
+	 * @param minSatisfaction 最差满意度
+	 */
+	public RobustnessResult(int sampleNum, float meanSatisfaction, float stdDevSatisfaction,
+			float tailQuantile, float tailMeanSatisfaction, float minSatisfaction) {
+		this.sampleNum = sampleNum;
+		this.meanSatisfaction = meanSatisfaction;
+		this.stdDevSatisfaction = stdDevSatisfaction;
+		this.tailQuantile = tailQuantile;
+		this.tailMeanSatisfaction = tailMeanSatisfaction;
+		this.minSatisfaction = minSatisfaction;
+	}
+
+	/**
+	 * 获取样本数量
+	 *
+	 * @return 样本数量
+	 */
+	public int getSampleNum() {
+		return sampleNum;
+	}
+
+	/**
+	 * 获取满意度均值
+	 *
+	 * @return 满意度均值
+	 */
+	public float getMeanSatisfaction() {
+		return meanSatisfaction;
+	}
+
+	/**
+	 * 获取满意度标准差
+	 *
+	 * @return 满意度标准差
+	 */
+	public float getStdDevSatisfaction() {
+		return stdDevSatisfaction;
+	}
+
+	/**
+	 * 获取尾部分位数
+	 *
+	 * @return 尾部分位数
+	 */
+	public float getTailQuantile() {
+		return tailQuantile;
+	}
+
+	/**
+	 * 获取尾部均值
+	 *
+	 * @return 尾部均值
+	 */
+	public float getTailMeanSatisfaction() {
+		return tailMeanSatisfaction;
+	}
+
+	/**
+	 * 获取最差满意度
+	 *
+	 * @return 最差满意度
+	 */
+	public float getMinSatisfaction() {
+		return minSatisfaction;
+	}
+
+	/**
+	 * 转换为字符串表示
+	 *
+	 * @return 字符串表示
+	 */
+	@Override
+	public String toString() {
+		StringBuilder strBuilder = new StringBuilder();
+		strBuilder.append("sampleNum:").append(sampleNum).append("\t").append("meanSatisfaction:")
+				.append(meanSatisfaction).append("\t").append("stdDevSatisfaction:")
+				.append(stdDevSatisfaction).append("\t").append("tailQuantile:")
+				.append(tailQuantile).append("\t").append("tailMeanSatisfaction:")
+				.append(tailMeanSatisfaction).append("\t").append("minSatisfaction:")
+				.append(minSatisfaction);
+		return strBuilder.toString();
+	}
+}
@@ -1,5 +1,7 @@
 package com.leavesfly.iac.evalute;
 
+import java.util.Arrays;
+
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.datasource.datagene.AirConditionUtil;
 import com.leavesfly.iac.domain.PowerVector;
@@ -23,12 +25,26 @@ public class SolutionBuilder {
 	 */
 	public static Solution buildSolution(String solutionName, float sameTemp) {
 
-		Float[] powerValueArray = new Float[AppContextConstant.AIR_CONDITION_NUM];
-		for (int i = 0; i < AppContextConstant.AIR_CONDITION_NUM; i++) {
-			powerValueArray[i] = AirConditionUtil.costPowerWhenTemp(sameTemp);
-		}
-		PowerVector powerVector = new PowerVector(powerValueArray,
-				AppContextConstant.AIR_CONDITION_NUM);
+		float[] powerValueArray = new float[AppContextConstant.AIR_CONDITION_NUM];
+		Arrays.fill(powerValueArray, AirConditionUtil.costPowerWhenTemp(sameTemp));
+		PowerVector powerVector = PowerVector.wrap(powerValueArray);
+
+		return new Solution(solutionName, powerVector);
+	}
+
+	/**
+	 * 根据统一温度值和指定的室外温度构建解决方案
+	 * 
+	 * @param solutionName 解决方案名称
+	 * @param sameTemp 统一温度值
+	 * @param outsideTemp 室外温度
+	 * @return 构建的解决方案
+	 */
+	public static Solution buildSolution(String solutionName, float sameTemp, float outsideTemp) {
+
+		float[] powerValueArray = new float[AppContextConstant.AIR_CONDITION_NUM];
+		Arrays.fill(powerValueArray, AirConditionUtil.costPowerWhenTemp(sameTemp, outsideTemp));
+		PowerVector powerVector = PowerVector.wrap(powerValueArray);
 
 		return new Solution(solutionName, powerVector);
 	}
@@ -0,0 +1,119 @@
+package com.leavesfly.iac.evalute.sweep;
+
+import com.leavesfly.iac.evalute.EvaluteResult;
+
+/**
+ * 情景评估结果类
+ *
+ * 该类表示情景扫描中一个参数组合（室外温度、统一设定温度、满意度权重）的评估结果。
+ */
+public class ScenarioResult {
+
+	/**
+	 * 紧凑输出格式的表头
+	 */
+	public static final String HEADER = "outsideTemp\tsetPoint\tsatisfyWeight\ttotalSatisfaction\ttotalPowerCost\tpowerUtility\ttargetValue";
+
+	/**
+	 * 室外温度
+	 */
+	private final float outsideTemp;
+
+	/**
+	 * 统一设定温度
+	 */
+	private final float setPoint;
+
+	/**
+	 * 满意度权重
+	 */
+	private final float satisfyWeight;
+
+	/**
+	 * 评估结果
+	 */
+	private final EvaluteResult evaluteResult;
+
+	/**
+	 * 加权目标值
+	 */
+	private final float targetValue;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param outsideTemp 室外温度
+	 * @param setPoint 统一设定温度
+	 * @param satisfyWeight 满意度权重
+	 * @param evaluteResult 评估结果
+	 * @param targetValue 加权目标值
+	 */
+	public ScenarioResult(float outsideTemp, float setPoint, float satisfyWeight,
+			EvaluteResult evaluteResult, float targetValue) {
+		this.outsideTemp = outsideTemp;
+		this.setPoint = setPoint;
+		this.satisfyWeight = satisfyWeight;
+		this.evaluteResult = evaluteResult;
+		this.targetValue = targetValue;
+	}
+
+	/**
+	 * 获取室外温度
+	 *
+	 * @return 室外温度
+	 */
+	public float getOutsideTemp() {
+		return outsideTemp;
+	}
+
+	/**
+	 * 获取统一设定温度
+	 *
+	 * @return 统一设定温度
+	 */
+	public float getSetPoint() {
+		return setPoint;
+	}
+
+	/**
+	 * 获取满意度权重
+	 *
+	 * @return 满意度权重
+	 */
+	public float getSatisfyWeight() {
+		return satisfyWeight;
+	}
+
+	/**
+	 * 获取评估结果
+	 *
+	 * @return 评估结果
+	 */
+	public EvaluteResult getEvaluteResult() {
+		return evaluteResult;
+	}
+
+	/**
+	 * 获取加权目标值
+	 *
+	 * @return 加权目标值
+	 */
+	public float getTargetValue() {
+		return targetValue;
+	}
+
+	/**
+	 * 转换为紧凑的制表符分隔格式，字段顺序与{@link #HEADER}一致
+	 *
+	 * @return 字符串表示
+	 */
+	@Override
+	public String toString() {
+		StringBuilder strBuilder = new StringBuilder(64);
+		strBuilder.append(outsideTemp).append('\t').append(setPoint).append('\t')
+				.append(satisfyWeight).append('\t').append(evaluteResult.getTotalSatisfaction())
+				.append('\t').append(evaluteResult.getTotalPowerCost()).append('\t')
+				.append(evaluteResult.getPowerUtility()).append('\t').append(targetValue);
+		return strBuilder.toString();
+	}
+}
@@ -0,0 +1,255 @@
+package com.leavesfly.iac.evalute.sweep;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.evalute.Evaluator;
+import com.leavesfly.iac.evalute.EvaluteResult;
+import com.leavesfly.iac.evalute.Solution;
+import com.leavesfly.iac.evalute.SolutionBuilder;
+import com.leavesfly.iac.exception.IntelliAirConditionException;
+import com.leavesfly.iac.train.PtTrainer;
+
+/**
+ * 情景扫描器类
+ *
+ * 该类对室外温度、统一设定温度和满意度权重的笛卡尔积批量求值：
+ * 1. 每个室外温度只训练（或注册）一次功率-温度模型，并在该温度下的所有组合间共享
+ * 2. 求值开始前在调用线程中准备好所有室外温度的模型，训练器不会在并行任务中被调用
+ * 3. 每个（室外温度，设定温度）组合作为一个只做求值的任务在Fork/Join池中并行执行
+ * 4. 每个（室外温度，设定温度）只评估一次满意度与用电成本，各权重下的目标值由此直接推导
+ * 5. 结果逐条交给消费者，无需在内存中保留整张结果表
+ *
+ * 同一室外温度下的模型实例会被多个线程同时使用，要求训练模型的推理是线程安全的。
+ */
+public class ScenarioSweeper {
+
+	/**
+	 * 训练器，为未注册模型的室外温度训练模型，可为null
+	 */
+	private final PtTrainer ptTrainer;
+
+	/**
+	 * 训练锁，训练器不保证可以被多个同时扫描的调用方并发调用
+	 */
+	private final Object trainLock = new Object();
+
+	/**
+	 * 室外温度 -> 传感器温度预测函数映射表
+	 */
+	private final Map<Float, Map<String, PtFitFunc>> fitFuncMapCache = new ConcurrentHashMap<Float, Map<String, PtFitFunc>>();
+
+	/**
+	 * 构造函数
+	 *
+	 * @param ptTrainer 训练器，需支持多次调用；为null时只能使用预先注册的模型
+	 */
+	public ScenarioSweeper(PtTrainer ptTrainer) {
+		this.ptTrainer = ptTrainer;
+	}
+
+	/**
+	 * 注册指定室外温度下的传感器温度预测函数集合
+	 *
+	 * @param outsideTemp 室外温度
+	 * @param fitFuncSet 温度预测函数集合
+	 */
+	public void registerFitFuncSet(float outsideTemp, Collection<PtFitFunc> fitFuncSet) {
+		fitFuncMapCache.put(outsideTemp, toFitFuncMap(fitFuncSet));
+	}
+
+	/**
+	 * 执行扫描并收集全部结果
+	 *
+	 * 结果按室外温度、设定温度、满意度权重升序排列。
+	 *
+	 * @param sweepGrid 扫描参数网格
+	 * @return 情景评估结果列表
+	 */
+	public List<ScenarioResult> sweep(SweepGrid sweepGrid) {
+		final List<ScenarioResult> resultList = Collections
+				.synchronizedList(new ArrayList<ScenarioResult>(sweepGrid.size()));
+		sweep(sweepGrid, new Consumer<ScenarioResult>() {
+			@Override
+			public void accept(ScenarioResult scenarioResult) {
+				resultList.add(scenarioResult);
+			}
+		});
+
+		List<ScenarioResult> sortedList = new ArrayList<ScenarioResult>(resultList);
+		Collections.sort(sortedList, new Comparator<ScenarioResult>() {
+			@Override
+			public int compare(ScenarioResult o1, ScenarioResult o2) {
+				int cmp = Float.compare(o1.getOutsideTemp(), o2.getOutsideTemp());
+				if (cmp == 0) {
+					cmp = Float.compare(o1.getSetPoint(), o2.getSetPoint());
+				}
+				if (cmp == 0) {
+					cmp = Float.compare(o1.getSatisfyWeight(), o2.getSatisfyWeight());
+				}
+				return cmp;
+			}
+		});
+		return sortedList;
+	}
+
+	/**
+	 * 执行扫描并把结果逐条交给消费者
+	 *
+	 * 未注册模型的室外温度先在调用线程中依次训练，之后的并行任务只做求值。
+	 * 消费者会在多个线程中被调用，需要自行保证线程安全；
+	 * 设定温度高于室外温度的组合不需要制冷，会被跳过，所有设定温度都被跳过的室外温度不训练模型。
+	 *
+	 * @param sweepGrid 扫描参数网格
+	 * @param consumer 结果消费者
+	 * @return 输出的结果数量
+	 */
+	public int sweep(SweepGrid sweepGrid, final Consumer<ScenarioResult> consumer) {
+		if (sweepGrid == null || consumer == null) {
+			throw new IllegalArgumentException();
+		}
+		final float[] setPoints = sweepGrid.getSetPoints();
+		final float[] satisfyWeights = sweepGrid.getSatisfyWeights();
+
+		List<Supplier<Integer>> taskList = new ArrayList<Supplier<Integer>>();
+		for (final float outsideTemp : sweepGrid.getOutsideTemps()) {
+			Map<String, PtFitFunc> fitFuncMap = null;
+			for (final float setPoint : setPoints) {
+				if (setPoint > outsideTemp) {
+					continue;
+				}
+				if (fitFuncMap == null) {
+					fitFuncMap = getFitFuncMap(outsideTemp);
+				}
+				final Map<String, PtFitFunc> sharedFitFuncMap = fitFuncMap;
+				taskList.add(() -> sweepSetPoint(outsideTemp, setPoint, sharedFitFuncMap,
+						satisfyWeights, consumer));
+			}
+		}
+
+		int resultCount = 0;
+		try {
+			for (int count : AsyncExecutorManager.getInstance().invokeAllCompute(taskList)) {
+				resultCount += count;
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof IntelliAirConditionException) {
+				throw (IntelliAirConditionException) cause;
+			}
+			throw new IntelliAirConditionException("IAC_EVALUATION", "情景扫描失败: "
+					+ cause.getMessage(), cause);
+		}
+		return resultCount;
+	}
+
+	/**
+	 * 对单个（室外温度，设定温度）组合下的所有权重求值
+	 */
+	private int sweepSetPoint(float outsideTemp, float setPoint, Map<String, PtFitFunc> fitFuncMap,
+			float[] satisfyWeights, Consumer<ScenarioResult> consumer) {
+
+		Solution solution = SolutionBuilder.buildSolution("sweep_" + outsideTemp + "_" + setPoint,
+				setPoint, outsideTemp);
+		PowerVector powerVector = solution.getPowerVector();
+		float satisfaction = calTotalSatisfaction(powerVector, fitFuncMap);
+		float powerCost = Evaluator.calTotalPowerCost(powerVector);
+		EvaluteResult evaluteResult = new EvaluteResult(solution, satisfaction, powerCost);
+
+		int count = 0;
+		for (float satisfyWeight : satisfyWeights) {
+			float targetValue = Evaluator.calTargetValue(satisfaction, powerCost, satisfyWeight);
+			consumer.accept(new ScenarioResult(outsideTemp, setPoint, satisfyWeight, evaluteResult,
+					targetValue));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 计算用户总满意度，默认使用{@link Evaluator#calTotalSatisfaction(PowerVector, Map)}
+	 *
+	 * 会在多个线程中被同时调用，子类覆盖时需要保证线程安全。
+	 *
+	 * @param powerVector 功率向量
+	 * @param fitFuncMap 该室外温度下的传感器温度预测函数映射表
+	 * @return 总满意度
+	 */
+	protected float calTotalSatisfaction(PowerVector powerVector, Map<String, PtFitFunc> fitFuncMap) {
+		return Evaluator.calTotalSatisfaction(powerVector, fitFuncMap);
+	}
+
+	/**
+	 * 获取指定室外温度下的模型，未注册时使用训练器训练并缓存
+	 */
+	private Map<String, PtFitFunc> getFitFuncMap(float outsideTemp) {
+		Map<String, PtFitFunc> fitFuncMap = fitFuncMapCache.get(outsideTemp);
+		if (fitFuncMap != null) {
+			return fitFuncMap;
+		}
+		if (ptTrainer == null) {
+			throw new IntelliAirConditionException("IAC_EVALUATION", "室外温度" + outsideTemp
+					+ "下没有注册模型，且未指定训练器");
+		}
+		synchronized (trainLock) {
+			fitFuncMap = fitFuncMapCache.get(outsideTemp);
+			if (fitFuncMap == null) {
+				fitFuncMap = toFitFuncMap(ptTrainer.buildFitFuncSet(outsideTemp));
+				fitFuncMapCache.put(outsideTemp, fitFuncMap);
+			}
+		}
+		return fitFuncMap;
+	}
+
+	private static Map<String, PtFitFunc> toFitFuncMap(Collection<PtFitFunc> fitFuncSet) {
+		if (fitFuncSet == null || fitFuncSet.isEmpty()) {
+			throw new IntelliAirConditionException("IAC_EVALUATION", "温度预测函数集合为空");
+		}
+		Map<String, PtFitFunc> fitFuncMap = new HashMap<String, PtFitFunc>();
+		synchronized (fitFuncSet) {
+			for (PtFitFunc fitFunc : fitFuncSet) {
+				fitFuncMap.put(fitFunc.getSensorId(), fitFunc);
+			}
+		}
+		return Collections.unmodifiableMap(fitFuncMap);
+	}
+
+	/**
+	 * 创建把结果按行写入输出流的消费者，每行为{@link ScenarioResult#toString()}的紧凑格式
+	 *
+	 * 写入操作已同步，可直接用于并行扫描；调用方负责写入表头以及刷新、关闭输出流。
+	 *
+	 * @param writer 输出流
+	 * @return 结果消费者
+	 */
+	public static Consumer<ScenarioResult> lineWriter(final Writer writer) {
+		return new Consumer<ScenarioResult>() {
+			@Override
+			public void accept(ScenarioResult scenarioResult) {
+				String line = scenarioResult.toString();
+				synchronized (writer) {
+					try {
+						writer.write(line);
+						writer.write('\n');
+					} catch (IOException e) {
+						throw new IntelliAirConditionException("IAC_EVALUATION", "情景结果写入失败", e);
+					}
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,124 @@
+package com.leavesfly.iac.evalute.sweep;
+
+import java.util.Arrays;
+
+import com.leavesfly.iac.config.AppContextConstant;
+
+/**
+ * 情景扫描参数网格类
+ *
+ * 该类描述一次情景扫描的参数取值：室外温度、统一设定温度和满意度权重，
+ * 扫描时对三者的笛卡尔积逐一求值。
+ */
+public class SweepGrid {
+
+	/**
+	 * 室外温度取值
+	 */
+	private final float[] outsideTemps;
+
+	/**
+	 * 统一设定温度取值
+	 */
+	private final float[] setPoints;
+
+	/**
+	 * 满意度权重取值
+	 */
+	private final float[] satisfyWeights;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param outsideTemps 室外温度取值
+	 * @param setPoints 统一设定温度取值，不能低于空调的最低设定温度
+	 * @param satisfyWeights 满意度权重取值，取值范围[0, 1]
+	 */
+	public SweepGrid(float[] outsideTemps, float[] setPoints, float[] satisfyWeights) {
+		if (isEmpty(outsideTemps) || isEmpty(setPoints) || isEmpty(satisfyWeights)) {
+			throw new IllegalArgumentException("扫描参数不能为空");
+		}
+		for (float setPoint : setPoints) {
+			if (!(setPoint >= AppContextConstant.AIR_CONDITION_MIN_TEMP)) {
+				throw new IllegalArgumentException("设定温度不能低于空调的最低设定温度"
+						+ AppContextConstant.AIR_CONDITION_MIN_TEMP + ": " + setPoint);
+			}
+		}
+		for (float satisfyWeight : satisfyWeights) {
+			if (satisfyWeight < 0.0f || satisfyWeight > 1.0f) {
+				throw new IllegalArgumentException("满意度权重必须在[0, 1]范围内: " + satisfyWeight);
+			}
+		}
+		this.outsideTemps = outsideTemps.clone();
+		this.setPoints = setPoints.clone();
+		this.satisfyWeights = satisfyWeights.clone();
+	}
+
+	private static boolean isEmpty(float[] values) {
+		return values == null || values.length == 0;
+	}
+
+	/**
+	 * 按步长生成闭区间[from, to]上的取值
+	 *
+	 * @param from 起始值
+	 * @param to 结束值
+	 * @param step 步长
+	 * @return 取值数组
+	 */
+	public static float[] range(float from, float to, float step) {
+		if (step <= 0.0f || to < from) {
+			throw new IllegalArgumentException();
+		}
+		// 以整数步数计算，避免浮点累加误差
+		int count = (int) Math.floor((to - from) / step + 1e-4) + 1;
+		float[] values = new float[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = from + i * step;
+		}
+		return values;
+	}
+
+	/**
+	 * 获取室外温度取值
+	 *
+	 * @return 室外温度取值
+	 */
+	public float[] getOutsideTemps() {
+		return outsideTemps.clone();
+	}
+
+	/**
+	 * 获取统一设定温度取值
+	 *
+	 * @return 统一设定温度取值
+	 */
+	public float[] getSetPoints() {
+		return setPoints.clone();
+	}
+
+	/**
+	 * 获取满意度权重取值
+	 *
+	 * @return 满意度权重取值
+	 */
+	public float[] getSatisfyWeights() {
+		return satisfyWeights.clone();
+	}
+
+	/**
+	 * 获取笛卡尔积的组合数量
+	 *
+	 * @return 组合数量
+	 */
+	public int size() {
+		return outsideTemps.length * setPoints.length * satisfyWeights.length;
+	}
+
+	@Override
+	public String toString() {
+		return "SweepGrid[outsideTemps=" + Arrays.toString(outsideTemps) + ", setPoints="
+				+ Arrays.toString(setPoints) + ", satisfyWeights=" + Arrays.toString(satisfyWeights)
+				+ "]";
+	}
+}
@@ -0,0 +1,330 @@
+package com.leavesfly.iac.execute.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量舒适度计算核心类
+ *
+ * 该类把所有用户舒适度函数的参数（舒适范围、平均温度、方差的倒数）展开到基本类型数组中，
+ * 一次循环计算一组温度下的总满意度，避免逐个用户的虚方法调用和重复的幂运算。
+ *
+ * 参数相同且位置键相同的用户归为一组，组内用户的温度相同，每组只计算一次再按人数加权。
+ * 位置键由调用方决定（如用户周围的传感器ID列表），不需要按位置分组时可以为null。
+ * 其他类型的舒适度函数计算时回退到虚方法调用，其中{@link PmvUserComfortFunc}按查找表、
+ * 湿度、服装热阻和代谢率分组，其余类型各自单独成组。
+ * 构建完成后不可变，可被多个线程同时使用。
+ *
+ * @param <K> 位置键类型
+ */
+public final class BatchComfortKernel<K> {
+
+	/**
+	 * 每组的舒适范围下限
+	 */
+	private final float[] groupFrom;
+
+	/**
+	 * 每组的舒适范围上限
+	 */
+	private final float[] groupTo;
+
+	/**
+	 * 每组的平均温度
+	 */
+	private final float[] groupAverage;
+
+	/**
+	 * 每组的指数系数，即 -1 / (2 * 方差)
+	 */
+	private final float[] groupExpFactor;
+
+	/**
+	 * 每组的用户数
+	 */
+	private final float[] groupWeight;
+
+	/**
+	 * 需要回退到虚方法调用的组的舒适度函数，其他组为null
+	 */
+	private final UserComfortFunc[] groupFallback;
+
+	/**
+	 * 每组的位置键
+	 */
+	private final List<K> groupLocations;
+
+	/**
+	 * 每个用户所在的组
+	 */
+	private final int[] userGroup;
+
+	/**
+	 * 每个用户的ID
+	 */
+	private final String[] userIds;
+
+	private BatchComfortKernel(Builder<K> builder) {
+		int groupNum = builder.groupLocations.size();
+		groupFrom = new float[groupNum];
+		groupTo = new float[groupNum];
+		groupAverage = new float[groupNum];
+		groupExpFactor = new float[groupNum];
+		groupWeight = new float[groupNum];
+		groupFallback = new UserComfortFunc[groupNum];
+		groupLocations = new ArrayList<K>(builder.groupLocations);
+
+		int userNum = builder.userFuncs.size();
+		userGroup = new int[userNum];
+		userIds = new String[userNum];
+		for (int u = 0; u < userNum; u++) {
+			UserComfortFunc userComfortFunc = builder.userFuncs.get(u);
+			int group = builder.userGroups.get(u);
+			userGroup[u] = group;
+			userIds[u] = userComfortFunc.getUserId();
+			if (groupWeight[group]++ > 0) {
+				continue;
+			}
+			if (userComfortFunc instanceof ContiUserComfortFunc) {
+				ContiUserComfortFunc contiFunc = (ContiUserComfortFunc) userComfortFunc;
+				groupFrom[group] = contiFunc.getUserTempRange().getFrom();
+				groupTo[group] = contiFunc.getUserTempRange().getTo();
+				groupAverage[group] = contiFunc.getAverage();
+				groupExpFactor[group] = -1.0f / (2 * contiFunc.getVariance());
+			} else {
+				groupFallback[group] = userComfortFunc;
+			}
+		}
+	}
+
+	/**
+	 * 根据舒适度函数集合创建批量计算核心，只按舒适度参数分组
+	 *
+	 * @param userComfortFuncs 用户舒适度函数集合
+	 * @return 批量计算核心
+	 */
+	public static BatchComfortKernel<Object> of(Collection<? extends UserComfortFunc> userComfortFuncs) {
+		Builder<Object> builder = builder();
+		for (UserComfortFunc userComfortFunc : userComfortFuncs) {
+			builder.add(userComfortFunc, null);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 创建构建器
+	 *
+	 * @param <K> 位置键类型
+	 * @return 构建器
+	 */
+	public static <K> Builder<K> builder() {
+		return new Builder<K>();
+	}
+
+	/**
+	 * 获取用户数
+	 *
+	 * @return 用户数
+	 */
+	public int getUserNum() {
+		return userIds.length;
+	}
+
+	/**
+	 * 获取组数
+	 *
+	 * @return 组数
+	 */
+	public int getGroupNum() {
+		return groupWeight.length;
+	}
+
+	/**
+	 * 获取用户ID，下标为加入构建器的顺序
+	 *
+	 * @param userIndex 用户下标
+	 * @return 用户ID
+	 */
+	public String getUserId(int userIndex) {
+		return userIds[userIndex];
+	}
+
+	/**
+	 * 获取用户所在的组
+	 *
+	 * @param userIndex 用户下标
+	 * @return 组下标
+	 */
+	public int getUserGroup(int userIndex) {
+		return userGroup[userIndex];
+	}
+
+	/**
+	 * 获取组的位置键
+	 *
+	 * @param group 组下标
+	 * @return 位置键
+	 */
+	public K getGroupLocation(int group) {
+		return groupLocations.get(group);
+	}
+
+	/**
+	 * 获取组内的用户数
+	 *
+	 * @param group 组下标
+	 * @return 用户数
+	 */
+	public int getGroupSize(int group) {
+		return (int) groupWeight[group];
+	}
+
+	/**
+	 * 计算组内单个用户在指定温度下的舒适度
+	 *
+	 * @param group 组下标
+	 * @param temperature 温度
+	 * @return 舒适度
+	 */
+	public float calGroupComfort(int group, float temperature) {
+		if (groupFallback[group] != null) {
+			return groupFallback[group].calUserComfort(temperature);
+		}
+		if (temperature > groupTo[group] || temperature < groupFrom[group]) {
+			return 0f;
+		}
+		float diff = temperature - groupAverage[group];
+		return (float) Math.exp(diff * diff * groupExpFactor[group]);
+	}
+
+	/**
+	 * 计算单个用户在指定温度下的舒适度
+	 *
+	 * @param userIndex 用户下标
+	 * @param temperature 温度
+	 * @return 舒适度
+	 */
+	public float calUserComfort(int userIndex, float temperature) {
+		return calGroupComfort(userGroup[userIndex], temperature);
+	}
+
+	/**
+	 * 计算每个用户温度各不相同时的总满意度
+	 *
+	 * @param userTemps 每个用户的温度，下标为加入构建器的顺序
+	 * @return 总满意度
+	 */
+	public float calTotalSatisfaction(float[] userTemps) {
+		if (userTemps.length != userIds.length) {
+			throw new IllegalArgumentException("用户温度数组长度与用户数不一致");
+		}
+		float satisfaction = 0.0f;
+		for (int u = 0; u < userTemps.length; u++) {
+			satisfaction += calGroupComfort(userGroup[u], userTemps[u]);
+		}
+		return satisfaction;
+	}
+
+	/**
+	 * 计算按组给出温度时的总满意度，每组计算一次后按人数加权
+	 *
+	 * @param groupTemps 每组的温度
+	 * @return 总满意度
+	 */
+	public float calGroupedSatisfaction(float[] groupTemps) {
+		if (groupTemps.length != groupWeight.length) {
+			throw new IllegalArgumentException("分组温度数组长度与组数不一致");
+		}
+		float satisfaction = 0.0f;
+		for (int g = 0; g < groupTemps.length; g++) {
+			satisfaction += groupWeight[g] * calGroupComfort(g, groupTemps[g]);
+		}
+		return satisfaction;
+	}
+
+	/**
+	 * 批量计算核心构建器
+	 *
+	 * @param <K> 位置键类型
+	 */
+	public static final class Builder<K> {
+
+		private final List<UserComfortFunc> userFuncs = new ArrayList<UserComfortFunc>();
+
+		private final List<Integer> userGroups = new ArrayList<Integer>();
+
+		private final List<K> groupLocations = new ArrayList<K>();
+
+		private final Map<List<Object>, Integer> groupIndexTable = new HashMap<List<Object>, Integer>();
+
+		private Builder() {
+		}
+
+		/**
+		 * 加入一个用户
+		 *
+		 * @param userComfortFunc 用户舒适度函数
+		 * @param location 位置键，需正确实现equals和hashCode，可以为null
+		 * @return 构建器本身
+		 */
+		public Builder<K> add(UserComfortFunc userComfortFunc, K location) {
+			List<Object> groupKey;
+			if (userComfortFunc instanceof ContiUserComfortFunc) {
+				UserTempRange userTempRange = userComfortFunc.getUserTempRange();
+				groupKey = Arrays.<Object> asList(userTempRange.getFrom(), userTempRange.getTo(),
+						location);
+			} else if (userComfortFunc instanceof PmvUserComfortFunc) {
+				PmvUserComfortFunc pmvFunc = (PmvUserComfortFunc) userComfortFunc;
+				groupKey = Arrays.<Object> asList(new IdentityKey(pmvFunc.getPmvLookupTable()),
+						pmvFunc.getHumidity(), pmvFunc.getClothing(), pmvFunc.getMetabolicRate(),
+						location);
+			} else {
+				groupKey = Arrays.<Object> asList(new IdentityKey(userComfortFunc), location);
+			}
+			Integer group = groupIndexTable.get(groupKey);
+			if (group == null) {
+				group = groupLocations.size();
+				groupIndexTable.put(groupKey, group);
+				groupLocations.add(location);
+			}
+			userFuncs.add(userComfortFunc);
+			userGroups.add(group);
+			return this;
+		}
+
+		/**
+		 * 构建批量计算核心
+		 *
+		 * @return 批量计算核心
+		 */
+		public BatchComfortKernel<K> build() {
+			return new BatchComfortKernel<K>(this);
+		}
+	}
+
+	/**
+	 * 按对象标识比较的分组键
+	 */
+	private static final class IdentityKey {
+
+		private final Object target;
+
+		private IdentityKey(Object target) {
+			this.target = target;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey && ((IdentityKey) obj).target == target;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(target);
+		}
+	}
+}
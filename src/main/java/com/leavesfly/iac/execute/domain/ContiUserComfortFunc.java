@@ -6,6 +6,11 @@ public class ContiUserComfortFunc extends UserComfortFunc {
 	private float average;
 	private float variance;
 
+	/**
+	 * 指数系数，即 -1 / (2 * variance)，构造时计算一次
+	 */
+	private float expFactor;
+
 	/**
 	 * 
 	 * @param userId
@@ -21,6 +26,25 @@ public class ContiUserComfortFunc extends UserComfortFunc {
 		average = (userTempRange.getFrom() + userTempRange.getTo()) / 2;
 		variance = -(float) Math.pow((userTempRange.getTo() - average), 2)
 				/ (2 * (float) Math.log(COMFORT_MIN_VALUE));
+		expFactor = -1.0f / (2 * variance);
+	}
+
+	/**
+	 * 获取舒适温度的平均值
+	 *
+	 * @return 平均温度
+	 */
+	public float getAverage() {
+		return average;
+	}
+
+	/**
+	 * 获取舒适度高斯函数的方差
+	 *
+	 * @return 方差
+	 */
+	public float getVariance() {
+		return variance;
 	}
 
 //	@Override
@@ -35,12 +59,17 @@ public class ContiUserComfortFunc extends UserComfortFunc {
 	@Override
 	public float calUserComfort(float temperature) {
 		if (userTempRange.isInRange(temperature)) {
-			float value = -(float) Math.pow((temperature - average), 2) / (2 * variance);
-			return (float) Math.exp(value);
+			float diff = temperature - average;
+			return (float) Math.exp(diff * diff * expFactor);
 		}
 		return 0f;
 	}
 
+	@Override
+	public UserTempRange getUserTempRange() {
+		return userTempRange;
+	}
+
 	@Override
 	public String toString() {
 		return userId + "\t" + userTempRange.getFrom() + "," + userTempRange.getTo() + "\t"
@@ -0,0 +1,90 @@
+package com.leavesfly.iac.execute.domain;
+
+/**
+ * PMV/PPD热舒适度计算类
+ *
+ * 该类按ISO 7730附录D的算法计算预测平均投票数（PMV）和预测不满意百分比（PPD）。
+ * PMV需要迭代求解服装表面温度，计算代价较高，优化过程中应通过{@link PmvLookupTable}查表使用。
+ */
+public class PmvCalculator {
+
+	/**
+	 * 服装表面温度迭代的收敛精度
+	 */
+	private static final double CLOTHING_TEMP_EPSILON = 0.00015;
+
+	/**
+	 * 服装表面温度迭代的最大次数
+	 */
+	private static final int MAX_ITERATION_NUM = 150;
+
+	/**
+	 * 计算PMV
+	 *
+	 * @param airTemp 空气温度（℃）
+	 * @param radiantTemp 平均辐射温度（℃）
+	 * @param airVelocity 相对空气流速（m/s）
+	 * @param humidity 相对湿度（%）
+	 * @param metabolicRate 代谢率（met）
+	 * @param clothing 服装热阻（clo）
+	 * @return PMV值
+	 */
+	public static double calPmv(double airTemp, double radiantTemp, double airVelocity,
+			double humidity, double metabolicRate, double clothing) {
+		if (humidity < 0 || humidity > 100 || metabolicRate <= 0 || clothing < 0 || airVelocity < 0) {
+			throw new IllegalArgumentException();
+		}
+		// 水蒸气分压（Pa）
+		double pa = humidity * 10 * Math.exp(16.6536 - 4030.183 / (airTemp + 235));
+		double icl = 0.155 * clothing;
+		double m = metabolicRate * 58.15;
+		double mw = m;
+		double fcl = icl <= 0.078 ? 1 + 1.29 * icl : 1.05 + 0.645 * icl;
+		double hcf = 12.1 * Math.sqrt(airVelocity);
+		double taa = airTemp + 273;
+		double tra = radiantTemp + 273;
+
+		double tcla = taa + (35.5 - airTemp) / (3.5 * icl + 0.1);
+		double p1 = icl * fcl;
+		double p2 = p1 * 3.96;
+		double p3 = p1 * 100;
+		double p4 = p1 * taa;
+		double p5 = 308.7 - 0.028 * mw + p2 * Math.pow(tra / 100, 4);
+		double xn = tcla / 100;
+		double xf = tcla / 50;
+		double hc = hcf;
+		int iterationNum = 0;
+		while (Math.abs(xn - xf) > CLOTHING_TEMP_EPSILON) {
+			xf = (xf + xn) / 2;
+			double hcn = 2.38 * Math.pow(Math.abs(100 * xf - taa), 0.25);
+			hc = Math.max(hcf, hcn);
+			xn = (p5 + p4 * hc - p2 * Math.pow(xf, 4)) / (100 + p3 * hc);
+			if (++iterationNum > MAX_ITERATION_NUM) {
+				throw new IllegalStateException("服装表面温度迭代不收敛");
+			}
+		}
+		double tcl = 100 * xn - 273;
+
+		// 皮肤扩散、出汗、呼吸潜热、呼吸显热、辐射和对流散热
+		double hl1 = 3.05e-3 * (5733 - 6.99 * mw - pa);
+		double hl2 = mw > 58.15 ? 0.42 * (mw - 58.15) : 0;
+		double hl3 = 1.7e-5 * m * (5867 - pa);
+		double hl4 = 0.0014 * m * (34 - airTemp);
+		double hl5 = 3.96 * fcl * (Math.pow(xn, 4) - Math.pow(tra / 100, 4));
+		double hl6 = fcl * hc * (tcl - airTemp);
+
+		double ts = 0.303 * Math.exp(-0.036 * m) + 0.028;
+		return ts * (mw - hl1 - hl2 - hl3 - hl4 - hl5 - hl6);
+	}
+
+	/**
+	 * 根据PMV计算PPD
+	 *
+	 * @param pmv PMV值
+	 * @return PPD值（%），最小为5
+	 */
+	public static float calPpd(float pmv) {
+		float pmv2 = pmv * pmv;
+		return 100.0f - 95.0f * (float) Math.exp(-0.03353f * pmv2 * pmv2 - 0.2179f * pmv2);
+	}
+}
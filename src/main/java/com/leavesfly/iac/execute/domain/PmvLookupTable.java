@@ -0,0 +1,218 @@
+package com.leavesfly.iac.execute.domain;
+
+/**
+ * PMV查找表类
+ *
+ * 该类在空气温度、相对湿度、服装热阻和代谢率组成的四维等间距网格上预先计算PMV，
+ * 查询时做四线性插值，代价为16次取数，远低于迭代求解服装表面温度。
+ * 平均辐射温度取空气温度，空气流速在建表时固定。超出网格范围的输入按边界值处理。
+ * 表建好后不可变，可被多个线程同时使用。
+ */
+public final class PmvLookupTable {
+
+	/**
+	 * 默认空气流速（m/s），对应室内静止空气
+	 */
+	public static final float DEFAULT_AIR_VELOCITY = 0.1f;
+
+	private static volatile PmvLookupTable defaultTable;
+
+	private final Axis airTempAxis;
+
+	private final Axis humidityAxis;
+
+	private final Axis clothingAxis;
+
+	private final Axis metabolicRateAxis;
+
+	private final float airVelocity;
+
+	/**
+	 * PMV值，下标为 ((airTemp * humidityNum + humidity) * clothingNum + clothing) * metabolicRateNum + metabolicRate
+	 */
+	private final float[] pmvTable;
+
+	/**
+	 * 构造函数，按网格逐点计算PMV
+	 *
+	 * @param airTempAxis 空气温度网格（℃）
+	 * @param humidityAxis 相对湿度网格（%）
+	 * @param clothingAxis 服装热阻网格（clo）
+	 * @param metabolicRateAxis 代谢率网格（met）
+	 * @param airVelocity 空气流速（m/s）
+	 */
+	public PmvLookupTable(Axis airTempAxis, Axis humidityAxis, Axis clothingAxis,
+			Axis metabolicRateAxis, float airVelocity) {
+		this.airTempAxis = airTempAxis;
+		this.humidityAxis = humidityAxis;
+		this.clothingAxis = clothingAxis;
+		this.metabolicRateAxis = metabolicRateAxis;
+		this.airVelocity = airVelocity;
+
+		pmvTable = new float[airTempAxis.num * humidityAxis.num * clothingAxis.num
+				* metabolicRateAxis.num];
+		int index = 0;
+		for (int t = 0; t < airTempAxis.num; t++) {
+			double airTemp = airTempAxis.valueAt(t);
+			for (int h = 0; h < humidityAxis.num; h++) {
+				double humidity = humidityAxis.valueAt(h);
+				for (int c = 0; c < clothingAxis.num; c++) {
+					double clothing = clothingAxis.valueAt(c);
+					for (int m = 0; m < metabolicRateAxis.num; m++) {
+						pmvTable[index++] = (float) PmvCalculator.calPmv(airTemp, airTemp,
+								airVelocity, humidity, metabolicRateAxis.valueAt(m), clothing);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 获取默认查找表
+	 *
+	 * 空气温度10~40℃步长0.5，相对湿度0~100%步长10，服装热阻0~2clo步长0.125，
+	 * 代谢率0.8~2.4met步长0.1，空气流速0.1m/s。首次调用时建表。
+	 *
+	 * @return 默认查找表
+	 */
+	public static PmvLookupTable getDefault() {
+		if (defaultTable != null) {
+			return defaultTable;
+		}
+		synchronized (PmvLookupTable.class) {
+			if (defaultTable == null) {
+				defaultTable = new PmvLookupTable(new Axis(10.0f, 0.5f, 61), new Axis(0.0f, 10.0f, 11),
+						new Axis(0.0f, 0.125f, 17), new Axis(0.8f, 0.1f, 17), DEFAULT_AIR_VELOCITY);
+			}
+		}
+		return defaultTable;
+	}
+
+	/**
+	 * 插值查询PMV
+	 *
+	 * @param airTemp 空气温度（℃）
+	 * @param humidity 相对湿度（%）
+	 * @param clothing 服装热阻（clo）
+	 * @param metabolicRate 代谢率（met）
+	 * @return PMV值
+	 */
+	public float lookup(float airTemp, float humidity, float clothing, float metabolicRate) {
+		float tPos = airTempAxis.position(airTemp);
+		float hPos = humidityAxis.position(humidity);
+		float cPos = clothingAxis.position(clothing);
+		float mPos = metabolicRateAxis.position(metabolicRate);
+		int t0 = airTempAxis.lowerIndex(tPos);
+		int h0 = humidityAxis.lowerIndex(hPos);
+		int c0 = clothingAxis.lowerIndex(cPos);
+		int m0 = metabolicRateAxis.lowerIndex(mPos);
+		float tw = tPos - t0;
+		float hw = hPos - h0;
+		float cw = cPos - c0;
+		float mw = mPos - m0;
+
+		int mStride = 1;
+		int cStride = metabolicRateAxis.num;
+		int hStride = cStride * clothingAxis.num;
+		int tStride = hStride * humidityAxis.num;
+		int base = t0 * tStride + h0 * hStride + c0 * cStride + m0;
+
+		float result = 0.0f;
+		for (int corner = 0; corner < 16; corner++) {
+			int dt = corner >> 3 & 1;
+			int dh = corner >> 2 & 1;
+			int dc = corner >> 1 & 1;
+			int dm = corner & 1;
+			float weight = (dt == 0 ? 1 - tw : tw) * (dh == 0 ? 1 - hw : hw)
+					* (dc == 0 ? 1 - cw : cw) * (dm == 0 ? 1 - mw : mw);
+			if (weight != 0.0f) {
+				result += weight
+						* pmvTable[base + dt * tStride + dh * hStride + dc * cStride + dm * mStride];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 获取空气温度网格
+	 *
+	 * @return 空气温度网格
+	 */
+	public Axis getAirTempAxis() {
+		return airTempAxis;
+	}
+
+	/**
+	 * 获取建表时的空气流速
+	 *
+	 * @return 空气流速（m/s）
+	 */
+	public float getAirVelocity() {
+		return airVelocity;
+	}
+
+	/**
+	 * 等间距网格轴
+	 */
+	public static final class Axis {
+
+		private final float from;
+
+		private final float step;
+
+		private final int num;
+
+		/**
+		 * 构造函数
+		 *
+		 * @param from 起始值
+		 * @param step 步长
+		 * @param num 网格点数，不少于2
+		 */
+		public Axis(float from, float step, int num) {
+			if (num < 2 || !(step > 0)) {
+				throw new IllegalArgumentException();
+			}
+			this.from = from;
+			this.step = step;
+			this.num = num;
+		}
+
+		/**
+		 * 获取第i个网格点的值
+		 *
+		 * @param i 网格点下标
+		 * @return 网格点的值
+		 */
+		public float valueAt(int i) {
+			return from + i * step;
+		}
+
+		/**
+		 * 获取网格点数
+		 *
+		 * @return 网格点数
+		 */
+		public int getNum() {
+			return num;
+		}
+
+		/**
+		 * 计算值在网格上的连续位置，超出范围时取边界
+		 */
+		private float position(float value) {
+			float position = (value - from) / step;
+			if (position <= 0) {
+				return 0;
+			}
+			return Math.min(position, num - 1);
+		}
+
+		/**
+		 * 计算插值区间的下端下标，保证下端下标加1不越界
+		 */
+		private int lowerIndex(float position) {
+			return Math.min((int) position, num - 2);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.leavesfly.iac.execute.domain;
+
+/**
+ * 基于PMV/PPD的用户舒适度函数类
+ *
+ * 舒适度取(100 - PPD) / 95，热中性（PMV为0）时为1，低于最低舒适度时记为0，
+ * 与{@link ContiUserComfortFunc}在舒适范围边界处取最低舒适度的约定一致。
+ * 用户的湿度、服装热阻和代谢率在构造时固定，构造时从{@link PmvLookupTable}中取出
+ * 沿空气温度轴的一维PMV切片，之后每次计算只需一次线性插值和一次指数运算。
+ */
+public class PmvUserComfortFunc extends UserComfortFunc {
+
+	/**
+	 * PPD公式中PMV四次项的系数
+	 */
+	private static final float PPD_QUARTIC_FACTOR = 0.03353f;
+
+	/**
+	 * PPD公式中PMV二次项的系数
+	 */
+	private static final float PPD_QUADRATIC_FACTOR = 0.2179f;
+
+	/**
+	 * 相对湿度（%）
+	 */
+	private final float humidity;
+
+	/**
+	 * 服装热阻（clo）
+	 */
+	private final float clothing;
+
+	/**
+	 * 代谢率（met）
+	 */
+	private final float metabolicRate;
+
+	/**
+	 * PMV查找表
+	 */
+	private final PmvLookupTable pmvLookupTable;
+
+	/**
+	 * 空气温度网格
+	 */
+	private final PmvLookupTable.Axis airTempAxis;
+
+	/**
+	 * 空气温度网格点上的PMV值
+	 */
+	private final float[] pmvSlice;
+
+	/**
+	 * 舒适度不低于最低舒适度的温度范围
+	 */
+	private final UserTempRange userTempRange;
+
+	/**
+	 * 构造函数，使用默认PMV查找表
+	 *
+	 * @param userId 用户ID
+	 * @param humidity 相对湿度（%）
+	 * @param clothing 服装热阻（clo）
+	 * @param metabolicRate 代谢率（met）
+	 */
+	public PmvUserComfortFunc(String userId, float humidity, float clothing, float metabolicRate) {
+		this(userId, humidity, clothing, metabolicRate, PmvLookupTable.getDefault());
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param userId 用户ID
+	 * @param humidity 相对湿度（%）
+	 * @param clothing 服装热阻（clo）
+	 * @param metabolicRate 代谢率（met）
+	 * @param pmvLookupTable PMV查找表
+	 */
+	public PmvUserComfortFunc(String userId, float humidity, float clothing, float metabolicRate,
+			PmvLookupTable pmvLookupTable) {
+		super(userId);
+		this.humidity = humidity;
+		this.clothing = clothing;
+		this.metabolicRate = metabolicRate;
+		this.pmvLookupTable = pmvLookupTable;
+		this.airTempAxis = pmvLookupTable.getAirTempAxis();
+		this.pmvSlice = new float[airTempAxis.getNum()];
+		for (int i = 0; i < pmvSlice.length; i++) {
+			pmvSlice[i] = pmvLookupTable.lookup(airTempAxis.valueAt(i), humidity, clothing,
+					metabolicRate);
+		}
+		this.userTempRange = buildUserTempRange();
+	}
+
+	/**
+	 * 根据最低舒适度反解PMV的绝对值上限，再沿单调递增的PMV切片反解出温度范围
+	 */
+	private UserTempRange buildUserTempRange() {
+		// 舒适度 = exp(-a * pmv^4 - b * pmv^2)，令其等于最低舒适度，解关于pmv^2的二次方程
+		double a = PPD_QUARTIC_FACTOR;
+		double b = PPD_QUADRATIC_FACTOR;
+		double c = Math.log(COMFORT_MIN_VALUE);
+		float pmvLimit = (float) Math.sqrt((-b + Math.sqrt(b * b - 4 * a * c)) / (2 * a));
+		return new UserTempRange(inverseSlice(-pmvLimit), inverseSlice(pmvLimit));
+	}
+
+	/**
+	 * 求PMV切片上取值为pmv的温度，超出切片范围时取边界温度
+	 */
+	private float inverseSlice(float pmv) {
+		int last = pmvSlice.length - 1;
+		if (pmv <= pmvSlice[0]) {
+			return airTempAxis.valueAt(0);
+		}
+		if (pmv >= pmvSlice[last]) {
+			return airTempAxis.valueAt(last);
+		}
+		int i = 0;
+		while (pmvSlice[i + 1] < pmv) {
+			i++;
+		}
+		float ratio = (pmv - pmvSlice[i]) / (pmvSlice[i + 1] - pmvSlice[i]);
+		return airTempAxis.valueAt(i) + ratio * (airTempAxis.valueAt(i + 1) - airTempAxis.valueAt(i));
+	}
+
+	/**
+	 * 计算指定空气温度下的PMV
+	 *
+	 * @param temperature 空气温度（℃）
+	 * @return PMV值
+	 */
+	public float calPmv(float temperature) {
+		float position = (temperature - airTempAxis.valueAt(0))
+				/ (airTempAxis.valueAt(1) - airTempAxis.valueAt(0));
+		int last = pmvSlice.length - 1;
+		if (position <= 0) {
+			return pmvSlice[0];
+		}
+		if (position >= last) {
+			return pmvSlice[last];
+		}
+		int i = (int) position;
+		float weight = position - i;
+		return pmvSlice[i] + weight * (pmvSlice[i + 1] - pmvSlice[i]);
+	}
+
+	/**
+	 * 计算指定空气温度下的PPD
+	 *
+	 * @param temperature 空气温度（℃）
+	 * @return PPD值（%）
+	 */
+	public float calPpd(float temperature) {
+		return PmvCalculator.calPpd(calPmv(temperature));
+	}
+
+	@Override
+	public float calUserComfort(float temperature) {
+		float pmv = calPmv(temperature);
+		float pmv2 = pmv * pmv;
+		float comfort = (float) Math.exp(-PPD_QUARTIC_FACTOR * pmv2 * pmv2 - PPD_QUADRATIC_FACTOR
+				* pmv2);
+		return comfort < COMFORT_MIN_VALUE ? 0f : comfort;
+	}
+
+	@Override
+	public boolean isUpMinSatisfy(float temperature) {
+		return userTempRange.isInRange(temperature);
+	}
+
+	@Override
+	public UserTempRange getUserTempRange() {
+		return userTempRange;
+	}
+
+	/**
+	 * 获取相对湿度
+	 *
+	 * @return 相对湿度（%）
+	 */
+	public float getHumidity() {
+		return humidity;
+	}
+
+	/**
+	 * 获取服装热阻
+	 *
+	 * @return 服装热阻（clo）
+	 */
+	public float getClothing() {
+		return clothing;
+	}
+
+	/**
+	 * 获取代谢率
+	 *
+	 * @return 代谢率（met）
+	 */
+	public float getMetabolicRate() {
+		return metabolicRate;
+	}
+
+	/**
+	 * 获取PMV查找表，用于批量计算时判断参数是否相同
+	 */
+	PmvLookupTable getPmvLookupTable() {
+		return pmvLookupTable;
+	}
+
+	@Override
+	public String toString() {
+		return userId + "\t" + humidity + "," + clothing + "," + metabolicRate + "\t"
+				+ userTempRange.getFrom() + "," + userTempRange.getTo();
+	}
+}
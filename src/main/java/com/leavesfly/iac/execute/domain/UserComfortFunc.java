@@ -62,6 +62,13 @@ public abstract class UserComfortFunc {
 	 */
 	public abstract boolean isUpMinSatisfy(float temperature);
 
+	/**
+	 * 获取用户可接受的温度范围
+	 * 
+	 * @return 用户温度范围
+	 */
+	public abstract UserTempRange getUserTempRange();
+
 	/**
 	 * 获取用户ID
 	 * 
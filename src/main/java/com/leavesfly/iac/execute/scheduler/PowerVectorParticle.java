@@ -5,6 +5,7 @@ import com.leavesfly.iac.domain.PowerRange;
 import com.leavesfly.iac.domain.PowerValue;
 import com.leavesfly.iac.domain.PowerVector;
 import com.leavesfly.iac.evalute.Evaluator;
+import com.leavesfly.iac.evalute.RobustnessEvaluator;
 import com.leavesfly.iac.execute.scheduler.pso.Particle;
 
 /**
@@ -15,13 +16,30 @@ import com.leavesfly.iac.execute.scheduler.pso.Particle;
  */
 public class PowerVectorParticle extends Particle<PowerValue> {
 
+	/**
+	 * 鲁棒性评估器，不为null时以扰动下的鲁棒满意度代替总满意度
+	 */
+	private final RobustnessEvaluator robustnessEvaluator;
+
 	/**
 	 * 构造函数
 	 * 
 	 * @param powerRangeArray 功率范围数组
 	 */
 	public PowerVectorParticle(final PowerRange[] powerRangeArray) {
+		this(powerRangeArray, null);
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param powerRangeArray 功率范围数组
+	 * @param robustnessEvaluator 鲁棒性评估器，为null时使用确定性的总满意度
+	 */
+	public PowerVectorParticle(final PowerRange[] powerRangeArray,
+			RobustnessEvaluator robustnessEvaluator) {
 		super();
+		this.robustnessEvaluator = robustnessEvaluator;
 		PowerValue[] location = initVectorValue(powerRangeArray);
 		init(location);
 	}
@@ -54,18 +72,14 @@ public class PowerVectorParticle extends Particle<PowerValue> {
 	@Override
 	protected float calTargetValue(PowerValue[] powerValueArray) {
 
-		float satisfaction = 0f;
 		PowerVector powerVector = new PowerVector(powerValueArray);
-		satisfaction += Evaluator.calTotalSatisfaction(powerVector);
-		satisfaction *= AppContextConstant.SATISFY_WEIGHT;
+		float satisfaction = robustnessEvaluator == null ? Evaluator
+				.calTotalSatisfaction(powerVector) : robustnessEvaluator
+				.calRobustSatisfaction(powerVector);
+		float powerCost = Evaluator.calTotalPowerCost(powerVector);
 
-		float powerCost = 0f;
-		powerCost = Evaluator.calTotalPowerCost(powerVector);
-		powerCost *= AppContextConstant.POWER_COST_WEIGHT;
-		
 		// 用户的满意度与用电消耗进行简单的归一化，便于计算
-		return satisfaction - (powerCost / AppContextConstant.AIR_CONDITION_MAX_POWER)
-				* ((float) AppContextConstant.USER_NUM / AppContextConstant.AIR_CONDITION_NUM);
+		return Evaluator.calTargetValue(satisfaction, powerCost, AppContextConstant.SATISFY_WEIGHT);
 	}
 
 }
\ No newline at end of file
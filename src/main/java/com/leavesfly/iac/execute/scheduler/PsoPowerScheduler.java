@@ -6,6 +6,7 @@ import com.leavesfly.iac.domain.PowerRange;
 import com.leavesfly.iac.domain.PowerValue;
 import com.leavesfly.iac.domain.PowerVector;
 import com.leavesfly.iac.domain.RangeValue;
+import com.leavesfly.iac.evalute.RobustnessEvaluator;
 import com.leavesfly.iac.execute.PowerScheduler;
 import com.leavesfly.iac.execute.scheduler.pso.Particle;
 import com.leavesfly.iac.execute.scheduler.pso.PsoAlgorithm;
@@ -30,6 +31,18 @@ public class PsoPowerScheduler implements PowerScheduler {
 	 * @param isImprovedParticle 是否使用改进粒子
 	 */
 	public PsoPowerScheduler(int initParticleNum, boolean isImprovedParticle) {
+		this(initParticleNum, isImprovedParticle, null);
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param initParticleNum 初始粒子数量
+	 * @param isImprovedParticle 是否使用改进粒子
+	 * @param robustnessEvaluator 鲁棒性评估器，不为null时以鲁棒满意度作为优化目标
+	 */
+	public PsoPowerScheduler(int initParticleNum, boolean isImprovedParticle,
+			RobustnessEvaluator robustnessEvaluator) {
 
 		DataFactory dataFactory = DataFactory.getInstance();
 		PowerRange[] powerRangeArray = dataFactory.getPowerRangeArray();
@@ -39,11 +52,11 @@ public class PsoPowerScheduler implements PowerScheduler {
 
 		if (isImprovedParticle) {
 			for (int i = 0; i < initParticleNum; i++) {
-				ParticleSet[i] = new PvImprovedParticle(powerRangeArray);
+				ParticleSet[i] = new PvImprovedParticle(powerRangeArray, robustnessEvaluator);
 			}
 		} else {
 			for (int i = 0; i < initParticleNum; i++) {
-				ParticleSet[i] = new PowerVectorParticle(powerRangeArray);
+				ParticleSet[i] = new PowerVectorParticle(powerRangeArray, robustnessEvaluator);
 			}
 		}
 
@@ -3,6 +3,7 @@ package com.leavesfly.iac.execute.scheduler;
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.domain.PowerRange;
 import com.leavesfly.iac.domain.PowerValue;
+import com.leavesfly.iac.evalute.RobustnessEvaluator;
 import com.leavesfly.iac.util.MathUtil;
 
 /**
@@ -46,7 +47,17 @@ public class PvImprovedParticle extends PowerVectorParticle {
 	 * @param powerRangeVector 功率范围数组
 	 */
 	public PvImprovedParticle(PowerRange[] powerRangeVector) {
-		super(powerRangeVector);
+		this(powerRangeVector, null);
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param powerRangeVector 功率范围数组
+	 * @param robustnessEvaluator 鲁棒性评估器，为null时使用确定性的总满意度
+	 */
+	public PvImprovedParticle(PowerRange[] powerRangeVector, RobustnessEvaluator robustnessEvaluator) {
+		super(powerRangeVector, robustnessEvaluator);
 
 		mchaoticVariable = new float[powerRangeVector.length];
 		umChaoticVariable = new float[powerRangeVector.length];
@@ -3,13 +3,16 @@ package com.leavesfly.iac.service.impl;
 import java.util.concurrent.CompletableFuture;
 
 import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.domain.PowerBounds;
+import com.leavesfly.iac.domain.improved.PowerRange;
 import com.leavesfly.iac.domain.improved.PowerVector;
+import com.leavesfly.iac.execute.scheduler.PsoPowerScheduler;
 import com.leavesfly.iac.service.PowerSchedulingService;
 
 /**
  * PSO功率调度服务实现
  * 
- * 基于原有PsoPowerScheduler的现代化实现
+ * 基于原有PsoPowerScheduler的现代化实现，调度结果转换为不可变的功率向量
  */
 public class PsoSchedulingService implements PowerSchedulingService {
 
@@ -29,18 +32,26 @@ public class PsoSchedulingService implements PowerSchedulingService {
 
     @Override
     public PowerVector schedule() {
-        // TODO: 实现基于原有PSO算法的调度功能
-        System.out.println("开始PSO功率调度，粒子数: " + particleCount);
-        
-        // 模拟调度过程
-        try {
-            Thread.sleep(2000); // 模拟调度时间
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        PsoPowerScheduler scheduler = new PsoPowerScheduler(particleCount, useImprovedParticle);
+        return toPowerVector(scheduler.schedule());
+    }
+
+    /**
+     * 将调度结果转换为不可变的功率向量，功率范围相同的设备共享同一个范围对象
+     */
+    private static PowerVector toPowerVector(com.leavesfly.iac.domain.PowerVector scheduled) {
+        float[] values = scheduled.getPowerValueArray();
+        PowerBounds bounds = scheduled.getBounds();
+        PowerRange[] ranges = new PowerRange[values.length];
+        for (int i = 0; i < ranges.length; i++) {
+            if (i > 0 && bounds.getFrom(i) == bounds.getFrom(i - 1)
+                    && bounds.getTo(i) == bounds.getTo(i - 1)) {
+                ranges[i] = ranges[i - 1];
+            } else {
+                ranges[i] = new PowerRange(bounds.getFrom(i), bounds.getTo(i));
+            }
         }
-        
-        System.out.println("PSO调度完成");
-        return null; // 实际实现需要返回调度结果
+        return new PowerVector(values, ranges);
     }
 
     @Override
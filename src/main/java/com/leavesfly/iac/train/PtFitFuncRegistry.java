@@ -0,0 +1,379 @@
+package com.leavesfly.iac.train;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.trainer.TrainModel;
+
+/**
+ * 按室外温度分桶的功率-温度拟合函数注册表
+ *
+ * 室外温度按固定宽度分桶，第i个桶的代表温度为 i * 桶宽，覆盖区间
+ * [(i - 0.5) * 桶宽, (i + 0.5) * 桶宽)，每个桶缓存一组用该区间内训练数据训练的拟合函数。
+ * 查询任意室外温度时：
+ * 1. 温度恰好等于某个已缓存桶的代表温度时，直接返回该桶的拟合函数
+ * 2. 两侧都有已缓存的桶时，按温度在两个相邻桶的代表温度之间线性插值
+ * 3. 只有一侧有已缓存的桶时，使用最近的桶
+ * 4. 温度所在的桶尚未缓存时，在注册表专用的后台训练线程中训练该桶，训练完成后的查询使用新桶；
+ *    一个桶都没有时在调用线程中同步训练
+ * 5. 桶区间内没有任何训练数据时该桶不缓存，继续使用最近的已缓存桶，不会用未训练的模型插值
+ *
+ * 桶训练失败（包括没有训练数据）后记录失败时间，重试间隔内的查询不再重新训练该桶，
+ * 显式调用{@link #prefetch(float)}不受重试间隔限制。
+ *
+ * 室外温度随天气缓慢变化时，只有进入新的桶才需要训练，且训练期间不阻塞查询。
+ * 同一时刻最多训练一个桶，训练器不需要支持并发调用，但需要支持多次调用。
+ * 后台训练不占用计算线程池的线程，训练器内部可以在计算线程池中并行训练各个传感器。
+ */
+public class PtFitFuncRegistry {
+
+	/**
+	 * 训练器，为null时只能使用预先注册的拟合函数
+	 */
+	private final PtTrainer ptTrainer;
+
+	/**
+	 * 桶宽（摄氏度）
+	 */
+	private final float bucketWidth;
+
+	/**
+	 * 默认的训练失败重试间隔（毫秒）
+	 */
+	public static final long DEFAULT_RETRY_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+	/**
+	 * 后台训练线程空闲多久后退出（秒）
+	 */
+	private static final long TRAIN_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+	/**
+	 * 训练失败后的重试间隔（毫秒）
+	 */
+	private final long retryIntervalMillis;
+
+	/**
+	 * 后台训练执行器，只有一个线程，空闲时退出
+	 */
+	private final ThreadPoolExecutor trainExecutor;
+
+	/**
+	 * 训练锁，后台训练与没有桶时的同步训练互斥
+	 */
+	private final Object trainLock = new Object();
+
+	/**
+	 * 桶序号 -> 传感器ID -> 拟合函数
+	 */
+	private final ConcurrentSkipListMap<Integer, Map<String, PtFitFunc>> bucketMap = new ConcurrentSkipListMap<Integer, Map<String, PtFitFunc>>();
+
+	/**
+	 * 桶序号 -> 正在进行的训练
+	 */
+	private final ConcurrentHashMap<Integer, CompletableFuture<Map<String, PtFitFunc>>> trainingMap = new ConcurrentHashMap<Integer, CompletableFuture<Map<String, PtFitFunc>>>();
+
+	/**
+	 * 桶序号 -> 训练失败后允许查询再次训练的时间（毫秒）
+	 */
+	private final ConcurrentHashMap<Integer, Long> retryTimeMap = new ConcurrentHashMap<Integer, Long>();
+
+	/**
+	 * 构造函数，使用默认的训练失败重试间隔
+	 *
+	 * @param ptTrainer 训练器，需支持多次调用；为null时只能使用预先注册的拟合函数
+	 * @param bucketWidth 桶宽（摄氏度），必须大于0
+	 */
+	public PtFitFuncRegistry(PtTrainer ptTrainer, float bucketWidth) {
+		this(ptTrainer, bucketWidth, DEFAULT_RETRY_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param ptTrainer 训练器，需支持多次调用；为null时只能使用预先注册的拟合函数
+	 * @param bucketWidth 桶宽（摄氏度），必须大于0
+	 * @param retryIntervalMillis 桶训练失败后查询再次训练该桶的最短间隔（毫秒），不能小于0
+	 */
+	public PtFitFuncRegistry(PtTrainer ptTrainer, float bucketWidth, long retryIntervalMillis) {
+		if (!(bucketWidth > 0) || Float.isInfinite(bucketWidth)) {
+			throw new IllegalArgumentException("桶宽必须大于0");
+		}
+		if (retryIntervalMillis < 0) {
+			throw new IllegalArgumentException("重试间隔不能小于0");
+		}
+		this.ptTrainer = ptTrainer;
+		this.bucketWidth = bucketWidth;
+		this.retryIntervalMillis = retryIntervalMillis;
+		this.trainExecutor = new ThreadPoolExecutor(1, 1, TRAIN_THREAD_KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "fitfunc-registry-train");
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.trainExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 注册室外温度所在桶的拟合函数集合，覆盖该桶已有的拟合函数
+	 *
+	 * @param outsideTemp 室外温度
+	 * @param fitFuncSet 拟合函数集合
+	 */
+	public void registerFitFuncSet(float outsideTemp, Collection<PtFitFunc> fitFuncSet) {
+		bucketMap.put(bucketIndex(outsideTemp), toFitFuncMap(fitFuncSet));
+	}
+
+	/**
+	 * 获取室外温度下的拟合函数集合
+	 *
+	 * @param outsideTemp 室外温度
+	 * @return 拟合函数集合
+	 */
+	public Collection<PtFitFunc> getFitFuncSet(float outsideTemp) {
+		return getFitFuncMap(outsideTemp).values();
+	}
+
+	/**
+	 * 获取室外温度下的拟合函数映射表
+	 *
+	 * @param outsideTemp 室外温度
+	 * @return 传感器ID -> 拟合函数，不可修改
+	 */
+	public Map<String, PtFitFunc> getFitFuncMap(float outsideTemp) {
+		int index = bucketIndex(outsideTemp);
+		if (!bucketMap.containsKey(index) && ptTrainer != null && isRetryDue(index)) {
+			if (bucketMap.isEmpty()) {
+				return trainBucket(index);
+			}
+			scheduleTraining(index);
+		}
+
+		float position = outsideTemp / bucketWidth;
+		Map.Entry<Integer, Map<String, PtFitFunc>> lower = bucketMap.floorEntry((int) Math
+				.floor(position));
+		Map.Entry<Integer, Map<String, PtFitFunc>> upper = bucketMap.ceilingEntry((int) Math
+				.ceil(position));
+		if (lower == null && upper == null) {
+			throw new IllegalStateException("室外温度" + outsideTemp + "附近没有可用的拟合函数");
+		}
+		if (upper == null || (lower != null && lower.getKey().equals(upper.getKey()))) {
+			return lower.getValue();
+		}
+		if (lower == null) {
+			return upper.getValue();
+		}
+		float weight = (position - lower.getKey()) / (upper.getKey() - lower.getKey());
+		return interpolate(lower.getValue(), upper.getValue(), weight, outsideTemp);
+	}
+
+	/**
+	 * 在后台训练室外温度所在的桶，不受训练失败重试间隔的限制
+	 *
+	 * @param outsideTemp 室外温度
+	 * @return 训练结果；桶已缓存时返回已完成的结果
+	 */
+	public CompletableFuture<Map<String, PtFitFunc>> prefetch(float outsideTemp) {
+		if (ptTrainer == null) {
+			throw new IllegalStateException("未指定训练器");
+		}
+		return scheduleTraining(bucketIndex(outsideTemp));
+	}
+
+	/**
+	 * 判断室外温度所在的桶是否已缓存
+	 *
+	 * @param outsideTemp 室外温度
+	 * @return 已缓存时返回true
+	 */
+	public boolean isBucketReady(float outsideTemp) {
+		return bucketMap.containsKey(bucketIndex(outsideTemp));
+	}
+
+	/**
+	 * 获取已缓存的桶的代表温度
+	 *
+	 * @return 代表温度列表，升序
+	 */
+	public List<Float> getBucketTemps() {
+		List<Float> bucketTemps = new ArrayList<Float>(bucketMap.size());
+		for (Integer index : bucketMap.keySet()) {
+			bucketTemps.add(bucketTemp(index));
+		}
+		return bucketTemps;
+	}
+
+	/**
+	 * 获取桶宽
+	 *
+	 * @return 桶宽（摄氏度）
+	 */
+	public float getBucketWidth() {
+		return bucketWidth;
+	}
+
+	private int bucketIndex(float outsideTemp) {
+		if (Float.isNaN(outsideTemp) || Float.isInfinite(outsideTemp)) {
+			throw new IllegalArgumentException("室外温度无效: " + outsideTemp);
+		}
+		return Math.round(outsideTemp / bucketWidth);
+	}
+
+	private float bucketTemp(int index) {
+		return index * bucketWidth;
+	}
+
+	/**
+	 * 判断桶是否可以由查询触发训练：没有失败记录或已过重试间隔
+	 */
+	private boolean isRetryDue(int index) {
+		Long retryTime = retryTimeMap.get(index);
+		return retryTime == null || System.currentTimeMillis() >= retryTime;
+	}
+
+	private CompletableFuture<Map<String, PtFitFunc>> scheduleTraining(final int index) {
+		Map<String, PtFitFunc> fitFuncMap = bucketMap.get(index);
+		if (fitFuncMap != null) {
+			return CompletableFuture.completedFuture(fitFuncMap);
+		}
+		final CompletableFuture<Map<String, PtFitFunc>> future = new CompletableFuture<Map<String, PtFitFunc>>();
+		CompletableFuture<Map<String, PtFitFunc>> existing = trainingMap.putIfAbsent(index, future);
+		if (existing != null) {
+			return existing;
+		}
+		CompletableFuture.supplyAsync(() -> trainBucket(index), trainExecutor)
+				.whenComplete((result, e) -> {
+					trainingMap.remove(index, future);
+					if (e != null) {
+						e.printStackTrace();
+						future.completeExceptionally(e);
+					} else {
+						future.complete(result);
+					}
+				});
+		return future;
+	}
+
+	/**
+	 * 用桶区间内的训练数据训练桶的代表温度下的拟合函数
+	 *
+	 * 训练失败时记录重试时间，成功后清除。
+	 *
+	 * @throws IllegalStateException 区间内没有训练数据，该桶不缓存
+	 */
+	private Map<String, PtFitFunc> trainBucket(int index) {
+		synchronized (trainLock) {
+			Map<String, PtFitFunc> fitFuncMap = bucketMap.get(index);
+			if (fitFuncMap == null) {
+				float bucketTemp = bucketTemp(index);
+				float halfWidth = bucketWidth / 2;
+				try {
+					Collection<PtFitFunc> fitFuncSet = ptTrainer.buildFitFuncSet(bucketTemp,
+							bucketTemp - halfWidth, bucketTemp + halfWidth);
+					if (fitFuncSet == null || fitFuncSet.isEmpty()) {
+						throw new IllegalStateException("室外温度区间[" + (bucketTemp - halfWidth)
+								+ ", " + (bucketTemp + halfWidth) + ")内没有训练数据");
+					}
+					fitFuncMap = toFitFuncMap(fitFuncSet);
+				} catch (RuntimeException e) {
+					retryTimeMap.put(index, System.currentTimeMillis() + retryIntervalMillis);
+					throw e;
+				}
+				bucketMap.put(index, fitFuncMap);
+				retryTimeMap.remove(index);
+			}
+			return fitFuncMap;
+		}
+	}
+
+	/**
+	 * 对两个桶的拟合函数按权重插值，只在一个桶中存在的传感器直接使用该桶的拟合函数
+	 */
+	private static Map<String, PtFitFunc> interpolate(Map<String, PtFitFunc> lowerMap,
+			Map<String, PtFitFunc> upperMap, float weight, float outsideTemp) {
+		Map<String, PtFitFunc> fitFuncMap = new HashMap<String, PtFitFunc>(lowerMap);
+		for (Map.Entry<String, PtFitFunc> entry : upperMap.entrySet()) {
+			String sensorId = entry.getKey();
+			PtFitFunc lower = lowerMap.get(sensorId);
+			if (lower == null) {
+				fitFuncMap.put(sensorId, entry.getValue());
+			} else {
+				fitFuncMap.put(sensorId, new PtFitFunc(sensorId, outsideTemp, new InterpolatedModel(
+						lower.getTrainModel(), entry.getValue().getTrainModel(), weight)));
+			}
+		}
+		return Collections.unmodifiableMap(fitFuncMap);
+	}
+
+	private static Map<String, PtFitFunc> toFitFuncMap(Collection<PtFitFunc> fitFuncSet) {
+		if (fitFuncSet == null || fitFuncSet.isEmpty()) {
+			throw new IllegalStateException("温度预测函数集合为空");
+		}
+		Map<String, PtFitFunc> fitFuncMap = new HashMap<String, PtFitFunc>();
+		synchronized (fitFuncSet) {
+			for (PtFitFunc fitFunc : fitFuncSet) {
+				fitFuncMap.put(fitFunc.getSensorId(), fitFunc);
+			}
+		}
+		return Collections.unmodifiableMap(fitFuncMap);
+	}
+
+	/**
+	 * 两个模型预测结果的线性插值：(1 - weight) * lower + weight * upper
+	 */
+	private static final class InterpolatedModel implements TrainModel {
+
+		private final TrainModel lower;
+
+		private final TrainModel upper;
+
+		private final float weight;
+
+		InterpolatedModel(TrainModel lower, TrainModel upper, float weight) {
+			this.lower = lower;
+			this.upper = upper;
+			this.weight = weight;
+		}
+
+		@Override
+		public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+			throw new UnsupportedOperationException("插值模型不支持训练");
+		}
+
+		@Override
+		public <T extends Number> float useMode(T[] feature) {
+			return blend(lower.useMode(feature), upper.useMode(feature));
+		}
+
+		@Override
+		public float predict(float[] features) {
+			return blend(lower.predict(features), upper.predict(features));
+		}
+
+		@Override
+		public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+			TrainModel.batchColumnNum(rowsMajor, rows, out);
+			float[] upperOut = new float[rows];
+			lower.predictBatch(rowsMajor, rows, out);
+			upper.predictBatch(rowsMajor, rows, upperOut);
+			for (int r = 0; r < rows; r++) {
+				out[r] = blend(out[r], upperOut[r]);
+			}
+		}
+
+		private float blend(float lowerValue, float upperValue) {
+			return lowerValue + (upperValue - lowerValue) * weight;
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package com.leavesfly.iac.train;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.datasource.FitFuncGeneration;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.store.ModelCodec;
+import com.leavesfly.iac.train.store.TrainDataSetManager;
+import com.leavesfly.iac.train.trainer.ModelEnum;
+import com.leavesfly.iac.train.trainer.PolynomialSurrogateModel;
+import com.leavesfly.iac.train.trainer.TrainModel;
+import com.leavesfly.iac.train.trainer.lr.LineRegressModel;
+
+/**
+ * 已注册温度预测函数的后台增量训练器
+ *
+ * 新采集的训练数据先提交到待训练队列，由后台线程池分批处理：
+ * 1. 取出队列中的数据，按传感器分组，只保留室外温度与该传感器当前预测函数相差不超过容差的数据
+ * 2. 复制有新数据的传感器的当前模型，在副本上从当前参数继续训练：线性回归逐条递推更新；
+ *    BP神经网络用新数据和数据集管理器中已有的全部同温度数据从当前权重继续训练；
+ *    Weka多层感知机不支持继续训练，用同样的数据重新训练
+ * 3. 其余传感器沿用当前预测函数，组成完整的新一代预测函数，通过{@link DataFactory#replaceFitFunc}
+ *    一次性替换；计算期间已注册了其他的一代时不覆盖，把数据放回队列在下一次处理
+ * 4. 替换成功后把数据保存到数据集管理器，供之后的完整训练使用
+ *
+ * 正在使用的模型不会被修改，调度器在训练期间不会被阻塞，也不会读到新旧混合的预测函数。
+ * 同一时刻最多进行一次训练。
+ */
+public class PtFitFuncRetrainer {
+
+	/**
+	 * 默认的室外温度容差（摄氏度）
+	 */
+	public static final float DEFAULT_OUTSIDE_TEMP_TOLERANCE = 0.5f;
+
+	/**
+	 * 训练数据集管理器，为null时BP神经网络只用新数据继续训练，且不保存新数据
+	 */
+	private final TrainDataSetManager trainDataSetManager;
+
+	/**
+	 * 室外温度容差（摄氏度）
+	 */
+	private final float outsideTempTolerance;
+
+	/**
+	 * 待训练的数据
+	 */
+	private final ConcurrentLinkedQueue<IntellacTrainDataItem> pendingQueue = new ConcurrentLinkedQueue<IntellacTrainDataItem>();
+
+	/**
+	 * 正在进行的训练，为null表示没有
+	 */
+	private CompletableFuture<Long> runningFuture;
+
+	/**
+	 * 定时训练的间隔，为0表示未启动定时训练
+	 */
+	private volatile long periodMillis;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param trainDataSetManager 训练数据集管理器，可以为null
+	 */
+	public PtFitFuncRetrainer(TrainDataSetManager trainDataSetManager) {
+		this(trainDataSetManager, DEFAULT_OUTSIDE_TEMP_TOLERANCE);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param trainDataSetManager 训练数据集管理器，可以为null
+	 * @param outsideTempTolerance 室外温度容差（摄氏度），不能为负数
+	 */
+	public PtFitFuncRetrainer(TrainDataSetManager trainDataSetManager, float outsideTempTolerance) {
+		if (!(outsideTempTolerance >= 0)) {
+			throw new IllegalArgumentException("室外温度容差不能为负数");
+		}
+		this.trainDataSetManager = trainDataSetManager;
+		this.outsideTempTolerance = outsideTempTolerance;
+	}
+
+	/**
+	 * 提交新采集的训练数据，不会阻塞
+	 *
+	 * @param trainDataSet 训练数据集
+	 */
+	public void submit(Collection<IntellacTrainDataItem> trainDataSet) {
+		if (trainDataSet == null) {
+			throw new IllegalArgumentException("训练数据集不能为空");
+		}
+		pendingQueue.addAll(trainDataSet);
+	}
+
+	/**
+	 * 获取待训练的数据条数
+	 *
+	 * @return 待训练的数据条数
+	 */
+	public int getPendingNum() {
+		return pendingQueue.size();
+	}
+
+	/**
+	 * 在后台处理当前待训练的数据
+	 *
+	 * 已有训练正在进行时返回进行中的训练，之后提交的数据在下一次处理。
+	 *
+	 * @return 训练完成后的当前一代的代号；没有可用的新数据时为调用时的代号
+	 * @throws RuntimeException 尚未注册温度预测函数
+	 */
+	public synchronized CompletableFuture<Long> retrainAsync() {
+		if (runningFuture != null && !runningFuture.isDone()) {
+			return runningFuture;
+		}
+		FitFuncGeneration generation = DataFactory.getInstance().getFitFuncGeneration();
+		List<IntellacTrainDataItem> trainDataSet = new ArrayList<IntellacTrainDataItem>();
+		IntellacTrainDataItem item;
+		while ((item = pendingQueue.poll()) != null) {
+			trainDataSet.add(item);
+		}
+		runningFuture = retrain(generation, trainDataSet);
+		return runningFuture;
+	}
+
+	/**
+	 * 启动定时训练，每隔一段时间处理一次待训练的数据
+	 *
+	 * @param period 间隔
+	 * @param unit 时间单位
+	 */
+	public void start(long period, TimeUnit unit) {
+		long millis = unit.toMillis(period);
+		if (millis <= 0) {
+			throw new IllegalArgumentException("间隔必须大于0");
+		}
+		boolean started = periodMillis > 0;
+		periodMillis = millis;
+		if (!started) {
+			scheduleNext();
+		}
+	}
+
+	/**
+	 * 停止定时训练，正在进行的训练不受影响
+	 */
+	public void stop() {
+		periodMillis = 0;
+	}
+
+	private void scheduleNext() {
+		long millis = periodMillis;
+		if (millis <= 0) {
+			return;
+		}
+		AsyncExecutorManager.getInstance().executeScheduled(() -> {
+			if (periodMillis <= 0) {
+				return;
+			}
+			if (!pendingQueue.isEmpty()) {
+				retrainAsync().whenComplete((number, e) -> {
+					if (e != null) {
+						e.printStackTrace();
+					}
+				});
+			}
+			scheduleNext();
+		}, millis, TimeUnit.MILLISECONDS);
+	}
+
+	private CompletableFuture<Long> retrain(final FitFuncGeneration generation,
+			final List<IntellacTrainDataItem> trainDataSet) {
+		if (trainDataSet.isEmpty()) {
+			return CompletableFuture.completedFuture(generation.getNumber());
+		}
+		final Map<String, List<IntellacTrainDataItem>> sensorDataMap = groupBySensor(
+				generation.getFitFuncMap(), trainDataSet);
+		if (sensorDataMap.isEmpty()) {
+			return AsyncExecutorManager.getInstance().executeIO(() -> {
+				store(trainDataSet);
+				return generation.getNumber();
+			});
+		}
+
+		AsyncExecutorManager executorManager = AsyncExecutorManager.getInstance();
+		List<CompletableFuture<PtFitFunc>> futureList = new ArrayList<CompletableFuture<PtFitFunc>>(
+				sensorDataMap.size());
+		for (final Map.Entry<String, List<IntellacTrainDataItem>> entry : sensorDataMap.entrySet()) {
+			final PtFitFunc fitFunc = generation.getFitFuncMap().get(entry.getKey());
+			futureList.add(executorManager.executeCompute(() -> fineTune(fitFunc, entry
+					.getValue())));
+		}
+		return CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[0]))
+				.thenApply(v -> publish(generation, futureList, trainDataSet))
+				.whenComplete((number, e) -> {
+					if (e != null) {
+						pendingQueue.addAll(trainDataSet);
+					}
+				});
+	}
+
+	/**
+	 * 按传感器分组，丢弃没有注册预测函数或室外温度超出容差的数据
+	 */
+	private Map<String, List<IntellacTrainDataItem>> groupBySensor(
+			Map<String, PtFitFunc> fitFuncMap, List<IntellacTrainDataItem> trainDataSet) {
+		Map<String, List<IntellacTrainDataItem>> sensorDataMap = new LinkedHashMap<String, List<IntellacTrainDataItem>>();
+		for (IntellacTrainDataItem item : trainDataSet) {
+			PtFitFunc fitFunc = fitFuncMap.get(item.getSensorId());
+			if (fitFunc == null
+					|| !(Math.abs(item.getOutsideTemp() - fitFunc.getOutsideTemp()) <= outsideTempTolerance)) {
+				continue;
+			}
+			List<IntellacTrainDataItem> sensorDataSet = sensorDataMap.get(item.getSensorId());
+			if (sensorDataSet == null) {
+				sensorDataSet = new ArrayList<IntellacTrainDataItem>();
+				sensorDataMap.put(item.getSensorId(), sensorDataSet);
+			}
+			sensorDataSet.add(item);
+		}
+		return sensorDataMap;
+	}
+
+	/**
+	 * 在模型副本上用新数据继续训练，代理模型在其原模型上继续训练，训练后不再使用代理模型
+	 *
+	 * @return 新的预测函数；模型不支持复制时返回null，继续使用原预测函数
+	 */
+	private PtFitFunc fineTune(PtFitFunc fitFunc, List<IntellacTrainDataItem> trainDataSet) {
+		TrainModel trainModel = fitFunc.getTrainModel();
+		if (trainModel instanceof PolynomialSurrogateModel) {
+			trainModel = ((PolynomialSurrogateModel) trainModel).getSourceModel();
+		}
+		ModelEnum modelType = ModelCodec.modelTypeOf(trainModel);
+		if (modelType == null) {
+			return null;
+		}
+		TrainModel copy = copyModel(trainModel);
+		if (modelType == ModelEnum.LR) {
+			LineRegressModel model = (LineRegressModel) copy;
+			for (IntellacTrainDataItem item : trainDataSet) {
+				model.update(item);
+			}
+		} else {
+			List<IntellacTrainDataItem> fullDataSet = new ArrayList<IntellacTrainDataItem>(
+					trainDataSet);
+			if (trainDataSetManager != null) {
+				// 区间查询不受单个温度查询的结果数上限限制，取回该温度下已有的全部数据
+				float outsideTemp = fitFunc.getOutsideTemp();
+				fullDataSet.addAll(trainDataSetManager.fetchTrainDataSetBySensorId(
+						fitFunc.getSensorId(), outsideTemp, outsideTemp));
+			}
+			copy.train(fullDataSet);
+		}
+		return new PtFitFunc(fitFunc.getSensorId(), fitFunc.getOutsideTemp(), copy);
+	}
+
+	/**
+	 * 通过编码再解码复制模型，副本与原模型不共享任何状态
+	 */
+	private static TrainModel copyModel(TrainModel trainModel) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				ModelCodec.encode(trainModel, out);
+			}
+			try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+					bytes.toByteArray()))) {
+				return ModelCodec.decode(in);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("复制模型失败", e);
+		}
+	}
+
+	private long publish(FitFuncGeneration generation, List<CompletableFuture<PtFitFunc>> futureList,
+			List<IntellacTrainDataItem> trainDataSet) {
+		Map<String, PtFitFunc> fitFuncMap = new HashMap<String, PtFitFunc>(generation.getFitFuncMap());
+		for (CompletableFuture<PtFitFunc> future : futureList) {
+			PtFitFunc fitFunc = future.join();
+			if (fitFunc != null) {
+				fitFuncMap.put(fitFunc.getSensorId(), fitFunc);
+			}
+		}
+		DataFactory dataFactory = DataFactory.getInstance();
+		if (!dataFactory.replaceFitFunc(generation.getNumber(), fitFuncMap.values())) {
+			pendingQueue.addAll(trainDataSet);
+			return dataFactory.getFitFuncGeneration().getNumber();
+		}
+		store(trainDataSet);
+		return generation.getNumber() + 1;
+	}
+
+	/**
+	 * 保存新数据，失败时只打印异常，已替换的预测函数不受影响
+	 */
+	private void store(List<IntellacTrainDataItem> trainDataSet) {
+		if (trainDataSetManager == null) {
+			return;
+		}
+		try {
+			trainDataSetManager.storeTrainDataSet(trainDataSet);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -17,4 +17,19 @@ public interface PtTrainer {
 	 * @return 功率-温度拟合函数集合
 	 */
 	public Collection<PtFitFunc> buildFitFuncSet(float outsideTemp);
+
+	/**
+	 * 使用室外温度区间内的训练数据，训练代表温度下的功率-温度拟合函数集合
+	 * 
+	 * 默认实现只使用代表温度本身的训练数据。
+	 * 
+	 * @param outsideTemp 代表温度，作为拟合函数的室外温度
+	 * @param minOutsideTemp 训练数据的室外温度下限（包含）
+	 * @param maxOutsideTemp 训练数据的室外温度上限（上下限相等时包含，否则不包含）
+	 * @return 功率-温度拟合函数集合
+	 */
+	public default Collection<PtFitFunc> buildFitFuncSet(float outsideTemp, float minOutsideTemp,
+			float maxOutsideTemp) {
+		return buildFitFuncSet(outsideTemp);
+	}
 }
\ No newline at end of file
@@ -108,6 +108,15 @@ public class IntellacTrainDataItem implements TrainDataItem<Float, Float> {
 		return powerVector.getPowerValueFloatArray();
 	}
 
+	/**
+	 * 获取特征值数组的只读视图，不做拷贝和装箱
+	 * 
+	 * @return 特征值数组
+	 */
+	public float[] getFeatureValues() {
+		return powerVector.getPowerValueArray();
+	}
+
 	/**
 	 * 获取结果值
 	 * 
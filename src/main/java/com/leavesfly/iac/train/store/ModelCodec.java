@@ -0,0 +1,121 @@
+package com.leavesfly.iac.train.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.leavesfly.iac.train.trainer.ModelEnum;
+import com.leavesfly.iac.train.trainer.TrainModel;
+import com.leavesfly.iac.train.trainer.bp.BpWekaModel;
+import com.leavesfly.iac.train.trainer.bp.BpnnModel;
+import com.leavesfly.iac.train.trainer.lr.LineRegressModel;
+
+/**
+ * 训练模型二进制编解码工具类
+ *
+ * 格式如下：
+ * <pre>
+ * [魔数:4字节][版本号:1字节][模型类型:1字节][模型数据]
+ * </pre>
+ * 模型类型为固定的类型码（1：BPNN，2：LR，3：BPWEKA），模型数据由各模型的writeModel写出。
+ * 所有多字节数值均为大端序。目前支持{@link BpnnModel}、{@link LineRegressModel}和
+ * {@link BpWekaModel}，多输出网络的单输出视图不支持单独编码。
+ */
+public class ModelCodec {
+
+	/**
+	 * 魔数，ASCII码"IACM"
+	 */
+	public static final int MAGIC = 0x4941434D;
+
+	/**
+	 * 当前编码版本号
+	 */
+	public static final byte VERSION_1 = 1;
+
+	private static final int TYPE_BPNN = 1;
+
+	private static final int TYPE_LR = 2;
+
+	private static final int TYPE_BPWEKA = 3;
+
+	/**
+	 * 获取模型对应的模型类型
+	 *
+	 * @param trainModel 训练模型
+	 * @return 模型类型，不支持编码时返回null
+	 */
+	public static ModelEnum modelTypeOf(TrainModel trainModel) {
+		if (trainModel instanceof BpnnModel) {
+			return ModelEnum.BPNN;
+		}
+		if (trainModel instanceof LineRegressModel) {
+			return ModelEnum.LR;
+		}
+		if (trainModel instanceof BpWekaModel) {
+			return ModelEnum.BPWEKA;
+		}
+		return null;
+	}
+
+	/**
+	 * 编码训练模型
+	 *
+	 * @param trainModel 训练模型
+	 * @param out 输出流
+	 * @throws IOException 写出失败
+	 */
+	public static void encode(TrainModel trainModel, DataOutput out) throws IOException {
+		ModelEnum modelType = modelTypeOf(trainModel);
+		if (modelType == null) {
+			throw new IllegalArgumentException("不支持编码的模型类型: "
+					+ (trainModel == null ? null : trainModel.getClass().getName()));
+		}
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION_1);
+		switch (modelType) {
+		case BPNN:
+			out.writeByte(TYPE_BPNN);
+			((BpnnModel) trainModel).writeModel(out);
+			break;
+		case LR:
+			out.writeByte(TYPE_LR);
+			((LineRegressModel) trainModel).writeModel(out);
+			break;
+		case BPWEKA:
+			out.writeByte(TYPE_BPWEKA);
+			((BpWekaModel) trainModel).writeModel(out);
+			break;
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * 解码训练模型
+	 *
+	 * @param in 输入流
+	 * @return 训练模型
+	 * @throws IOException 读取失败、格式不正确或版本不支持
+	 */
+	public static TrainModel decode(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("不是模型数据");
+		}
+		byte version = in.readByte();
+		if (version != VERSION_1) {
+			throw new IOException("不支持的模型编码版本: " + version);
+		}
+		int modelType = in.readUnsignedByte();
+		switch (modelType) {
+		case TYPE_BPNN:
+			return BpnnModel.readModel(in);
+		case TYPE_LR:
+			return LineRegressModel.readModel(in);
+		case TYPE_BPWEKA:
+			return BpWekaModel.readModel(in);
+		default:
+			throw new IOException("未知的模型类型: " + modelType);
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package com.leavesfly.iac.train.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.trainer.ModelEnum;
+import com.leavesfly.iac.train.trainer.TrainModel;
+import com.leavesfly.iac.train.trainer.bp.BpHyperParams;
+
+/**
+ * 训练模型文件存储
+ *
+ * 每个模型按（传感器ID，室外温度，模型类型）保存为目录下的一个文件，文件头记录训练数据的
+ * 哈希值。读取时哈希值与当前训练数据不一致则视为过期，调用方应重新训练并覆盖保存，
+ * 训练数据不变时启动直接读取模型，不再重新训练。文件格式如下：
+ * <pre>
+ * [魔数:4字节][版本号:1字节][传感器ID:UTF][室外温度:float][模型类型:UTF][数据哈希:long][模型数据]
+ * </pre>
+ * 模型数据格式见{@link ModelCodec}。保存时先写临时文件再改名，读取方不会看到写了一半的文件。
+ *
+ * 另外按传感器保存搜索得到的BP神经网络超参数，与室外温度无关，格式为
+ * [魔数:4字节][版本号:1字节][传感器ID:UTF][超参数]，超参数格式见{@link BpHyperParams#writeTo}。
+ */
+public class ModelStore {
+
+	/**
+	 * 魔数，ASCII码"IACS"
+	 */
+	private static final int MAGIC = 0x49414353;
+
+	/**
+	 * 当前文件格式版本号
+	 */
+	private static final byte VERSION_1 = 1;
+
+	/**
+	 * 模型文件后缀
+	 */
+	private static final String FILE_SUFFIX = ".model";
+
+	/**
+	 * 超参数文件后缀
+	 */
+	private static final String HYPER_PARAMS_FILE_SUFFIX = ".params";
+
+	/**
+	 * 模型文件目录
+	 */
+	private final File directory;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param directory 模型文件目录，不存在时在第一次保存时创建
+	 */
+	public ModelStore(File directory) {
+		if (directory == null) {
+			throw new IllegalArgumentException("模型目录不能为空");
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * 计算训练数据的哈希值
+	 *
+	 * 哈希值与数据项的顺序无关，只取决于每条数据的功率值、温度和室外温度及其出现次数。
+	 *
+	 * @param trainDataSet 训练数据集
+	 * @return 64位哈希值
+	 */
+	public static long dataHash(Collection<IntellacTrainDataItem> trainDataSet) {
+		long sum = 0L;
+		long count = 0L;
+		for (IntellacTrainDataItem item : trainDataSet) {
+			long hash = 17L;
+			for (float value : item.getFeatureValues()) {
+				hash = hash * 31 + Float.floatToIntBits(value);
+			}
+			hash = hash * 31 + Float.floatToIntBits(item.getTemperature());
+			hash = hash * 31 + Float.floatToIntBits(item.getOutsideTemp());
+			sum += mix(hash);
+			count++;
+		}
+		return mix(sum ^ mix(count));
+	}
+
+	/**
+	 * SplitMix64的混合函数，使相近的输入得到差异很大的输出
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * 保存训练模型，覆盖同一键下已有的模型
+	 *
+	 * @param sensorId 传感器ID
+	 * @param outsideTemp 室外温度
+	 * @param modelType 模型类型
+	 * @param dataHash 训练数据的哈希值
+	 * @param trainModel 训练好的模型
+	 * @throws IOException 写出失败
+	 */
+	public void save(String sensorId, float outsideTemp, ModelEnum modelType, long dataHash,
+			TrainModel trainModel) throws IOException {
+		writeAtomically(modelFile(sensorId, outsideTemp, modelType), out -> {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION_1);
+			out.writeUTF(sensorId);
+			out.writeFloat(outsideTemp);
+			out.writeUTF(modelType.name());
+			out.writeLong(dataHash);
+			ModelCodec.encode(trainModel, out);
+		});
+	}
+
+	/**
+	 * 保存传感器的BP神经网络超参数，覆盖已有的超参数
+	 *
+	 * @param sensorId 传感器ID
+	 * @param hyperParams 超参数
+	 * @throws IOException 写出失败
+	 */
+	public void saveHyperParams(String sensorId, BpHyperParams hyperParams) throws IOException {
+		writeAtomically(hyperParamsFile(sensorId), out -> {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION_1);
+			out.writeUTF(sensorId);
+			hyperParams.writeTo(out);
+		});
+	}
+
+	/**
+	 * 读取传感器的BP神经网络超参数
+	 *
+	 * @param sensorId 传感器ID
+	 * @return 超参数；没有保存或文件损坏时返回null
+	 */
+	public BpHyperParams loadHyperParams(String sensorId) {
+		File file = hyperParamsFile(sensorId);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				file)))) {
+			if (in.readInt() != MAGIC || in.readByte() != VERSION_1
+					|| !sensorId.equals(in.readUTF())) {
+				throw new IOException("不是超参数文件或与传感器不一致: " + file);
+			}
+			return BpHyperParams.readFrom(in);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * 先写临时文件再改名为目标文件
+	 */
+	private void writeAtomically(File target, DataWriter writer) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("无法创建模型目录: " + directory);
+		}
+		File temp = File.createTempFile(target.getName(), ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(temp)))) {
+				writer.write(out);
+			}
+			try {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * 读取与训练数据一致的模型
+	 *
+	 * @param sensorId 传感器ID
+	 * @param outsideTemp 室外温度
+	 * @param modelType 模型类型
+	 * @param dataHash 当前训练数据的哈希值
+	 * @return 训练模型；模型不存在、已过期或文件损坏时返回null
+	 */
+	public TrainModel load(String sensorId, float outsideTemp, ModelEnum modelType, long dataHash) {
+		return load(sensorId, outsideTemp, modelType, dataHash, true);
+	}
+
+	/**
+	 * 读取模型，不检查训练数据是否变化
+	 *
+	 * @param sensorId 传感器ID
+	 * @param outsideTemp 室外温度
+	 * @param modelType 模型类型
+	 * @return 训练模型；模型不存在或文件损坏时返回null
+	 */
+	public TrainModel load(String sensorId, float outsideTemp, ModelEnum modelType) {
+		return load(sensorId, outsideTemp, modelType, 0L, false);
+	}
+
+	private TrainModel load(String sensorId, float outsideTemp, ModelEnum modelType,
+			long dataHash, boolean checkHash) {
+		File file = modelFile(sensorId, outsideTemp, modelType);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				file)))) {
+			if (in.readInt() != MAGIC || in.readByte() != VERSION_1) {
+				throw new IOException("不是模型文件或版本不支持: " + file);
+			}
+			if (!sensorId.equals(in.readUTF()) || in.readFloat() != outsideTemp
+					|| !modelType.name().equals(in.readUTF())) {
+				throw new IOException("模型文件的键与文件名不一致: " + file);
+			}
+			if (in.readLong() != dataHash && checkHash) {
+				return null;
+			}
+			return ModelCodec.decode(in);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * 读取一组传感器的模型并构建拟合函数集合
+	 *
+	 * @param sensorIds 传感器ID集合
+	 * @param outsideTemp 室外温度
+	 * @param modelType 模型类型
+	 * @return 拟合函数集合；任一传感器没有可用模型时返回null
+	 */
+	public Collection<PtFitFunc> loadFitFuncSet(Collection<String> sensorIds, float outsideTemp,
+			ModelEnum modelType) {
+		Collection<PtFitFunc> fitFuncSet = Collections
+				.synchronizedCollection(new HashSet<PtFitFunc>());
+		for (String sensorId : sensorIds) {
+			TrainModel trainModel = load(sensorId, outsideTemp, modelType);
+			if (trainModel == null) {
+				return null;
+			}
+			fitFuncSet.add(new PtFitFunc(sensorId, outsideTemp, trainModel));
+		}
+		return fitFuncSet;
+	}
+
+	/**
+	 * 读取所有传感器的模型并注册到{@link DataFactory}
+	 *
+	 * 不检查训练数据是否变化，适合训练数据未更新时的快速启动；需要按数据变化决定是否
+	 * 重新训练时使用带模型存储的{@link com.leavesfly.iac.train.trainer.PtMultiThreadTrainer}。
+	 *
+	 * @param outsideTemp 室外温度
+	 * @param modelType 模型类型
+	 * @return 所有传感器都有可用模型并已注册时返回true，否则不注册并返回false
+	 */
+	public boolean loadAndRegister(float outsideTemp, ModelEnum modelType) {
+		DataFactory dataFactory = DataFactory.getInstance();
+		Collection<PtFitFunc> fitFuncSet = loadFitFuncSet(dataFactory.getSensorIdSet(),
+				outsideTemp, modelType);
+		if (fitFuncSet == null) {
+			return false;
+		}
+		dataFactory.registerFitFunc(fitFuncSet);
+		return true;
+	}
+
+	/**
+	 * 获取模型文件
+	 *
+	 * @param sensorId 传感器ID
+	 * @param outsideTemp 室外温度
+	 * @param modelType 模型类型
+	 * @return 模型文件
+	 */
+	public File modelFile(String sensorId, float outsideTemp, ModelEnum modelType) {
+		try {
+			return new File(directory, modelType.name().toLowerCase() + "_"
+					+ URLEncoder.encode(sensorId, "UTF-8") + "_" + outsideTemp + FILE_SUFFIX);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 获取超参数文件
+	 *
+	 * @param sensorId 传感器ID
+	 * @return 超参数文件
+	 */
+	public File hyperParamsFile(String sensorId) {
+		try {
+			return new File(directory, ModelEnum.BPNN.name().toLowerCase() + "_"
+					+ URLEncoder.encode(sensorId, "UTF-8") + HYPER_PARAMS_FILE_SUFFIX);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 获取模型文件目录
+	 *
+	 * @return 模型文件目录
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * 向输出流写出文件内容
+	 */
+	private interface DataWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+}
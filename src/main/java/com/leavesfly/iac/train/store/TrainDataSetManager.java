@@ -1,6 +1,8 @@
 package com.leavesfly.iac.train.store;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
 
@@ -21,6 +23,45 @@ public interface TrainDataSetManager {
 	public Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(String sensorId,
 			float outsideTemp);
 
+	/**
+	 * 根据传感器ID和室外温度区间获取训练数据集
+	 * 
+	 * 默认实现只支持上下限相等的区间，此时等价于按单个室外温度获取。
+	 * 
+	 * @param sensorId 传感器ID
+	 * @param minOutsideTemp 室外温度下限（包含）
+	 * @param maxOutsideTemp 室外温度上限（上下限相等时包含，否则不包含）
+	 * @return 训练数据集
+	 */
+	public default Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(String sensorId,
+			float minOutsideTemp, float maxOutsideTemp) {
+		if (minOutsideTemp == maxOutsideTemp) {
+			return fetchTrainDataSetBySensorId(sensorId, minOutsideTemp);
+		}
+		throw new UnsupportedOperationException("不支持按室外温度区间获取训练数据");
+	}
+
+	/**
+	 * 一次获取多个传感器在室外温度区间内的训练数据集
+	 * 
+	 * 默认实现逐个传感器调用{@link #fetchTrainDataSetBySensorId(String, float, float)}，
+	 * 实现类可覆盖为一次遍历取回所有传感器的数据。
+	 * 
+	 * @param sensorIds 传感器ID集合
+	 * @param minOutsideTemp 室外温度下限（包含）
+	 * @param maxOutsideTemp 室外温度上限（上下限相等时包含，否则不包含）
+	 * @return 传感器ID -> 训练数据集，没有数据的传感器对应空集合
+	 */
+	public default Map<String, Collection<IntellacTrainDataItem>> fetchTrainDataSets(
+			Collection<String> sensorIds, float minOutsideTemp, float maxOutsideTemp) {
+		Map<String, Collection<IntellacTrainDataItem>> trainDataSets = new HashMap<String, Collection<IntellacTrainDataItem>>();
+		for (String sensorId : sensorIds) {
+			trainDataSets.put(sensorId, fetchTrainDataSetBySensorId(sensorId, minOutsideTemp,
+					maxOutsideTemp));
+		}
+		return trainDataSets;
+	}
+
 	/**
 	 * 存储训练数据集
 	 * 
@@ -4,13 +4,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -18,10 +21,12 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
@@ -30,13 +35,15 @@ import org.apache.lucene.util.Version;
 
 import com.leavesfly.iac.domain.PowerVector;
 import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
-import com.leavesfly.iac.util.SerializeUtil;
+import com.leavesfly.iac.util.PowerVectorCodec;
 
 /**
  * 基于Lucene的训练数据集管理器实现类
  * 
  * 该类使用Lucene内存索引存储训练数据，提供高效的训练数据存储和检索功能。
- * 支持根据传感器ID和室外温度快速检索相关训练数据。
+ * 支持根据传感器ID和室外温度（或室外温度区间）快速检索相关训练数据，
+ * 也支持一次遍历索引取回多个传感器的训练数据。
+ * 功率向量以{@link PowerVectorCodec}的二进制格式存储；索引只在内存中，没有需要兼容的Java序列化旧数据。
  */
 public class TrainDataSetManagerInLucene implements TrainDataSetManager {
 
@@ -86,9 +93,19 @@ public class TrainDataSetManagerInLucene implements TrainDataSetManager {
 	private static Directory directory;
 	
 	/**
-	 * 索引搜索器
+	 * 索引搜索器，持有其读取器的一个引用；为null表示需要重新打开
 	 */
-	private static volatile IndexSearcher indexSearcher;
+	private static IndexSearcher indexSearcher;
+
+	/**
+	 * 打开和替换索引搜索器的锁
+	 */
+	private static final Object SEARCHER_LOCK = new Object();
+
+	/**
+	 * 是否将功率向量量化为16位存储
+	 */
+	private final boolean quantizePowerVector;
 
 	static {
 		Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_36);
@@ -101,6 +118,23 @@ public class TrainDataSetManagerInLucene implements TrainDataSetManager {
 		}
 	}
 
+	/**
+	 * 构造函数，功率向量按float精确存储
+	 */
+	public TrainDataSetManagerInLucene() {
+		this(false);
+	}
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param quantizePowerVector 是否将功率向量量化为16位存储，量化后存储空间约减半，
+	 *            每个分量的误差不超过该向量取值跨度的1/131070
+	 */
+	public TrainDataSetManagerInLucene(boolean quantizePowerVector) {
+		this.quantizePowerVector = quantizePowerVector;
+	}
+
 	/**
 	 * 根据传感器ID和室外温度获取训练数据集
 	 * 
@@ -114,55 +148,214 @@ public class TrainDataSetManagerInLucene implements TrainDataSetManager {
 	@Override
 	public Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(String sensorId,
 			float outsideTemp) {
+		return search(sensorId, NumericRangeQuery.newFloatRange(OUTSIDE_TEMP_FILED, outsideTemp,
+				outsideTemp, true, true), false);
+	}
 
-		if (indexSearcher == null) {
-			synchronized (this) {
-				if (indexSearcher == null) {
-					try {
-						indexSearcher = new IndexSearcher(IndexReader.open(directory));
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
+	/**
+	 * 根据传感器ID和室外温度区间获取训练数据集
+	 * 
+	 * 区间查询返回全部匹配的数据，不受单个温度查询的结果数上限限制。
+	 * 
+	 * @param sensorId 传感器ID
+	 * @param minOutsideTemp 室外温度下限（包含）
+	 * @param maxOutsideTemp 室外温度上限（上下限相等时包含，否则不包含）
+	 * @return 训练数据集
+	 */
+	@Override
+	public Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(String sensorId,
+			float minOutsideTemp, float maxOutsideTemp) {
+		if (minOutsideTemp > maxOutsideTemp) {
+			throw new IllegalArgumentException("室外温度下限不能大于上限");
+		}
+		return search(sensorId, NumericRangeQuery.newFloatRange(OUTSIDE_TEMP_FILED, minOutsideTemp,
+				maxOutsideTemp, true, minOutsideTemp == maxOutsideTemp), true);
+	}
+
+	/**
+	 * 一次查询取回多个传感器在室外温度区间内的训练数据集
+	 * 
+	 * 按文档顺序收集匹配的文档后再按传感器分组，不计算相关度排序。
+	 * 上下限相等时与单个温度查询一致，每个传感器最多返回MAX_SEARCH_RESULT_NUM条，
+	 * 否则返回全部匹配的数据。
+	 * 
+	 * @param sensorIds 传感器ID集合
+	 * @param minOutsideTemp 室外温度下限（包含）
+	 * @param maxOutsideTemp 室外温度上限（上下限相等时包含，否则不包含）
+	 * @return 传感器ID -> 训练数据集，没有数据的传感器对应空集合
+	 */
+	@Override
+	public Map<String, Collection<IntellacTrainDataItem>> fetchTrainDataSets(
+			Collection<String> sensorIds, float minOutsideTemp, float maxOutsideTemp) {
+		if (minOutsideTemp > maxOutsideTemp) {
+			throw new IllegalArgumentException("室外温度下限不能大于上限");
+		}
+		boolean singleTemp = minOutsideTemp == maxOutsideTemp;
+		Map<String, Collection<IntellacTrainDataItem>> trainDataSets = new HashMap<String, Collection<IntellacTrainDataItem>>();
+		for (String sensorId : sensorIds) {
+			trainDataSets.put(sensorId, new ArrayList<IntellacTrainDataItem>());
+		}
+		if (trainDataSets.isEmpty()) {
+			return trainDataSets;
+		}
+
+		BooleanQuery booleanQuery = new BooleanQuery();
+		booleanQuery.add(NumericRangeQuery.newFloatRange(OUTSIDE_TEMP_FILED, minOutsideTemp,
+				maxOutsideTemp, true, singleTemp), Occur.MUST);
+		// 传感器过多时超出布尔查询子句数上限，改为读出文档后再过滤
+		if (trainDataSets.size() < BooleanQuery.getMaxClauseCount()) {
+			BooleanQuery sensorIdQuery = new BooleanQuery();
+			for (String sensorId : trainDataSets.keySet()) {
+				sensorIdQuery.add(new TermQuery(new Term(SENSOR_ID_FILED, sensorId)), Occur.SHOULD);
+			}
+			booleanQuery.add(sensorIdQuery, Occur.MUST);
+		}
+
+		IndexSearcher searcher = acquireIndexSearcher();
+		if (searcher == null) {
+			return trainDataSets;
+		}
+		try {
+			DocIdCollector collector = new DocIdCollector();
+			searcher.search(booleanQuery, collector);
+			for (int i = 0; i < collector.size; i++) {
+				Document doc = searcher.doc(collector.docIds[i]);
+				Collection<IntellacTrainDataItem> trainDataSet = trainDataSets.get(doc
+						.get(SENSOR_ID_FILED));
+				if (trainDataSet == null
+						|| (singleTemp && trainDataSet.size() >= MAX_SEARCH_RESULT_NUM)) {
+					continue;
 				}
+				trainDataSet.add(toTrainDataItem(doc));
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			releaseIndexSearcher(searcher);
+		}
+		return trainDataSets;
+	}
+
+	/**
+	 * 检索传感器ID匹配且室外温度满足条件的训练数据项
+	 * 
+	 * @param unlimited 为true时返回全部匹配结果，否则最多返回MAX_SEARCH_RESULT_NUM条
+	 */
+	private Collection<IntellacTrainDataItem> search(String sensorId, Query outsideTempQuery,
+			boolean unlimited) {
+		IndexSearcher indexSearcher = acquireIndexSearcher();
+		if (indexSearcher == null) {
+			return Collections.emptyList();
 		}
 
 		TermQuery sensorIdTermQuery = new TermQuery(new Term(SENSOR_ID_FILED, sensorId));
-		Query outsideTempQuery = NumericRangeQuery.newFloatRange(OUTSIDE_TEMP_FILED, outsideTemp,
-				outsideTemp, true, true);
 		BooleanQuery booleanQuery = new BooleanQuery();
 		booleanQuery.add(sensorIdTermQuery, Occur.MUST);
 		booleanQuery.add(outsideTempQuery, Occur.MUST);
 
 		try {
-			TopDocs hits = indexSearcher.search(booleanQuery, MAX_SEARCH_RESULT_NUM);
+			int resultNum = unlimited ? Math.max(indexSearcher.maxDoc(), 1) : MAX_SEARCH_RESULT_NUM;
+			TopDocs hits = indexSearcher.search(booleanQuery, resultNum);
 			List<IntellacTrainDataItem> searchResult = new ArrayList<IntellacTrainDataItem>(
 					hits.scoreDocs.length);
 			for (ScoreDoc scoreDoc : hits.scoreDocs) {
-				Document doc = indexSearcher.doc(scoreDoc.doc);
-
-				String docSensorId = doc.get(SENSOR_ID_FILED);
-				PowerVector docPowerVector = (PowerVector) SerializeUtil.byteArray2Object(doc
-						.getBinaryValue(POWER_VECTOR_FILED));
-				NumericField docTemperature = (NumericField) doc.getFieldable(TEMPERATURE_FILED);
-				NumericField docOutsideTemp = (NumericField) doc.getFieldable(OUTSIDE_TEMP_FILED);
-
-				IntellacTrainDataItem trainDataItem = new IntellacTrainDataItem(docSensorId,
-						docPowerVector, docTemperature.getNumericValue().floatValue(),
-						docOutsideTemp.getNumericValue().floatValue());
-				searchResult.add(trainDataItem);
+				searchResult.add(toTrainDataItem(indexSearcher.doc(scoreDoc.doc)));
 			}
 			return searchResult;
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			releaseIndexSearcher(indexSearcher);
 		}
 		return Collections.emptyList();
 	}
 
+	/**
+	 * 获取索引搜索器并增加其读取器的引用计数，用完后必须调用{@link #releaseIndexSearcher}
+	 *
+	 * @return 索引搜索器，打开失败时返回null
+	 */
+	private static IndexSearcher acquireIndexSearcher() {
+		synchronized (SEARCHER_LOCK) {
+			if (indexSearcher == null) {
+				try {
+					indexSearcher = new IndexSearcher(IndexReader.open(directory));
+				} catch (IOException e) {
+					e.printStackTrace();
+					return null;
+				}
+			}
+			indexSearcher.getIndexReader().incRef();
+			return indexSearcher;
+		}
+	}
+
+	/**
+	 * 释放{@link #acquireIndexSearcher}增加的引用，引用计数降为0时关闭读取器
+	 */
+	private static void releaseIndexSearcher(IndexSearcher searcher) {
+		try {
+			searcher.getIndexReader().decRef();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 将Lucene文档转换为训练数据项
+	 */
+	private static IntellacTrainDataItem toTrainDataItem(Document doc) {
+		String docSensorId = doc.get(SENSOR_ID_FILED);
+		Fieldable powerVectorField = doc.getFieldable(POWER_VECTOR_FILED);
+		PowerVector docPowerVector = PowerVectorCodec.decode(powerVectorField.getBinaryValue(),
+				powerVectorField.getBinaryOffset(), powerVectorField.getBinaryLength());
+		NumericField docTemperature = (NumericField) doc.getFieldable(TEMPERATURE_FILED);
+		NumericField docOutsideTemp = (NumericField) doc.getFieldable(OUTSIDE_TEMP_FILED);
+
+		return new IntellacTrainDataItem(docSensorId, docPowerVector, docTemperature
+				.getNumericValue().floatValue(), docOutsideTemp.getNumericValue().floatValue());
+	}
+
+	/**
+	 * 按文档顺序收集匹配文档的全局ID，不计算相关度
+	 */
+	private static final class DocIdCollector extends Collector {
+
+		private int[] docIds = new int[64];
+
+		private int size;
+
+		private int docBase;
+
+		@Override
+		public void setScorer(Scorer scorer) {
+		}
+
+		@Override
+		public void collect(int doc) {
+			if (size == docIds.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(docIds, 0, grown, 0, size);
+				docIds = grown;
+			}
+			docIds[size++] = docBase + doc;
+		}
+
+		@Override
+		public void setNextReader(IndexReader reader, int docBase) {
+			this.docBase = docBase;
+		}
+
+		@Override
+		public boolean acceptsDocsOutOfOrder() {
+			return false;
+		}
+	}
+
 	/**
 	 * 存储训练数据集
 	 * 
-	 * 将训练数据项集合添加到Lucene索引中，并提交索引变更。
+	 * 将训练数据项集合添加到Lucene索引中，并提交索引变更，之后的检索可以查到新数据。
 	 * 
 	 * @param tarinDataSet 训练数据集
 	 */
@@ -180,6 +373,16 @@ public class TrainDataSetManagerInLucene implements TrainDataSetManager {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		// 已打开的搜索器看不到新提交的数据，下次检索时重新打开；
+		// 旧的读取器在正在进行的检索都释放后关闭
+		IndexSearcher staleSearcher;
+		synchronized (SEARCHER_LOCK) {
+			staleSearcher = indexSearcher;
+			indexSearcher = null;
+		}
+		if (staleSearcher != null) {
+			releaseIndexSearcher(staleSearcher);
+		}
 	}
 
 	/**
@@ -199,8 +402,8 @@ public class TrainDataSetManagerInLucene implements TrainDataSetManager {
 		doc.add(new Field(SENSOR_ID_FILED, trainDataItem.getSensorId(), Field.Store.YES,
 				Field.Index.NOT_ANALYZED));
 
-		doc.add(new Field(POWER_VECTOR_FILED, SerializeUtil.object2ByteArray(trainDataItem
-				.getPowerVector())));
+		doc.add(new Field(POWER_VECTOR_FILED, PowerVectorCodec.encode(
+				trainDataItem.getPowerVector(), quantizePowerVector)));
 
 		doc.add(new NumericField(TEMPERATURE_FILED, Field.Store.YES, true)
 				.setFloatValue(trainDataItem.getTemperature()));
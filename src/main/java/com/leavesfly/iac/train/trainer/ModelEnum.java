@@ -3,7 +3,8 @@ package com.leavesfly.iac.train.trainer;
 /**
  * 训练模型枚举类
  * 
- * 该枚举类定义了系统支持的训练模型类型，包括BP神经网络、Weka的BP神经网络和线性回归模型。
+ * 该枚举类定义了系统支持的训练模型类型，包括BP神经网络、多输出BP神经网络、
+ * Weka的BP神经网络和线性回归模型。
  */
 public enum ModelEnum {
 
@@ -11,6 +12,11 @@ public enum ModelEnum {
 	 * 反向传播神经网络
 	 */
 	BPNN("Back Propagation Neural Network"), 
+
+	/**
+	 * 多输出反向传播神经网络，所有传感器共用一个网络，每个输出节点对应一个传感器
+	 */
+	BPNN_MULTI("Multi-output Back Propagation Neural Network"),
 	
 	/**
 	 * Weka的BP神经网络
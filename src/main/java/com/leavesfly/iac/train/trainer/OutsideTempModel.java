@@ -0,0 +1,243 @@
+package com.leavesfly.iac.train.trainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+
+/**
+ * 以室外温度为附加输入的训练模型
+ *
+ * 该类包装一个特征数为空调数加1的模型，特征向量为功率向量后接室外温度，
+ * 因此一个模型可以用所有室外温度下的训练数据训练，并在任意室外温度下预测。
+ * 室外温度在送入内部模型前从[{@link #MIN_OUTSIDE_TEMP}, {@link #MAX_OUTSIDE_TEMP}]
+ * 线性映射到空调功率范围，使按功率范围做输入归一化的模型同样适用于温度特征。
+ *
+ * 训练数据必须是{@link IntellacTrainDataItem}，以便读取每条数据的室外温度。
+ * {@link #predict(float[])}等方法的特征为功率值后接原始室外温度；
+ * {@link #atOutsideTemp(float)}返回绑定某个室外温度的视图，特征只有功率值，
+ * 可直接用于构造PtFitFunc，各视图共享同一个内部模型。
+ */
+public class OutsideTempModel implements TrainModel {
+
+	/**
+	 * 映射到最小功率的室外温度
+	 */
+	public static final float MIN_OUTSIDE_TEMP = 0.0f;
+
+	/**
+	 * 映射到最大功率的室外温度
+	 */
+	public static final float MAX_OUTSIDE_TEMP = 50.0f;
+
+	/**
+	 * 内部模型
+	 */
+	private final TrainModel innerModel;
+
+	/**
+	 * 功率特征数
+	 */
+	private final int powerNum;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param innerModel 内部模型，特征数为功率特征数加1
+	 * @param powerNum 功率特征数
+	 */
+	public OutsideTempModel(TrainModel innerModel, int powerNum) {
+		if (innerModel == null || powerNum <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.innerModel = innerModel;
+		this.powerNum = powerNum;
+	}
+
+	/**
+	 * 使用默认功率特征数（空调数量）的构造函数
+	 *
+	 * @param innerModel 内部模型，特征数为空调数加1
+	 */
+	public OutsideTempModel(TrainModel innerModel) {
+		this(innerModel, AppContextConstant.AIR_CONDITION_NUM);
+	}
+
+	@Override
+	public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+		List<TrainDataItem<Float, Float>> augmentedDataSet = new ArrayList<TrainDataItem<Float, Float>>(
+				trainDataSet.size());
+		for (T item : trainDataSet) {
+			if (!(item instanceof IntellacTrainDataItem)) {
+				throw new IllegalArgumentException("训练数据缺少室外温度: " + item);
+			}
+			IntellacTrainDataItem dataItem = (IntellacTrainDataItem) item;
+			float[] powers = dataItem.getFeatureValues();
+			checkPowerNum(powers.length);
+			Float[] feature = new Float[powerNum + 1];
+			for (int i = 0; i < powerNum; i++) {
+				feature[i] = powers[i];
+			}
+			feature[powerNum] = scaleOutsideTemp(dataItem.getOutsideTemp());
+			augmentedDataSet.add(new AugmentedItem(feature, dataItem.getResult()));
+		}
+		innerModel.train(augmentedDataSet);
+	}
+
+	@Override
+	public <T extends Number> float useMode(T[] feature) {
+		checkPowerNum(feature.length - 1);
+		float[] features = new float[feature.length];
+		for (int i = 0; i < feature.length; i++) {
+			features[i] = feature[i].floatValue();
+		}
+		return predict(features);
+	}
+
+	/**
+	 * 预测
+	 *
+	 * @param features 功率值后接原始室外温度
+	 * @return 预测结果
+	 */
+	@Override
+	public float predict(float[] features) {
+		checkPowerNum(features.length - 1);
+		float[] augmented = features.clone();
+		augmented[powerNum] = scaleOutsideTemp(features[powerNum]);
+		return innerModel.predict(augmented);
+	}
+
+	@Override
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+		if (rows == 0) {
+			return;
+		}
+		checkPowerNum(cols - 1);
+		float[] augmented = rowsMajor.clone();
+		for (int r = 0; r < rows; r++) {
+			int index = r * cols + powerNum;
+			augmented[index] = scaleOutsideTemp(augmented[index]);
+		}
+		innerModel.predictBatch(augmented, rows, out);
+	}
+
+	/**
+	 * 获取绑定室外温度的视图
+	 *
+	 * @param outsideTemp 室外温度
+	 * @return 特征只有功率值的训练模型，不支持训练
+	 */
+	public TrainModel atOutsideTemp(float outsideTemp) {
+		return new FixedTempView(scaleOutsideTemp(outsideTemp));
+	}
+
+	/**
+	 * 获取内部模型
+	 *
+	 * @return 内部模型
+	 */
+	public TrainModel getInnerModel() {
+		return innerModel;
+	}
+
+	private static float scaleOutsideTemp(float outsideTemp) {
+		return AppContextConstant.AIR_CONDITION_MIN_POWER
+				+ (outsideTemp - MIN_OUTSIDE_TEMP) / (MAX_OUTSIDE_TEMP - MIN_OUTSIDE_TEMP)
+				* (AppContextConstant.AIR_CONDITION_MAX_POWER - AppContextConstant.AIR_CONDITION_MIN_POWER);
+	}
+
+	private void checkPowerNum(int num) {
+		if (num != powerNum) {
+			throw new IllegalArgumentException("功率特征维度(" + num + ")与模型功率特征数(" + powerNum
+					+ ")不匹配");
+		}
+	}
+
+	/**
+	 * 附加了室外温度特征的训练数据项
+	 */
+	private static final class AugmentedItem implements TrainDataItem<Float, Float> {
+
+		private final Float[] feature;
+
+		private final Float result;
+
+		AugmentedItem(Float[] feature, Float result) {
+			this.feature = feature;
+			this.result = result;
+		}
+
+		@Override
+		public Float[] getFeature() {
+			return feature;
+		}
+
+		@Override
+		public Float getResult() {
+			return result;
+		}
+	}
+
+	/**
+	 * 绑定室外温度的视图，预测时在功率值后追加已映射的室外温度
+	 */
+	private final class FixedTempView implements TrainModel {
+
+		private final float scaledOutsideTemp;
+
+		/**
+		 * 每个线程独立的特征缓冲区
+		 */
+		private final ThreadLocal<float[]> featureBuffer = ThreadLocal
+				.withInitial(() -> new float[powerNum + 1]);
+
+		FixedTempView(float scaledOutsideTemp) {
+			this.scaledOutsideTemp = scaledOutsideTemp;
+		}
+
+		@Override
+		public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+			throw new UnsupportedOperationException("需通过OutsideTempModel统一训练");
+		}
+
+		@Override
+		public <T extends Number> float useMode(T[] feature) {
+			checkPowerNum(feature.length);
+			float[] features = featureBuffer.get();
+			for (int i = 0; i < powerNum; i++) {
+				features[i] = feature[i].floatValue();
+			}
+			features[powerNum] = scaledOutsideTemp;
+			return innerModel.predict(features);
+		}
+
+		@Override
+		public float predict(float[] features) {
+			checkPowerNum(features.length);
+			float[] augmented = featureBuffer.get();
+			System.arraycopy(features, 0, augmented, 0, powerNum);
+			augmented[powerNum] = scaledOutsideTemp;
+			return innerModel.predict(augmented);
+		}
+
+		@Override
+		public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+			int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+			if (rows == 0) {
+				return;
+			}
+			checkPowerNum(cols);
+			float[] augmented = new float[rows * (powerNum + 1)];
+			for (int r = 0; r < rows; r++) {
+				System.arraycopy(rowsMajor, r * powerNum, augmented, r * (powerNum + 1), powerNum);
+				augmented[r * (powerNum + 1) + powerNum] = scaledOutsideTemp;
+			}
+			innerModel.predictBatch(augmented, rows, out);
+		}
+	}
+}
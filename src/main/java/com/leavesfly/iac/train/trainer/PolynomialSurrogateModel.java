@@ -0,0 +1,203 @@
+package com.leavesfly.iac.train.trainer;
+
+import java.util.Collection;
+
+import com.leavesfly.iac.train.domain.TrainDataItem;
+
+/**
+ * 多项式代理模型
+ *
+ * 用低阶多项式近似已训练的模型，由{@link SurrogateDistiller}蒸馏得到，只用于预测，不能训练。
+ * 每个特征先按范围线性缩放到[-1, 1]得到z，一阶模型为 c0 + Σ ci·zi，
+ * 二阶模型再加上所有平方项 zi² 和交叉项 zi·zj (i < j)，系数依次存放在同一个数组中。
+ * 预测只做一次遍历，不分配内存，可被多个线程同时调用。
+ */
+public final class PolynomialSurrogateModel implements TrainModel {
+
+	/**
+	 * 被近似的模型
+	 */
+	private final TrainModel sourceModel;
+
+	/**
+	 * 多项式阶数，1或2
+	 */
+	private final int degree;
+
+	/**
+	 * 特征数
+	 */
+	private final int featureNum;
+
+	/**
+	 * 特征缩放的中点
+	 */
+	private final float center;
+
+	/**
+	 * 特征缩放的半跨度
+	 */
+	private final float halfRange;
+
+	/**
+	 * 多项式系数：[常数项][一阶项][平方项][交叉项]
+	 */
+	private final double[] coefficients;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param sourceModel 被近似的模型
+	 * @param degree 多项式阶数，1或2
+	 * @param featureNum 特征数
+	 * @param minValue 特征最小值
+	 * @param maxValue 特征最大值，必须大于最小值
+	 * @param coefficients 多项式系数，长度为{@link #termNum(int, int)}
+	 */
+	PolynomialSurrogateModel(TrainModel sourceModel, int degree, int featureNum, float minValue,
+			float maxValue, double[] coefficients) {
+		if (coefficients.length != termNum(degree, featureNum)) {
+			throw new IllegalArgumentException("多项式系数个数与阶数和特征数不匹配");
+		}
+		if (!(maxValue > minValue)) {
+			throw new IllegalArgumentException("特征最大值必须大于最小值");
+		}
+		this.sourceModel = sourceModel;
+		this.degree = degree;
+		this.featureNum = featureNum;
+		this.center = (maxValue + minValue) / 2;
+		this.halfRange = (maxValue - minValue) / 2;
+		this.coefficients = coefficients;
+	}
+
+	/**
+	 * 计算多项式的项数（含常数项）
+	 *
+	 * @param degree 多项式阶数，1或2
+	 * @param featureNum 特征数
+	 * @return 项数
+	 */
+	static int termNum(int degree, int featureNum) {
+		if (degree == 1) {
+			return 1 + featureNum;
+		}
+		if (degree == 2) {
+			return 1 + 2 * featureNum + featureNum * (featureNum - 1) / 2;
+		}
+		throw new IllegalArgumentException("只支持一阶和二阶多项式: " + degree);
+	}
+
+	/**
+	 * 把一行特征缩放后展开为多项式的各项（不含常数项）
+	 *
+	 * @param features 特征数组
+	 * @param offset 起始位置
+	 * @param degree 多项式阶数
+	 * @param featureNum 特征数
+	 * @param center 特征缩放的中点
+	 * @param halfRange 特征缩放的半跨度
+	 * @param terms 输出数组，长度不小于项数减1
+	 */
+	static void expand(float[] features, int offset, int degree, int featureNum, float center,
+			float halfRange, float[] terms) {
+		for (int i = 0; i < featureNum; i++) {
+			terms[i] = (features[offset + i] - center) / halfRange;
+		}
+		if (degree == 1) {
+			return;
+		}
+		int p = featureNum;
+		for (int i = 0; i < featureNum; i++) {
+			terms[p++] = terms[i] * terms[i];
+		}
+		for (int i = 0; i < featureNum; i++) {
+			for (int j = i + 1; j < featureNum; j++) {
+				terms[p++] = terms[i] * terms[j];
+			}
+		}
+	}
+
+	@Override
+	public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+		throw new UnsupportedOperationException("代理模型不支持训练，应重新训练原模型后重新蒸馏");
+	}
+
+	@Override
+	public <T extends Number> float useMode(T[] feature) {
+		float[] values = new float[feature.length];
+		for (int i = 0; i < feature.length; i++) {
+			values[i] = feature[i].floatValue();
+		}
+		return predict(values);
+	}
+
+	@Override
+	public float predict(float[] features) {
+		if (features.length != featureNum) {
+			throw new IllegalArgumentException("特征维度(" + features.length + ")与模型特征数("
+					+ featureNum + ")不匹配");
+		}
+		return predict(features, 0);
+	}
+
+	@Override
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+		if (rows > 0 && cols != featureNum) {
+			throw new IllegalArgumentException("特征维度(" + cols + ")与模型特征数(" + featureNum
+					+ ")不匹配");
+		}
+		for (int r = 0; r < rows; r++) {
+			out[r] = predict(rowsMajor, r * cols);
+		}
+	}
+
+	private float predict(float[] features, int offset) {
+		double[] c = coefficients;
+		int n = featureNum;
+		double result = c[0];
+		if (degree == 1) {
+			for (int i = 0; i < n; i++) {
+				result += c[1 + i] * ((features[offset + i] - center) / halfRange);
+			}
+			return (float) result;
+		}
+		int p = 1 + 2 * n;
+		for (int i = 0; i < n; i++) {
+			double zi = (features[offset + i] - center) / halfRange;
+			double partial = c[1 + i] + c[1 + n + i] * zi;
+			for (int j = i + 1; j < n; j++) {
+				partial += c[p++] * ((features[offset + j] - center) / halfRange);
+			}
+			result += partial * zi;
+		}
+		return (float) result;
+	}
+
+	/**
+	 * 获取被近似的模型
+	 *
+	 * @return 被近似的模型
+	 */
+	public TrainModel getSourceModel() {
+		return sourceModel;
+	}
+
+	/**
+	 * 获取多项式阶数
+	 *
+	 * @return 多项式阶数
+	 */
+	public int getDegree() {
+		return degree;
+	}
+
+	/**
+	 * 获取多项式系数的副本
+	 *
+	 * @return 多项式系数：[常数项][一阶项][平方项][交叉项]
+	 */
+	public double[] getCoefficients() {
+		return coefficients.clone();
+	}
+}
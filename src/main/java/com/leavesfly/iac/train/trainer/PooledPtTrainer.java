@@ -0,0 +1,151 @@
+package com.leavesfly.iac.train.trainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.PtTrainer;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.store.TrainDataSetManager;
+import com.leavesfly.iac.train.trainer.bp.BpnnModel;
+import com.leavesfly.iac.train.trainer.lr.LineRegressModel;
+
+/**
+ * 合并所有室外温度数据训练的功率-温度训练器
+ *
+ * 该类为每个传感器训练一个{@link OutsideTempModel}，训练数据取自数据集管理器中该传感器
+ * 所有室外温度下的数据。第一次构建拟合函数集合时在Fork/Join池中并行训练所有传感器的模型，之后任意室外温度
+ * 只需为每个传感器创建绑定该温度的轻量视图，不再重新训练，也不再按温度保存多组模型。
+ * 训练数据变化后调用{@link #retrain()}重新训练。
+ *
+ * 支持的内部模型为BP神经网络和线性回归。
+ */
+public class PooledPtTrainer implements PtTrainer {
+
+	/**
+	 * 训练数据集管理器
+	 */
+	private final TrainDataSetManager trainDataSetManager;
+
+	/**
+	 * 内部模型类型
+	 */
+	private final ModelEnum modelSelect;
+
+	/**
+	 * 传感器ID -> 已训练的模型，为null表示尚未训练
+	 */
+	private volatile Map<String, OutsideTempModel> modelMap;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param trainDataSetManager 训练数据集管理器
+	 * @param modelSelect 内部模型类型，只支持BPNN和LR
+	 */
+	public PooledPtTrainer(TrainDataSetManager trainDataSetManager, ModelEnum modelSelect) {
+		if (trainDataSetManager == null) {
+			throw new IllegalArgumentException("训练数据集管理器不能为空");
+		}
+		if (modelSelect != ModelEnum.BPNN && modelSelect != ModelEnum.LR) {
+			throw new IllegalArgumentException("不支持以室外温度为输入的模型类型: " + modelSelect);
+		}
+		this.trainDataSetManager = trainDataSetManager;
+		this.modelSelect = modelSelect;
+	}
+
+	/**
+	 * 构建指定室外温度下的功率-温度拟合函数集合，模型尚未训练时先训练
+	 *
+	 * @param outsideTemp 室外温度
+	 * @return 功率-温度拟合函数集合
+	 */
+	@Override
+	public Collection<PtFitFunc> buildFitFuncSet(float outsideTemp) {
+		Map<String, OutsideTempModel> models = modelMap;
+		if (models == null) {
+			synchronized (this) {
+				models = modelMap;
+				if (models == null) {
+					models = trainModels();
+					modelMap = models;
+				}
+			}
+		}
+		Collection<PtFitFunc> fitFuncSet = Collections
+				.synchronizedCollection(new HashSet<PtFitFunc>());
+		for (Map.Entry<String, OutsideTempModel> entry : models.entrySet()) {
+			fitFuncSet.add(new PtFitFunc(entry.getKey(), outsideTemp, entry.getValue()
+					.atOutsideTemp(outsideTemp)));
+		}
+		return fitFuncSet;
+	}
+
+	/**
+	 * 用当前的训练数据重新训练所有传感器的模型
+	 *
+	 * 重新训练完成后替换模型，之前构建的拟合函数仍使用旧模型。
+	 */
+	public synchronized void retrain() {
+		modelMap = trainModels();
+	}
+
+	/**
+	 * 获取传感器的已训练模型
+	 *
+	 * @param sensorId 传感器ID
+	 * @return 已训练的模型，尚未训练或没有该传感器时返回null
+	 */
+	public OutsideTempModel getModel(String sensorId) {
+		Map<String, OutsideTempModel> models = modelMap;
+		return models == null ? null : models.get(sensorId);
+	}
+
+	private Map<String, OutsideTempModel> trainModels() {
+		List<String> sensorIds = new ArrayList<String>(DataFactory.getInstance().getSensorIdSet());
+		List<Supplier<OutsideTempModel>> taskList = new ArrayList<Supplier<OutsideTempModel>>(
+				sensorIds.size());
+		for (final String sensorId : sensorIds) {
+			taskList.add(() -> trainModel(sensorId));
+		}
+
+		// 可能在计算线程池中被调用（如注册表的同步训练），不能把子任务提交到同一个池后等待
+		Map<String, OutsideTempModel> models = new HashMap<String, OutsideTempModel>();
+		try {
+			List<OutsideTempModel> modelList = AsyncExecutorManager.getInstance().invokeAllCompute(
+					taskList);
+			for (int i = 0; i < sensorIds.size(); i++) {
+				models.put(sensorIds.get(i), modelList.get(i));
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			throw new IllegalStateException("传感器模型训练失败: " + cause.getMessage(), cause);
+		}
+		return Collections.unmodifiableMap(models);
+	}
+
+	private OutsideTempModel trainModel(String sensorId) {
+		Collection<IntellacTrainDataItem> trainDataSet = trainDataSetManager
+				.fetchTrainDataSetBySensorId(sensorId, Float.NEGATIVE_INFINITY,
+						Float.POSITIVE_INFINITY);
+		TrainModel innerModel;
+		if (modelSelect == ModelEnum.BPNN) {
+			innerModel = new BpnnModel(AppContextConstant.AIR_CONDITION_NUM + 1, 1);
+		} else {
+			innerModel = LineRegressModel.getIntance();
+		}
+		OutsideTempModel model = new OutsideTempModel(innerModel);
+		model.train(trainDataSet);
+		return model;
+	}
+}
@@ -1,22 +1,37 @@
 package com.leavesfly.iac.train.trainer;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.datasource.DataFactory;
 import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.exception.IntelliAirConditionException;
 import com.leavesfly.iac.train.PtTrainer;
 import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.store.ModelStore;
 import com.leavesfly.iac.train.store.TrainDataSetManager;
+import com.leavesfly.iac.train.trainer.bp.BpHyperParamTuner;
+import com.leavesfly.iac.train.trainer.bp.BpHyperParams;
 import com.leavesfly.iac.train.trainer.bp.BpTrianTask;
 import com.leavesfly.iac.train.trainer.bp.BpWekaTrianTask;
+import com.leavesfly.iac.train.trainer.bp.BpnnModel;
+import com.leavesfly.iac.train.trainer.bp.BpnnOutputModel;
+import com.leavesfly.iac.train.trainer.bp.MultiOutputTrainDataSet;
 import com.leavesfly.iac.train.trainer.lr.LrTrainTask;
 
 /**
@@ -24,11 +39,20 @@ import com.leavesfly.iac.train.trainer.lr.LrTrainTask;
  * 
  * 该类实现了PtTrainer接口，使用多线程技术并行训练多个传感器的功率-温度模型，
  * 支持多种训练模型（BP神经网络、Weka的BP神经网络、线性回归等）。
+ * 所有传感器的训练数据通过{@link TrainDataSetManager#fetchTrainDataSets}一次取回，
+ * 不再逐个传感器查询。训练任务提交到线程数有限的工作窃取线程池，默认线程数等于CPU核数，训练数据量大的任务先提交；
+ * 线程池在多次调用之间复用，不再使用时调用{@link #shutdown()}释放。
+ * 任一传感器训练失败时，等其余任务结束后抛出异常，异常信息列出所有失败的传感器。
+ * 选择多输出BP神经网络时，所有传感器共用一个网络，在调用线程中一次训练完成。
+ * 配置了模型存储时，训练数据未变化的传感器直接读取已保存的模型，只训练其余传感器，
+ * 训练结果再保存到模型存储中（多输出网络不使用模型存储），保存失败时抛出异常。
+ * 选择BP神经网络且配置了模型存储时，可先用{@link #tuneHyperParams}为每个传感器搜索超参数并保存，
+ * 之后的训练使用该传感器保存的超参数；超参数变化后已保存的模型视为过期。
  */
 public class PtMultiThreadTrainer implements PtTrainer {
 
 	/**
-	 * 线程池执行器
+	 * 线程池执行器，有界的工作窃取线程池
 	 */
 	public final ExecutorService executorService;
 	
@@ -38,14 +62,14 @@ public class PtMultiThreadTrainer implements PtTrainer {
 	public final ModelEnum modelSelect;
 	
 	/**
-	 * 同步栅栏，用于多线程同步
+	 * 训练数据集管理器
 	 */
-	public final CyclicBarrier barrier;
+	private TrainDataSetManager trainDataSetManager;
 
 	/**
-	 * 训练数据集管理器
+	 * 模型存储，为null时每次都重新训练
 	 */
-	private TrainDataSetManager trainDataSetManager;
+	private final ModelStore modelStore;
 
 	/**
 	 * 构造函数
@@ -54,61 +78,324 @@ public class PtMultiThreadTrainer implements PtTrainer {
 	 * @param modelSelect 模型选择枚举
 	 */
 	public PtMultiThreadTrainer(TrainDataSetManager trainDataSetManager, ModelEnum modelSelect) {
-		executorService = Executors.newCachedThreadPool();
+		this(trainDataSetManager, modelSelect, null);
+	}
+
+	/**
+	 * 带模型存储的构造函数
+	 * 
+	 * @param trainDataSetManager 训练数据集管理器
+	 * @param modelSelect 模型选择枚举
+	 * @param modelStore 模型存储，为null时每次都重新训练
+	 */
+	public PtMultiThreadTrainer(TrainDataSetManager trainDataSetManager, ModelEnum modelSelect,
+			ModelStore modelStore) {
+		this(trainDataSetManager, modelSelect, modelStore, Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * 指定训练线程数的构造函数
+	 * 
+	 * @param trainDataSetManager 训练数据集管理器
+	 * @param modelSelect 模型选择枚举
+	 * @param modelStore 模型存储，为null时每次都重新训练
+	 * @param parallelism 训练线程数
+	 */
+	public PtMultiThreadTrainer(TrainDataSetManager trainDataSetManager, ModelEnum modelSelect,
+			ModelStore modelStore, int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("训练线程数必须大于0");
+		}
+		executorService = Executors.newWorkStealingPool(parallelism);
 		this.modelSelect = modelSelect;
-		barrier = new CyclicBarrier(AppContextConstant.SENSOR_NUM + 1);
 		this.trainDataSetManager = trainDataSetManager;
+		this.modelStore = modelStore;
 	}
 
 	/**
 	 * 构建功率-温度拟合函数集合
 	 * 
 	 * 为每个传感器并行训练模型，并构建对应的功率-温度拟合函数集合。
-	 * 使用CyclicBarrier确保所有训练任务完成后才返回结果。
+	 * 等待所有训练任务完成后才返回结果。没有训练数据的传感器不训练，也不在返回的集合中，
+	 * 所有传感器都没有数据时返回空集合。
+	 * 配置了模型存储时，先按训练数据的哈希值读取已保存的模型，只训练没有可用模型的传感器。
 	 * 
 	 * @param outsideTemp 室外温度
 	 * @return 功率-温度拟合函数集合
 	 */
 	@Override
 	public Collection<PtFitFunc> buildFitFuncSet(float outsideTemp) {
+		return buildFitFuncSet(outsideTemp, outsideTemp, outsideTemp);
+	}
 
-		barrier.reset();
-		DataFactory dataFactory = DataFactory.getInstance();
-		Set<String> sensorIdSet = dataFactory.getSensorIdSet();
+	/**
+	 * 使用室外温度区间内的训练数据构建代表温度下的功率-温度拟合函数集合
+	 * 
+	 * @param outsideTemp 代表温度
+	 * @param minOutsideTemp 训练数据的室外温度下限
+	 * @param maxOutsideTemp 训练数据的室外温度上限
+	 * @return 功率-温度拟合函数集合
+	 */
+	@Override
+	public Collection<PtFitFunc> buildFitFuncSet(float outsideTemp, float minOutsideTemp,
+			float maxOutsideTemp) {
+
+		Set<String> sensorIdSet = getSensorIdSet();
+		if (modelSelect == ModelEnum.BPNN_MULTI) {
+			return buildMultiOutputFitFuncSet(sensorIdSet, outsideTemp, minOutsideTemp,
+					maxOutsideTemp);
+		}
 
 		Collection<PtFitFunc> fitFuncSet = Collections
 				.synchronizedCollection(new HashSet<PtFitFunc>());
+		List<TrainTask> trainTaskList = new ArrayList<TrainTask>();
+		Map<String, Long> dataHashMap = new HashMap<String, Long>();
+		Map<String, Collection<IntellacTrainDataItem>> trainDataSets = trainDataSetManager
+				.fetchTrainDataSets(sensorIdSet, minOutsideTemp, maxOutsideTemp);
 		for (String sensorId : sensorIdSet) {
 
-			Collection<IntellacTrainDataItem> trainDataSet = trainDataSetManager
-					.fetchTrainDataSetBySensorId(sensorId, outsideTemp);
-			TrainTask trainTask = null;
-			switch (modelSelect) {
-			case BPNN:
-				trainTask = new BpTrianTask(barrier, trainDataSet, outsideTemp, sensorId,
-						fitFuncSet);
-				break;
-
-			case BPWEKA:
-				trainTask = new BpWekaTrianTask(barrier, trainDataSet, outsideTemp, sensorId,
-						fitFuncSet);
-				break;
-
-			case LR:
-				trainTask = new LrTrainTask(barrier, trainDataSet, outsideTemp, sensorId,
-						fitFuncSet);
-				break;
+			Collection<IntellacTrainDataItem> trainDataSet = trainDataSets.get(sensorId);
+			if (trainDataSet == null || trainDataSet.isEmpty()) {
+				continue;
+			}
+			BpHyperParams hyperParams = null;
+			if (modelSelect == ModelEnum.BPNN && modelStore != null) {
+				hyperParams = modelStore.loadHyperParams(sensorId);
+			}
+			if (modelStore != null) {
+				long dataHash = ModelStore.dataHash(trainDataSet);
+				if (hyperParams != null) {
+					dataHash = dataHash * 31 + hyperParams.hashCode();
+				}
+				TrainModel trainModel = modelStore.load(sensorId, outsideTemp, modelSelect,
+						dataHash);
+				if (trainModel != null) {
+					fitFuncSet.add(new PtFitFunc(sensorId, outsideTemp, trainModel));
+					continue;
+				}
+				dataHashMap.put(sensorId, dataHash);
 			}
-			executorService.submit(trainTask);
+			trainTaskList.add(newTrainTask(trainDataSet, outsideTemp, sensorId, hyperParams));
 		}
 
-		try {
-			barrier.await();
-		} catch (InterruptedException | BrokenBarrierException e) {
-			e.printStackTrace();
+		List<PtFitFunc> trainedList = runTrainTasks(trainTaskList);
+		fitFuncSet.addAll(trainedList);
+		if (modelStore != null) {
+			saveTrainedModels(trainedList, dataHashMap);
 		}
+		return fitFuncSet;
+	}
 
+	/**
+	 * 关闭训练线程池，之后不能再训练
+	 */
+	public void shutdown() {
 		executorService.shutdown();
+	}
+
+	/**
+	 * 为每个传感器搜索BP神经网络超参数并保存到模型存储
+	 *
+	 * 传感器依次搜索，每个传感器的试验由搜索器并行执行。训练数据少于2条的传感器跳过。
+	 * 某个传感器的超参数保存失败时继续搜索其余传感器，最后抛出列出所有保存失败的传感器的异常，
+	 * 已保存的超参数仍然有效。
+	 *
+	 * @param minOutsideTemp 训练数据的室外温度下限
+	 * @param maxOutsideTemp 训练数据的室外温度上限
+	 * @param tuner 超参数搜索器
+	 * @return 传感器ID -> 搜索结果
+	 * @throws IllegalStateException 模型类型不是BPNN或未配置模型存储
+	 * @throws IntelliAirConditionException 有传感器的超参数保存失败
+	 */
+	public Map<String, BpHyperParamTuner.Result> tuneHyperParams(float minOutsideTemp,
+			float maxOutsideTemp, BpHyperParamTuner tuner) {
+		if (modelSelect != ModelEnum.BPNN || modelStore == null) {
+			throw new IllegalStateException("只有配置了模型存储的BP神经网络训练器支持超参数搜索");
+		}
+		Set<String> sensorIdSet = getSensorIdSet();
+		Map<String, Collection<IntellacTrainDataItem>> trainDataSets = trainDataSetManager
+				.fetchTrainDataSets(sensorIdSet, minOutsideTemp, maxOutsideTemp);
+		Map<String, BpHyperParamTuner.Result> resultMap = new TreeMap<String, BpHyperParamTuner.Result>();
+		List<String> failedSensorIds = new ArrayList<String>();
+		IOException failure = null;
+		for (String sensorId : new TreeSet<String>(trainDataSets.keySet())) {
+			Collection<IntellacTrainDataItem> trainDataSet = trainDataSets.get(sensorId);
+			if (trainDataSet == null || trainDataSet.size() < 2) {
+				continue;
+			}
+			BpHyperParamTuner.Result result = tuner.tune(trainDataSet);
+			try {
+				modelStore.saveHyperParams(sensorId, result.getHyperParams());
+			} catch (IOException e) {
+				failedSensorIds.add(sensorId);
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+				continue;
+			}
+			resultMap.put(sensorId, result);
+		}
+		if (failure != null) {
+			throw new IntelliAirConditionException("IAC_TRAINING", "传感器" + failedSensorIds
+					+ "的超参数保存失败: " + failure.getMessage(), failure);
+		}
+		return resultMap;
+	}
+
+	/**
+	 * 获取需要训练的传感器ID集合
+	 *
+	 * @return 传感器ID集合，默认为{@link DataFactory}中的全部传感器
+	 */
+	protected Set<String> getSensorIdSet() {
+		return DataFactory.getInstance().getSensorIdSet();
+	}
+
+	/**
+	 * 为一个传感器创建训练任务
+	 *
+	 * @param trainDataSet 该传感器的训练数据集
+	 * @param outsideTemp 室外温度
+	 * @param sensorId 传感器ID
+	 * @param hyperParams 该传感器保存的BP神经网络超参数，没有时为null
+	 * @return 训练任务
+	 */
+	protected TrainTask newTrainTask(Collection<IntellacTrainDataItem> trainDataSet,
+			float outsideTemp, String sensorId, BpHyperParams hyperParams) {
+		switch (modelSelect) {
+		case BPNN:
+			return new BpTrianTask(trainDataSet, outsideTemp, sensorId, hyperParams);
+		case BPWEKA:
+			return new BpWekaTrianTask(trainDataSet, outsideTemp, sensorId);
+		case LR:
+			return new LrTrainTask(trainDataSet, outsideTemp, sensorId);
+		default:
+			throw new IllegalStateException("不支持按传感器分别训练的模型类型: " + modelSelect);
+		}
+	}
+
+	/**
+	 * 按训练代价从大到小提交训练任务，等待全部完成
+	 *
+	 * 大任务先开始，避免最后只剩一个大任务在运行而其余线程空闲。
+	 *
+	 * @param trainTaskList 训练任务列表
+	 * @return 训练得到的拟合函数
+	 * @throws IntelliAirConditionException 任一任务失败或等待被中断
+	 */
+	private List<PtFitFunc> runTrainTasks(List<TrainTask> trainTaskList) {
+		List<TrainTask> orderedTaskList = new ArrayList<TrainTask>(trainTaskList);
+		Collections.sort(orderedTaskList, new Comparator<TrainTask>() {
+			@Override
+			public int compare(TrainTask o1, TrainTask o2) {
+				return Integer.compare(o2.getCost(), o1.getCost());
+			}
+		});
+		List<Future<PtFitFunc>> futureList = new ArrayList<Future<PtFitFunc>>(
+				orderedTaskList.size());
+		for (TrainTask trainTask : orderedTaskList) {
+			futureList.add(executorService.submit(trainTask));
+		}
+
+		List<PtFitFunc> trainedList = new ArrayList<PtFitFunc>(futureList.size());
+		List<String> failedSensorIds = new ArrayList<String>();
+		Throwable failure = null;
+		for (int i = 0; i < futureList.size(); i++) {
+			try {
+				trainedList.add(futureList.get(i).get());
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				failedSensorIds.add(orderedTaskList.get(i).getSensorId());
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			} catch (InterruptedException e) {
+				for (Future<PtFitFunc> future : futureList) {
+					future.cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				throw new IntelliAirConditionException("IAC_TRAINING", "等待模型训练时被中断", e);
+			}
+		}
+		if (failure != null) {
+			throw new IntelliAirConditionException("IAC_TRAINING", "传感器" + failedSensorIds
+					+ "模型训练失败: " + failure.getMessage(), failure);
+		}
+		return trainedList;
+	}
+
+	/**
+	 * 保存本次新训练的模型
+	 *
+	 * 某个模型保存失败时继续保存其余模型，最后抛出列出所有保存失败的传感器的异常。
+	 *
+	 * @param trainedList 新训练的拟合函数
+	 * @param dataHashMap 新训练的传感器ID -> 训练数据（及超参数）的哈希值
+	 * @throws IntelliAirConditionException 有模型保存失败
+	 */
+	private void saveTrainedModels(List<PtFitFunc> trainedList, Map<String, Long> dataHashMap) {
+		List<String> failedSensorIds = new ArrayList<String>();
+		IOException failure = null;
+		for (PtFitFunc fitFunc : trainedList) {
+			Long dataHash = dataHashMap.get(fitFunc.getSensorId());
+			if (dataHash == null) {
+				continue;
+			}
+			try {
+				modelStore.save(fitFunc.getSensorId(), fitFunc.getOutsideTemp(), modelSelect,
+						dataHash, fitFunc.getTrainModel());
+			} catch (IOException e) {
+				failedSensorIds.add(fitFunc.getSensorId());
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw new IntelliAirConditionException("IAC_TRAINING", "传感器" + failedSensorIds
+					+ "的模型保存失败: " + failure.getMessage(), failure);
+		}
+	}
+
+	/**
+	 * 训练一个多输出网络，并为每个传感器构建对应输出节点的拟合函数
+	 *
+	 * @param sensorIdSet 传感器ID集合
+	 * @param outsideTemp 代表温度
+	 * @param minOutsideTemp 训练数据的室外温度下限
+	 * @param maxOutsideTemp 训练数据的室外温度上限
+	 * @return 功率-温度拟合函数集合
+	 */
+	private Collection<PtFitFunc> buildMultiOutputFitFuncSet(Set<String> sensorIdSet,
+			float outsideTemp, float minOutsideTemp, float maxOutsideTemp) {
+		Map<String, Collection<IntellacTrainDataItem>> sensorDataSets = new TreeMap<String, Collection<IntellacTrainDataItem>>();
+		for (Map.Entry<String, Collection<IntellacTrainDataItem>> entry : trainDataSetManager
+				.fetchTrainDataSets(sensorIdSet, minOutsideTemp, maxOutsideTemp).entrySet()) {
+			if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+				sensorDataSets.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (sensorDataSets.isEmpty()) {
+			return Collections.synchronizedCollection(new HashSet<PtFitFunc>());
+		}
+		MultiOutputTrainDataSet dataSet = MultiOutputTrainDataSet.join(sensorDataSets);
+		BpnnModel model = new BpnnModel(AppContextConstant.AIR_CONDITION_NUM,
+				dataSet.getOutputNum());
+		model.trainMultiOutput(dataSet.getFeatures(), dataSet.getTargets(), dataSet.getRowNum());
+
+		Collection<PtFitFunc> fitFuncSet = Collections
+				.synchronizedCollection(new HashSet<PtFitFunc>());
+		for (int k = 0; k < dataSet.getOutputNum(); k++) {
+			fitFuncSet.add(new PtFitFunc(dataSet.getSensorIds().get(k), outsideTemp,
+					new BpnnOutputModel(model, k)));
+		}
 		return fitFuncSet;
 	}
 }
\ No newline at end of file
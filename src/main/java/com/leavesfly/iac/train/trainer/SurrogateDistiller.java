@@ -0,0 +1,313 @@
+package com.leavesfly.iac.train.trainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.datasource.FitFuncGeneration;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.trainer.lr.LeastSquaresAccumulator;
+
+/**
+ * 代理模型蒸馏器
+ *
+ * 粒子群调度需要大量的温度预测，而功率-温度关系本身较为平滑，不需要BP神经网络的全部表达能力。
+ * 该类把已训练的预测函数蒸馏为{@link PolynomialSurrogateModel}：
+ * 1. 在功率范围内均匀随机采样，用原模型批量预测得到蒸馏数据
+ * 2. 依次用一阶、二阶多项式做最小二乘拟合
+ * 3. 在另一组随机样本和功率范围的全部顶点上比较代理模型与原模型，记录最大误差和均方根误差
+ * 4. 最大误差不超过精度目标的最低阶多项式被采用，否则继续使用原模型
+ *
+ * 最大误差是在校验样本上观测到的值，不是严格的理论上界；校验样本越多越接近真实的最大误差。
+ * 同样的参数和原模型得到同样的代理模型。
+ */
+public class SurrogateDistiller {
+
+	/**
+	 * 默认的蒸馏样本数
+	 */
+	public static final int DEFAULT_SAMPLE_NUM = 2000;
+
+	/**
+	 * 超过该特征数时不在所有顶点上校验
+	 */
+	private static final int MAX_VERTEX_FEATURE_NUM = 12;
+
+	/**
+	 * 最大误差目标（摄氏度）
+	 */
+	private final float maxErrorTarget;
+
+	/**
+	 * 拟合和校验各使用的随机样本数
+	 */
+	private final int sampleNum;
+
+	/**
+	 * 随机种子
+	 */
+	private final long seed;
+
+	/**
+	 * 使用默认精度目标和样本数构造
+	 */
+	public SurrogateDistiller() {
+		this(AppContextConstant.SURROGATE_MAX_ERROR, DEFAULT_SAMPLE_NUM, 0L);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param maxErrorTarget 最大误差目标（摄氏度），必须大于0
+	 * @param sampleNum 拟合和校验各使用的随机样本数，不少于二阶多项式的项数
+	 * @param seed 随机种子
+	 */
+	public SurrogateDistiller(float maxErrorTarget, int sampleNum, long seed) {
+		if (!(maxErrorTarget > 0)) {
+			throw new IllegalArgumentException("最大误差目标必须大于0");
+		}
+		if (sampleNum < PolynomialSurrogateModel.termNum(2, AppContextConstant.AIR_CONDITION_NUM)) {
+			throw new IllegalArgumentException("样本数不能少于二阶多项式的项数");
+		}
+		this.maxErrorTarget = maxErrorTarget;
+		this.sampleNum = sampleNum;
+		this.seed = seed;
+	}
+
+	/**
+	 * 蒸馏一个预测函数
+	 *
+	 * 预测函数已经使用代理模型时，对代理模型的原模型重新蒸馏。
+	 *
+	 * @param fitFunc 预测函数，模型的特征数为空调数
+	 * @return 蒸馏结果
+	 */
+	public Result distill(PtFitFunc fitFunc) {
+		TrainModel sourceModel = fitFunc.getTrainModel();
+		if (sourceModel instanceof PolynomialSurrogateModel) {
+			sourceModel = ((PolynomialSurrogateModel) sourceModel).getSourceModel();
+		}
+		int featureNum = AppContextConstant.AIR_CONDITION_NUM;
+		float minPower = AppContextConstant.AIR_CONDITION_MIN_POWER;
+		float maxPower = AppContextConstant.AIR_CONDITION_MAX_POWER;
+
+		Random random = new Random(seed);
+		float[] fitFeatures = randomPowers(random, sampleNum, featureNum, minPower, maxPower);
+		float[] fitTargets = new float[sampleNum];
+		sourceModel.predictBatch(fitFeatures, sampleNum, fitTargets);
+
+		float[] checkFeatures = checkPowers(random, featureNum, minPower, maxPower);
+		int checkNum = checkFeatures.length / featureNum;
+		float[] checkTargets = new float[checkNum];
+		sourceModel.predictBatch(checkFeatures, checkNum, checkTargets);
+
+		Result best = null;
+		float[] predictions = new float[checkNum];
+		for (int degree = 1; degree <= 2; degree++) {
+			PolynomialSurrogateModel surrogate = fit(sourceModel, degree, featureNum, minPower,
+					maxPower, fitFeatures, fitTargets);
+			surrogate.predictBatch(checkFeatures, checkNum, predictions);
+			double maxError = 0.0;
+			double squareSum = 0.0;
+			for (int r = 0; r < checkNum; r++) {
+				double error = Math.abs(predictions[r] - checkTargets[r]);
+				maxError = Double.isNaN(error) ? Double.POSITIVE_INFINITY : Math
+						.max(maxError, error);
+				squareSum += error * error;
+			}
+			Result result = new Result(fitFunc, surrogate, (float) maxError, (float) Math
+					.sqrt(squareSum / checkNum), maxError <= maxErrorTarget);
+			if (result.isAccepted()) {
+				return result;
+			}
+			if (best == null || result.getMaxError() < best.getMaxError()) {
+				best = result;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * 在Fork/Join池中并行蒸馏多个预测函数，可以在计算线程池的任务中调用
+	 *
+	 * @param fitFuncSet 预测函数集合
+	 * @return 传感器ID -> 蒸馏结果
+	 */
+	public Map<String, Result> distillAll(Collection<PtFitFunc> fitFuncSet) {
+		List<Supplier<Result>> taskList = new ArrayList<Supplier<Result>>();
+		synchronized (fitFuncSet) {
+			for (final PtFitFunc fitFunc : fitFuncSet) {
+				taskList.add(() -> distill(fitFunc));
+			}
+		}
+		Map<String, Result> resultMap = new LinkedHashMap<String, Result>();
+		try {
+			for (Result result : AsyncExecutorManager.getInstance().invokeAllCompute(taskList)) {
+				resultMap.put(result.getSensorId(), result);
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			throw new IllegalStateException("代理模型蒸馏失败: " + cause.getMessage(), cause);
+		}
+		return resultMap;
+	}
+
+	/**
+	 * 蒸馏{@link DataFactory}中当前一代的预测函数，并把达到精度目标的传感器换成代理模型后注册为新的一代
+	 *
+	 * 评估器读取已注册的预测函数，注册后即使用代理模型。蒸馏期间已注册了其他的一代时不覆盖。
+	 *
+	 * @return 传感器ID -> 蒸馏结果；蒸馏期间已注册了其他的一代时返回null
+	 */
+	public Map<String, Result> distillRegistered() {
+		DataFactory dataFactory = DataFactory.getInstance();
+		FitFuncGeneration generation = dataFactory.getFitFuncGeneration();
+		Map<String, Result> resultMap = distillAll(generation.getFitFuncSet());
+		List<PtFitFunc> fitFuncList = new ArrayList<PtFitFunc>(resultMap.size());
+		for (Result result : resultMap.values()) {
+			fitFuncList.add(result.toFitFunc());
+		}
+		return dataFactory.replaceFitFunc(generation.getNumber(), fitFuncList) ? resultMap : null;
+	}
+
+	private static PolynomialSurrogateModel fit(TrainModel sourceModel, int degree, int featureNum,
+			float minValue, float maxValue, float[] features, float[] targets) {
+		int termNum = PolynomialSurrogateModel.termNum(degree, featureNum);
+		float center = (maxValue + minValue) / 2;
+		float halfRange = (maxValue - minValue) / 2;
+		float[] terms = new float[termNum - 1];
+		LeastSquaresAccumulator accumulator = new LeastSquaresAccumulator(termNum - 1);
+		for (int r = 0; r < targets.length; r++) {
+			PolynomialSurrogateModel.expand(features, r * featureNum, degree, featureNum, center,
+					halfRange, terms);
+			accumulator.add(terms, targets[r]);
+		}
+		return new PolynomialSurrogateModel(sourceModel, degree, featureNum, minValue, maxValue,
+				accumulator.solve(0.0));
+	}
+
+	private static float[] randomPowers(Random random, int rows, int featureNum, float minValue,
+			float maxValue) {
+		float[] powers = new float[rows * featureNum];
+		for (int i = 0; i < powers.length; i++) {
+			powers[i] = minValue + (maxValue - minValue) * random.nextFloat();
+		}
+		return powers;
+	}
+
+	/**
+	 * 校验样本：随机样本加上功率范围的全部顶点（特征数不超过上限时）
+	 */
+	private float[] checkPowers(Random random, int featureNum, float minValue, float maxValue) {
+		int vertexNum = featureNum <= MAX_VERTEX_FEATURE_NUM ? 1 << featureNum : 0;
+		float[] powers = new float[(sampleNum + vertexNum) * featureNum];
+		System.arraycopy(randomPowers(random, sampleNum, featureNum, minValue, maxValue), 0,
+				powers, 0, sampleNum * featureNum);
+		for (int v = 0; v < vertexNum; v++) {
+			int base = (sampleNum + v) * featureNum;
+			for (int i = 0; i < featureNum; i++) {
+				powers[base + i] = (v & (1 << i)) != 0 ? maxValue : minValue;
+			}
+		}
+		return powers;
+	}
+
+	/**
+	 * 一个预测函数的蒸馏结果
+	 */
+	public static final class Result {
+
+		private final PtFitFunc fitFunc;
+
+		private final PolynomialSurrogateModel surrogate;
+
+		private final float maxError;
+
+		private final float rmse;
+
+		private final boolean accepted;
+
+		private Result(PtFitFunc fitFunc, PolynomialSurrogateModel surrogate, float maxError,
+				float rmse, boolean accepted) {
+			this.fitFunc = fitFunc;
+			this.surrogate = surrogate;
+			this.maxError = maxError;
+			this.rmse = rmse;
+			this.accepted = accepted;
+		}
+
+		/**
+		 * 获取传感器ID
+		 *
+		 * @return 传感器ID
+		 */
+		public String getSensorId() {
+			return fitFunc.getSensorId();
+		}
+
+		/**
+		 * 获取代理模型；未达到精度目标时为误差最小的一个
+		 *
+		 * @return 代理模型
+		 */
+		public PolynomialSurrogateModel getSurrogate() {
+			return surrogate;
+		}
+
+		/**
+		 * 获取校验样本上的最大绝对误差
+		 *
+		 * @return 最大绝对误差（摄氏度）
+		 */
+		public float getMaxError() {
+			return maxError;
+		}
+
+		/**
+		 * 获取校验样本上的均方根误差
+		 *
+		 * @return 均方根误差（摄氏度）
+		 */
+		public float getRmse() {
+			return rmse;
+		}
+
+		/**
+		 * 判断代理模型是否达到精度目标
+		 *
+		 * @return 达到时返回true
+		 */
+		public boolean isAccepted() {
+			return accepted;
+		}
+
+		/**
+		 * 获取评估应使用的预测函数：达到精度目标时为代理模型，否则为原模型
+		 *
+		 * @return 预测函数
+		 */
+		public PtFitFunc toFitFunc() {
+			if (!accepted) {
+				TrainModel sourceModel = surrogate.getSourceModel();
+				return fitFunc.getTrainModel() == sourceModel ? fitFunc : new PtFitFunc(
+						fitFunc.getSensorId(), fitFunc.getOutsideTemp(), sourceModel);
+			}
+			return new PtFitFunc(fitFunc.getSensorId(), fitFunc.getOutsideTemp(), surrogate);
+		}
+
+		@Override
+		public String toString() {
+			return "SurrogateDistiller.Result [sensorId=" + getSensorId() + ", degree="
+					+ surrogate.getDegree() + ", maxError=" + maxError + ", rmse=" + rmse
+					+ ", accepted=" + accepted + "]";
+		}
+	}
+}
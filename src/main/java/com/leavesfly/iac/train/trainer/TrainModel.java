@@ -32,4 +32,61 @@ public interface TrainModel {
 	 */
 	public <T extends Number> float useMode(T[] feature);
 
+	/**
+	 * 使用模型对一组原始类型特征进行预测
+	 * 
+	 * 默认实现装箱后调用{@link #useMode(Number[])}，具体模型应覆盖该方法以避免装箱。
+	 * 
+	 * @param features 特征值数组，方法内不会修改
+	 * @return 预测结果
+	 */
+	public default float predict(float[] features) {
+		Float[] boxedFeature = new Float[features.length];
+		for (int i = 0; i < features.length; i++) {
+			boxedFeature[i] = features[i];
+		}
+		return useMode(boxedFeature);
+	}
+
+	/**
+	 * 批量预测
+	 * 
+	 * 特征按行优先存放，第r行特征为rowsMajor[r * cols, (r + 1) * cols)，
+	 * 其中cols = rowsMajor.length / rows；第r行的预测结果写入out[r]。
+	 * 
+	 * @param rowsMajor 行优先存放的特征值数组，方法内不会修改
+	 * @param rows 行数
+	 * @param out 预测结果数组，长度不小于rows
+	 */
+	public default void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = batchColumnNum(rowsMajor, rows, out);
+		float[] row = new float[cols];
+		for (int r = 0; r < rows; r++) {
+			System.arraycopy(rowsMajor, r * cols, row, 0, cols);
+			out[r] = predict(row);
+		}
+	}
+
+	/**
+	 * 校验批量预测参数并计算每行的特征数
+	 * 
+	 * @param rowsMajor 行优先存放的特征值数组
+	 * @param rows 行数
+	 * @param out 预测结果数组
+	 * @return 每行的特征数，rows为0时返回0
+	 */
+	public static int batchColumnNum(float[] rowsMajor, int rows, float[] out) {
+		if (rowsMajor == null || out == null || rows < 0 || out.length < rows) {
+			throw new IllegalArgumentException();
+		}
+		if (rows == 0) {
+			return 0;
+		}
+		if (rowsMajor.length % rows != 0) {
+			throw new IllegalArgumentException("特征数组长度(" + rowsMajor.length + ")不是行数(" + rows
+					+ ")的整数倍");
+		}
+		return rowsMajor.length / rows;
+	}
+
 }
\ No newline at end of file
@@ -1,8 +1,7 @@
 package com.leavesfly.iac.train.trainer;
 
 import java.util.Collection;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Callable;
 
 import com.leavesfly.iac.domain.PtFitFunc;
 import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
@@ -10,72 +9,70 @@ import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
 /**
  * 训练任务抽象类
  * 
- * 该类实现了Runnable接口，表示一个训练任务，用于在独立线程中训练特定传感器的模型。
- * 使用CyclicBarrier实现多线程同步，确保所有训练任务完成后才能继续执行。
+ * 该类实现了Callable接口，表示一个训练任务，用于在独立线程中训练特定传感器的模型，
+ * 返回训练得到的功率-温度拟合函数；训练失败时异常由调用方通过Future获取。
  */
-public abstract class TrainTask implements Runnable {
+public abstract class TrainTask implements Callable<PtFitFunc> {
 
-	/**
-	 * 同步栅栏，用于多线程同步
-	 */
-	private final CyclicBarrier barrier;
-	
 	/**
 	 * 室外温度
 	 */
-	private float outsideTemp;
+	private final float outsideTemp;
 	
 	/**
 	 * 传感器ID
 	 */
-	private String sensorId;
+	private final String sensorId;
 	
 	/**
 	 * 训练数据集
 	 */
-	private Collection<IntellacTrainDataItem> trainDataSet;
-	
-	/**
-	 * 拟合函数集合
-	 */
-	private Collection<PtFitFunc> fitFuncSet;
+	private final Collection<IntellacTrainDataItem> trainDataSet;
 
 	/**
 	 * 构造函数
 	 * 
-	 * @param barrier 同步栅栏
 	 * @param trainDataSet 训练数据集
 	 * @param outsideTemp 室外温度
 	 * @param sensorId 传感器ID
-	 * @param fitFuncSet 拟合函数集合
 	 */
-	public TrainTask(CyclicBarrier barrier, Collection<IntellacTrainDataItem> trainDataSet,
-			float outsideTemp, String sensorId, Collection<PtFitFunc> fitFuncSet) {
-		this.barrier = barrier;
+	public TrainTask(Collection<IntellacTrainDataItem> trainDataSet, float outsideTemp,
+			String sensorId) {
 		this.trainDataSet = trainDataSet;
 		this.outsideTemp = outsideTemp;
 		this.sensorId = sensorId;
-		this.fitFuncSet = fitFuncSet;
 	}
 
 	/**
 	 * 执行训练任务
 	 * 
-	 * 获取训练模型实例，使用训练数据集训练模型，
-	 * 创建功率-温度拟合函数并添加到拟合函数集合中，
-	 * 最后等待所有训练任务完成。
+	 * 获取训练模型实例，使用训练数据集训练模型，创建并返回功率-温度拟合函数。
+	 * 
+	 * @return 功率-温度拟合函数
 	 */
 	@Override
-	public void run() {
+	public PtFitFunc call() {
 		TrainModel trainModel = getTrainModelInstance();
 		trainModel.train(trainDataSet);
-		PtFitFunc fitFunc = new PtFitFunc(sensorId, outsideTemp, trainModel);
-		fitFuncSet.add(fitFunc);
-		try {
-			barrier.await();
-		} catch (InterruptedException | BrokenBarrierException e) {
-			e.printStackTrace();
-		}
+		return new PtFitFunc(sensorId, outsideTemp, trainModel);
+	}
+
+	/**
+	 * 估计训练代价，用于安排任务的提交顺序
+	 * 
+	 * @return 训练数据量
+	 */
+	public int getCost() {
+		return trainDataSet.size();
+	}
+
+	/**
+	 * 获取传感器ID
+	 * 
+	 * @return 传感器ID
+	 */
+	public String getSensorId() {
+		return sensorId;
 	}
 
 	/**
@@ -0,0 +1,403 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.trainer.bp.BpTrainConfig.Optimizer;
+
+/**
+ * BP神经网络超参数搜索器
+ *
+ * 在候选超参数中用k折交叉验证的平均MSE（{@link BpnnModel#evaluateModel}）选出最优的一组，
+ * 并用逐次减半（successive halving）提前淘汰表现差的候选：
+ * 1. 所有候选先以较少的迭代次数做交叉验证
+ * 2. 只保留误差最小的1/reductionFactor，迭代次数乘以reductionFactor后再做交叉验证
+ * 3. 剩余候选不超过reductionFactor个后不再淘汰，迭代次数达到候选中的最大迭代次数时停止
+ * 最后一轮中误差不超过最优误差(1 + tolerance)倍的候选里，选择隐藏层节点数最少的一组，
+ * 使网络在精度足够时尽量小、训练和推理尽量快。
+ *
+ * 每一轮中（候选，折）组合作为独立的试验由{@link AsyncExecutorManager#invokeAllCompute}并行执行。
+ * 交叉验证的折划分和每次试验的随机种子由构造时的种子决定，结果可复现。
+ */
+public class BpHyperParamTuner {
+
+	/**
+	 * 默认交叉验证折数
+	 */
+	public static final int DEFAULT_FOLD_NUM = 5;
+
+	/**
+	 * 默认第一轮迭代次数
+	 */
+	public static final int DEFAULT_MIN_ITERATE_NUM = 50;
+
+	/**
+	 * 默认每轮保留比例的倒数
+	 */
+	public static final int DEFAULT_REDUCTION_FACTOR = 3;
+
+	/**
+	 * 默认误差容忍比例，在此范围内优先选择更小的网络
+	 */
+	public static final float DEFAULT_TOLERANCE = 0.05f;
+
+	/**
+	 * 候选超参数
+	 */
+	private final List<BpHyperParams> candidates;
+
+	/**
+	 * 交叉验证折数
+	 */
+	private final int foldNum;
+
+	/**
+	 * 第一轮迭代次数
+	 */
+	private final int minIterateNum;
+
+	/**
+	 * 每轮保留比例的倒数
+	 */
+	private final int reductionFactor;
+
+	/**
+	 * 误差容忍比例
+	 */
+	private final float tolerance;
+
+	/**
+	 * 随机种子
+	 */
+	private final long seed;
+
+	/**
+	 * 使用默认搜索参数的构造函数
+	 *
+	 * @param candidates 候选超参数
+	 */
+	public BpHyperParamTuner(Collection<BpHyperParams> candidates) {
+		this(candidates, DEFAULT_FOLD_NUM, DEFAULT_MIN_ITERATE_NUM, DEFAULT_REDUCTION_FACTOR,
+				DEFAULT_TOLERANCE, 0L);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param candidates 候选超参数，重复的候选只保留一个
+	 * @param foldNum 交叉验证折数，至少为2
+	 * @param minIterateNum 第一轮迭代次数
+	 * @param reductionFactor 每轮保留比例的倒数，至少为2
+	 * @param tolerance 误差容忍比例，不小于0
+	 * @param seed 随机种子
+	 */
+	public BpHyperParamTuner(Collection<BpHyperParams> candidates, int foldNum,
+			int minIterateNum, int reductionFactor, float tolerance, long seed) {
+		if (candidates == null || candidates.isEmpty()) {
+			throw new IllegalArgumentException("候选超参数不能为空");
+		}
+		if (foldNum < 2 || minIterateNum <= 0 || reductionFactor < 2 || !(tolerance >= 0)) {
+			throw new IllegalArgumentException("折数和减半因子至少为2，迭代次数必须大于0，容忍比例不能为负");
+		}
+		this.candidates = Collections.unmodifiableList(new ArrayList<BpHyperParams>(
+				new LinkedHashSet<BpHyperParams>(candidates)));
+		this.foldNum = foldNum;
+		this.minIterateNum = minIterateNum;
+		this.reductionFactor = reductionFactor;
+		this.tolerance = tolerance;
+		this.seed = seed;
+	}
+
+	/**
+	 * 生成网格搜索的候选超参数
+	 *
+	 * @param hiddenLevelCellNums 隐藏层节点数取值
+	 * @param learnRates 学习率取值
+	 * @param batchSizes 小批量大小取值
+	 * @param optimizers 优化器取值
+	 * @param iterateNum 最大迭代次数
+	 * @return 所有取值组合
+	 */
+	public static List<BpHyperParams> gridCandidates(int[] hiddenLevelCellNums,
+			float[] learnRates, int[] batchSizes, Optimizer[] optimizers, int iterateNum) {
+		List<BpHyperParams> candidates = new ArrayList<BpHyperParams>();
+		for (int hiddenLevelCellNum : hiddenLevelCellNums) {
+			for (float learnRate : learnRates) {
+				for (int batchSize : batchSizes) {
+					for (Optimizer optimizer : optimizers) {
+						candidates.add(new BpHyperParams(hiddenLevelCellNum, learnRate, iterateNum,
+								batchSize, optimizer));
+					}
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * 生成随机搜索的候选超参数
+	 *
+	 * 隐藏层节点数在[1, 默认节点数的2倍]内均匀取值，学习率在[0.01, 1]内按对数均匀取值，
+	 * 小批量大小取1到32之间的2的幂，优化器均匀选择；使用Adam时学习率缩小为十分之一。
+	 *
+	 * @param num 候选数量
+	 * @param inputLevelCellNum 输入层节点数
+	 * @param iterateNum 最大迭代次数
+	 * @param seed 随机种子
+	 * @return 候选超参数
+	 */
+	public static List<BpHyperParams> randomCandidates(int num, int inputLevelCellNum,
+			int iterateNum, long seed) {
+		Random random = new Random(seed);
+		int maxHidden = 2 * BpHyperParams.defaults(inputLevelCellNum).getHiddenLevelCellNum();
+		Optimizer[] optimizers = Optimizer.values();
+		List<BpHyperParams> candidates = new ArrayList<BpHyperParams>(num);
+		for (int i = 0; i < num; i++) {
+			int hiddenLevelCellNum = 1 + random.nextInt(maxHidden);
+			float learnRate = (float) Math.pow(10, -2 + 2 * random.nextDouble());
+			int batchSize = 1 << random.nextInt(6);
+			Optimizer optimizer = optimizers[random.nextInt(optimizers.length)];
+			if (optimizer == Optimizer.ADAM) {
+				learnRate /= 10;
+			}
+			candidates.add(new BpHyperParams(hiddenLevelCellNum, Math.min(learnRate, 1.0f),
+					iterateNum, batchSize, optimizer));
+		}
+		return candidates;
+	}
+
+	/**
+	 * 在训练数据上搜索最优超参数
+	 *
+	 * @param trainDataSet 训练数据集，样本数不少于2
+	 * @return 搜索结果
+	 */
+	public Result tune(Collection<IntellacTrainDataItem> trainDataSet) {
+		if (trainDataSet == null || trainDataSet.size() < 2) {
+			throw new IllegalArgumentException("训练数据不足，无法做交叉验证");
+		}
+		List<List<IntellacTrainDataItem>> folds = split(trainDataSet);
+		int inputLevelCellNum = trainDataSet.iterator().next().getFeatureValues().length;
+
+		int maxIterateNum = 0;
+		for (BpHyperParams candidate : candidates) {
+			maxIterateNum = Math.max(maxIterateNum, candidate.getIterateNum());
+		}
+		List<BpHyperParams> survivors = candidates;
+		int iterateNum = Math.min(minIterateNum, maxIterateNum);
+		int trialNum = 0;
+		while (true) {
+			double[] errors = crossValidate(survivors, iterateNum, folds, inputLevelCellNum);
+			trialNum += survivors.size() * folds.size();
+			List<Integer> ranking = rank(errors);
+			if (iterateNum >= maxIterateNum) {
+				return select(survivors, errors, ranking, iterateNum, trialNum);
+			}
+			int keepNum = survivors.size() <= reductionFactor ? survivors.size()
+					: (survivors.size() + reductionFactor - 1) / reductionFactor;
+			List<BpHyperParams> next = new ArrayList<BpHyperParams>(keepNum);
+			for (int i = 0; i < keepNum; i++) {
+				next.add(survivors.get(ranking.get(i)));
+			}
+			survivors = next;
+			iterateNum = (int) Math.min((long) iterateNum * reductionFactor, maxIterateNum);
+		}
+	}
+
+	/**
+	 * 获取候选超参数
+	 *
+	 * @return 去重后的候选超参数，不可修改
+	 */
+	public List<BpHyperParams> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * 打乱数据后按下标轮流分到各折，折数不超过样本数
+	 */
+	private List<List<IntellacTrainDataItem>> split(Collection<IntellacTrainDataItem> trainDataSet) {
+		List<IntellacTrainDataItem> shuffled = new ArrayList<IntellacTrainDataItem>(trainDataSet);
+		Collections.shuffle(shuffled, new Random(seed));
+		int num = Math.min(foldNum, shuffled.size());
+		List<List<IntellacTrainDataItem>> folds = new ArrayList<List<IntellacTrainDataItem>>(num);
+		for (int f = 0; f < num; f++) {
+			folds.add(new ArrayList<IntellacTrainDataItem>());
+		}
+		for (int i = 0; i < shuffled.size(); i++) {
+			folds.get(i % num).add(shuffled.get(i));
+		}
+		return folds;
+	}
+
+	/**
+	 * 并行计算每个候选在各折上的平均验证误差，迭代次数取该轮次数与候选自身上限中的较小值
+	 */
+	private double[] crossValidate(List<BpHyperParams> survivors, int iterateNum,
+			List<List<IntellacTrainDataItem>> folds, int inputLevelCellNum) {
+		int foldCount = folds.size();
+		List<Supplier<Double>> trialList = new ArrayList<Supplier<Double>>(survivors.size()
+				* foldCount);
+		for (BpHyperParams candidate : survivors) {
+			final BpHyperParams params = candidate.withIterateNum(Math.min(iterateNum,
+					candidate.getIterateNum()));
+			for (int f = 0; f < foldCount; f++) {
+				final int fold = f;
+				trialList.add(() -> runTrial(params, folds, fold, inputLevelCellNum));
+			}
+		}
+
+		double[] errors = new double[survivors.size()];
+		try {
+			List<Double> trialErrors = AsyncExecutorManager.getInstance().invokeAllCompute(trialList);
+			for (int i = 0; i < trialErrors.size(); i++) {
+				errors[i / foldCount] += trialErrors.get(i) / foldCount;
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			throw new IllegalStateException("超参数试验失败: " + cause.getMessage(), cause);
+		}
+		return errors;
+	}
+
+	/**
+	 * 用除第fold折以外的数据训练，返回在第fold折上的MSE；误差无效时视为无穷大
+	 */
+	private double runTrial(BpHyperParams params, List<List<IntellacTrainDataItem>> folds,
+			int fold, int inputLevelCellNum) {
+		List<IntellacTrainDataItem> trainPart = new ArrayList<IntellacTrainDataItem>();
+		for (int f = 0; f < folds.size(); f++) {
+			if (f != fold) {
+				trainPart.addAll(folds.get(f));
+			}
+		}
+		BpnnModel model = new BpnnModel(inputLevelCellNum, params.getHiddenLevelCellNum(), 1,
+				params.getLearnRate(), params.getIterateNum(), params.toTrainConfig(seed + fold));
+		model.train(trainPart);
+		double error = model.evaluateModel(folds.get(fold));
+		return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+	}
+
+	/**
+	 * 按误差从小到大排列候选下标，误差相同时保持原顺序
+	 */
+	private static List<Integer> rank(final double[] errors) {
+		List<Integer> ranking = new ArrayList<Integer>(errors.length);
+		for (int i = 0; i < errors.length; i++) {
+			ranking.add(i);
+		}
+		Collections.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(errors[o1], errors[o2]);
+			}
+		});
+		return ranking;
+	}
+
+	/**
+	 * 在误差容忍范围内选择隐藏层节点数最少的候选
+	 */
+	private Result select(List<BpHyperParams> survivors, double[] errors, List<Integer> ranking,
+			int iterateNum, int trialNum) {
+		int best = ranking.get(0);
+		double threshold = errors[best] * (1 + tolerance);
+		int chosen = best;
+		for (int index : ranking) {
+			if (errors[index] > threshold) {
+				break;
+			}
+			if (survivors.get(index).getHiddenLevelCellNum() < survivors.get(chosen)
+					.getHiddenLevelCellNum()) {
+				chosen = index;
+			}
+		}
+		return new Result(survivors.get(chosen), errors[chosen], iterateNum, trialNum);
+	}
+
+	/**
+	 * 超参数搜索结果
+	 */
+	public static final class Result {
+
+		/**
+		 * 选中的超参数，最大迭代次数为候选自身的取值
+		 */
+		private final BpHyperParams hyperParams;
+
+		/**
+		 * 最后一轮交叉验证的平均MSE
+		 */
+		private final double crossValidationError;
+
+		/**
+		 * 最后一轮的迭代次数
+		 */
+		private final int finalIterateNum;
+
+		/**
+		 * 试验总次数，每次试验为一个候选在一折上的训练和验证
+		 */
+		private final int trialNum;
+
+		Result(BpHyperParams hyperParams, double crossValidationError, int finalIterateNum,
+				int trialNum) {
+			this.hyperParams = hyperParams;
+			this.crossValidationError = crossValidationError;
+			this.finalIterateNum = finalIterateNum;
+			this.trialNum = trialNum;
+		}
+
+		/**
+		 * 获取选中的超参数
+		 *
+		 * @return 超参数
+		 */
+		public BpHyperParams getHyperParams() {
+			return hyperParams;
+		}
+
+		/**
+		 * 获取最后一轮交叉验证的平均MSE
+		 *
+		 * @return 平均MSE
+		 */
+		public double getCrossValidationError() {
+			return crossValidationError;
+		}
+
+		/**
+		 * 获取最后一轮的迭代次数
+		 *
+		 * @return 迭代次数
+		 */
+		public int getFinalIterateNum() {
+			return finalIterateNum;
+		}
+
+		/**
+		 * 获取试验总次数
+		 *
+		 * @return 试验总次数
+		 */
+		public int getTrialNum() {
+			return trialNum;
+		}
+
+		@Override
+		public String toString() {
+			return "Result [hyperParams=" + hyperParams + ", crossValidationError="
+					+ crossValidationError + ", finalIterateNum=" + finalIterateNum
+					+ ", trialNum=" + trialNum + "]";
+		}
+	}
+}
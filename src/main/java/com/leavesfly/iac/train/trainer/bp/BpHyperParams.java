@@ -0,0 +1,237 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.leavesfly.iac.config.BpAlgorithmConstant;
+import com.leavesfly.iac.train.trainer.bp.BpTrainConfig.Optimizer;
+
+/**
+ * BP神经网络超参数
+ *
+ * 描述一组可调的超参数：隐藏层节点数、学习率、最大迭代次数、小批量大小和优化器，
+ * 由{@link BpHyperParamTuner}搜索得到，按传感器保存后用于之后的训练。
+ * 实例不可变。
+ */
+public final class BpHyperParams {
+
+	/**
+	 * 隐藏层节点数
+	 */
+	private final int hiddenLevelCellNum;
+
+	/**
+	 * 学习率
+	 */
+	private final float learnRate;
+
+	/**
+	 * 最大迭代次数
+	 */
+	private final int iterateNum;
+
+	/**
+	 * 小批量大小
+	 */
+	private final int batchSize;
+
+	/**
+	 * 优化器
+	 */
+	private final Optimizer optimizer;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param hiddenLevelCellNum 隐藏层节点数
+	 * @param learnRate 学习率，范围(0, 1]
+	 * @param iterateNum 最大迭代次数
+	 * @param batchSize 小批量大小
+	 * @param optimizer 优化器
+	 */
+	public BpHyperParams(int hiddenLevelCellNum, float learnRate, int iterateNum, int batchSize,
+			Optimizer optimizer) {
+		if (hiddenLevelCellNum <= 0 || iterateNum <= 0 || batchSize <= 0) {
+			throw new IllegalArgumentException("隐藏层节点数、迭代次数和小批量大小必须大于0");
+		}
+		if (!(learnRate > 0) || learnRate > 1) {
+			throw new IllegalArgumentException("学习率必须在(0,1]范围内");
+		}
+		if (optimizer == null) {
+			throw new IllegalArgumentException("优化器不能为空");
+		}
+		this.hiddenLevelCellNum = hiddenLevelCellNum;
+		this.learnRate = learnRate;
+		this.iterateNum = iterateNum;
+		this.batchSize = batchSize;
+		this.optimizer = optimizer;
+	}
+
+	/**
+	 * 获取与{@link BpnnModel#getIntance()}一致的默认超参数
+	 *
+	 * @param inputLevelCellNum 输入层节点数
+	 * @return 默认超参数
+	 */
+	public static BpHyperParams defaults(int inputLevelCellNum) {
+		return new BpHyperParams(BpAlgorithmConstant.determineHiddenLevel(inputLevelCellNum,
+				BpAlgorithmConstant.OUTPUT_LEVEL_CELL_NUM), BpAlgorithmConstant.LEARN_RATE,
+				BpAlgorithmConstant.ITERATE_NUM, BpAlgorithmConstant.BATCH_SIZE, Optimizer.SGD);
+	}
+
+	/**
+	 * 创建使用该组超参数的单输出网络
+	 *
+	 * @param inputLevelCellNum 输入层节点数
+	 * @return 未训练的BP神经网络
+	 */
+	public BpnnModel newModel(int inputLevelCellNum) {
+		return new BpnnModel(inputLevelCellNum, hiddenLevelCellNum,
+				BpAlgorithmConstant.OUTPUT_LEVEL_CELL_NUM, learnRate, iterateNum,
+				toTrainConfig(null));
+	}
+
+	/**
+	 * 转换为训练配置
+	 *
+	 * @param seed 随机种子，为null时每次训练使用不同的随机序列
+	 * @return 训练配置
+	 */
+	public BpTrainConfig toTrainConfig(Long seed) {
+		BpTrainConfig.Builder builder = BpTrainConfig.builder().batchSize(batchSize)
+				.optimizer(optimizer);
+		if (seed != null) {
+			builder.seed(seed);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 获取只有最大迭代次数不同的超参数
+	 *
+	 * @param iterateNum 最大迭代次数
+	 * @return 超参数
+	 */
+	public BpHyperParams withIterateNum(int iterateNum) {
+		if (iterateNum == this.iterateNum) {
+			return this;
+		}
+		return new BpHyperParams(hiddenLevelCellNum, learnRate, iterateNum, batchSize, optimizer);
+	}
+
+	/**
+	 * 写出超参数
+	 *
+	 * @param out 输出流
+	 * @throws IOException 写出失败
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(hiddenLevelCellNum);
+		out.writeFloat(learnRate);
+		out.writeInt(iterateNum);
+		out.writeInt(batchSize);
+		out.writeUTF(optimizer.name());
+	}
+
+	/**
+	 * 读回{@link #writeTo}写出的超参数
+	 *
+	 * @param in 输入流
+	 * @return 超参数
+	 * @throws IOException 读取失败或数据无效
+	 */
+	public static BpHyperParams readFrom(DataInput in) throws IOException {
+		int hiddenLevelCellNum = in.readInt();
+		float learnRate = in.readFloat();
+		int iterateNum = in.readInt();
+		int batchSize = in.readInt();
+		String optimizerName = in.readUTF();
+		try {
+			return new BpHyperParams(hiddenLevelCellNum, learnRate, iterateNum, batchSize,
+					Optimizer.valueOf(optimizerName));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("超参数数据无效", e);
+		}
+	}
+
+	/**
+	 * 获取隐藏层节点数
+	 *
+	 * @return 隐藏层节点数
+	 */
+	public int getHiddenLevelCellNum() {
+		return hiddenLevelCellNum;
+	}
+
+	/**
+	 * 获取学习率
+	 *
+	 * @return 学习率
+	 */
+	public float getLearnRate() {
+		return learnRate;
+	}
+
+	/**
+	 * 获取最大迭代次数
+	 *
+	 * @return 最大迭代次数
+	 */
+	public int getIterateNum() {
+		return iterateNum;
+	}
+
+	/**
+	 * 获取小批量大小
+	 *
+	 * @return 小批量大小
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * 获取优化器
+	 *
+	 * @return 优化器
+	 */
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+
+	/**
+	 * 哈希值只由各字段的值决定，在不同进程之间保持一致，可与保存的数据一起比较
+	 */
+	@Override
+	public int hashCode() {
+		int result = hiddenLevelCellNum;
+		result = 31 * result + Float.floatToIntBits(learnRate);
+		result = 31 * result + iterateNum;
+		result = 31 * result + batchSize;
+		result = 31 * result + optimizer.name().hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BpHyperParams)) {
+			return false;
+		}
+		BpHyperParams other = (BpHyperParams) obj;
+		return hiddenLevelCellNum == other.hiddenLevelCellNum
+				&& Float.floatToIntBits(learnRate) == Float.floatToIntBits(other.learnRate)
+				&& iterateNum == other.iterateNum && batchSize == other.batchSize
+				&& optimizer == other.optimizer;
+	}
+
+	@Override
+	public String toString() {
+		return "BpHyperParams [hiddenLevelCellNum=" + hiddenLevelCellNum + ", learnRate="
+				+ learnRate + ", iterateNum=" + iterateNum + ", batchSize=" + batchSize
+				+ ", optimizer=" + optimizer + "]";
+	}
+}
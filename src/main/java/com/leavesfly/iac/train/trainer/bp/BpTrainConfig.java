@@ -0,0 +1,246 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import com.leavesfly.iac.config.BpAlgorithmConstant;
+
+/**
+ * BP神经网络训练配置类
+ *
+ * 该类描述BpnnModel的训练方式：小批量大小、优化器、动量与Adam参数，
+ * 以及用于早停的验证集比例。默认配置为逐样本的随机梯度下降，留出两成样本作验证集，
+ * 以验证误差驱动早停并在训练结束后恢复验证误差最小时的参数；样本太少留不出验证集时
+ * 以训练误差驱动早停。实例不可变，可在多个模型之间共享。
+ */
+public final class BpTrainConfig {
+
+	/**
+	 * 默认训练配置
+	 */
+	public static final BpTrainConfig DEFAULT = builder().build();
+
+	/**
+	 * 优化器类型
+	 */
+	public enum Optimizer {
+		/** 随机梯度下降 */
+		SGD,
+		/** 动量法 */
+		MOMENTUM,
+		/** Nesterov加速梯度 */
+		NESTEROV,
+		/** Adam自适应矩估计 */
+		ADAM
+	}
+
+	private final int batchSize;
+
+	private final Optimizer optimizer;
+
+	private final float momentum;
+
+	private final float adamBeta1;
+
+	private final float adamBeta2;
+
+	private final float adamEpsilon;
+
+	private final float validationRatio;
+
+	private final int earlyStopPatience;
+
+	private final Long seed;
+
+	private BpTrainConfig(Builder builder) {
+		this.batchSize = builder.batchSize;
+		this.optimizer = builder.optimizer;
+		this.momentum = builder.momentum;
+		this.adamBeta1 = builder.adamBeta1;
+		this.adamBeta2 = builder.adamBeta2;
+		this.adamEpsilon = builder.adamEpsilon;
+		this.validationRatio = builder.validationRatio;
+		this.earlyStopPatience = builder.earlyStopPatience;
+		this.seed = builder.seed;
+	}
+
+	/**
+	 * 创建构建器
+	 *
+	 * @return 构建器
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * 获取小批量大小，为1时逐样本更新
+	 *
+	 * @return 小批量大小
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * 获取优化器类型
+	 *
+	 * @return 优化器类型
+	 */
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+
+	/**
+	 * 获取动量系数，用于MOMENTUM和NESTEROV
+	 *
+	 * @return 动量系数
+	 */
+	public float getMomentum() {
+		return momentum;
+	}
+
+	/**
+	 * 获取Adam一阶矩衰减率
+	 *
+	 * @return 一阶矩衰减率
+	 */
+	public float getAdamBeta1() {
+		return adamBeta1;
+	}
+
+	/**
+	 * 获取Adam二阶矩衰减率
+	 *
+	 * @return 二阶矩衰减率
+	 */
+	public float getAdamBeta2() {
+		return adamBeta2;
+	}
+
+	/**
+	 * 获取Adam数值稳定项
+	 *
+	 * @return 数值稳定项
+	 */
+	public float getAdamEpsilon() {
+		return adamEpsilon;
+	}
+
+	/**
+	 * 获取验证集比例，为0时以训练误差驱动早停
+	 *
+	 * @return 验证集比例
+	 */
+	public float getValidationRatio() {
+		return validationRatio;
+	}
+
+	/**
+	 * 获取早停容忍轮数
+	 *
+	 * @return 早停容忍轮数
+	 */
+	public int getEarlyStopPatience() {
+		return earlyStopPatience;
+	}
+
+	/**
+	 * 获取随机种子，决定初始权重和训练时的样本顺序，为null时每次使用不同的随机序列
+	 *
+	 * @return 随机种子
+	 */
+	public Long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public String toString() {
+		return "BpTrainConfig [batchSize=" + batchSize + ", optimizer=" + optimizer + ", momentum="
+				+ momentum + ", validationRatio=" + validationRatio + ", earlyStopPatience="
+				+ earlyStopPatience + "]";
+	}
+
+	/**
+	 * 训练配置构建器
+	 */
+	public static final class Builder {
+
+		private int batchSize = BpAlgorithmConstant.BATCH_SIZE;
+
+		private Optimizer optimizer = Optimizer.SGD;
+
+		private float momentum = BpAlgorithmConstant.MOMENTUM;
+
+		private float adamBeta1 = BpAlgorithmConstant.ADAM_BETA1;
+
+		private float adamBeta2 = BpAlgorithmConstant.ADAM_BETA2;
+
+		private float adamEpsilon = BpAlgorithmConstant.ADAM_EPSILON;
+
+		private float validationRatio = BpAlgorithmConstant.VALIDATION_RATIO;
+
+		private int earlyStopPatience = BpAlgorithmConstant.EARLY_STOP_PATIENCE;
+
+		private Long seed;
+
+		private Builder() {
+		}
+
+		public Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public Builder optimizer(Optimizer optimizer) {
+			this.optimizer = optimizer;
+			return this;
+		}
+
+		public Builder momentum(float momentum) {
+			this.momentum = momentum;
+			return this;
+		}
+
+		public Builder adamBeta1(float adamBeta1) {
+			this.adamBeta1 = adamBeta1;
+			return this;
+		}
+
+		public Builder adamBeta2(float adamBeta2) {
+			this.adamBeta2 = adamBeta2;
+			return this;
+		}
+
+		public Builder adamEpsilon(float adamEpsilon) {
+			this.adamEpsilon = adamEpsilon;
+			return this;
+		}
+
+		public Builder validationRatio(float validationRatio) {
+			this.validationRatio = validationRatio;
+			return this;
+		}
+
+		public Builder earlyStopPatience(int earlyStopPatience) {
+			this.earlyStopPatience = earlyStopPatience;
+			return this;
+		}
+
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public BpTrainConfig build() {
+			if (batchSize <= 0 || optimizer == null || earlyStopPatience < 0) {
+				throw new IllegalArgumentException("小批量大小必须大于0，优化器不能为空");
+			}
+			if (momentum < 0 || momentum >= 1 || adamBeta1 < 0 || adamBeta1 >= 1 || adamBeta2 < 0
+					|| adamBeta2 >= 1 || adamEpsilon <= 0) {
+				throw new IllegalArgumentException("动量和Adam衰减率必须在[0, 1)范围内");
+			}
+			if (validationRatio < 0 || validationRatio >= 1) {
+				throw new IllegalArgumentException("验证集比例必须在[0, 1)范围内");
+			}
+			return new BpTrainConfig(this);
+		}
+	}
+}
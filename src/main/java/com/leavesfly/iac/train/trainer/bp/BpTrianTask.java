@@ -1,22 +1,35 @@
 package com.leavesfly.iac.train.trainer.bp;
 
 import java.util.Collection;
-import java.util.concurrent.CyclicBarrier;
 
-import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.config.BpAlgorithmConstant;
 import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
 import com.leavesfly.iac.train.trainer.TrainModel;
 import com.leavesfly.iac.train.trainer.TrainTask;
 
 public class BpTrianTask extends TrainTask {
 
-	public BpTrianTask(CyclicBarrier barrier, Collection<IntellacTrainDataItem> trainDataSet,
-			float outsideTemp, String sensorId, Collection<PtFitFunc> fitFuncOfPTSet) {
-		super(barrier, trainDataSet, outsideTemp, sensorId, fitFuncOfPTSet);
+	/**
+	 * 超参数，为null时使用默认超参数
+	 */
+	private final BpHyperParams hyperParams;
+
+	public BpTrianTask(Collection<IntellacTrainDataItem> trainDataSet, float outsideTemp,
+			String sensorId) {
+		this(trainDataSet, outsideTemp, sensorId, null);
+	}
+
+	public BpTrianTask(Collection<IntellacTrainDataItem> trainDataSet, float outsideTemp,
+			String sensorId, BpHyperParams hyperParams) {
+		super(trainDataSet, outsideTemp, sensorId);
+		this.hyperParams = hyperParams;
 	}
 
 	@Override
 	protected TrainModel getTrainModelInstance() {
-		return BpnnModel.getIntance();
+		if (hyperParams == null) {
+			return BpnnModel.getIntance();
+		}
+		return hyperParams.newModel(BpAlgorithmConstant.INPUT_LEVEL_CELL_NUM);
 	}
 }
@@ -1,5 +1,12 @@
 package com.leavesfly.iac.train.trainer.bp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Collection;
 
 import weka.classifiers.functions.MultilayerPerceptron;
@@ -16,11 +23,23 @@ import com.leavesfly.iac.train.domain.TrainDataItem;
 import com.leavesfly.iac.train.store.TrainDataSetManager;
 import com.leavesfly.iac.train.trainer.TrainModel;
 
+/**
+ * 基于Weka多层感知机的训练模型
+ *
+ * 训练和保存使用Weka的MultilayerPerceptron；训练或读回模型后从中提取{@link WekaMlpEvaluator}，
+ * 推理直接在提取出的权重上计算，不再经过Weka，结果与Weka一致且可并发调用。
+ * 网络不支持提取时仍使用Weka串行推理。
+ */
 public class BpWekaModel implements TrainModel {
 
 	private Instances instances;
 	private MultilayerPerceptron multilayerPerceptron;
 
+	/**
+	 * 从多层感知机提取的前向计算器，为null时使用Weka推理
+	 */
+	private volatile WekaMlpEvaluator evaluator;
+
 	private BpWekaModel() {
 		init();
 	}
@@ -59,18 +78,76 @@ public class BpWekaModel implements TrainModel {
 			e.printStackTrace();
 			throw new RuntimeException("multilayerPerceptron.buildClassifier exception!");
 		}
+		evaluator = WekaMlpEvaluator.extract(multilayerPerceptron,
+				AppContextConstant.AIR_CONDITION_NUM);
 	}
 
 	@Override
 	public <T extends Number> float useMode(T[] feature) {
+		WekaMlpEvaluator current = evaluator;
+		if (current != null) {
+			return current.predict(feature);
+		}
 
-		Instance instance = new Instance(AppContextConstant.AIR_CONDITION_NUM);
+		double[] attValues = new double[AppContextConstant.AIR_CONDITION_NUM];
 		for (int i = 0; i < AppContextConstant.AIR_CONDITION_NUM; i++) {
-			instance.setValue(i, feature[i].floatValue());
+			attValues[i] = feature[i].floatValue();
+		}
+		return classify(attValues);
+	}
+
+	@Override
+	public float predict(float[] features) {
+		WekaMlpEvaluator current = evaluator;
+		if (current != null) {
+			return current.predict(features, 0);
 		}
+		return classify(toAttValues(features, 0));
+	}
+
+	@Override
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+		WekaMlpEvaluator current = evaluator;
+		for (int r = 0; r < rows; r++) {
+			out[r] = current != null ? current.predict(rowsMajor, r * cols) : classify(toAttValues(
+					rowsMajor, r * cols));
+		}
+	}
+
+	/**
+	 * 是否使用提取出的前向计算器推理
+	 *
+	 * @return 使用提取的权重推理时返回true，使用Weka推理时返回false
+	 */
+	public boolean isFastPathEnabled() {
+		return evaluator != null;
+	}
+
+	/**
+	 * 使用Weka推理，用于校验提取出的前向计算器
+	 */
+	float classifyWithWeka(float[] features) {
+		return classify(toAttValues(features, 0));
+	}
+
+	private static double[] toAttValues(float[] features, int offset) {
+		double[] attValues = new double[AppContextConstant.AIR_CONDITION_NUM];
+		for (int i = 0; i < AppContextConstant.AIR_CONDITION_NUM; i++) {
+			attValues[i] = features[offset + i];
+		}
+		return attValues;
+	}
+
+	private float classify(double[] attValues) {
+		// 直接以属性值数组构造实例
+		Instance instance = new Instance(1.0, attValues);
 		float result = 0.0f;
 		try {
-			result = (float) multilayerPerceptron.classifyInstance(instance);
+			// Weka的多层感知机在推理时会写入网络节点的中间值，必须串行调用
+			synchronized (multilayerPerceptron) {
+				result = (float) multilayerPerceptron.classifyInstance(instance);
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException("multilayerPerceptron.classifyInstance exception!");
@@ -94,6 +171,52 @@ public class BpWekaModel implements TrainModel {
 		return new BpWekaModel();
 	}
 
+	/**
+	 * 写出训练好的多层感知机
+	 *
+	 * Weka不对外暴露网络权重，这里写出多层感知机自身的序列化数据，前面加4字节长度。
+	 *
+	 * @param out 输出流
+	 * @throws IOException 写出失败
+	 */
+	public void writeModel(DataOutput out) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+			synchronized (multilayerPerceptron) {
+				objectOutputStream.writeObject(multilayerPerceptron);
+			}
+		}
+		byte[] bytes = byteArrayOutputStream.toByteArray();
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * 读回{@link #writeModel}写出的模型
+	 *
+	 * @param in 输入流
+	 * @return Weka的BP神经网络模型
+	 * @throws IOException 读取失败或数据无效
+	 */
+	public static BpWekaModel readModel(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length <= 0) {
+			throw new IOException("模型数据长度无效: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		BpWekaModel model = new BpWekaModel();
+		try (ObjectInputStream objectInputStream = new ObjectInputStream(
+				new ByteArrayInputStream(bytes))) {
+			model.multilayerPerceptron = (MultilayerPerceptron) objectInputStream.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("模型数据不是多层感知机", e);
+		}
+		model.evaluator = WekaMlpEvaluator.extract(model.multilayerPerceptron,
+				AppContextConstant.AIR_CONDITION_NUM);
+		return model;
+	}
+
 	public static void main(String[] args) {
 		DataCollecter dataCollecter = DataCollecter
 				.getInstance(AppContextConstant.TRAIN_DATA_FILE_NAME);
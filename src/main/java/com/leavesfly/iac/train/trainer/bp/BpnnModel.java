@@ -1,9 +1,12 @@
 package com.leavesfly.iac.train.trainer.bp;
 
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.leavesfly.iac.config.AppContextConstant;
 import com.leavesfly.iac.config.BpAlgorithmConstant;
@@ -24,14 +27,25 @@ import com.leavesfly.iac.util.MathUtil;
  * <ul>
  *   <li>输入层：接收空调功率数据作为特征</li>
  *   <li>隐藏层：使用Sigmoid激活函数，节点数通过经验公式自动计算</li>
- *   <li>输出层：单节点输出，预测目标温度值</li>
+ *   <li>输出层：通常为单节点，预测目标温度值；多输出时每个节点对应一个传感器，
+ *       由{@link #trainMultiOutput}训练，共享同一个隐藏层</li>
  * </ul>
  * 
+ * <p>各层之间的权重以行优先的float数组保存，偏置以float向量保存；前向传播、反向传播和
+ * 权重调整都在预先分配的缓冲区上进行，训练过程中不分配内存。</p>
+ *
+ * <h3>线程安全：</h3>
+ * <p>推理（{@link #useMode}、{@link #predict}、{@link #predictBatch}、{@link #evaluateModel}）
+ * 只读取已发布的不可变参数快照，中间结果写入每个线程独立的缓冲区，因此同一实例可被任意多个
+ * 线程同时使用，无需克隆模型。构造完成和每次{@link #train}结束时发布新的参数快照，
+ * 训练期间的推理使用上一次发布的参数。训练本身不能在同一实例上并发执行。</p>
+ * 
  * <h3>训练策略：</h3>
  * <ul>
- *   <li>批量训练：采用轮次(epoch)训练方式，每轮打乱数据顺序</li>
+ *   <li>批量训练：采用轮次(epoch)训练方式，每轮打乱数据顺序，按小批量累积梯度后更新参数</li>
+ *   <li>优化器：支持SGD、动量法、Nesterov和Adam，由{@link BpTrainConfig}配置</li>
  *   <li>自适应学习率：根据训练进度动态调整学习率</li>
- *   <li>早停机制：监控误差变化，防止过拟合</li>
+ *   <li>早停机制：配置了验证集比例且样本足够时留出验证集，以验证误差驱动早停并恢复最优参数，防止过拟合</li>
  *   <li>数值稳定性：添加溢出保护，确保训练稳定</li>
  * </ul>
  * 
@@ -56,48 +70,87 @@ public class BpnnModel implements TrainModel {
 	// ================== 网络结构参数 ==================
 	/** 输入层神经元数量（等于空调数量） */
 	private final int inputLevelCellNum;
-	
+
 	/** 隐藏层神经元数量（通过经验公式计算得出） */
 	private final int hiddenLevelCellNum;
-	
+
 	/** 输出层神经元数量（固定为1，输出预测温度） */
 	private final int outputLevelCellNum;
 
 	// ================== 训练超参数 ==================
 	/** 学习率，控制权重更新的步长 */
 	private final float learnRate;
-	
+
 	/** 最大迭代次数，防止训练时间过长 */
 	private final int MaxIterateNum;
 
+	/** 训练配置：小批量大小、优化器和验证集比例 */
+	private final BpTrainConfig trainConfig;
+
 	// ================== 数据归一化参数 ==================
 	/** 输出数据的最大值（用于反归一化） */
 	private final float MaxRange;
-	
+
 	/** 输出数据的最小值（用于反归一化） */
 	private final float MinRange;
 
-	// ================== 网络结构实例 ==================
-	/** 输入层神经元数组 */
-	private Cell[] inputLevel;
-	
-	/** 隐藏层神经元数组 */
-	private Cell[] hiddenLevel;
-	
-	/** 输出层神经元数组 */
-	private Cell[] outputLevel;
-
-	// ================== 训练过程变量 ==================
-	/** 当前训练样本的特征值数组 */
-	private Float[] currentFeature;
-	
-	/** 当前训练样本的目标值（已归一化） */
-	private float currentResult;
-	private int currentIterateNum;
+	// ================== 网络参数 ==================
+	/** 输入层到隐藏层的权重矩阵，行优先，下标为 hidden * inputLevelCellNum + input */
+	private final float[] hiddenWeights;
+
+	/** 隐藏层偏置向量 */
+	private final float[] hiddenBiases;
+
+	/** 隐藏层到输出层的权重矩阵，行优先，下标为 output * hiddenLevelCellNum + hidden */
+	private final float[] outputWeights;
+
+	/** 输出层偏置向量 */
+	private final float[] outputBiases;
+
+	// ================== 训练缓冲区 ==================
+	/** 归一化后的输入值，仅训练时使用 */
+	private final float[] inputValues;
+
+	/** 隐藏层输出值，仅训练时使用 */
+	private final float[] hiddenOutputs;
+
+	/** 输出层输出值，仅训练时使用 */
+	private final float[] outputOutputs;
+
+	/** 隐藏层误差梯度 */
+	private final float[] hiddenErrors;
+
+	/** 输出层误差梯度 */
+	private final float[] outputErrors;
+
+	// ================== 优化器状态 ==================
+	/** 各参数数组的梯度累积和优化器状态，顺序与参数数组一一对应 */
+	private final ParamState[] paramStates;
+
+	// ================== 推理状态 ==================
+	/** 每个线程独立的推理缓冲区 */
+	private final ThreadLocal<InferenceBuffer> inferenceBuffer = ThreadLocal
+			.withInitial(this::newInferenceBuffer);
+
+	/** 训练使用的可变参数，与上面的参数数组是同一组数组 */
+	private final NetworkParameters trainingParameters;
+
+	/** 推理使用的已发布参数快照，发布后不再修改 */
+	private volatile NetworkParameters publishedParameters;
+
+	// ================== 训练结果 ==================
+	/** 最近一次训练实际运行的轮数 */
+	private int trainedEpochNum;
+
+	/** 最近一次训练保留的参数所在的轮次（从1开始），不使用验证集时等于实际运行的轮数 */
+	private int bestEpoch;
+
+	/** 最近一次训练保留的参数在验证集上的均方误差，不使用验证集时为NaN */
+	private double bestValidationError = Double.NaN;
 
 	/**
 	 * 获取BP神经网络模型的单例实例（使用默认配置）
-	 * 
+	 *
 	 * <p>该方法创建一个使用默认配置参数的BP神经网络实例：</p>
 	 * <ul>
 	 *   <li>输入层节点数：由空调数量决定</li>
@@ -106,7 +159,7 @@ public class BpnnModel implements TrainModel {
 	 *   <li>学习率：0.6</li>
 	 *   <li>最大迭代次数：1000次</li>
 	 * </ul>
-	 * 
+	 *
 	 * @return BP神经网络模型实例
 	 */
 	public static TrainModel getIntance() {
@@ -126,7 +179,7 @@ public class BpnnModel implements TrainModel {
 
 	/**
 	 * 指定输入和输出层节点数的构造函数
-	 * 
+	 *
 	 * @param inputLevelCellNum 输入层节点数
 	 * @param outputLevelCellNum 输出层节点数
 	 */
@@ -140,23 +193,38 @@ public class BpnnModel implements TrainModel {
 
 	/**
 	 * 指定输入和输出层节点数以及学习参数的构造函数
-	 * 
+	 *
 	 * @param inputLevelCellNum 输入层节点数
 	 * @param outputLevelCellNum 输出层节点数
 	 * @param learnRate 学习率
 	 * @param iterateNum 最大迭代次数
 	 */
 	public BpnnModel(int inputLevelCellNum, int outputLevelCellNum, float learnRate, int iterateNum) {
+		this(inputLevelCellNum, outputLevelCellNum, learnRate, iterateNum, BpTrainConfig.DEFAULT);
+	}
+
+	/**
+	 * 指定输入和输出层节点数、学习参数以及训练配置的构造函数
+	 *
+	 * @param inputLevelCellNum 输入层节点数
+	 * @param outputLevelCellNum 输出层节点数
+	 * @param learnRate 学习率
+	 * @param iterateNum 最大迭代次数
+	 * @param trainConfig 训练配置
+	 */
+	public BpnnModel(int inputLevelCellNum, int outputLevelCellNum, float learnRate, int iterateNum,
+			BpTrainConfig trainConfig) {
 		this(inputLevelCellNum,
 			 BpAlgorithmConstant.determineHiddenLevel(inputLevelCellNum, outputLevelCellNum),
 			 outputLevelCellNum,
 			 learnRate,
-			 iterateNum);
+			 iterateNum,
+			 trainConfig);
 	}
 
 	/**
 	 * 指定所有网络结构参数的构造函数
-	 * 
+	 *
 	 * @param inputLevelCellNum 输入层节点数
 	 * @param hiddenLevelCellNum 隐藏层节点数
 	 * @param outputLevelCellNum 输出层节点数
@@ -167,8 +235,8 @@ public class BpnnModel implements TrainModel {
 	}
 
 	/**
-	 * 最全面的构造函数，所有其他构造函数最终都会调用这个
-	 * 
+	 * 指定所有网络结构参数和学习参数的构造函数，使用默认训练配置
+	 *
 	 * @param inputLevelCellNum 输入层节点数
 	 * @param hiddenLevelCellNum 隐藏层节点数
 	 * @param outputLevelCellNum 输出层节点数
@@ -177,6 +245,22 @@ public class BpnnModel implements TrainModel {
 	 */
 	public BpnnModel(int inputLevelCellNum, int hiddenLevelCellNum, int outputLevelCellNum,
 			float learnRate, int iterateNum) {
+		this(inputLevelCellNum, hiddenLevelCellNum, outputLevelCellNum, learnRate, iterateNum,
+			 BpTrainConfig.DEFAULT);
+	}
+
+	/**
+	 * 最全面的构造函数，所有其他构造函数最终都会调用这个
+	 *
+	 * @param inputLevelCellNum 输入层节点数
+	 * @param hiddenLevelCellNum 隐藏层节点数
+	 * @param outputLevelCellNum 输出层节点数
+	 * @param learnRate 学习率，使用Adam时宜取0.01左右的较小值
+	 * @param iterateNum 最大迭代次数
+	 * @param trainConfig 训练配置
+	 */
+	public BpnnModel(int inputLevelCellNum, int hiddenLevelCellNum, int outputLevelCellNum,
+			float learnRate, int iterateNum, BpTrainConfig trainConfig) {
 		// 参数验证
 		if (inputLevelCellNum <= 0 || hiddenLevelCellNum <= 0 || outputLevelCellNum <= 0) {
 			throw new IllegalArgumentException("网络层节点数必须大于0");
@@ -187,314 +271,629 @@ public class BpnnModel implements TrainModel {
 		if (iterateNum <= 0) {
 			throw new IllegalArgumentException("迭代次数必须大于0");
 		}
-		
+		if (trainConfig == null) {
+			throw new IllegalArgumentException("训练配置不能为空");
+		}
+
 		this.outputLevelCellNum = outputLevelCellNum;
 		this.hiddenLevelCellNum = hiddenLevelCellNum;
 		this.inputLevelCellNum = inputLevelCellNum;
 		this.learnRate = learnRate;
 		this.MaxIterateNum = iterateNum;
+		this.trainConfig = trainConfig;
 		this.MaxRange = BpAlgorithmConstant.MAX_RESULT_NORMAL;
 		this.MinRange = BpAlgorithmConstant.MIN_RESULT_NORMAL;
 
-		initCellSet();
-		initWeightNet();
+		this.hiddenWeights = new float[hiddenLevelCellNum * inputLevelCellNum];
+		this.hiddenBiases = new float[hiddenLevelCellNum];
+		this.outputWeights = new float[outputLevelCellNum * hiddenLevelCellNum];
+		this.outputBiases = new float[outputLevelCellNum];
+
+		this.inputValues = new float[inputLevelCellNum];
+		this.hiddenOutputs = new float[hiddenLevelCellNum];
+		this.outputOutputs = new float[outputLevelCellNum];
+		this.hiddenErrors = new float[hiddenLevelCellNum];
+		this.outputErrors = new float[outputLevelCellNum];
+
+		this.paramStates = new ParamState[] { new ParamState(hiddenWeights),
+				new ParamState(hiddenBiases), new ParamState(outputWeights),
+				new ParamState(outputBiases) };
+
+		Random initRandom = trainConfig.getSeed() != null ? new Random(trainConfig.getSeed()) : null;
+		initBiases(initRandom);
+		initWeights(initRandom);
+		this.trainingParameters = new NetworkParameters(hiddenWeights, hiddenBiases, outputWeights,
+				outputBiases);
+		this.publishedParameters = trainingParameters.copy();
 	}
 
 	/**
-	 * 初始化神经网络的各层神经元
-	 * 
-	 * <p>该方法负责创建和初始化三层神经网络的所有神经元：</p>
-	 * <ul>
-	 *   <li>输入层：创建输入神经元，偏置设为0（不参与计算）</li>
-	 *   <li>隐藏层：创建隐藏神经元，随机初始化偏置值</li>
-	 *   <li>输出层：创建输出神经元，随机初始化偏置值</li>
-	 * </ul>
-	 * 
+	 * 初始化隐藏层和输出层的偏置
+	 *
 	 * <p>偏置值的随机初始化范围为[-0.5, 0.5]，有助于打破对称性，
-	 * 避免所有神经元学习到相同的特征。</p>
+	 * 避免所有神经元学习到相同的特征。输入层不做计算，没有偏置。</p>
+	 *
+	 * @param random 训练配置指定了随机种子时由种子生成的随机数，否则为null
 	 */
-	private void initCellSet() {
-		// 初始化输入层神经元
-		inputLevel = new Cell[inputLevelCellNum];
-		for (int i = 0; i < inputLevelCellNum; i++) {
-			inputLevel[i] = Cell.genInputCell();
-		}
-
-		// 初始化隐藏层神经元，随机设置偏置值
-		hiddenLevel = new Cell[hiddenLevelCellNum];
-		for (int i = 0; i < hiddenLevelCellNum; i++) {
-			hiddenLevel[i] = Cell.genHiddenCell(MathUtil.nextFloat(
-					BpAlgorithmConstant.EXCURSION_RANDOM_FROM,
-					BpAlgorithmConstant.EXCURSION_RANDOM_TO));
+	private void initBiases(Random random) {
+		for (int j = 0; j < hiddenLevelCellNum; j++) {
+			hiddenBiases[j] = nextFloat(random, BpAlgorithmConstant.EXCURSION_RANDOM_FROM,
+					BpAlgorithmConstant.EXCURSION_RANDOM_TO);
 		}
-
-		// 初始化输出层神经元，随机设置偏置值
-		outputLevel = new Cell[outputLevelCellNum];
-		for (int i = 0; i < outputLevelCellNum; i++) {
-			outputLevel[i] = Cell.genOutputCell(MathUtil.nextFloat(
-					BpAlgorithmConstant.EXCURSION_RANDOM_FROM,
-					BpAlgorithmConstant.EXCURSION_RANDOM_TO));
+		for (int k = 0; k < outputLevelCellNum; k++) {
+			outputBiases[k] = nextFloat(random, BpAlgorithmConstant.EXCURSION_RANDOM_FROM,
+					BpAlgorithmConstant.EXCURSION_RANDOM_TO);
 		}
 	}
 
 	/**
-	 * 初始化神经网络的权重连接
-	 * 
-	 * <p>该方法建立神经网络各层之间的全连接结构，并随机初始化权重：</p>
-	 * <ul>
-	 *   <li>输入层到隐藏层：建立全连接，每个输入神经元连接到所有隐藏神经元</li>
-	 *   <li>隐藏层到输出层：建立全连接，每个隐藏神经元连接到所有输出神经元</li>
-	 * </ul>
-	 * 
+	 * 初始化各层之间的全连接权重
+	 *
 	 * <p>权重的随机初始化范围为[-1.0, 1.0]，这个范围能够：</p>
 	 * <ul>
 	 *   <li>避免梯度消失问题（权重不会太小）</li>
 	 *   <li>避免梯度爆炸问题（权重不会太大）</li>
 	 *   <li>保证训练初期的梯度传播效果</li>
 	 * </ul>
-	 * 
-	 * <p>每个突触(Synapse)对象同时被添加到前一层神经元的输出列表和
-	 * 后一层神经元的输入列表中，形成双向引用关系。</p>
+	 *
+	 * @param random 训练配置指定了随机种子时由种子生成的随机数，否则为null
 	 */
-	private void initWeightNet() {
-		// 建立输入层到隐藏层的全连接
+	private void initWeights(Random random) {
 		for (int i = 0; i < inputLevelCellNum; i++) {
 			for (int j = 0; j < hiddenLevelCellNum; j++) {
-				// 创建突触连接，随机初始化权重
-				Synapse synapse = new Synapse(inputLevel[i], hiddenLevel[j], MathUtil.nextFloat(
-						BpAlgorithmConstant.WEIGHT_RANDOM_FROM,
-						BpAlgorithmConstant.WEIGHT_RANDOM_TO));
-				// 将突触添加到相应神经元的连接列表中
-				inputLevel[i].getOutputSynapseList().add(synapse);
-				hiddenLevel[j].getInputSynapseList().add(synapse);
+				hiddenWeights[j * inputLevelCellNum + i] = nextFloat(random,
+						BpAlgorithmConstant.WEIGHT_RANDOM_FROM, BpAlgorithmConstant.WEIGHT_RANDOM_TO);
 			}
 		}
-
-		// 建立隐藏层到输出层的全连接
-		for (int i = 0; i < hiddenLevelCellNum; i++) {
-			for (int j = 0; j < outputLevelCellNum; j++) {
-				// 创建突触连接，随机初始化权重
-				Synapse synapse = new Synapse(hiddenLevel[i], outputLevel[j], MathUtil.nextFloat(
-						BpAlgorithmConstant.WEIGHT_RANDOM_FROM,
-						BpAlgorithmConstant.WEIGHT_RANDOM_TO));
-				// 将突触添加到相应神经元的连接列表中
-				hiddenLevel[i].getOutputSynapseList().add(synapse);
-				outputLevel[j].getInputSynapseList().add(synapse);
+		for (int j = 0; j < hiddenLevelCellNum; j++) {
+			for (int k = 0; k < outputLevelCellNum; k++) {
+				outputWeights[k * hiddenLevelCellNum + j] = nextFloat(random,
+						BpAlgorithmConstant.WEIGHT_RANDOM_FROM, BpAlgorithmConstant.WEIGHT_RANDOM_TO);
 			}
 		}
 	}
 
+	private static float nextFloat(Random random, float from, float to) {
+		if (random == null) {
+			return MathUtil.nextFloat(from, to);
+		}
+		return from + (to - from) * random.nextFloat();
+	}
+
 	/**
 	 * 训练模型 - 改进版本使用批量训练策略
-	 * 
+	 *
+	 * <p>训练前把所有样本一次性归一化到连续的数组中，训练过程中不再分配内存。
+	 * 所有输出节点使用同一个目标值。</p>
+	 *
 	 * @param trainDataSet 训练数据集
 	 */
 	@Override
 	public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
-		List<TrainDataItem<Float, Float>> dataList = new ArrayList<>(trainDataSet);
-		trainWithBatchStrategy(dataList);
+		int sampleNum = trainDataSet.size();
+		if (sampleNum == 0) {
+			return;
+		}
+		float[] features = new float[sampleNum * inputLevelCellNum];
+		float[] targets = new float[sampleNum];
+		int row = 0;
+		for (T item : trainDataSet) {
+			if (item instanceof IntellacTrainDataItem) {
+				float[] values = ((IntellacTrainDataItem) item).getFeatureValues();
+				checkFeatureNum(values.length);
+				normalizeInput(values, 0, features, row * inputLevelCellNum);
+			} else {
+				Float[] feature = item.getFeature();
+				checkFeatureNum(feature.length);
+				for (int i = 0; i < inputLevelCellNum; i++) {
+					features[row * inputLevelCellNum + i] = normalizeInput(feature[i]);
+				}
+			}
+			targets[row] = normalizeResult(item.getResult());
+			row++;
+		}
+		trainWithBatchStrategy(features, targets, 1, sampleNum);
+		publishedParameters = trainingParameters.copy();
 	}
 
 	/**
-	 * 使用批量训练策略训练模型
-	 * 
-	 * @param trainDataList 训练数据列表
+	 * 训练多输出网络，每个输出节点有各自的目标值
+	 *
+	 * <p>所有输出共享隐藏层，一次前向传播即可得到全部输出。目标值为NaN表示该样本缺少
+	 * 对应输出的观测值，不参与该输出的误差计算和反向传播。</p>
+	 *
+	 * @param rowsMajor 行优先存放的原始特征值，每行inputLevelCellNum个
+	 * @param targets 行优先存放的原始目标值，每行outputLevelCellNum个，缺失值为NaN
+	 * @param rows 样本数
 	 */
-	private void trainWithBatchStrategy(List<TrainDataItem<Float, Float>> trainDataList) {
-		if (trainDataList.isEmpty()) {
+	public void trainMultiOutput(float[] rowsMajor, float[] targets, int rows) {
+		if (rowsMajor == null || targets == null || rows < 0
+				|| rowsMajor.length != rows * inputLevelCellNum
+				|| targets.length != rows * outputLevelCellNum) {
+			throw new IllegalArgumentException("特征或目标值数组长度与样本数不匹配");
+		}
+		if (rows == 0) {
 			return;
 		}
+		float[] features = new float[rowsMajor.length];
+		for (int r = 0; r < rows; r++) {
+			normalizeInput(rowsMajor, r * inputLevelCellNum, features, r * inputLevelCellNum);
+		}
+		float[] normalizedTargets = new float[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			normalizedTargets[i] = normalizeResult(targets[i]);
+		}
+		trainWithBatchStrategy(features, normalizedTargets, outputLevelCellNum, rows);
+		publishedParameters = trainingParameters.copy();
+	}
+
+	/**
+	 * 使用批量训练策略训练模型
+	 *
+	 * <p>先打乱一次样本下标，样本数足够时把末尾一段留作验证集；之后每轮只打乱训练部分的下标，
+	 * 样本数据本身不移动。每个小批量累积梯度后取平均，再由优化器更新参数。
+	 * 使用验证集时以验证误差判断是否改进，训练结束后恢复验证误差最小时的参数；
+	 * 否则沿用训练误差判断。</p>
+	 *
+	 * @param features 已归一化的特征值，行优先存放
+	 * @param targets 已归一化的目标值，行优先存放，缺失值为NaN
+	 * @param targetCols 每个样本的目标值个数，为1时所有输出节点共用，否则等于输出层节点数
+	 * @param sampleNum 样本数
+	 */
+	private void trainWithBatchStrategy(float[] features, float[] targets, int targetCols,
+			int sampleNum) {
+		int[] order = new int[sampleNum];
+		for (int i = 0; i < sampleNum; i++) {
+			order[i] = i;
+		}
+		Random random = trainConfig.getSeed() != null ? new Random(trainConfig.getSeed())
+				: ThreadLocalRandom.current();
+		shuffle(order, sampleNum, random);
+
+		int validationNum = (int) (sampleNum * trainConfig.getValidationRatio());
+		if (validationNum < BpAlgorithmConstant.MIN_VALIDATION_SAMPLE_NUM
+				|| validationNum >= sampleNum) {
+			validationNum = 0;
+		}
+		int trainNum = sampleNum - validationNum;
+		boolean useValidation = validationNum > 0;
+		int batchSize = Math.min(trainConfig.getBatchSize(), trainNum);
 
-		double currentLearningRate = learnRate;
+		for (ParamState state : paramStates) {
+			state.reset();
+		}
+		int updateStep = 0;
+
+		float currentLearningRate = learnRate;
 		double previousError = Double.MAX_VALUE;
+		double bestError = Double.MAX_VALUE;
+		int bestErrorEpoch = 0;
 		int noImprovementCount = 0;
-		final int EARLY_STOP_PATIENCE = 10; // 早停容忍度
-		
+		float outputScale = MaxRange - MinRange;
+
+		int epochNum = 0;
 		for (int epoch = 0; epoch < MaxIterateNum; epoch++) {
+			epochNum = epoch + 1;
 			// 打乱训练数据
-			Collections.shuffle(trainDataList);
-			
+			shuffle(order, trainNum, random);
+
 			double totalError = 0.0;
-			int sampleCount = 0;
-			
-			// 对每个样本进行一次前向传播和反向传播
-			for (TrainDataItem<Float, Float> item : trainDataList) {
-				double sampleError = trainSingleEpoch(item, currentLearningRate);
-				totalError += sampleError;
-				sampleCount++;
+			int errorNum = 0;
+			int batchCount = 0;
+
+			// 对每个样本进行一次前向传播和反向传播，按小批量更新参数
+			for (int s = 0; s < trainNum; s++) {
+				int sample = order[s];
+				System.arraycopy(features, sample * inputLevelCellNum, inputValues, 0,
+						inputLevelCellNum);
+				feedForward(trainingParameters, inputValues, hiddenOutputs, outputOutputs);
+
+				// 计算实际误差
+				for (int k = 0; k < outputLevelCellNum; k++) {
+					float target = targets[sample * targetCols + (targetCols == 1 ? 0 : k)];
+					if (!Float.isNaN(target)) {
+						double diff = (outputOutputs[k] - target) * outputScale;
+						totalError += diff * diff;
+						errorNum++;
+					}
+				}
+
+				backPropagation(targets, sample * targetCols, targetCols);
+				accumulateGradients();
+				if (++batchCount == batchSize || s == trainNum - 1) {
+					adjust(currentLearningRate, batchCount, ++updateStep);
+					batchCount = 0;
+				}
 			}
-			
-			double avgError = totalError / sampleCount;
-			
+
+			double avgError = errorNum > 0 ? totalError / errorNum : 0.0;
+
 			// 早停检查
 			if (avgError < BpAlgorithmConstant.MIN_ERROR) {
 				System.out.println("训练收敛，第 " + (epoch + 1) + " 轮，平均误差: " + avgError);
 				break;
 			}
-			
-			// 学习率衰减和早停
-			if (avgError >= previousError) {
-				noImprovementCount++;
-				if (noImprovementCount > EARLY_STOP_PATIENCE) {
-					System.out.println("训练早停，第 " + (epoch + 1) + " 轮，平均误差: " + avgError);
-					break;
+
+			// 学习率衰减：训练误差没有下降时衰减
+			boolean trainImproved = avgError < previousError;
+			if (!trainImproved) {
+				currentLearningRate *= 0.95f;
+			}
+
+			// 早停：有验证集时看验证误差是否刷新最优，否则看训练误差是否下降
+			boolean improved = trainImproved;
+			if (useValidation) {
+				double validationError = calMeanSquaredError(features, targets, targetCols, order,
+						trainNum, sampleNum);
+				improved = validationError < bestError;
+				if (improved) {
+					bestError = validationError;
+					bestErrorEpoch = epoch + 1;
+					for (ParamState state : paramStates) {
+						state.saveBest();
+					}
 				}
-				// 学习率衰减
-				currentLearningRate *= 0.95;
-			} else {
+			}
+			if (improved) {
 				noImprovementCount = 0;
+			} else if (++noImprovementCount > trainConfig.getEarlyStopPatience()) {
+				System.out.println("训练早停，第 " + (epoch + 1) + " 轮，平均误差: " + avgError);
+				break;
 			}
-			
+
 			previousError = avgError;
-			
+
 			// 每100轮输出一次进度
 			if ((epoch + 1) % 100 == 0) {
-				System.out.println("第 " + (epoch + 1) + " 轮训练，平均误差: " + avgError + 
+				System.out.println("第 " + (epoch + 1) + " 轮训练，平均误差: " + avgError +
 					", 学习率: " + currentLearningRate);
 			}
 		}
+
+		trainedEpochNum = epochNum;
+		bestEpoch = epochNum;
+		bestValidationError = Double.NaN;
+		if (useValidation && bestError < Double.MAX_VALUE) {
+			for (ParamState state : paramStates) {
+				state.restoreBest();
+			}
+			bestEpoch = bestErrorEpoch;
+			bestValidationError = bestError;
+		}
 	}
 
 	/**
-	 * 单次训练迭代（方法名改名以反映新的训练策略）
-	 * 
-	 * @param trainDataItem 训练数据项
-	 * @param learningRate 当前学习率
-	 * @return 当前样本的误差
+	 * 打乱下标数组的前length个元素（Fisher-Yates洗牌）
 	 */
-	private double trainSingleEpoch(TrainDataItem<Float, Float> trainDataItem, double learningRate) {
-		initSingleDataTrain(trainDataItem);
-		
-		// 前向传播
-		feedForward();
-		
-		// 计算实际误差
-		float predictedValue = outputLevel[0].getOutput() * (MaxRange - MinRange) + MinRange;
-		float actualValue = trainDataItem.getResult();
-		double sampleError = Math.pow(predictedValue - actualValue, 2);
-		
-		// 反向传播
-		backPropagation();
-		
-		// 权重调整（使用传入的学习率）
-		adjust(learningRate);
-		
-		return sampleError;
-	}
-
-	private void initSingleDataTrain(TrainDataItem<Float, Float> trainDataItem) {
-		this.currentFeature = trainDataItem.getFeature();
-		// 改进归一化策略，保持一致性
-		this.currentResult = (trainDataItem.getResult() - MinRange) / (MaxRange - MinRange);
-
-		if (currentFeature.length != inputLevel.length) {
-			throw new IllegalArgumentException("输入特征维度与输入层节点数不匹配");
+	private static void shuffle(int[] order, int length, Random random) {
+		for (int i = length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
 		}
+	}
 
-		// 改进输入归一化，使用最大最小值归一化
-		for (int i = 0; i < inputLevel.length; i++) {
-			float normalizedInput = (currentFeature[i] - AppContextConstant.AIR_CONDITION_MIN_POWER) / 
-				(AppContextConstant.AIR_CONDITION_MAX_POWER - AppContextConstant.AIR_CONDITION_MIN_POWER);
-			inputLevel[i].setOutput(normalizedInput);
+	/**
+	 * 计算下标区间[from, to)内样本的均方误差（反归一化后的温度误差），缺失的目标值不计入
+	 */
+	private double calMeanSquaredError(float[] features, float[] targets, int targetCols,
+			int[] order, int from, int to) {
+		float outputScale = MaxRange - MinRange;
+		double totalError = 0.0;
+		int errorNum = 0;
+		for (int s = from; s < to; s++) {
+			int sample = order[s];
+			System.arraycopy(features, sample * inputLevelCellNum, inputValues, 0, inputLevelCellNum);
+			feedForward(trainingParameters, inputValues, hiddenOutputs, outputOutputs);
+			for (int k = 0; k < outputLevelCellNum; k++) {
+				float target = targets[sample * targetCols + (targetCols == 1 ? 0 : k)];
+				if (!Float.isNaN(target)) {
+					double diff = (outputOutputs[k] - target) * outputScale;
+					totalError += diff * diff;
+					errorNum++;
+				}
+			}
 		}
+		return errorNum > 0 ? totalError / errorNum : 0.0;
 	}
 
 	/**
 	 * 执行前向传播计算
-	 * 
-	 * <p>前向传播是神经网络的信息流向过程，信号从输入层依次传递到输出层：</p>
-	 * <ol>
-	 *   <li>输入层：直接接收外部输入，不进行计算</li>
-	 *   <li>隐藏层：计算加权输入和，应用Sigmoid激活函数</li>
-	 *   <li>输出层：计算加权输入和，应用Sigmoid激活函数</li>
-	 * </ol>
-	 * 
-	 * <p>计算公式：output = sigmoid(Σ(weight_i × input_i) + bias)</p>
-	 * <p>其中sigmoid(x) = 1 / (1 + e^(-x))</p>
-	 * 
-	 * <p>注意：输入层的输出值在训练开始前已经设置，这里不需要重新计算。</p>
+	 *
+	 * <p>信号从输入层依次传递到输出层，隐藏层和输出层均使用Sigmoid激活函数：</p>
+	 * <p>output = sigmoid(Σ(weight_i × input_i) + bias)，其中sigmoid(x) = 1 / (1 + e^(-x))</p>
+	 *
+	 * <p>只读取网络参数，中间结果和输出写入调用方提供的缓冲区。</p>
+	 *
+	 * @param parameters 网络参数
+	 * @param inputValues 已归一化的输入值
+	 * @param hiddenOutputs 隐藏层输出缓冲区
+	 * @param outputOutputs 输出层输出缓冲区
 	 */
-	private void feedForward() {
-		// 计算隐藏层各神经元的输出值
-		for (int i = 0; i < hiddenLevel.length; i++) {
-			hiddenLevel[i].setOutput(hiddenLevel[i].calOutput());
+	private void feedForward(NetworkParameters parameters, float[] inputValues,
+			float[] hiddenOutputs, float[] outputOutputs) {
+		float[] hiddenWeights = parameters.hiddenWeights;
+		float[] hiddenBiases = parameters.hiddenBiases;
+		float[] outputWeights = parameters.outputWeights;
+		float[] outputBiases = parameters.outputBiases;
+		for (int j = 0; j < hiddenLevelCellNum; j++) {
+			float weightedSum = hiddenBiases[j];
+			int base = j * inputLevelCellNum;
+			for (int i = 0; i < inputLevelCellNum; i++) {
+				weightedSum += hiddenWeights[base + i] * inputValues[i];
+			}
+			hiddenOutputs[j] = sigmoid(weightedSum);
 		}
-		
-		// 计算输出层各神经元的输出值
-		for (int i = 0; i < outputLevel.length; i++) {
-			outputLevel[i].setOutput(outputLevel[i].calOutput());
+		for (int k = 0; k < outputLevelCellNum; k++) {
+			float weightedSum = outputBiases[k];
+			int base = k * hiddenLevelCellNum;
+			for (int j = 0; j < hiddenLevelCellNum; j++) {
+				weightedSum += outputWeights[base + j] * hiddenOutputs[j];
+			}
+			outputOutputs[k] = sigmoid(weightedSum);
 		}
 	}
 
+	/**
+	 * Sigmoid激活函数，为防止数值溢出限制输入范围
+	 */
+	private static float sigmoid(float weightedSum) {
+		if (weightedSum > 500) {
+			weightedSum = 500;
+		} else if (weightedSum < -500) {
+			weightedSum = -500;
+		}
+		return (float) (1.0 / (1.0 + Math.exp(-weightedSum)));
+	}
+
 	/**
 	 * 执行反向传播计算
-	 * 
-	 * <p>反向传播是BP算法的核心，用于计算各层神经元的误差梯度：</p>
-	 * <ol>
-	 *   <li>输出层误差：根据预测值与真实值的差异计算</li>
-	 *   <li>隐藏层误差：根据后续层的误差反向传播计算</li>
-	 * </ol>
-	 * 
-	 * <p>误差计算公式：</p>
+	 *
+	 * <p>误差计算公式（f'(x) = f(x) × (1 - f(x))为Sigmoid导数）：</p>
 	 * <ul>
 	 *   <li>输出层：δ = f'(net) × (target - output)</li>
 	 *   <li>隐藏层：δ = f'(net) × Σ(w_jk × δ_k)</li>
 	 * </ul>
-	 * 
-	 * <p>其中f'(net)是激活函数的导数，对于Sigmoid函数：</p>
-	 * <p>f'(x) = f(x) × (1 - f(x))</p>
-	 * 
-	 * <p>计算顺序必须从输出层开始，逐层向前，因为隐藏层的误差
-	 * 计算依赖于输出层的误差值。</p>
+	 *
+	 * <p>隐藏层误差依赖输出层误差和调整前的输出层权重，必须在权重调整之前计算。
+	 * 目标值为NaN的输出节点误差记为0。</p>
+	 *
+	 * @param targets 目标输出值数组（已归一化）
+	 * @param offset 本样本目标值的起始位置
+	 * @param targetCols 每个样本的目标值个数，为1时所有输出节点共用
 	 */
-	private void backPropagation() {
-		// 计算输出层各神经元的误差梯度
-		for (int i = 0; i < outputLevel.length; i++) {
-			outputLevel[i].setCurrentError(outputLevel[i].calOutputError(currentResult));
+	private void backPropagation(float[] targets, int offset, int targetCols) {
+		for (int k = 0; k < outputLevelCellNum; k++) {
+			float target = targets[offset + (targetCols == 1 ? 0 : k)];
+			float output = outputOutputs[k];
+			outputErrors[k] = Float.isNaN(target) ? 0f
+					: output * (1.0f - output) * (target - output);
 		}
-		
-		// 计算隐藏层各神经元的误差梯度（从输出层反向传播）
-		for (int i = 0; i < hiddenLevel.length; i++) {
-			hiddenLevel[i].setCurrentError(hiddenLevel[i].calError());
+		for (int j = 0; j < hiddenLevelCellNum; j++) {
+			float errorSum = 0f;
+			for (int k = 0; k < outputLevelCellNum; k++) {
+				errorSum += outputErrors[k] * outputWeights[k * hiddenLevelCellNum + j];
+			}
+			float output = hiddenOutputs[j];
+			hiddenErrors[j] = output * (1.0f - output) * errorSum;
 		}
 	}
 
 	/**
-	 * 改进的权重调整方法，支持动态学习率
-	 * 
+	 * 把当前样本的误差梯度累加到各参数的梯度缓冲区中
+	 *
+	 * <p>累加的是误差下降方向（δ × 上一层输出），更新时直接加到参数上。</p>
+	 */
+	private void accumulateGradients() {
+		float[] hiddenWeightGrads = paramStates[0].grads;
+		float[] hiddenBiasGrads = paramStates[1].grads;
+		float[] outputWeightGrads = paramStates[2].grads;
+		float[] outputBiasGrads = paramStates[3].grads;
+		for (int j = 0; j < hiddenLevelCellNum; j++) {
+			float error = hiddenErrors[j];
+			int base = j * inputLevelCellNum;
+			for (int i = 0; i < inputLevelCellNum; i++) {
+				hiddenWeightGrads[base + i] += inputValues[i] * error;
+			}
+			hiddenBiasGrads[j] += error;
+		}
+		for (int k = 0; k < outputLevelCellNum; k++) {
+			float error = outputErrors[k];
+			int base = k * hiddenLevelCellNum;
+			for (int j = 0; j < hiddenLevelCellNum; j++) {
+				outputWeightGrads[base + j] += hiddenOutputs[j] * error;
+			}
+			outputBiasGrads[k] += error;
+		}
+	}
+
+	/**
+	 * 按小批量的平均梯度调整权重和偏置，支持动态学习率
+	 *
+	 * <p>批量大小为1且使用SGD时，与逐样本更新完全一致。</p>
+	 *
 	 * @param learningRate 当前学习率
+	 * @param batchCount 本批样本数
+	 * @param step 本次训练中的更新次数（从1开始），用于Adam偏差修正
 	 */
-	private void adjust(double learningRate) {
-		// 隐藏层权重调整
-		for (int i = 0; i < hiddenLevel.length; i++) {
-			List<Synapse> synapseList = hiddenLevel[i].getInputSynapseList();
-			for (Synapse synapse : synapseList) {
-				double weightDelta = synapse.getBackCell().getOutput() * 
-					hiddenLevel[i].getCurrentError() * learningRate;
-				synapse.setWeight((float)(synapse.getWeight() + weightDelta));
+	private void adjust(float learningRate, int batchCount, int step) {
+		float gradScale = 1.0f / batchCount;
+		BpTrainConfig.Optimizer optimizer = trainConfig.getOptimizer();
+		float momentum = trainConfig.getMomentum();
+		float beta1 = trainConfig.getAdamBeta1();
+		float beta2 = trainConfig.getAdamBeta2();
+		float epsilon = trainConfig.getAdamEpsilon();
+		float correction1 = 1.0f;
+		float correction2 = 1.0f;
+		if (optimizer == BpTrainConfig.Optimizer.ADAM) {
+			correction1 = (float) (1.0 - Math.pow(beta1, step));
+			correction2 = (float) (1.0 - Math.pow(beta2, step));
+		}
+
+		for (ParamState state : paramStates) {
+			float[] params = state.params;
+			float[] grads = state.grads;
+			float[] firstMoments = state.firstMoments;
+			float[] secondMoments = state.secondMoments;
+			for (int p = 0; p < params.length; p++) {
+				float grad = grads[p] * gradScale;
+				grads[p] = 0f;
+				switch (optimizer) {
+				case MOMENTUM:
+					firstMoments[p] = momentum * firstMoments[p] + grad;
+					params[p] += learningRate * firstMoments[p];
+					break;
+				case NESTEROV:
+					firstMoments[p] = momentum * firstMoments[p] + grad;
+					params[p] += learningRate * (grad + momentum * firstMoments[p]);
+					break;
+				case ADAM:
+					firstMoments[p] = beta1 * firstMoments[p] + (1 - beta1) * grad;
+					secondMoments[p] = beta2 * secondMoments[p] + (1 - beta2) * grad * grad;
+					params[p] += learningRate * (firstMoments[p] / correction1)
+							/ ((float) Math.sqrt(secondMoments[p] / correction2) + epsilon);
+					break;
+				default:
+					params[p] += learningRate * grad;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 单个参数数组的训练状态：梯度累积、一阶/二阶矩（动量法只用一阶）和最优参数快照
+	 *
+	 * <p>状态数组按需分配：只有SGD时不分配矩数组，不使用验证集时不分配快照。</p>
+	 */
+	private final class ParamState {
+
+		private final float[] params;
+
+		private final float[] grads;
+
+		private float[] firstMoments;
+
+		private float[] secondMoments;
+
+		private float[] best;
+
+		ParamState(float[] params) {
+			this.params = params;
+			this.grads = new float[params.length];
+		}
+
+		/**
+		 * 开始一次训练前清零梯度和优化器状态
+		 */
+		void reset() {
+			Arrays.fill(grads, 0f);
+			BpTrainConfig.Optimizer optimizer = trainConfig.getOptimizer();
+			if (optimizer != BpTrainConfig.Optimizer.SGD) {
+				firstMoments = clearOrCreate(firstMoments);
+			}
+			if (optimizer == BpTrainConfig.Optimizer.ADAM) {
+				secondMoments = clearOrCreate(secondMoments);
+			}
+		}
+
+		void saveBest() {
+			if (best == null) {
+				best = new float[params.length];
 			}
-			// 隐藏层偏置调整
-			double biasDelta = hiddenLevel[i].getCurrentError() * learningRate;
-			hiddenLevel[i].setExcursion((float)(hiddenLevel[i].getExcursion() + biasDelta));
-		}
-
-		// 输出层权重调整
-		for (int i = 0; i < outputLevel.length; i++) {
-			List<Synapse> synapseList = outputLevel[i].getInputSynapseList();
-			for (Synapse synapse : synapseList) {
-				double weightDelta = synapse.getBackCell().getOutput() * 
-					outputLevel[i].getCurrentError() * learningRate;
-				synapse.setWeight((float)(synapse.getWeight() + weightDelta));
+			System.arraycopy(params, 0, best, 0, params.length);
+		}
+
+		void restoreBest() {
+			if (best != null) {
+				System.arraycopy(best, 0, params, 0, params.length);
+			}
+		}
+
+		private float[] clearOrCreate(float[] values) {
+			if (values == null) {
+				return new float[params.length];
 			}
-			// 输出层偏置调整
-			double biasDelta = outputLevel[i].getCurrentError() * learningRate;
-			outputLevel[i].setExcursion((float)(outputLevel[i].getExcursion() + biasDelta));
+			Arrays.fill(values, 0f);
+			return values;
+		}
+	}
+
+	/**
+	 * 以二进制格式写出网络结构、学习参数和已发布的网络参数
+	 *
+	 * <p>格式为：[输入层节点数][隐藏层节点数][输出层节点数][学习率][最大迭代次数]
+	 * [输出最小值][输出最大值][隐藏层权重][隐藏层偏置][输出层权重][输出层偏置]，
+	 * 参数数组按行优先顺序逐个写出float。训练配置和优化器状态不写出，
+	 * 读回的模型使用默认训练配置。</p>
+	 *
+	 * @param out 输出流
+	 * @throws IOException 写出失败
+	 */
+	public void writeModel(DataOutput out) throws IOException {
+		NetworkParameters parameters = publishedParameters;
+		out.writeInt(inputLevelCellNum);
+		out.writeInt(hiddenLevelCellNum);
+		out.writeInt(outputLevelCellNum);
+		out.writeFloat(learnRate);
+		out.writeInt(MaxIterateNum);
+		out.writeFloat(MinRange);
+		out.writeFloat(MaxRange);
+		writeFloats(out, parameters.hiddenWeights);
+		writeFloats(out, parameters.hiddenBiases);
+		writeFloats(out, parameters.outputWeights);
+		writeFloats(out, parameters.outputBiases);
+	}
+
+	/**
+	 * 读回{@link #writeModel}写出的网络
+	 *
+	 * @param in 输入流
+	 * @return BP神经网络模型
+	 * @throws IOException 读取失败、数据不完整或输出归一化范围与当前配置不一致
+	 */
+	public static BpnnModel readModel(DataInput in) throws IOException {
+		int inputNum = in.readInt();
+		int hiddenNum = in.readInt();
+		int outputNum = in.readInt();
+		float learnRate = in.readFloat();
+		int iterateNum = in.readInt();
+		float minRange = in.readFloat();
+		float maxRange = in.readFloat();
+		if (minRange != BpAlgorithmConstant.MIN_RESULT_NORMAL
+				|| maxRange != BpAlgorithmConstant.MAX_RESULT_NORMAL) {
+			throw new IOException("输出归一化范围[" + minRange + ", " + maxRange + "]与当前配置不一致");
+		}
+		BpnnModel model;
+		try {
+			model = new BpnnModel(inputNum, hiddenNum, outputNum, learnRate, iterateNum);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("网络结构数据无效", e);
+		}
+		readFloats(in, model.hiddenWeights);
+		readFloats(in, model.hiddenBiases);
+		readFloats(in, model.outputWeights);
+		readFloats(in, model.outputBiases);
+		model.publishedParameters = model.trainingParameters.copy();
+		return model;
+	}
+
+	private static void writeFloats(DataOutput out, float[] values) throws IOException {
+		for (float value : values) {
+			out.writeFloat(value);
+		}
+	}
+
+	private static void readFloats(DataInput in, float[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readFloat();
 		}
 	}
 
 	/**
 	 * 获取网络的基本信息
-	 * 
+	 *
 	 * @return 网络信息字符串
 	 */
 	public String getNetworkInfo() {
@@ -505,31 +904,27 @@ public class BpnnModel implements TrainModel {
 				"输出层节点数: %d\n" +
 				"学习率: %.3f\n" +
 				"最大迭代次数: %d\n" +
+				"小批量大小: %d\n" +
+				"优化器: %s\n" +
 				"输出范围: [%.2f, %.2f]",
 				inputLevelCellNum, hiddenLevelCellNum, outputLevelCellNum,
-				learnRate, MaxIterateNum, MinRange, MaxRange);
+				learnRate, MaxIterateNum, trainConfig.getBatchSize(), trainConfig.getOptimizer(),
+				MinRange, MaxRange);
 	}
 
 	/**
 	 * 计算网络的总参数数量
-	 * 
+	 *
 	 * @return 参数数量
 	 */
 	public int getTotalParameterCount() {
-		// 输入层到隐藏层的权重数 + 隐藏层偏置数
-		int inputToHiddenWeights = inputLevelCellNum * hiddenLevelCellNum;
-		int hiddenBiases = hiddenLevelCellNum;
-		
-		// 隐藏层到输出层的权重数 + 输出层偏置数
-		int hiddenToOutputWeights = hiddenLevelCellNum * outputLevelCellNum;
-		int outputBiases = outputLevelCellNum;
-		
-		return inputToHiddenWeights + hiddenBiases + hiddenToOutputWeights + outputBiases;
+		return hiddenWeights.length + hiddenBiases.length + outputWeights.length
+				+ outputBiases.length;
 	}
 
 	/**
 	 * 验证模型在给定数据集上的性能
-	 * 
+	 *
 	 * @param testDataSet 测试数据集
 	 * @return 平均平方误差(MSE)
 	 */
@@ -537,10 +932,10 @@ public class BpnnModel implements TrainModel {
 		if (testDataSet == null || testDataSet.isEmpty()) {
 			return Double.NaN;
 		}
-		
+
 		double totalSquaredError = 0.0;
 		int sampleCount = 0;
-		
+
 		for (TrainDataItem<Float, Float> item : testDataSet) {
 			float predicted = useMode(item.getFeature());
 			float actual = item.getResult();
@@ -548,13 +943,13 @@ public class BpnnModel implements TrainModel {
 			totalSquaredError += error * error;
 			sampleCount++;
 		}
-		
+
 		return totalSquaredError / sampleCount;
 	}
 
 	/**
 	 * 改进的使用模型方法，增加输入验证和性能优化
-	 * 
+	 *
 	 * @param feature 输入特征数组
 	 * @return 预测结果
 	 */
@@ -563,376 +958,255 @@ public class BpnnModel implements TrainModel {
 		if (feature == null || feature.length == 0) {
 			throw new IllegalArgumentException("输入特征不能为空");
 		}
-		return calUseBpMode((Float[]) feature);
+		checkFeatureNum(feature.length);
+		InferenceBuffer buffer = inferenceBuffer.get();
+		for (int i = 0; i < inputLevelCellNum; i++) {
+			buffer.inputValues[i] = normalizeInput(feature[i].floatValue());
+		}
+		return forwardOutput(publishedParameters, buffer);
 	}
 
 	/**
-	 * 改进的BP模型计算方法
-	 * 
-	 * @param feature 输入特征
+	 * 使用原始类型特征进行预测，不做装箱和拷贝
+	 *
+	 * @param features 输入特征数组
 	 * @return 预测结果
 	 */
-	private float calUseBpMode(Float[] feature) {
-		if (feature.length != inputLevel.length) {
-			throw new IllegalArgumentException(
-					"输入特征维度(" + feature.length + ")与输入层节点数(" + 
-					inputLevel.length + ")不匹配");
+	@Override
+	public float predict(float[] features) {
+		if (features == null || features.length == 0) {
+			throw new IllegalArgumentException("输入特征不能为空");
 		}
+		checkFeatureNum(features.length);
+		return calUseBpMode(features, 0, publishedParameters, inferenceBuffer.get());
+	}
 
-		// 改进输入归一化，保持与训练时一致
-		for (int i = 0; i < inputLevel.length; i++) {
-			float normalizedInput = (feature[i] - AppContextConstant.AIR_CONDITION_MIN_POWER) / 
-				(AppContextConstant.AIR_CONDITION_MAX_POWER - AppContextConstant.AIR_CONDITION_MIN_POWER);
-			inputLevel[i].setOutput(normalizedInput);
+	/**
+	 * 批量预测，直接从行优先数组中读取每行特征
+	 *
+	 * @param rowsMajor 行优先存放的特征值数组
+	 * @param rows 行数
+	 * @param out 预测结果数组
+	 */
+	@Override
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+		if (rows == 0) {
+			return;
 		}
-		
-		// 前向传播
-		feedForward();
+		checkFeatureNum(cols);
+		// 整批使用同一份参数快照
+		NetworkParameters parameters = publishedParameters;
+		InferenceBuffer buffer = inferenceBuffer.get();
+		for (int r = 0; r < rows; r++) {
+			out[r] = calUseBpMode(rowsMajor, r * cols, parameters, buffer);
+		}
+	}
 
-		// 反归一化输出
-		return outputLevel[0].getOutput() * (MaxRange - MinRange) + MinRange;
+	/**
+	 * 一次前向传播得到所有输出节点的预测结果
+	 *
+	 * @param features 输入特征数组
+	 * @param out 预测结果数组，长度不小于输出层节点数
+	 */
+	public void predictAll(float[] features, float[] out) {
+		if (out == null || out.length < outputLevelCellNum) {
+			throw new IllegalArgumentException("结果数组长度不能小于输出层节点数");
+		}
+		float[] outputs = calAllOutputs(features);
+		System.arraycopy(outputs, 0, out, 0, outputLevelCellNum);
 	}
 
 	/**
-	 * 神经元细胞体类
-	 * 
-	 * <p>该类模拟生物神经元的基本功能，包含以下核心组件：</p>
-	 * <ul>
-	 *   <li>输入突触列表：接收来自前一层神经元的信号</li>
-	 *   <li>输出突触列表：向后一层神经元发送信号</li>
-	 *   <li>偏置值：神经元的内在激活阈值</li>
-	 *   <li>输出值：经过激活函数处理后的输出</li>
-	 *   <li>误差值：反向传播中计算的误差梯度</li>
-	 * </ul>
-	 * 
-	 * <p>根据在网络中的位置，神经元分为三种类型：</p>
-	 * <ul>
-	 *   <li>输入神经元：只有输出连接，直接接收外部数据</li>
-	 *   <li>隐藏神经元：既有输入又有输出连接，进行特征提取</li>
-	 *   <li>输出神经元：只有输入连接，产生最终预测结果</li>
-	 * </ul>
-	 * 
-	 * @author LeavesFly
+	 * 获取指定输出节点的预测结果
+	 *
+	 * <p>每个线程缓存最近一次输入的全部输出，对同一输入依次查询各输出节点时只做一次前向传播。</p>
+	 *
+	 * @param features 输入特征数组
+	 * @param outputIndex 输出节点下标
+	 * @return 预测结果
 	 */
-	private static class Cell {
-		/** 输入突触列表，存储来自前一层的所有连接 */
-		private List<Synapse> inputSynapseList;
-		
-		/** 输出突触列表，存储到后一层的所有连接 */
-		private List<Synapse> outputSynapseList;
+	public float predictOutput(float[] features, int outputIndex) {
+		if (outputIndex < 0 || outputIndex >= outputLevelCellNum) {
+			throw new IllegalArgumentException("输出节点下标越界: " + outputIndex);
+		}
+		return calAllOutputs(features)[outputIndex];
+	}
 
-		/** 偏置值（阈值），影响神经元的激活难易程度 */
-		private float excursion;
-		
-		/** 当前输出值，经过激活函数处理的结果 */
-		private float output;
-		
-		/** 当前误差值，反向传播中计算的梯度 */
-		private float currentError;
+	/**
+	 * 获取最近一次训练实际运行的轮数
+	 *
+	 * @return 训练轮数，尚未训练时为0
+	 */
+	public int getTrainedEpochNum() {
+		return trainedEpochNum;
+	}
 
-		/**
-		 * 创建输入层神经元
-		 * 
-		 * <p>输入层神经元的特点：</p>
-		 * <ul>
-		 *   <li>偏置值设为0，因为输入层不需要激活函数处理</li>
-		 *   <li>没有输入连接，直接接收外部数据</li>
-		 *   <li>有输出连接，向隐藏层传递信号</li>
-		 * </ul>
-		 * 
-		 * @return 配置好的输入层神经元实例
-		 */
-		public static Cell genInputCell() {
-			Cell cell = new Cell();
-			cell.setExcursion(0f);  // 输入层偏置为0
-			cell.setInputSynapseList(Collections.<Synapse> emptyList());  // 无输入连接
-			cell.setOutputSynapseList(new ArrayList<Synapse>());  // 有输出连接
-			return cell;
-		}
+	/**
+	 * 获取最近一次训练保留的参数所在的轮次
+	 *
+	 * 使用验证集时为验证误差最小的一轮，训练结束后已恢复该轮的参数；否则等于实际运行的轮数。
+	 *
+	 * @return 轮次（从1开始），尚未训练时为0
+	 */
+	public int getBestEpoch() {
+		return bestEpoch;
+	}
 
-		/**
-		 * 创建隐藏层神经元
-		 * 
-		 * <p>隐藏层神经元的特点：</p>
-		 * <ul>
-		 *   <li>偏置值随机初始化，用于打破对称性</li>
-		 *   <li>有输入连接，接收来自输入层的信号</li>
-		 *   <li>有输出连接，向输出层传递处理后的信号</li>
-		 *   <li>使用Sigmoid激活函数进行非线性变换</li>
-		 * </ul>
-		 * 
-		 * @param excursion 偏置值，通常在[-0.5, 0.5]范围内随机初始化
-		 * @return 配置好的隐藏层神经元实例
-		 */
-		public static Cell genHiddenCell(float excursion) {
-			Cell cell = new Cell();
-			cell.setExcursion(excursion);  // 设置随机偏置值
-			cell.setInputSynapseList(new ArrayList<Synapse>());  // 有输入连接
-			cell.setOutputSynapseList(new ArrayList<Synapse>());  // 有输出连接
-			return cell;
-		}
+	/**
+	 * 获取最近一次训练保留的参数在验证集上的均方误差
+	 *
+	 * @return 均方误差（反归一化后的温度），未使用验证集时为NaN
+	 */
+	public double getBestValidationError() {
+		return bestValidationError;
+	}
 
-		/**
-		 * 创建输出层神经元
-		 * 
-		 * <p>输出层神经元的特点：</p>
-		 * <ul>
-		 *   <li>偏置值随机初始化，影响最终输出的偏移</li>
-		 *   <li>有输入连接，接收来自隐藏层的信号</li>
-		 *   <li>没有输出连接，产生网络的最终预测结果</li>
-		 *   <li>使用Sigmoid激活函数，输出值在[0,1]范围内</li>
-		 * </ul>
-		 * 
-		 * @param excursion 偏置值，通常在[-0.5, 0.5]范围内随机初始化
-		 * @return 配置好的输出层神经元实例
-		 */
-		public static Cell genOutputCell(float excursion) {
-			Cell cell = new Cell();
-			cell.setExcursion(excursion);  // 设置随机偏置值
-			cell.setInputSynapseList(new ArrayList<Synapse>());  // 有输入连接
-			cell.setOutputSynapseList(Collections.<Synapse> emptyList());  // 无输出连接
-			return cell;
-		}
+	/**
+	 * 获取输出层节点数
+	 *
+	 * @return 输出层节点数
+	 */
+	public int getOutputLevelCellNum() {
+		return outputLevelCellNum;
+	}
 
-		/**
-		 * 计算神经元输出值（前向传播）
-		 * 使用Sigmoid激活函数
-		 * 
-		 * @return 激活后的输出值
-		 */
-		public float calOutput() {
-			float weightedSum = 0f;
-			// 计算加权输入总和
-			for (Synapse backSynapse : inputSynapseList) {
-				weightedSum += backSynapse.getBackCell().getOutput() * backSynapse.getWeight();
-			}
-			// 加上偏置项
-			weightedSum += excursion;
-			
-			// 应用Sigmoid激活函数：f(x) = 1/(1+e^(-x))
-			// 为防止数值溢出，限制输入范围
-			if (weightedSum > 500) weightedSum = 500;
-			else if (weightedSum < -500) weightedSum = -500;
-			
-			return (float) (1.0 / (1.0 + Math.exp(-weightedSum)));
+	/**
+	 * 计算所有输出节点的反归一化结果，输入和参数快照都与上次相同时直接返回缓存
+	 *
+	 * @return 当前线程缓冲区中的结果数组，调用方不得修改
+	 */
+	private float[] calAllOutputs(float[] features) {
+		if (features == null) {
+			throw new IllegalArgumentException("输入特征不能为空");
 		}
-
-		/**
-		 * 计算隐藏层神经元的误差梯度（反向传播）
-		 * 
-		 * @return 误差梯度值
-		 */
-		public float calError() {
-			float errorSum = 0f;
-			// 累积来自后续层的误差信号
-			for (Synapse frontSynapse : outputSynapseList) {
-				errorSum += frontSynapse.getFrontCell().getCurrentError() * frontSynapse.getWeight();
-			}
-			// 应用Sigmoid导数：f'(x) = f(x) * (1 - f(x))
-			return output * (1.0f - output) * errorSum;
+		checkFeatureNum(features.length);
+		NetworkParameters parameters = publishedParameters;
+		InferenceBuffer buffer = inferenceBuffer.get();
+		if (buffer.cachedParameters == parameters
+				&& Arrays.equals(buffer.cachedFeatures, features)) {
+			return buffer.cachedOutputs;
 		}
-
-		/**
-		 * 计算输出层神经元的误差梯度
-		 * 
-		 * @param targetResult 目标输出值（已归一化）
-		 * @return 误差梯度值
-		 */
-		public float calOutputError(float targetResult) {
-			// 输出层误差：δ = f'(x) * (target - actual)
-			// 其中 f'(x) = f(x) * (1 - f(x)) 是Sigmoid导数
-			return output * (1.0f - output) * (targetResult - output);
+		normalizeInput(features, 0, buffer.inputValues, 0);
+		feedForward(parameters, buffer.inputValues, buffer.hiddenOutputs, buffer.outputOutputs);
+		for (int k = 0; k < outputLevelCellNum; k++) {
+			buffer.cachedOutputs[k] = buffer.outputOutputs[k] * (MaxRange - MinRange) + MinRange;
 		}
+		System.arraycopy(features, 0, buffer.cachedFeatures, 0, inputLevelCellNum);
+		buffer.cachedParameters = parameters;
+		return buffer.cachedOutputs;
+	}
 
-		// ================== Getter 和 Setter 方法 ==================
-		
-		/**
-		 * 获取输入突触列表
-		 * 
-		 * @return 输入突触列表，不可修改
-		 */
-		public List<Synapse> getInputSynapseList() {
-			return inputSynapseList;
+	private void checkFeatureNum(int featureNum) {
+		if (featureNum != inputLevelCellNum) {
+			throw new IllegalArgumentException(
+					"输入特征维度(" + featureNum + ")与输入层节点数(" +
+					inputLevelCellNum + ")不匹配");
 		}
+	}
 
-		/**
-		 * 设置输入突触列表（内部使用）
-		 * 
-		 * @param inputSynapseList 输入突触列表
-		 */
-		private void setInputSynapseList(List<Synapse> inputSynapseList) {
-			this.inputSynapseList = inputSynapseList;
-		}
+	/**
+	 * 输入归一化，使用空调功率范围做最大最小值归一化，训练和预测保持一致
+	 */
+	private static float normalizeInput(float power) {
+		return (power - AppContextConstant.AIR_CONDITION_MIN_POWER)
+				/ (AppContextConstant.AIR_CONDITION_MAX_POWER - AppContextConstant.AIR_CONDITION_MIN_POWER);
+	}
 
-		/**
-		 * 获取输出突触列表
-		 * 
-		 * @return 输出突触列表，不可修改
-		 */
-		public List<Synapse> getOutputSynapseList() {
-			return outputSynapseList;
-		}
+	/**
+	 * 结果归一化，NaN保持为NaN
+	 */
+	private float normalizeResult(float result) {
+		return (result - MinRange) / (MaxRange - MinRange);
+	}
 
-		/**
-		 * 设置输出突触列表（内部使用）
-		 * 
-		 * @param outPutSynapseList 输出突触列表
-		 */
-		private void setOutputSynapseList(List<Synapse> outPutSynapseList) {
-			this.outputSynapseList = outPutSynapseList;
+	private void normalizeInput(float[] src, int srcOffset, float[] dest, int destOffset) {
+		for (int i = 0; i < inputLevelCellNum; i++) {
+			dest[destOffset + i] = normalizeInput(src[srcOffset + i]);
 		}
+	}
 
-		/**
-		 * 获取偏置值
-		 * 
-		 * @return 当前神经元的偏置值
-		 */
-		public float getExcursion() {
-			return excursion;
-		}
+	/**
+	 * 改进的BP模型计算方法
+	 *
+	 * @param features 输入特征数组
+	 * @param offset 本次输入在数组中的起始位置
+	 * @param parameters 已发布的网络参数
+	 * @param buffer 当前线程的推理缓冲区
+	 * @return 预测结果
+	 */
+	private float calUseBpMode(float[] features, int offset, NetworkParameters parameters,
+			InferenceBuffer buffer) {
+		normalizeInput(features, offset, buffer.inputValues, 0);
+		return forwardOutput(parameters, buffer);
+	}
 
-		/**
-		 * 设置偏置值
-		 * 
-		 * <p>偏置值在训练过程中会根据梯度下降算法进行调整。</p>
-		 * 
-		 * @param excursion 新的偏置值
-		 */
-		public void setExcursion(float excursion) {
-			this.excursion = excursion;
-		}
+	/**
+	 * 前向传播并反归一化第一个输出节点的值
+	 */
+	private float forwardOutput(NetworkParameters parameters, InferenceBuffer buffer) {
+		feedForward(parameters, buffer.inputValues, buffer.hiddenOutputs, buffer.outputOutputs);
+		return buffer.outputOutputs[0] * (MaxRange - MinRange) + MinRange;
+	}
 
-		/**
-		 * 设置神经元输出值
-		 * 
-		 * <p>输出值通常由calOutput()方法计算得出，或者在输入层直接设置。</p>
-		 * 
-		 * @param output 输出值，对于Sigmoid激活函数，范围为[0,1]
-		 */
-		public void setOutput(float output) {
-			this.output = output;
-		}
+	private InferenceBuffer newInferenceBuffer() {
+		return new InferenceBuffer(inputLevelCellNum, hiddenLevelCellNum, outputLevelCellNum);
+	}
 
-		/**
-		 * 获取神经元输出值
-		 * 
-		 * @return 当前神经元的输出值
-		 */
-		public float getOutput() {
-			return output;
-		}
+	/**
+	 * 网络参数，按层保存权重矩阵和偏置向量
+	 */
+	private static final class NetworkParameters {
 
-		/**
-		 * 获取当前误差值
-		 * 
-		 * @return 反向传播中计算的误差梯度
-		 */
-		public float getCurrentError() {
-			return currentError;
-		}
+		private final float[] hiddenWeights;
 
-		/**
-		 * 设置当前误差值
-		 * 
-		 * <p>误差值在反向传播过程中计算，用于权重和偏置的更新。</p>
-		 * 
-		 * @param currentError 误差梯度值
-		 */
-		public void setCurrentError(float currentError) {
-			this.currentError = currentError;
+		private final float[] hiddenBiases;
+
+		private final float[] outputWeights;
+
+		private final float[] outputBiases;
+
+		NetworkParameters(float[] hiddenWeights, float[] hiddenBiases, float[] outputWeights,
+				float[] outputBiases) {
+			this.hiddenWeights = hiddenWeights;
+			this.hiddenBiases = hiddenBiases;
+			this.outputWeights = outputWeights;
+			this.outputBiases = outputBiases;
 		}
 
+		NetworkParameters copy() {
+			return new NetworkParameters(hiddenWeights.clone(), hiddenBiases.clone(),
+					outputWeights.clone(), outputBiases.clone());
+		}
 	}
 
 	/**
-	 * 神经网络突触类
-	 * 
-	 * <p>突触模拟生物神经系统中神经元之间的连接，承载以下功能：</p>
-	 * <ul>
-	 *   <li>信号传递：将前一层神经元的输出信号传递给后一层</li>
-	 *   <li>权重调制：通过权重值控制信号的强度</li>
-	 *   <li>学习记忆：在训练过程中调整权重存储经验</li>
-	 * </ul>
-	 * 
-	 * <p>每个突触连接两个神经元：</p>
-	 * <ul>
-	 *   <li>backCell：信号来源神经元（前一层）</li>
-	 *   <li>frontCell：信号目标神经元（后一层）</li>
-	 * </ul>
-	 * 
-	 * <p>权重值的意义：</p>
-	 * <ul>
-	 *   <li>正权重：信号增强，前一层激活促进后一层激活</li>
-	 *   <li>负权重：信号抑制，前一层激活抑制后一层激活</li>
-	 *   <li>零权重：无信号传递，相当于连接断开</li>
-	 * </ul>
-	 * 
-	 * @author LeavesFly
+	 * 单个线程的推理缓冲区
 	 */
-	private static class Synapse {
-		// 突触连接的方向：从 backCell 到 frontCell
-		/** 信号来源神经元（前一层神经元） */
-		private Cell backCell;
-		
-		/** 信号目标神经元（后一层神经元） */
-		private Cell frontCell;
-		
-		/** 连接权重，控制信号传递的强度和方向 */
-		private float weight;
+	private static final class InferenceBuffer {
 
-		/**
-		 * 突触构造函数
-		 * 
-		 * <p>创建一个连接两个神经元的突触，并设置初始权重。</p>
-		 * 
-		 * @param backCell 信号来源神经元，不能为null
-		 * @param frontCell 信号目标神经元，不能为null
-		 * @param weight 初始权重值，通常在[-1.0, 1.0]范围内随机初始化
-		 */
-		public Synapse(Cell backCell, Cell frontCell, float weight) {
-			this.backCell = backCell;
-			this.frontCell = frontCell;
-			this.weight = weight;
-		}
+		private final float[] inputValues;
 
-		/**
-		 * 获取信号来源神经元
-		 * 
-		 * @return 前一层神经元，信号的来源
-		 */
-		public Cell getBackCell() {
-			return backCell;
-		}
+		private final float[] hiddenOutputs;
 
-		/**
-		 * 获取信号目标神经元
-		 * 
-		 * @return 后一层神经元，信号的目标
-		 */
-		public Cell getFrontCell() {
-			return frontCell;
-		}
+		private final float[] outputOutputs;
 
-		/**
-		 * 获取当前权重值
-		 * 
-		 * @return 突触的权重值
-		 */
-		public float getWeight() {
-			return weight;
-		}
+		/** 最近一次多输出查询的原始输入 */
+		private final float[] cachedFeatures;
 
-		/**
-		 * 设置权重值
-		 * 
-		 * <p>该方法在训练过程中被调用，根据梯度下降算法更新权重。</p>
-		 * 
-		 * @param weight 新的权重值
-		 */
-		public void setWeight(float weight) {
-			this.weight = weight;
-		}
+		/** 最近一次多输出查询的反归一化结果 */
+		private final float[] cachedOutputs;
 
+		/** 计算缓存结果时使用的参数快照，为null表示没有缓存 */
+		private NetworkParameters cachedParameters;
+
+		InferenceBuffer(int inputNum, int hiddenNum, int outputNum) {
+			this.inputValues = new float[inputNum];
+			this.hiddenOutputs = new float[hiddenNum];
+			this.outputOutputs = new float[outputNum];
+			this.cachedFeatures = new float[inputNum];
+			this.cachedOutputs = new float[outputNum];
+		}
 	}
 
 	/**
@@ -0,0 +1,88 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import java.util.Collection;
+
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.trainer.TrainModel;
+
+/**
+ * 多输出BP神经网络的单输出视图
+ *
+ * 该类把多输出网络的某一个输出节点包装为独立的训练模型，用于构造各传感器的PtFitFunc。
+ * 同一网络的所有视图共享参数和每线程的结果缓存，对同一功率向量依次计算各传感器温度时
+ * 只做一次前向传播。网络由{@link BpnnModel#trainMultiOutput}统一训练，视图本身不支持训练。
+ */
+public class BpnnOutputModel implements TrainModel {
+
+	/**
+	 * 多输出网络
+	 */
+	private final BpnnModel multiOutputModel;
+
+	/**
+	 * 输出节点下标
+	 */
+	private final int outputIndex;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param multiOutputModel 多输出网络
+	 * @param outputIndex 输出节点下标
+	 */
+	public BpnnOutputModel(BpnnModel multiOutputModel, int outputIndex) {
+		if (multiOutputModel == null || outputIndex < 0
+				|| outputIndex >= multiOutputModel.getOutputLevelCellNum()) {
+			throw new IllegalArgumentException();
+		}
+		this.multiOutputModel = multiOutputModel;
+		this.outputIndex = outputIndex;
+	}
+
+	@Override
+	public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+		throw new UnsupportedOperationException("多输出网络需通过BpnnModel.trainMultiOutput统一训练");
+	}
+
+	@Override
+	public <T extends Number> float useMode(T[] feature) {
+		float[] features = new float[feature.length];
+		for (int i = 0; i < feature.length; i++) {
+			features[i] = feature[i].floatValue();
+		}
+		return predict(features);
+	}
+
+	@Override
+	public float predict(float[] features) {
+		return multiOutputModel.predictOutput(features, outputIndex);
+	}
+
+	@Override
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+		float[] row = new float[cols];
+		for (int r = 0; r < rows; r++) {
+			System.arraycopy(rowsMajor, r * cols, row, 0, cols);
+			out[r] = multiOutputModel.predictOutput(row, outputIndex);
+		}
+	}
+
+	/**
+	 * 获取多输出网络
+	 *
+	 * @return 多输出网络
+	 */
+	public BpnnModel getMultiOutputModel() {
+		return multiOutputModel;
+	}
+
+	/**
+	 * 获取输出节点下标
+	 *
+	 * @return 输出节点下标
+	 */
+	public int getOutputIndex() {
+		return outputIndex;
+	}
+}
@@ -0,0 +1,163 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+
+/**
+ * 多输出训练数据集
+ *
+ * 训练数据按传感器分别存放，每条记录是（功率向量，该传感器温度）。该类按功率向量把各传感器
+ * 的记录合并为一行：特征为功率值，目标为各传感器温度，某传感器缺少该功率向量的记录时目标值为NaN。
+ * 目标列的顺序与传入的传感器顺序一致。
+ */
+public class MultiOutputTrainDataSet {
+
+	private final List<String> sensorIds;
+
+	private final int inputNum;
+
+	private final int rowNum;
+
+	private final float[] features;
+
+	private final float[] targets;
+
+	private MultiOutputTrainDataSet(List<String> sensorIds, int inputNum, int rowNum,
+			float[] features, float[] targets) {
+		this.sensorIds = sensorIds;
+		this.inputNum = inputNum;
+		this.rowNum = rowNum;
+		this.features = features;
+		this.targets = targets;
+	}
+
+	/**
+	 * 按功率向量合并各传感器的训练数据
+	 *
+	 * 同一传感器对同一功率向量有多条记录时取温度平均值。
+	 *
+	 * @param sensorDataSets 传感器ID -> 训练数据集，迭代顺序即目标列顺序
+	 * @return 多输出训练数据集
+	 */
+	public static MultiOutputTrainDataSet join(
+			Map<String, ? extends Collection<IntellacTrainDataItem>> sensorDataSets) {
+		if (sensorDataSets == null || sensorDataSets.isEmpty()) {
+			throw new IllegalArgumentException("传感器训练数据不能为空");
+		}
+		List<String> sensorIds = new ArrayList<String>(sensorDataSets.keySet());
+		int outputNum = sensorIds.size();
+		int inputNum = -1;
+
+		// 功率值 -> 各传感器温度之和与记录数
+		Map<List<Float>, double[]> rowMap = new LinkedHashMap<List<Float>, double[]>();
+		for (int k = 0; k < outputNum; k++) {
+			Collection<IntellacTrainDataItem> dataSet = sensorDataSets.get(sensorIds.get(k));
+			if (dataSet == null) {
+				continue;
+			}
+			for (IntellacTrainDataItem item : dataSet) {
+				float[] values = item.getFeatureValues();
+				if (inputNum < 0) {
+					inputNum = values.length;
+				} else if (values.length != inputNum) {
+					throw new IllegalArgumentException("训练数据的功率向量维度不一致");
+				}
+				Float[] boxed = new Float[values.length];
+				for (int i = 0; i < values.length; i++) {
+					boxed[i] = values[i];
+				}
+				List<Float> key = Arrays.asList(boxed);
+				double[] sums = rowMap.get(key);
+				if (sums == null) {
+					sums = new double[outputNum * 2];
+					rowMap.put(key, sums);
+				}
+				sums[k * 2] += item.getTemperature();
+				sums[k * 2 + 1]++;
+			}
+		}
+		if (inputNum < 0) {
+			inputNum = 0;
+		}
+
+		int rowNum = rowMap.size();
+		float[] features = new float[rowNum * inputNum];
+		float[] targets = new float[rowNum * outputNum];
+		int row = 0;
+		for (Map.Entry<List<Float>, double[]> entry : rowMap.entrySet()) {
+			List<Float> key = entry.getKey();
+			for (int i = 0; i < inputNum; i++) {
+				features[row * inputNum + i] = key.get(i);
+			}
+			double[] sums = entry.getValue();
+			for (int k = 0; k < outputNum; k++) {
+				double count = sums[k * 2 + 1];
+				targets[row * outputNum + k] = count > 0 ? (float) (sums[k * 2] / count) : Float.NaN;
+			}
+			row++;
+		}
+		return new MultiOutputTrainDataSet(Collections.unmodifiableList(sensorIds), inputNum, rowNum,
+				features, targets);
+	}
+
+	/**
+	 * 获取传感器ID列表，第k个传感器对应第k列目标值
+	 *
+	 * @return 传感器ID列表
+	 */
+	public List<String> getSensorIds() {
+		return sensorIds;
+	}
+
+	/**
+	 * 获取每行特征数
+	 *
+	 * @return 特征数
+	 */
+	public int getInputNum() {
+		return inputNum;
+	}
+
+	/**
+	 * 获取每行目标值个数
+	 *
+	 * @return 目标值个数，等于传感器数
+	 */
+	public int getOutputNum() {
+		return sensorIds.size();
+	}
+
+	/**
+	 * 获取行数
+	 *
+	 * @return 行数
+	 */
+	public int getRowNum() {
+		return rowNum;
+	}
+
+	/**
+	 * 获取行优先存放的特征值
+	 *
+	 * @return 特征值数组
+	 */
+	public float[] getFeatures() {
+		return features;
+	}
+
+	/**
+	 * 获取行优先存放的目标值，缺失值为NaN
+	 *
+	 * @return 目标值数组
+	 */
+	public float[] getTargets() {
+		return targets;
+	}
+}
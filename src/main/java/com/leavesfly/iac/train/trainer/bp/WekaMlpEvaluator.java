@@ -0,0 +1,295 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.classifiers.functions.MultilayerPerceptron;
+import weka.classifiers.functions.neural.LinearUnit;
+import weka.classifiers.functions.neural.NeuralConnection;
+import weka.classifiers.functions.neural.NeuralMethod;
+import weka.classifiers.functions.neural.NeuralNode;
+import weka.classifiers.functions.neural.SigmoidUnit;
+import weka.core.Instances;
+
+/**
+ * 从训练好的Weka多层感知机中提取的前向计算器
+ *
+ * Weka的MultilayerPerceptron不对外暴露网络结构，推理时每次都要构造Instance、经过过滤器并在
+ * 网络节点上缓存中间值，只能串行调用。该类在训练后一次性读出输入归一化参数、各节点的权重和
+ * 激活函数以及输出的反归一化参数，按拓扑顺序存放在连续数组中，推理只做几次点积，不分配内存，
+ * 可被多个线程同时调用。计算步骤与Weka 3.6的distributionForInstance一致：
+ * 1. 输入减去属性中点再除以半跨度（跨度为0时只减中点），缺失值（NaN）取0
+ * 2. 每个节点计算 偏置 + Σ输入 * 权重，Sigmoid节点在±45之外截断为0或1
+ * 3. 输出为输出节点之和，归一化了数值型类别时再乘以类别半跨度加上类别中点
+ *
+ * Weka的网络字段是私有的，通过反射读取；网络使用了默认模型、类别不是数值型、
+ * 或包含未知的节点类型时不支持提取，调用方应继续使用Weka推理。
+ */
+final class WekaMlpEvaluator {
+
+	/**
+	 * 特征数
+	 */
+	private final int inputNum;
+
+	/**
+	 * 各特征的归一化中点
+	 */
+	private final double[] inputBases;
+
+	/**
+	 * 各特征的归一化半跨度，为0时不做除法
+	 */
+	private final double[] inputRanges;
+
+	/**
+	 * 是否归一化输入
+	 */
+	private final boolean normalizeInput;
+
+	/**
+	 * 第k个节点的输入在inputSlots和weights中的起始位置，长度为节点数加1
+	 */
+	private final int[] nodeOffsets;
+
+	/**
+	 * 各节点输入在取值数组中的下标，前inputNum个取值为归一化后的特征，之后依次为各节点的输出
+	 */
+	private final int[] inputSlots;
+
+	/**
+	 * 各节点输入的权重，与inputSlots一一对应
+	 */
+	private final double[] weights;
+
+	/**
+	 * 各节点的偏置
+	 */
+	private final double[] biases;
+
+	/**
+	 * 各节点是否使用Sigmoid激活，否则为线性
+	 */
+	private final boolean[] sigmoid;
+
+	/**
+	 * 输出节点在取值数组中的下标
+	 */
+	private final int[] outputSlots;
+
+	/**
+	 * 输出的反归一化系数和偏移，不做反归一化时为1和0
+	 */
+	private final double outputRange;
+
+	private final double outputBase;
+
+	/**
+	 * 每个线程独立的取值缓冲区
+	 */
+	private final ThreadLocal<double[]> valueBuffer;
+
+	private WekaMlpEvaluator(int inputNum, double[] inputBases, double[] inputRanges,
+			boolean normalizeInput, int[] nodeOffsets, int[] inputSlots, double[] weights,
+			double[] biases, boolean[] sigmoid, int[] outputSlots, double outputRange,
+			double outputBase) {
+		this.inputNum = inputNum;
+		this.inputBases = inputBases;
+		this.inputRanges = inputRanges;
+		this.normalizeInput = normalizeInput;
+		this.nodeOffsets = nodeOffsets;
+		this.inputSlots = inputSlots;
+		this.weights = weights;
+		this.biases = biases;
+		this.sigmoid = sigmoid;
+		this.outputSlots = outputSlots;
+		this.outputRange = outputRange;
+		this.outputBase = outputBase;
+		final int valueNum = inputNum + biases.length;
+		this.valueBuffer = ThreadLocal.withInitial(() -> new double[valueNum]);
+	}
+
+	/**
+	 * 从训练好的多层感知机提取前向计算器
+	 *
+	 * @param mlp 训练好的多层感知机，调用期间不能被其他线程修改
+	 * @param inputNum 特征数，类别属性必须是最后一个属性
+	 * @return 前向计算器；网络不支持提取时返回null
+	 */
+	static WekaMlpEvaluator extract(MultilayerPerceptron mlp, int inputNum) {
+		try {
+			if (readField(mlp, "m_useDefaultModel", Boolean.class)) {
+				return null;
+			}
+			Instances header = readField(mlp, "m_instances", Instances.class);
+			if (header == null || header.numAttributes() != inputNum + 1
+					|| header.classIndex() != inputNum || !header.classAttribute().isNumeric()) {
+				return null;
+			}
+			NeuralConnection[] inputEnds = readField(mlp, "m_inputs", NeuralConnection[].class);
+			NeuralConnection[] outputEnds = readField(mlp, "m_outputs", NeuralConnection[].class);
+			double[] attributeBases = readField(mlp, "m_attributeBases", double[].class);
+			double[] attributeRanges = readField(mlp, "m_attributeRanges", double[].class);
+			if (inputEnds == null || outputEnds == null || outputEnds.length != 1
+					|| attributeBases == null || attributeRanges == null) {
+				return null;
+			}
+
+			// 输入端 -> 特征下标
+			Map<NeuralConnection, Integer> slotMap = new IdentityHashMap<NeuralConnection, Integer>();
+			for (NeuralConnection inputEnd : inputEnds) {
+				int link = readField(inputEnd, "m_link", Integer.class);
+				if (link < 0 || link >= inputNum) {
+					return null;
+				}
+				slotMap.put(inputEnd, link);
+			}
+
+			// 从输出端反向深度优先遍历，得到节点的拓扑顺序
+			List<NeuralNode> nodes = new ArrayList<NeuralNode>();
+			NeuralConnection outputEnd = outputEnds[0];
+			int[] outputSlots = new int[outputEnd.getNumInputs()];
+			NeuralConnection[] outputInputs = outputEnd.getInputs();
+			for (int i = 0; i < outputSlots.length; i++) {
+				Integer slot = visit(outputInputs[i], slotMap, nodes, inputNum);
+				if (slot == null) {
+					return null;
+				}
+				outputSlots[i] = slot;
+			}
+
+			int nodeNum = nodes.size();
+			int[] nodeOffsets = new int[nodeNum + 1];
+			for (int k = 0; k < nodeNum; k++) {
+				nodeOffsets[k + 1] = nodeOffsets[k] + nodes.get(k).getNumInputs();
+			}
+			int[] inputSlots = new int[nodeOffsets[nodeNum]];
+			double[] weights = new double[nodeOffsets[nodeNum]];
+			double[] biases = new double[nodeNum];
+			boolean[] sigmoid = new boolean[nodeNum];
+			for (int k = 0; k < nodeNum; k++) {
+				NeuralNode node = nodes.get(k);
+				NeuralMethod method = node.getMethod();
+				if (method instanceof SigmoidUnit) {
+					sigmoid[k] = true;
+				} else if (!(method instanceof LinearUnit)) {
+					return null;
+				}
+				double[] nodeWeights = node.getWeights();
+				NeuralConnection[] nodeInputs = node.getInputs();
+				biases[k] = nodeWeights[0];
+				for (int i = 0; i < node.getNumInputs(); i++) {
+					inputSlots[nodeOffsets[k] + i] = slotMap.get(nodeInputs[i]);
+					weights[nodeOffsets[k] + i] = nodeWeights[i + 1];
+				}
+			}
+
+			boolean normalizeClass = readField(mlp, "m_normalizeClass", Boolean.class);
+			return new WekaMlpEvaluator(inputNum, attributeBases.clone(), attributeRanges.clone(),
+					readField(mlp, "m_normalizeAttributes", Boolean.class), nodeOffsets,
+					inputSlots, weights, biases, sigmoid, outputSlots,
+					normalizeClass ? attributeRanges[inputNum] : 1.0,
+					normalizeClass ? attributeBases[inputNum] : 0.0);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * 后序遍历连接，返回其在取值数组中的下标；遇到不支持的连接时返回null
+	 */
+	private static Integer visit(NeuralConnection connection,
+			Map<NeuralConnection, Integer> slotMap, List<NeuralNode> nodes, int inputNum) {
+		Integer slot = slotMap.get(connection);
+		if (slot != null) {
+			return slot;
+		}
+		if (!(connection instanceof NeuralNode)) {
+			return null;
+		}
+		NeuralConnection[] inputs = connection.getInputs();
+		for (int i = 0; i < connection.getNumInputs(); i++) {
+			if (visit(inputs[i], slotMap, nodes, inputNum) == null) {
+				return null;
+			}
+		}
+		slot = inputNum + nodes.size();
+		nodes.add((NeuralNode) connection);
+		slotMap.put(connection, slot);
+		return slot;
+	}
+
+	private static <T> T readField(Object target, String name, Class<T> type)
+			throws ReflectiveOperationException {
+		Class<?> clazz = target.getClass();
+		while (clazz != null) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				field.setAccessible(true);
+				return type.cast(field.get(target));
+			} catch (NoSuchFieldException e) {
+				clazz = clazz.getSuperclass();
+			}
+		}
+		throw new NoSuchFieldException(name);
+	}
+
+	/**
+	 * 预测
+	 *
+	 * @param features 行优先存放的特征值
+	 * @param offset 起始位置
+	 * @return 预测结果
+	 */
+	float predict(float[] features, int offset) {
+		double[] values = valueBuffer.get();
+		for (int i = 0; i < inputNum; i++) {
+			values[i] = normalize(features[offset + i], i);
+		}
+		return forward(values);
+	}
+
+	/**
+	 * 预测
+	 *
+	 * @param feature 特征值
+	 * @return 预测结果
+	 */
+	<T extends Number> float predict(T[] feature) {
+		double[] values = valueBuffer.get();
+		for (int i = 0; i < inputNum; i++) {
+			values[i] = normalize(feature[i].floatValue(), i);
+		}
+		return forward(values);
+	}
+
+	private double normalize(double value, int i) {
+		if (normalizeInput) {
+			value = inputRanges[i] != 0 ? (value - inputBases[i]) / inputRanges[i] : value
+					- inputBases[i];
+		}
+		return Double.isNaN(value) ? 0.0 : value;
+	}
+
+	private float forward(double[] values) {
+		for (int k = 0; k < biases.length; k++) {
+			double sum = biases[k];
+			for (int p = nodeOffsets[k]; p < nodeOffsets[k + 1]; p++) {
+				sum += values[inputSlots[p]] * weights[p];
+			}
+			if (sigmoid[k]) {
+				sum = sum < -45 ? 0.0 : sum > 45 ? 1.0 : 1.0 / (1.0 + Math.exp(-sum));
+			}
+			values[inputNum + k] = sum;
+		}
+		double output = 0.0;
+		for (int slot : outputSlots) {
+			output += values[slot];
+		}
+		return (float) (output * outputRange + outputBase);
+	}
+}
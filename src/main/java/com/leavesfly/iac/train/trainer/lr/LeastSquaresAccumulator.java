@@ -0,0 +1,320 @@
+package com.leavesfly.iac.train.trainer.lr;
+
+/**
+ * 最小二乘统计量累加器
+ *
+ * 该类逐条累加样本，维护特征与结果的均值向量以及中心化后的协方差矩阵（未除以样本数），
+ * 内存占用只与特征数有关，与样本数无关。中心化使截距与权重分离，
+ * 避免功率值量级较大时直接累加X'X造成的精度损失。
+ *
+ * 求解时对中心化的正规方程 (Cxx + λI) w = Cxy 做Cholesky分解，截距为 ȳ - w·x̄，
+ * 岭回归项不作用于截距。多个累加器可以合并，便于分片并行统计。
+ *
+ * 非线程安全，每个线程应使用独立的累加器，最后合并。
+ */
+public class LeastSquaresAccumulator {
+
+	/**
+	 * Cholesky分解失败（矩阵奇异或接近奇异）时自动增加的最大重试次数
+	 */
+	private static final int MAX_JITTER_RETRY = 12;
+
+	/**
+	 * 特征数
+	 */
+	private final int featureNum;
+
+	/**
+	 * 增广维数，等于特征数加1，最后一维为结果
+	 */
+	private final int dim;
+
+	/**
+	 * 样本数
+	 */
+	private long sampleNum;
+
+	/**
+	 * 增广向量(x, y)的均值
+	 */
+	private final double[] means;
+
+	/**
+	 * 增广向量的中心化二阶矩，只维护上三角，下标为 i * dim + j (i <= j)
+	 */
+	private final double[] coMoments;
+
+	/**
+	 * 单条样本的偏差缓冲区
+	 */
+	private final double[] deltas;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param featureNum 特征数
+	 */
+	public LeastSquaresAccumulator(int featureNum) {
+		if (featureNum <= 0) {
+			throw new IllegalArgumentException("特征数必须大于0");
+		}
+		this.featureNum = featureNum;
+		this.dim = featureNum + 1;
+		this.means = new double[dim];
+		this.coMoments = new double[dim * dim];
+		this.deltas = new double[dim];
+	}
+
+	/**
+	 * 累加一条样本
+	 *
+	 * @param features 特征数组
+	 * @param offset 本条样本特征的起始位置
+	 * @param result 结果值
+	 */
+	public void add(float[] features, int offset, float result) {
+		sampleNum++;
+		double invN = 1.0 / sampleNum;
+		for (int i = 0; i < featureNum; i++) {
+			double delta = features[offset + i] - means[i];
+			deltas[i] = delta;
+			means[i] += delta * invN;
+		}
+		double delta = result - means[featureNum];
+		deltas[featureNum] = delta;
+		means[featureNum] += delta * invN;
+
+		// M += delta_old * delta_new^T，delta_new = delta_old * (n - 1) / n
+		double scale = (sampleNum - 1) * invN;
+		for (int i = 0; i < dim; i++) {
+			double di = deltas[i] * scale;
+			int base = i * dim;
+			for (int j = i; j < dim; j++) {
+				coMoments[base + j] += di * deltas[j];
+			}
+		}
+	}
+
+	/**
+	 * 累加一条样本
+	 *
+	 * @param features 特征数组，长度等于特征数
+	 * @param result 结果值
+	 */
+	public void add(float[] features, float result) {
+		if (features.length != featureNum) {
+			throw new IllegalArgumentException("特征维度(" + features.length + ")与累加器特征数("
+					+ featureNum + ")不匹配");
+		}
+		add(features, 0, result);
+	}
+
+	/**
+	 * 合并另一个累加器的统计量
+	 *
+	 * @param other 另一个累加器，特征数必须相同
+	 */
+	public void merge(LeastSquaresAccumulator other) {
+		if (other.featureNum != featureNum) {
+			throw new IllegalArgumentException("累加器特征数不一致");
+		}
+		if (other.sampleNum == 0) {
+			return;
+		}
+		if (sampleNum == 0) {
+			sampleNum = other.sampleNum;
+			System.arraycopy(other.means, 0, means, 0, dim);
+			System.arraycopy(other.coMoments, 0, coMoments, 0, coMoments.length);
+			return;
+		}
+		long totalNum = sampleNum + other.sampleNum;
+		double weight = (double) sampleNum * other.sampleNum / totalNum;
+		for (int i = 0; i < dim; i++) {
+			deltas[i] = other.means[i] - means[i];
+		}
+		for (int i = 0; i < dim; i++) {
+			int base = i * dim;
+			for (int j = i; j < dim; j++) {
+				coMoments[base + j] += other.coMoments[base + j] + deltas[i] * deltas[j] * weight;
+			}
+			means[i] += deltas[i] * other.sampleNum / totalNum;
+		}
+		sampleNum = totalNum;
+	}
+
+	/**
+	 * 求解线性回归系数
+	 *
+	 * 协方差矩阵奇异（如某个特征恒定不变）时，在对角线上逐步加入微小扰动后重新分解，
+	 * 得到最小范数意义下的近似解。
+	 *
+	 * @param ridge 岭回归系数，0表示普通最小二乘
+	 * @return 系数数组，下标0为截距，下标i为第i个特征的权重
+	 */
+	public double[] solve(double ridge) {
+		if (ridge < 0 || Double.isNaN(ridge)) {
+			throw new IllegalArgumentException("岭回归系数不能为负数");
+		}
+		if (sampleNum == 0) {
+			throw new IllegalStateException("没有样本，无法求解");
+		}
+		int n = featureNum;
+		double[] matrix = new double[n * n];
+		double[] rhs = new double[n];
+		double trace = 0.0;
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				double value = coMoments[i * dim + j];
+				matrix[i * n + j] = value;
+				matrix[j * n + i] = value;
+			}
+			rhs[i] = coMoments[i * dim + featureNum];
+			trace += matrix[i * n + i];
+		}
+
+		double[] factor = decomposeWithJitter(matrix, n, ridge, trace, 0);
+		double[] solution = choleskySolve(factor, n, rhs);
+		double[] weights = new double[n + 1];
+		double intercept = means[featureNum];
+		for (int i = 0; i < n; i++) {
+			weights[i + 1] = solution[i];
+			intercept -= solution[i] * means[i];
+		}
+		weights[0] = intercept;
+		return weights;
+	}
+
+	/**
+	 * 求增广Gram矩阵 [1 x]^T[1 x] 的逆，作为递推最小二乘的初始逆协方差矩阵
+	 *
+	 * 增广Gram矩阵由均值和中心化二阶矩还原，岭回归项只加在特征对应的对角线上，
+	 * 与{@link #solve(double)}的正则化方式一致。
+	 *
+	 * @param ridge 岭回归系数
+	 * @return (特征数+1)×(特征数+1)的逆矩阵，行优先存放，下标0对应截距
+	 */
+	public double[] invertAugmentedGram(double ridge) {
+		if (ridge < 0 || Double.isNaN(ridge)) {
+			throw new IllegalArgumentException("岭回归系数不能为负数");
+		}
+		if (sampleNum == 0) {
+			throw new IllegalStateException("没有样本，无法求逆");
+		}
+		int n = dim;
+		double[] gram = new double[n * n];
+		double trace = 0.0;
+		gram[0] = sampleNum;
+		for (int i = 0; i < featureNum; i++) {
+			double sum = sampleNum * means[i];
+			gram[i + 1] = sum;
+			gram[(i + 1) * n] = sum;
+			for (int j = i; j < featureNum; j++) {
+				double value = coMoments[i * dim + j] + sampleNum * means[i] * means[j];
+				gram[(i + 1) * n + j + 1] = value;
+				gram[(j + 1) * n + i + 1] = value;
+			}
+			trace += gram[(i + 1) * n + i + 1];
+		}
+		double[] factor = decomposeWithJitter(gram, n, ridge, trace, 1);
+
+		double[] inverse = new double[n * n];
+		double[] unit = new double[n];
+		for (int col = 0; col < n; col++) {
+			unit[col] = 1.0;
+			double[] column = choleskySolve(factor, n, unit);
+			unit[col] = 0.0;
+			for (int row = 0; row < n; row++) {
+				inverse[row * n + col] = column[row];
+			}
+		}
+		return inverse;
+	}
+
+	/**
+	 * 在下标不小于shiftFrom的对角线上加入岭回归项后做Cholesky分解，
+	 * 失败时在同样的对角线上逐步增加扰动后重试
+	 */
+	private static double[] decomposeWithJitter(double[] matrix, int n, double ridge, double trace,
+			int shiftFrom) {
+		double[] shifted = matrix.clone();
+		double[] factor = new double[n * n];
+		double jitter = 0.0;
+		double minJitter = Math.max(trace / n, 1.0) * 1e-12;
+		for (int retry = 0; retry <= MAX_JITTER_RETRY; retry++) {
+			for (int i = shiftFrom; i < n; i++) {
+				shifted[i * n + i] = matrix[i * n + i] + ridge + jitter;
+			}
+			if (choleskyDecompose(shifted, n, factor)) {
+				return factor;
+			}
+			jitter = jitter == 0.0 ? minJitter : jitter * 10;
+		}
+		throw new IllegalStateException("正规方程矩阵无法分解");
+	}
+
+	/**
+	 * 对对称矩阵做Cholesky分解 A = L L^T，L按行优先写入factor的下三角
+	 *
+	 * @return 矩阵正定时返回true
+	 */
+	static boolean choleskyDecompose(double[] matrix, int n, double[] factor) {
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				double sum = matrix[i * n + j];
+				for (int k = 0; k < j; k++) {
+					sum -= factor[i * n + k] * factor[j * n + k];
+				}
+				if (i == j) {
+					if (!(sum > 0.0)) {
+						return false;
+					}
+					factor[i * n + i] = Math.sqrt(sum);
+				} else {
+					factor[i * n + j] = sum / factor[j * n + j];
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 用Cholesky因子求解 L L^T x = b
+	 */
+	static double[] choleskySolve(double[] factor, int n, double[] rhs) {
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			double sum = rhs[i];
+			for (int k = 0; k < i; k++) {
+				sum -= factor[i * n + k] * y[k];
+			}
+			y[i] = sum / factor[i * n + i];
+		}
+		double[] x = new double[n];
+		for (int i = n - 1; i >= 0; i--) {
+			double sum = y[i];
+			for (int k = i + 1; k < n; k++) {
+				sum -= factor[k * n + i] * x[k];
+			}
+			x[i] = sum / factor[i * n + i];
+		}
+		return x;
+	}
+
+	/**
+	 * 获取特征数
+	 *
+	 * @return 特征数
+	 */
+	public int getFeatureNum() {
+		return featureNum;
+	}
+
+	/**
+	 * 获取已累加的样本数
+	 *
+	 * @return 样本数
+	 */
+	public long getSampleNum() {
+		return sampleNum;
+	}
+}
@@ -1,315 +1,359 @@
 package com.leavesfly.iac.train.trainer.lr;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 
 import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
 import com.leavesfly.iac.train.domain.TrainDataItem;
 import com.leavesfly.iac.train.trainer.TrainModel;
 
 /**
  * 线性回归模型 :y=w0+w1*f1*+w2*f2+...+wi*fi
- * 
+ *
+ * 训练时逐条累加样本的均值和中心化协方差（见{@link LeastSquaresAccumulator}），
+ * 不构造n×d的设计矩阵，时间与样本数成线性关系，内存只与特征数有关；
+ * 之后用Cholesky分解求解正规方程，可选岭回归正则化。全部计算使用double。
+ *
+ * 训练后还可以用{@link #update(IntellacTrainDataItem)}逐条吸收新数据（递推最小二乘，RLS），
+ * 每条数据的代价为O(d²)，不需要回看历史数据；遗忘因子小于1时旧数据的权重按指数衰减，
+ * 模型能跟上环境变化。批量训练后的递推更新与把新数据并入后重新批量训练的结果一致。
+ *
+ * 推理只读取已发布的系数数组，可被多个线程同时使用；训练和递推更新之间互斥。
+ *
  * @see{wiki:http://zh.wikipedia.org/wiki/%E6%9C%80%E5%B0%8F%E4%BA%8C%E4%B9%98%E6%B3%95}
- * 
+ *
  * @author yefei.yf
- * 
+ *
  */
 public class LineRegressModel implements TrainModel {
 
-	private float[] weightArray;
+	/**
+	 * 默认岭回归系数，0表示普通最小二乘
+	 */
+	public static final double DEFAULT_RIDGE = 0.0;
 
-	public static TrainModel getIntance() {
-		return new LineRegressModel();
-	}
+	/**
+	 * 默认遗忘因子，1表示不遗忘
+	 */
+	public static final double DEFAULT_FORGETTING_FACTOR = 1.0;
 
-	private LineRegressModel() {
-		weightArray = new float[AppContextConstant.SENSOR_NUM + 1];
-	}
+	/**
+	 * 未经批量训练直接递推更新时，初始逆协方差矩阵的对角线值
+	 */
+	private static final double INITIAL_COVARIANCE = 1e6;
 
-	@Override
-	public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
-		Matrix trainMatrix = buildTrainMatix(trainDataSet);
-		Matrix resultMatrix = buildResultMati(trainDataSet);
-		trainMatrix = trainMatrix.insertColumnWithValueOne();
-		// 矩阵装置X'
-		final Matrix transposeMatrix = Matrix.transpose(trainMatrix);
-		// XX'
-		final Matrix tmp = Matrix.multiply(transposeMatrix, trainMatrix);
-		// (XX')的逆矩阵
-		final Matrix inverseOfTmp = Matrix.inverse(tmp);
-		// X的转置与Y相乘：X'Y
-		final Matrix backPart = Matrix.multiply(transposeMatrix, resultMatrix);
-		// (XX')^-1 X'Y
-		Matrix weightMatrix = Matrix.multiply(inverseOfTmp, backPart);
-
-		setWeightArray(weightMatrix);
-	}
+	/**
+	 * 逆协方差矩阵迹的上限，超过后暂停遗忘，防止长时间缺少激励时矩阵发散
+	 */
+	private static final double MAX_COVARIANCE_TRACE = 1e12;
 
-	private static <T extends TrainDataItem<Float, Float>> Matrix buildTrainMatix(
-			Collection<T> trainDataSet) {
-		Matrix trainMatrix = new Matrix(trainDataSet.size(), trainDataSet.iterator().next()
-				.getFeature().length);
-		int i = 0;
-		for (T type : trainDataSet) {
-			int j = 0;
-			for (float value : type.getFeature()) {
-				trainMatrix.setValueAt(i, j, value);
-				j++;
-			}
-			i++;
-		}
-		return trainMatrix;
+	/**
+	 * 岭回归系数
+	 */
+	private final double ridge;
+
+	/**
+	 * 遗忘因子
+	 */
+	private final double forgettingFactor;
+
+	/**
+	 * 回归系数，下标0为截距；每次训练或更新都发布新数组，发布后不再修改
+	 */
+	private volatile double[] weightArray;
+
+	/**
+	 * 递推最小二乘的逆协方差矩阵，行优先存放，首次递推更新或批量训练时创建
+	 */
+	private double[] inverseCovariance;
+
+	/**
+	 * 递推更新时的增广输入缓冲区
+	 */
+	private double[] augmentedInput;
+
+	/**
+	 * 递推更新时的 P·x 缓冲区
+	 */
+	private double[] gainBuffer;
+
+	public static TrainModel getIntance() {
+		return new LineRegressModel(DEFAULT_RIDGE, DEFAULT_FORGETTING_FACTOR);
 	}
 
-	private static <T extends TrainDataItem<Float, Float>> Matrix buildResultMati(
-			Collection<T> trainDataSet) {
-		Matrix resultMatrix = new Matrix(trainDataSet.size(), 1);
-		int i = 0;
-		for (T type : trainDataSet) {
-			resultMatrix.setValueAt(i, 0, type.getResult());
-			i++;
-		}
-		return resultMatrix;
+	/**
+	 * 创建带岭回归正则化的线性回归模型
+	 *
+	 * @param ridge 岭回归系数，作用于中心化后的协方差矩阵对角线，不作用于截距
+	 * @return 线性回归模型
+	 */
+	public static TrainModel getIntance(double ridge) {
+		return new LineRegressModel(ridge, DEFAULT_FORGETTING_FACTOR);
+	}
 
+	/**
+	 * 创建带岭回归正则化和遗忘因子的线性回归模型
+	 *
+	 * @param ridge 岭回归系数
+	 * @param forgettingFactor 递推更新的遗忘因子，取值(0, 1]，常用0.98~0.999
+	 * @return 线性回归模型
+	 */
+	public static TrainModel getIntance(double ridge, double forgettingFactor) {
+		return new LineRegressModel(ridge, forgettingFactor);
 	}
 
-	private void setWeightArray(Matrix weightMatrix) {
-		if (weightMatrix.getColNum() != weightArray.length) {
-			throw new RuntimeException("LineRegressModel.setWeightArray");
+	private LineRegressModel(double ridge, double forgettingFactor) {
+		if (ridge < 0 || Double.isNaN(ridge)) {
+			throw new IllegalArgumentException("岭回归系数不能为负数");
 		}
-		for (int i = 0; i < weightArray.length; i++) {
-			weightArray[i] = weightMatrix.getValueAt(i, 0);
+		if (!(forgettingFactor > 0 && forgettingFactor <= 1)) {
+			throw new IllegalArgumentException("遗忘因子必须在(0, 1]范围内");
 		}
+		this.ridge = ridge;
+		this.forgettingFactor = forgettingFactor;
+		weightArray = new double[AppContextConstant.AIR_CONDITION_NUM + 1];
 	}
 
 	@Override
-	public <T extends Number> float useMode(T[] feature) {
-		if (feature.length != weightArray.length - 1) {
-			throw new IllegalArgumentException();
+	public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+		LeastSquaresAccumulator accumulator = null;
+		float[] values = null;
+		for (T item : trainDataSet) {
+			float[] features;
+			if (item instanceof IntellacTrainDataItem) {
+				features = ((IntellacTrainDataItem) item).getFeatureValues();
+			} else {
+				Float[] feature = item.getFeature();
+				if (values == null || values.length != feature.length) {
+					values = new float[feature.length];
+				}
+				for (int i = 0; i < feature.length; i++) {
+					values[i] = feature[i];
+				}
+				features = values;
+			}
+			if (accumulator == null) {
+				accumulator = new LeastSquaresAccumulator(features.length);
+			}
+			accumulator.add(features, item.getResult());
 		}
-		Float[] floatFeature = (Float[]) feature;
-		float result = 0f;
-		for (int i = 0; i < floatFeature.length; i++) {
-			result += floatFeature[i] * weightArray[i + 1];
+		if (accumulator != null) {
+			train(accumulator);
 		}
-		result += weightArray[0];
-		return result;
 	}
 
 	/**
-	 * 
-	 * 矩阵
-	 * 
-	 * @author yefei.yf
+	 * 使用已累加的统计量求解回归系数
 	 *
+	 * 适合数据分片统计后合并的场景，各分片可在不同线程中累加后调用
+	 * {@link LeastSquaresAccumulator#merge(LeastSquaresAccumulator)}合并。
+	 *
+	 * @param accumulator 最小二乘统计量累加器
 	 */
-	private static class Matrix {
-		private int rowNum;
-		private int colNum;
-		private float[][] data;
-
-		public Matrix(int rowNum, int colNum) {
-			this.rowNum = rowNum;
-			this.rowNum = colNum;
-			data = new float[rowNum][colNum];
-		}
+	public synchronized void train(LeastSquaresAccumulator accumulator) {
+		double[] weights = accumulator.solve(ridge);
+		inverseCovariance = accumulator.invertAugmentedGram(ridge);
+		weightArray = weights;
+	}
 
-		/**
-		 * 两矩阵相乘
-		 * 
-		 * @param matrix1
-		 * @param matrix2
-		 * @return
-		 */
-		public static Matrix multiply(Matrix matrix1, Matrix matrix2) {
-			Matrix multipliedMatrix = new Matrix(matrix1.getRowNum(), matrix2.getColNum());
-			for (int i = 0; i < multipliedMatrix.getRowNum(); i++) {
-				for (int j = 0; j < multipliedMatrix.getColNum(); j++) {
-					float sum = 0f;
-					for (int k = 0; k < matrix1.getColNum(); k++) {
-						sum += matrix1.getValueAt(i, k) * matrix2.getValueAt(k, j);
-					}
-					multipliedMatrix.setValueAt(i, j, sum);
-				}
-			}
-			return multipliedMatrix;
-		}
+	/**
+	 * 用一条新数据递推更新回归系数
+	 *
+	 * @param item 训练数据项
+	 */
+	public void update(IntellacTrainDataItem item) {
+		update(item.getFeatureValues(), item.getTemperature());
+	}
 
-		/**
-		 * 求矩阵的装置
-		 * 
-		 * @param matrix
-		 * @return
-		 */
-		public static Matrix transpose(Matrix matrix) {
-			Matrix transposedMatrix = new Matrix(matrix.getColNum(), matrix.getColNum());
-			for (int i = 0; i < matrix.getRowNum(); i++) {
-				for (int j = 0; j < matrix.getColNum(); j++) {
-					transposedMatrix.setValueAt(j, i, matrix.getValueAt(i, j));
-				}
-			}
-			return transposedMatrix;
+	/**
+	 * 用一条新数据递推更新回归系数
+	 *
+	 * 更新公式（x为补1后的增广输入，λ为遗忘因子）：
+	 * k = P·x / (λ + x'·P·x)，w = w + k·(y - w'·x)，P = (P - k·x'·P) / λ
+	 *
+	 * @param features 特征数组
+	 * @param result 结果值
+	 */
+	public synchronized void update(float[] features, float result) {
+		double[] weights = weightArray;
+		int n = weights.length;
+		if (features.length != n - 1) {
+			throw new IllegalArgumentException("特征维度(" + features.length + ")与模型特征数("
+					+ (n - 1) + ")不匹配");
 		}
-
-		/**
-		 * 求矩阵的行列式
-		 * 
-		 * @param matrix
-		 * @return
-		 */
-		public static float determinant(Matrix matrix) {
-			if (!matrix.isSquare())
-				throw new RuntimeException("matrix need to be square.");
-			if (matrix.size() == 1) {
-				return matrix.getValueAt(0, 0);
-			}
-			if (matrix.size() == 2) {
-				return (matrix.getValueAt(0, 0) * matrix.getValueAt(1, 1))
-						- (matrix.getValueAt(0, 1) * matrix.getValueAt(1, 0));
-			}
-			float sum = 0f;
-			for (int i = 0; i < matrix.getColNum(); i++) {
-				sum += changeSign(i) * matrix.getValueAt(0, i)
-						* determinant(createSubMatrix(matrix, 0, i));
+		if (inverseCovariance == null || inverseCovariance.length != n * n) {
+			inverseCovariance = new double[n * n];
+			for (int i = 0; i < n; i++) {
+				inverseCovariance[i * n + i] = INITIAL_COVARIANCE;
 			}
-			return sum;
 		}
-
-		/**
-		 * 创建一个排除掉指定行和指定列的子矩阵
-		 * 
-		 * @param matrix
-		 * @param excluding_row
-		 * @param excluding_col
-		 * @return
-		 */
-		public static Matrix createSubMatrix(Matrix matrix, int excluding_row, int excluding_col) {
-			Matrix mat = new Matrix(matrix.getRowNum() - 1, matrix.getColNum() - 1);
-			int r = -1;
-			for (int i = 0; i < matrix.getRowNum(); i++) {
-				if (i == excluding_row)
-					continue;
-				r++;
-				int c = -1;
-				for (int j = 0; j < matrix.getColNum(); j++) {
-					if (j == excluding_col)
-						continue;
-					mat.setValueAt(r, ++c, matrix.getValueAt(i, j));
-				}
-			}
-			return mat;
+		if (augmentedInput == null || augmentedInput.length != n) {
+			augmentedInput = new double[n];
+			gainBuffer = new double[n];
 		}
-
-		/**
-		 * 求矩阵的伴随矩阵
-		 * 
-		 * @param matrix
-		 * @return
-		 * @throws NoSquareException
-		 */
-		public static Matrix cofactor(Matrix matrix) {
-			Matrix mat = new Matrix(matrix.getRowNum(), matrix.getColNum());
-			for (int i = 0; i < matrix.getRowNum(); i++) {
-				for (int j = 0; j < matrix.getColNum(); j++) {
-					mat.setValueAt(i, j, changeSign(i) * changeSign(j)
-							* determinant(createSubMatrix(matrix, i, j)));
-				}
-			}
-			return mat;
+		double[] x = augmentedInput;
+		double[] px = gainBuffer;
+		double[] p = inverseCovariance;
+		x[0] = 1.0;
+		for (int i = 1; i < n; i++) {
+			x[i] = features[i - 1];
 		}
 
-		/**
-		 * 求矩阵的逆
-		 * 
-		 * @param matrix
-		 * @return
-		 */
-		public static Matrix inverse(Matrix matrix) {
-			return (transpose(cofactor(matrix)).multiplyByConstant(1f / determinant(matrix)));
+		double denominator = forgettingFactor;
+		double prediction = 0.0;
+		for (int i = 0; i < n; i++) {
+			double sum = 0.0;
+			int base = i * n;
+			for (int j = 0; j < n; j++) {
+				sum += p[base + j] * x[j];
+			}
+			px[i] = sum;
+			denominator += x[i] * sum;
+			prediction += weights[i] * x[i];
 		}
+		double error = result - prediction;
 
-		/**
-		 * 改变正负号
-		 * 
-		 * @param i
-		 * @return
-		 */
-		private static int changeSign(int i) {
-			if (i % 2 == 0)
-				return 1;
-			return -1;
+		double[] newWeights = new double[n];
+		for (int i = 0; i < n; i++) {
+			newWeights[i] = weights[i] + px[i] * error / denominator;
 		}
 
-		public int size() {
-			if (isSquare()) {
-				return rowNum;
+		// P对称，x'·P = (P·x)'
+		double trace = 0.0;
+		for (int i = 0; i < n; i++) {
+			int base = i * n;
+			double scaled = px[i] / denominator;
+			for (int j = 0; j < n; j++) {
+				p[base + j] -= scaled * px[j];
 			}
-			return 0;
+			trace += p[base + i];
 		}
-
-		public boolean isSquare() {
-			if (rowNum == colNum) {
-				return true;
+		if (forgettingFactor < 1.0 && trace < MAX_COVARIANCE_TRACE) {
+			double scale = 1.0 / forgettingFactor;
+			for (int i = 0; i < p.length; i++) {
+				p[i] *= scale;
 			}
-			return false;
 		}
+		weightArray = newWeights;
+	}
 
-		public float getValueAt(int row, int col) {
-			if ((row >= 0 && row < rowNum) && (col >= 0 && col < colNum)) {
-				return data[row][col];
+	/**
+	 * 以二进制格式写出模型
+	 *
+	 * 格式为：[岭回归系数][遗忘因子][系数个数n][n个系数][是否有逆协方差矩阵][n×n个矩阵元素]，
+	 * 写出逆协方差矩阵是为了读回后可以继续递推更新。
+	 *
+	 * @param out 输出流
+	 * @throws IOException 写出失败
+	 */
+	public synchronized void writeModel(DataOutput out) throws IOException {
+		double[] weights = weightArray;
+		out.writeDouble(ridge);
+		out.writeDouble(forgettingFactor);
+		out.writeInt(weights.length);
+		for (double weight : weights) {
+			out.writeDouble(weight);
+		}
+		boolean hasCovariance = inverseCovariance != null
+				&& inverseCovariance.length == weights.length * weights.length;
+		out.writeBoolean(hasCovariance);
+		if (hasCovariance) {
+			for (double value : inverseCovariance) {
+				out.writeDouble(value);
 			}
-			return 0f;
 		}
+	}
 
-		public void setValueAt(int row, int col, float value) {
-			if ((row >= 0 && row < rowNum) && (col >= 0 && col < colNum)) {
-				data[row][col] = value;
-			} else {
-				throw new ArrayIndexOutOfBoundsException();
+	/**
+	 * 读回{@link #writeModel}写出的模型
+	 *
+	 * @param in 输入流
+	 * @return 线性回归模型
+	 * @throws IOException 读取失败或数据无效
+	 */
+	public static LineRegressModel readModel(DataInput in) throws IOException {
+		double ridge = in.readDouble();
+		double forgettingFactor = in.readDouble();
+		int weightNum = in.readInt();
+		if (weightNum < 2) {
+			throw new IOException("系数个数无效: " + weightNum);
+		}
+		LineRegressModel model;
+		try {
+			model = new LineRegressModel(ridge, forgettingFactor);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("模型参数无效", e);
+		}
+		double[] weights = new double[weightNum];
+		for (int i = 0; i < weightNum; i++) {
+			weights[i] = in.readDouble();
+		}
+		if (in.readBoolean()) {
+			double[] covariance = new double[weightNum * weightNum];
+			for (int i = 0; i < covariance.length; i++) {
+				covariance[i] = in.readDouble();
 			}
+			model.inverseCovariance = covariance;
 		}
+		model.weightArray = weights;
+		return model;
+	}
+
+	/**
+	 * 获取回归系数的副本
+	 *
+	 * @return 回归系数，下标0为截距
+	 */
+	public double[] getWeights() {
+		return weightArray.clone();
+	}
 
-		public int getRowNum() {
-			return rowNum;
+	@Override
+	public <T extends Number> float useMode(T[] feature) {
+		double[] weights = weightArray;
+		if (feature.length != weights.length - 1) {
+			throw new IllegalArgumentException();
 		}
+		double result = weights[0];
+		for (int i = 0; i < feature.length; i++) {
+			result += feature[i].doubleValue() * weights[i + 1];
+		}
+		return (float) result;
+	}
 
-		public int getColNum() {
-			return colNum;
+	@Override
+	public float predict(float[] features) {
+		double[] weights = weightArray;
+		if (features.length != weights.length - 1) {
+			throw new IllegalArgumentException();
 		}
+		return calResult(weights, features, 0);
+	}
 
-		/**
-		 * 矩阵乘以一个常数
-		 * 
-		 * @param constant
-		 * @return
-		 */
-		public Matrix multiplyByConstant(float constant) {
-			Matrix mat = new Matrix(rowNum, colNum);
-			for (int i = 0; i < rowNum; i++) {
-				for (int j = 0; j < colNum; j++) {
-					mat.setValueAt(i, j, data[i][j] * constant);
-				}
-			}
-			return mat;
+	@Override
+	public void predictBatch(float[] rowsMajor, int rows, float[] out) {
+		int cols = TrainModel.batchColumnNum(rowsMajor, rows, out);
+		if (rows == 0) {
+			return;
+		}
+		double[] weights = weightArray;
+		if (cols != weights.length - 1) {
+			throw new IllegalArgumentException();
+		}
+		for (int r = 0; r < rows; r++) {
+			out[r] = calResult(weights, rowsMajor, r * cols);
 		}
+	}
 
-		/**
-		 * 偏差补齐矩阵
-		 * 
-		 * @return
-		 */
-		public Matrix insertColumnWithValueOne() {
-			Matrix newMatrix = new Matrix(this.rowNum, this.colNum + 1);
-			for (int i = 0; i < newMatrix.rowNum; i++) {
-				for (int j = 0; j < newMatrix.colNum; j++) {
-					if (j == 0)
-						newMatrix.setValueAt(i, j, 1.0f);
-					else
-						newMatrix.setValueAt(i, j, this.getValueAt(i, j - 1));
-				}
-			}
-			return newMatrix;
+	private static float calResult(double[] weights, float[] features, int offset) {
+		double result = weights[0];
+		for (int i = 1; i < weights.length; i++) {
+			result += features[offset + i - 1] * weights[i];
 		}
+		return (float) result;
 	}
 
 }
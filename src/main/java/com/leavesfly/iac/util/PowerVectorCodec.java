@@ -0,0 +1,217 @@
+package com.leavesfly.iac.util;
+
+import java.nio.ByteBuffer;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerBounds;
+import com.leavesfly.iac.domain.PowerVector;
+
+/**
+ * 功率向量二进制编解码工具类
+ *
+ * 该类以紧凑的二进制格式编码功率向量，替代Java对象序列化。格式如下：
+ * <pre>
+ * [版本号:1字节][标志:1字节][长度:变长整数][边界数据][功率值数据]
+ * </pre>
+ * 标志的最低位表示功率值是否量化为16位；第1、2位表示边界类型：
+ * 0为空调默认边界（无边界数据），1为统一边界（2个float），2为逐分量边界（2n个float）。
+ * 功率值不量化时为n个float；量化时先写最小值和最大值（2个float），
+ * 再写n个无符号16位整数，误差不超过(最大值 - 最小值) / 131070。
+ * 所有多字节数值均为大端序。
+ */
+public class PowerVectorCodec {
+
+	/**
+	 * 当前编码版本号
+	 */
+	public static final byte VERSION_1 = 1;
+
+	private static final int FLAG_QUANTIZED = 0x01;
+
+	private static final int BOUNDS_DEFAULT = 0;
+
+	private static final int BOUNDS_UNIFORM = 1;
+
+	private static final int BOUNDS_PER_ELEMENT = 2;
+
+	private static final int QUANTIZE_LEVELS = 0xFFFF;
+
+	/**
+	 * 编码功率向量，功率值不做量化
+	 *
+	 * @param powerVector 功率向量
+	 * @return 编码后的字节数组
+	 */
+	public static byte[] encode(PowerVector powerVector) {
+		return encode(powerVector, false);
+	}
+
+	/**
+	 * 编码功率向量
+	 *
+	 * @param powerVector 功率向量
+	 * @param quantize 是否将功率值量化为16位
+	 * @return 编码后的字节数组
+	 */
+	public static byte[] encode(PowerVector powerVector, boolean quantize) {
+		float[] values = powerVector.getPowerValueArray();
+		PowerBounds bounds = powerVector.getBounds();
+		int size = values.length;
+
+		int boundsKind;
+		if (bounds == PowerBounds.airCondition(size)) {
+			boundsKind = BOUNDS_DEFAULT;
+		} else if (bounds.isUniform()) {
+			boundsKind = BOUNDS_UNIFORM;
+		} else {
+			boundsKind = BOUNDS_PER_ELEMENT;
+		}
+		int boundsBytes = boundsKind == BOUNDS_DEFAULT ? 0 : boundsKind == BOUNDS_UNIFORM ? 8
+				: 8 * size;
+		int valueBytes = quantize ? 8 + 2 * size : 4 * size;
+
+		ByteBuffer buffer = ByteBuffer.allocate(2 + varIntSize(size) + boundsBytes + valueBytes);
+		buffer.put(VERSION_1);
+		buffer.put((byte) ((quantize ? FLAG_QUANTIZED : 0) | (boundsKind << 1)));
+		putVarInt(buffer, size);
+
+		if (boundsKind == BOUNDS_UNIFORM && size > 0) {
+			buffer.putFloat(bounds.getFrom(0)).putFloat(bounds.getTo(0));
+		} else if (boundsKind == BOUNDS_PER_ELEMENT) {
+			for (int i = 0; i < size; i++) {
+				buffer.putFloat(bounds.getFrom(i)).putFloat(bounds.getTo(i));
+			}
+		}
+
+		if (quantize) {
+			float min = Float.POSITIVE_INFINITY;
+			float max = Float.NEGATIVE_INFINITY;
+			for (float value : values) {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			if (size == 0) {
+				min = max = 0.0f;
+			}
+			buffer.putFloat(min).putFloat(max);
+			float scale = max > min ? QUANTIZE_LEVELS / (max - min) : 0.0f;
+			for (float value : values) {
+				buffer.putShort((short) Math.round((value - min) * scale));
+			}
+		} else {
+			for (float value : values) {
+				buffer.putFloat(value);
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * 解码功率向量
+	 *
+	 * @param bytes 编码后的字节数组
+	 * @return 功率向量
+	 */
+	public static PowerVector decode(byte[] bytes) {
+		return decode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * 解码功率向量
+	 *
+	 * 只接受{@link #encode}写出的格式，不支持Java对象序列化的数据
+	 *
+	 * @param bytes 字节数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 功率向量
+	 * @throws IllegalArgumentException 数据不完整或版本不支持
+	 */
+	public static PowerVector decode(byte[] bytes, int offset, int length) {
+		if (bytes == null || length < 2) {
+			throw new IllegalArgumentException("功率向量编码数据不完整");
+		}
+		if (bytes[offset] != VERSION_1) {
+			throw new IllegalArgumentException("不支持的功率向量编码版本: " + bytes[offset]);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, offset + 1, length - 1);
+		int flags = buffer.get();
+		boolean quantized = (flags & FLAG_QUANTIZED) != 0;
+		int boundsKind = (flags >> 1) & 0x03;
+		int size = getVarInt(buffer);
+
+		PowerBounds bounds;
+		if (boundsKind == BOUNDS_DEFAULT) {
+			bounds = PowerBounds.airCondition(size);
+		} else if (boundsKind == BOUNDS_UNIFORM) {
+			float from = size > 0 ? buffer.getFloat() : AppContextConstant.AIR_CONDITION_MIN_POWER;
+			float to = size > 0 ? buffer.getFloat() : AppContextConstant.AIR_CONDITION_MAX_POWER;
+			bounds = PowerBounds.uniform(from, to, size);
+		} else {
+			float[] from = new float[size];
+			float[] to = new float[size];
+			for (int i = 0; i < size; i++) {
+				from[i] = buffer.getFloat();
+				to[i] = buffer.getFloat();
+			}
+			bounds = PowerBounds.of(from, to);
+		}
+
+		float[] values = new float[size];
+		if (quantized) {
+			float min = buffer.getFloat();
+			float max = buffer.getFloat();
+			float step = (max - min) / QUANTIZE_LEVELS;
+			for (int i = 0; i < size; i++) {
+				values[i] = min + (buffer.getShort() & 0xFFFF) * step;
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				values[i] = buffer.getFloat();
+			}
+		}
+		return new PowerVector(values, bounds);
+	}
+
+	/**
+	 * 深拷贝功率向量，代替基于Java序列化的深拷贝
+	 *
+	 * 功率边界不可变，拷贝后与原向量共享。
+	 *
+	 * @param powerVector 功率向量
+	 * @return 拷贝后的功率向量
+	 */
+	public static PowerVector copy(PowerVector powerVector) {
+		return new PowerVector(powerVector.getPowerValueArray().clone(), powerVector.getBounds());
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static void putVarInt(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static int getVarInt(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("功率向量长度编码错误");
+	}
+}
@@ -7,6 +7,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import com.leavesfly.iac.domain.PowerVector;
+
 public class SerializeUtil {
 	/**
 	 * 将对象序列化成byte数组
@@ -49,11 +51,15 @@ public class SerializeUtil {
 	}
 
 	/**
+	 * 通过序列化深拷贝对象，功率向量直接拷贝其数值数组
 	 * 
 	 * @param serialObject
 	 * @return
 	 */
 	public static Object deepCopyBySerializable(Serializable serialObject) {
+		if (serialObject instanceof PowerVector) {
+			return PowerVectorCodec.copy((PowerVector) serialObject);
+		}
 		return byteArray2Object(object2ByteArray(serialObject));
 	}
 }
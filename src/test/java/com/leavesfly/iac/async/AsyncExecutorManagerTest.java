@@ -0,0 +1,85 @@
+package com.leavesfly.iac.async;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * 异步执行管理器测试
+ *
+ * 验证并行计算结果的顺序、失败的汇总，以及在计算线程池中嵌套调用时不会死锁
+ */
+public class AsyncExecutorManagerTest {
+
+    private static List<Supplier<Integer>> squareTasks(int num) {
+        List<Supplier<Integer>> tasks = new ArrayList<Supplier<Integer>>();
+        for (int i = 0; i < num; i++) {
+            final int value = i;
+            tasks.add(() -> value * value);
+        }
+        return tasks;
+    }
+
+    @Test
+    public void testResultsKeepTaskOrder() {
+        List<Integer> results = AsyncExecutorManager.getInstance().invokeAllCompute(squareTasks(50));
+        assertEquals(50, results.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i * i, results.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testFailuresAreCollected() {
+        List<Supplier<Integer>> tasks = Arrays.<Supplier<Integer>> asList(() -> 1, () -> {
+            throw new IllegalArgumentException("first");
+        }, () -> {
+            throw new IllegalStateException("second");
+        });
+        try {
+            AsyncExecutorManager.getInstance().invokeAllCompute(tasks);
+            fail("任务失败时应抛出CompletionException");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0] instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testNestedCallsInsideComputePool() throws Exception {
+        final AsyncExecutorManager executorManager = AsyncExecutorManager.getInstance();
+        int taskNum = Runtime.getRuntime().availableProcessors() * 2;
+        List<CompletableFuture<Integer>> futureList = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < taskNum; i++) {
+            futureList.add(executorManager.executeCompute(() -> {
+                List<Supplier<Integer>> outer = new ArrayList<Supplier<Integer>>();
+                for (int j = 0; j < 4; j++) {
+                    outer.add(() -> {
+                        int sum = 0;
+                        for (int square : executorManager.invokeAllCompute(squareTasks(10))) {
+                            sum += square;
+                        }
+                        return sum;
+                    });
+                }
+                int total = 0;
+                for (int sum : executorManager.invokeAllCompute(outer)) {
+                    total += sum;
+                }
+                return total;
+            }));
+        }
+        for (CompletableFuture<Integer> future : futureList) {
+            assertEquals(4 * 285, future.get(30, TimeUnit.SECONDS).intValue());
+        }
+    }
+}
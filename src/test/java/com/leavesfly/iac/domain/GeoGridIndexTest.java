@@ -0,0 +1,86 @@
+package com.leavesfly.iac.domain;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * GeoGridIndex网格索引测试
+ *
+ * 以逐点比较距离的结果为基准，测试半径查询、点移动和删除
+ */
+public class GeoGridIndexTest {
+
+    private static final float RADIUS = 5.35f;
+
+    private static List<String> bruteForce(Map<String, GeoPoint> geoTable, GeoPoint center,
+            float radius) {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<String, GeoPoint> entry : geoTable.entrySet()) {
+            if (center.getDistance(entry.getValue()) <= radius) {
+                result.add(entry.getKey());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void testQueryRadiusMatchesBruteForce() {
+        Random random = new Random(7);
+        Map<String, GeoPoint> sensorGeoTable = new HashMap<String, GeoPoint>();
+        for (int i = 0; i < 500; i++) {
+            sensorGeoTable.put("s" + i, new GeoPoint(random.nextInt(100) - 20,
+                    random.nextInt(100) - 20));
+        }
+        GeoGridIndex index = GeoGridIndex.of(sensorGeoTable, RADIUS);
+        assertEquals(500, index.size());
+
+        for (int i = 0; i < 200; i++) {
+            GeoPoint center = new GeoPoint(random.nextInt(100) - 20, random.nextInt(100) - 20);
+            assertEquals(bruteForce(sensorGeoTable, center, RADIUS),
+                    sorted(index.queryRadius(center, RADIUS)));
+            assertEquals("半径与网格边长不同时结果也应一致", bruteForce(sensorGeoTable, center, 12.5f),
+                    sorted(index.queryRadius(center, 12.5f)));
+        }
+    }
+
+    @Test
+    public void testBoundaryDistanceIsIncluded() {
+        GeoGridIndex index = new GeoGridIndex(RADIUS);
+        index.put("s0", new GeoPoint(3, 4));
+        assertEquals(Collections.singletonList("s0"), index.queryRadius(new GeoPoint(0, 0), 5.0f));
+        assertTrue(index.queryRadius(new GeoPoint(0, 0), 4.99f).isEmpty());
+    }
+
+    @Test
+    public void testMoveAndRemove() {
+        GeoGridIndex index = new GeoGridIndex(RADIUS);
+        GeoPoint geoPoint = new GeoPoint(0, 0);
+        index.put("u0", geoPoint);
+
+        geoPoint.setX(50);
+        assertEquals("修改原对象不应影响索引", 1, index.queryRadius(new GeoPoint(0, 0), 1.0f).size());
+
+        index.put("u0", geoPoint);
+        assertTrue(index.queryRadius(new GeoPoint(0, 0), 1.0f).isEmpty());
+        assertEquals(1, index.queryRadius(new GeoPoint(50, 0), 1.0f).size());
+        assertEquals(1, index.size());
+
+        assertTrue(index.remove("u0"));
+        assertFalse(index.remove("u0"));
+        assertTrue(index.queryRadius(new GeoPoint(50, 0), 1.0f).isEmpty());
+    }
+}
@@ -92,7 +92,7 @@ public class PowerVectorTest {
         new PowerVector((PowerValue[]) null);
     }
 
-    @Test
+    @Test(expected = IllegalArgumentException.class)
     public void testPowerVectorWithNullElement() {
         PowerValue[] powers = {
             new PowerValue(30.0f, testRange),
@@ -100,17 +100,8 @@ public class PowerVectorTest {
             new PowerValue(70.0f, testRange)
         };
         
-        // PowerVector类不会检查null元素，所以不会抛出异常
-        PowerVector vector = new PowerVector(powers);
-        assertNotNull("向量不应为null", vector);
-        
-        // 但是访问时可能会有问题
-        try {
-            powers[1].getValue(); // 这里会抛出NullPointerException
-            fail("应该抛出异常");
-        } catch (NullPointerException e) {
-            // 预期的异常
-        }
+        // 功率值以float数组保存，构造时即拒绝null元素
+        new PowerVector(powers);
     }
 
     @Test
@@ -141,17 +132,33 @@ public class PowerVectorTest {
     public void testVectorImmutability() {
         PowerValue[] originalValues = testPowerVector.getPowerValueVector();
         
-        // 尝试修改返回的数组
-        PowerValue originalFirst = originalValues[0];
+        // 修改返回的数组及其元素
         originalValues[0] = new PowerValue(999.0f, testRange);
+        originalValues[1].setValue(888.0f);
         
-        // PowerVector类直接返回内部数组引用，所以会被修改
-        // 这是一个设计缺陷，但是我们测试实际行为
+        // 适配接口每次返回新的数组，不影响向量本身
         PowerValue[] newValues = testPowerVector.getPowerValueVector();
-        assertEquals("向量内容已被修改（这是设计缺陷）", 999.0f, newValues[0].getValue(), 0.001f);
-        
-        // 重新设置为原始值以便其他测试正常运行
-        originalValues[0] = originalFirst;
+        assertEquals("向量内容不应被修改", 30.0f, newValues[0].getValue(), 0.001f);
+        assertEquals("向量内容不应被修改", 50.0f, newValues[1].getValue(), 0.001f);
+    }
+
+    @Test
+    public void testPrimitiveView() {
+        float[] view = testPowerVector.getPowerValueArray();
+        assertSame("只读视图不应拷贝", view, testPowerVector.getPowerValueArray());
+        assertEquals(3, testPowerVector.getSize());
+        assertEquals(50.0f, testPowerVector.getPowerValue(1), 0.001f);
+        assertEquals(testRange.getFrom(), testPowerVector.getBounds().getFrom(2), 0.001f);
+        assertEquals(testRange.getTo(), testPowerVector.getBounds().getTo(2), 0.001f);
+        assertTrue(testPowerVector.getBounds().isUniform());
+    }
+
+    @Test
+    public void testDefaultBoundsAreShared() {
+        PowerVector first = PowerVector.wrap(new float[] { 1.0f, 2.0f });
+        PowerVector second = new PowerVector(new Float[] { 3.0f, 4.0f }, 2);
+        assertSame("默认功率边界应共享同一实例", first.getBounds(), second.getBounds());
+        assertEquals(400.0f, second.getPowerValueVector()[1].getTo(), 0.001f);
     }
 
     @Test
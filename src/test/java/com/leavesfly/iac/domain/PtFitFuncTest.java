@@ -136,4 +136,25 @@ public class PtFitFuncTest {
         assertEquals("相同模型应该返回相同结果", temp1, temp2, 0.001f);
         assertEquals("结果应该等于模拟模型的预期值", 25.5f, temp1, 0.001f);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPredictWithPrimitiveFeatures() {
+        float[] powers = {30.0f, 50.0f, 70.0f};
+        assertEquals("原始类型接口应与功率向量接口结果一致",
+                ptFitFunc.calTemperature(testPowerVector), ptFitFunc.predict(powers), 0.001f);
+    }
+
+    @Test
+    public void testPredictBatch() {
+        float[] rowsMajor = {10.0f, 20.0f, 30.0f, 40.0f, 50.0f, 60.0f};
+        float[] out = new float[2];
+        ptFitFunc.predictBatch(rowsMajor, 2, out);
+        assertEquals(25.5f, out[0], 0.001f);
+        assertEquals(25.5f, out[1], 0.001f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPredictBatchWithRaggedRows() {
+        ptFitFunc.predictBatch(new float[5], 2, new float[2]);
+    }
+}
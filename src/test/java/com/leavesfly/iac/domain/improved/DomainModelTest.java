@@ -190,4 +190,37 @@ public class DomainModelTest {
         PowerVector scaled = vector1.multiply(2.0f);
         assertEquals("向量乘法应该正确", 160.0f, scaled.getTotalPower(), 0.001f);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPowerVectorValuesWithZeroPower() {
+        PowerRange range = new PowerRange(0.0f, 100.0f);
+        PowerVector vector = new PowerVector(
+            new PowerValue(0.0f, range),
+            new PowerValue(40.0f, range),
+            new PowerValue(0.0f, range),
+            new PowerValue(80.0f, range)
+        );
+
+        assertArrayEquals("功率为0时顺序也应保持不变",
+            new float[] {0.0f, 40.0f, 0.0f, 80.0f}, vector.getValues(), 0.001f);
+        assertEquals("方差应该正确", 1100.0f, vector.getPowerVariance(), 0.001f);
+        assertEquals("平均利用率应该正确", 0.3f, vector.getAverageUtilization(), 0.001f);
+        assertEquals("列表视图应该正确", 40.0f, vector.getPowers().get(1).getValue(), 0.001f);
+    }
+
+    @Test
+    public void testPowerVectorBuilderInPlace() {
+        PowerRange range = new PowerRange(0.0f, 100.0f);
+        PowerVector.Builder builder = PowerVector.builder(3, range);
+        builder.set(0, 20.0f).add(1, 150.0f).addScaled(new float[] {10.0f, 10.0f, 10.0f}, 0.5f);
+
+        PowerVector first = builder.build();
+        assertEquals("增量应约束在范围内", 100.0f, first.getValue(1), 0.001f);
+        assertEquals("总功率应该正确", 130.0f, first.getTotalPower(), 0.001f);
+
+        builder.multiply(2.0f);
+        assertEquals("构建后的向量不受构建器后续修改影响", 25.0f, first.getValue(0), 0.001f);
+        assertEquals(50.0f, builder.build().getValue(0), 0.001f);
+        assertEquals("相同内容的向量应该相等", first, first.toBuilder().build());
+    }
+}
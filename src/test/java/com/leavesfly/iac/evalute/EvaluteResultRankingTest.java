@@ -0,0 +1,105 @@
+package com.leavesfly.iac.evalute;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * 评估结果排行榜测试类
+ *
+ * 测试排行榜的有界性、排序正确性以及并发插入
+ */
+public class EvaluteResultRankingTest {
+
+    private static EvaluteResult result(String name, float satisfaction, float powerCost) {
+        return new EvaluteResult(new Solution(name, null), satisfaction, powerCost);
+    }
+
+    @Test
+    public void testRankingKeepsOnlyTopK() {
+        EvaluteResultRanking ranking = new EvaluteResultRanking(3);
+        for (int i = 1; i <= 10; i++) {
+            ranking.add(result("s" + i, i, 100.0f));
+        }
+
+        List<EvaluteResult> top = ranking.getTopBySatisfaction();
+        assertEquals("榜单大小应等于容量", 3, top.size());
+        assertEquals("第一名应为满意度最高的结果", "s10", top.get(0).getSolutionName());
+        assertEquals("第三名应正确", "s8", top.get(2).getSolutionName());
+        assertEquals("累计数量应正确", 10, ranking.getTotalCount());
+    }
+
+    @Test
+    public void testPowerCostRankingPrefersLowerCost() {
+        EvaluteResultRanking ranking = new EvaluteResultRanking(2);
+        ranking.add(result("expensive", 5.0f, 900.0f));
+        ranking.add(result("cheap", 5.0f, 100.0f));
+        ranking.add(result("middle", 5.0f, 500.0f));
+
+        List<EvaluteResult> top = ranking.getTopByPowerCost();
+        assertEquals("cheap", top.get(0).getSolutionName());
+        assertEquals("middle", top.get(1).getSolutionName());
+        assertEquals("cheap", ranking.getBestByPowerUtility().getSolutionName());
+    }
+
+    @Test
+    public void testTiesAreAllKept() {
+        EvaluteResultRanking ranking = new EvaluteResultRanking(5);
+        for (int i = 0; i < 5; i++) {
+            ranking.add(result("same" + i, 1.0f, 1.0f));
+        }
+        assertEquals("指标相同的结果不应被去重", 5, ranking.getTopByPowerUtility().size());
+        assertEquals("先到者排名靠前", "same0", ranking.getBestBySatisfaction().getSolutionName());
+    }
+
+    @Test
+    public void testResultMapAndClear() {
+        EvaluteResultRanking ranking = new EvaluteResultRanking(2);
+        ranking.add(result("a", 1.0f, 10.0f));
+        ranking.add(result("b", 2.0f, 20.0f));
+        assertEquals(2, ranking.toResultMap().size());
+
+        ranking.clear();
+        assertTrue(ranking.toResultMap().isEmpty());
+        assertNull(ranking.getBestByPowerCost());
+    }
+
+    @Test
+    public void testConcurrentInsert() throws InterruptedException {
+        final int threadNum = 8;
+        final int perThread = 5_000;
+        final EvaluteResultRanking ranking = new EvaluteResultRanking(10);
+        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+        final CountDownLatch latch = new CountDownLatch(threadNum);
+
+        for (int t = 0; t < threadNum; t++) {
+            final int offset = t * perThread;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        int id = offset + i;
+                        ranking.add(result("s" + id, id, 1.0f));
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        List<EvaluteResult> top = ranking.getTopBySatisfaction();
+        assertEquals(10, top.size());
+        int best = threadNum * perThread - 1;
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals("并发插入后排序应正确", best - i, top.get(i).getTotalSatisfaction(), 0.001f);
+        }
+        assertEquals(threadNum * perThread, ranking.getTotalCount());
+    }
+}
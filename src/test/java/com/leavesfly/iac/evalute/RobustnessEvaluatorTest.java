@@ -0,0 +1,163 @@
+package com.leavesfly.iac.evalute;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.domain.GeoPoint;
+import com.leavesfly.iac.domain.PowerRange;
+import com.leavesfly.iac.domain.PowerValue;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.execute.domain.ContiUserComfortFunc;
+import com.leavesfly.iac.execute.domain.UserComfortFunc;
+import com.leavesfly.iac.execute.domain.UserTempRange;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.trainer.TrainModel;
+
+/**
+ * 鲁棒性评估器测试类
+ *
+ * 使用固定输出的模拟模型，测试无扰动时的退化情况、公共随机数的可复现性以及尾部统计
+ */
+public class RobustnessEvaluatorTest {
+
+    private List<UserComfortFunc> userComfortFuncs;
+    private Map<String, GeoPoint> userGeoMap;
+    private Map<String, GeoPoint> sensorGeoMap;
+    private PowerVector powerVector;
+
+    /**
+     * 输出固定温度的模拟模型
+     */
+    private static class ConstantTrainModel implements TrainModel {
+        private final float temperature;
+
+        ConstantTrainModel(float temperature) {
+            this.temperature = temperature;
+        }
+
+        @Override
+        public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+        }
+
+        @Override
+        public <T extends Number> float useMode(T[] feature) {
+            return temperature;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        userComfortFuncs = new ArrayList<UserComfortFunc>();
+        userComfortFuncs.add(new ContiUserComfortFunc("u0", new UserTempRange(23, 27)));
+        userComfortFuncs.add(new ContiUserComfortFunc("u1", new UserTempRange(24, 28)));
+
+        userGeoMap = new HashMap<String, GeoPoint>();
+        userGeoMap.put("u0", new GeoPoint(1, 1));
+        userGeoMap.put("u1", new GeoPoint(8, 8));
+
+        sensorGeoMap = new HashMap<String, GeoPoint>();
+        sensorGeoMap.put("s0", new GeoPoint(1, 2));
+        sensorGeoMap.put("s1", new GeoPoint(8, 7));
+
+        PowerRange range = new PowerRange(0.0f, 400.0f);
+        powerVector = new PowerVector(new PowerValue[] { new PowerValue(100.0f, range),
+                new PowerValue(200.0f, range) });
+    }
+
+    private Map<String, PtFitFunc> fitFuncMap(float temp0, float temp1) {
+        Map<String, PtFitFunc> fitFuncMap = new HashMap<String, PtFitFunc>();
+        fitFuncMap.put("s0", new PtFitFunc("s0", 35.0f, new ConstantTrainModel(temp0)));
+        fitFuncMap.put("s1", new PtFitFunc("s1", 35.0f, new ConstantTrainModel(temp1)));
+        return fitFuncMap;
+    }
+
+    private RobustnessEvaluator.Builder builder() {
+        return RobustnessEvaluator.builder().userComfortFuncs(userComfortFuncs)
+                .userGeoMap(userGeoMap).sensorGeoMap(sensorGeoMap).maxDistance(2.0f);
+    }
+
+    @Test
+    public void testNoPerturbationMatchesDeterministicSatisfaction() {
+        RobustnessEvaluator evaluator = builder().outsideTempStdDev(0).locationRadius(0)
+                .comfortShiftStdDev(0).sampleNum(16).build();
+        RobustnessResult result = evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f));
+
+        float expected = userComfortFuncs.get(0).calUserComfort(25.0f)
+                + userComfortFuncs.get(1).calUserComfort(26.0f);
+        assertEquals("无扰动时均值应等于确定性满意度", expected, result.getMeanSatisfaction(), 1e-5f);
+        assertEquals(expected, result.getTailMeanSatisfaction(), 1e-5f);
+        assertEquals(0.0f, result.getStdDevSatisfaction(), 1e-5f);
+    }
+
+    @Test
+    public void testSampleNumIsEvenForAntitheticPairs() {
+        RobustnessEvaluator evaluator = builder().sampleNum(63).build();
+        assertEquals("对偶抽样下样本数应为偶数", 64, evaluator.getSampleNum());
+    }
+
+    @Test
+    public void testCommonRandomNumbersAreReproducible() {
+        RobustnessEvaluator evaluator = builder().sampleNum(100).build();
+        RobustnessResult first = evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f));
+        RobustnessResult second = evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f));
+        assertEquals(first.getMeanSatisfaction(), second.getMeanSatisfaction(), 0.0f);
+        assertEquals(first.getTailQuantile(), second.getTailQuantile(), 0.0f);
+
+        RobustnessEvaluator sameSeed = builder().sampleNum(100).build();
+        assertEquals("相同种子应得到相同的样本", first.getMeanSatisfaction(),
+                sameSeed.evaluate(powerVector, fitFuncMap(25.0f, 26.0f)).getMeanSatisfaction(), 0.0f);
+    }
+
+    @Test
+    public void testCenteredScheduleIsMoreRobust() {
+        RobustnessEvaluator evaluator = builder().sampleNum(200).build();
+        RobustnessResult centered = evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f));
+        RobustnessResult edge = evaluator.evaluate(powerVector, fitFuncMap(23.2f, 24.2f));
+
+        assertTrue("尾部均值不应高于均值",
+                centered.getTailMeanSatisfaction() <= centered.getMeanSatisfaction());
+        assertTrue("舒适区中心的方案尾部表现应更好",
+                centered.getTailMeanSatisfaction() > edge.getTailMeanSatisfaction());
+    }
+
+    @Test
+    public void testParallelSampling() {
+        RobustnessEvaluator evaluator = builder().sampleNum(2000).build();
+        RobustnessResult result = evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f));
+        assertEquals(2000, result.getSampleNum());
+        assertTrue(result.getMinSatisfaction() <= result.getTailQuantile());
+        assertTrue(result.getTailQuantile() <= result.getMeanSatisfaction());
+        assertEquals(result.getMeanSatisfaction(),
+                evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f)).getMeanSatisfaction(), 0.0f);
+    }
+
+    @Test
+    public void testParallelSamplingInsideSaturatedComputePool() throws Exception {
+        final RobustnessEvaluator evaluator = builder().sampleNum(2000).build();
+        final float expected = evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f))
+                .getMeanSatisfaction();
+
+        // 每个计算线程都在评估时，分块不能再排到同一个池中等待
+        int taskNum = Runtime.getRuntime().availableProcessors() + 1;
+        List<CompletableFuture<RobustnessResult>> futureList = new ArrayList<CompletableFuture<RobustnessResult>>();
+        for (int i = 0; i < taskNum; i++) {
+            futureList.add(AsyncExecutorManager.getInstance().executeCompute(
+                    () -> evaluator.evaluate(powerVector, fitFuncMap(25.0f, 26.0f))));
+        }
+        for (CompletableFuture<RobustnessResult> future : futureList) {
+            assertEquals(expected, future.get(30, TimeUnit.SECONDS).getMeanSatisfaction(), 0.0f);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.leavesfly.iac.evalute.sweep;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.evalute.SolutionBuilder;
+import com.leavesfly.iac.train.PtTrainer;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.trainer.TrainModel;
+
+/**
+ * 情景扫描器测试
+ *
+ * 使用解析式已知的模型，并以传感器温度之和代替满意度（不依赖用户与传感器的位置数据），
+ * 验证结果数量、被跳过的组合、排序、目标值公式，以及模型只在调用线程中为需要的室外温度训练一次
+ */
+public class ScenarioSweeperTest {
+
+    /**
+     * 温度随总功率线性下降的模型
+     */
+    private static class LinearTrainModel implements TrainModel {
+        private final float baseTemp;
+
+        LinearTrainModel(float baseTemp) {
+            this.baseTemp = baseTemp;
+        }
+
+        @Override
+        public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+        }
+
+        @Override
+        public <T extends Number> float useMode(T[] feature) {
+            float temp = baseTemp;
+            for (T value : feature) {
+                temp -= value.floatValue() * 0.001f;
+            }
+            return temp;
+        }
+    }
+
+    /**
+     * 记录调用线程的训练器
+     */
+    private static class RecordingTrainer implements PtTrainer {
+        private final List<Float> trainedTemps = new ArrayList<Float>();
+        private final List<Thread> trainThreads = new ArrayList<Thread>();
+
+        @Override
+        public synchronized Collection<PtFitFunc> buildFitFuncSet(float outsideTemp) {
+            trainedTemps.add(outsideTemp);
+            trainThreads.add(Thread.currentThread());
+            return fitFuncSet(outsideTemp);
+        }
+    }
+
+    private static List<PtFitFunc> fitFuncSet(float outsideTemp) {
+        return Arrays.asList(new PtFitFunc("s0", outsideTemp, new LinearTrainModel(outsideTemp)),
+                new PtFitFunc("s1", outsideTemp, new LinearTrainModel(outsideTemp - 1f)));
+    }
+
+    private static float sumSensorTemp(PowerVector powerVector, Collection<PtFitFunc> fitFuncSet) {
+        float sum = 0f;
+        for (PtFitFunc fitFunc : fitFuncSet) {
+            sum += fitFunc.calTemperature(powerVector);
+        }
+        return sum;
+    }
+
+    private static ScenarioSweeper newSweeper(PtTrainer trainer) {
+        return new ScenarioSweeper(trainer) {
+            @Override
+            protected float calTotalSatisfaction(PowerVector powerVector,
+                    Map<String, PtFitFunc> fitFuncMap) {
+                return sumSensorTemp(powerVector, fitFuncMap.values());
+            }
+        };
+    }
+
+    @Test
+    public void testSweepResults() {
+        RecordingTrainer trainer = new RecordingTrainer();
+        ScenarioSweeper sweeper = newSweeper(trainer);
+        float[] weights = { 0.0f, 0.5f, 1.0f };
+        SweepGrid sweepGrid = new SweepGrid(new float[] { 30f, 26f }, new float[] { 28f, 20f, 24f },
+                weights);
+
+        List<ScenarioResult> resultList = sweeper.sweep(sweepGrid);
+        // (26, 28)不需要制冷，被跳过
+        assertEquals(sweepGrid.size() - weights.length, resultList.size());
+
+        float[][] expectedCells = { { 26f, 20f }, { 26f, 24f }, { 30f, 20f }, { 30f, 24f },
+                { 30f, 28f } };
+        for (int c = 0; c < expectedCells.length; c++) {
+            float outsideTemp = expectedCells[c][0];
+            float setPoint = expectedCells[c][1];
+            float satisfaction = sumSensorTemp(SolutionBuilder.buildSolution("s", setPoint,
+                    outsideTemp).getPowerVector(), fitFuncSet(outsideTemp));
+            float power = (float) Math.pow(outsideTemp - setPoint
+                    + AppContextConstant.ABLE_ADJUST_FACTOR, 2);
+            float powerCost = power * AppContextConstant.AIR_CONDITION_NUM
+                    * AppContextConstant.POWER_PRICE;
+
+            for (int w = 0; w < weights.length; w++) {
+                ScenarioResult result = resultList.get(c * weights.length + w);
+                assertEquals(outsideTemp, result.getOutsideTemp(), 0f);
+                assertEquals(setPoint, result.getSetPoint(), 0f);
+                assertEquals(weights[w], result.getSatisfyWeight(), 0f);
+                assertEquals(satisfaction, result.getEvaluteResult().getTotalSatisfaction(), 1e-4f);
+                assertEquals(powerCost, result.getEvaluteResult().getTotalPowerCost(), 1e-2f);
+
+                float expectedTarget = satisfaction * weights[w] - powerCost * (1 - weights[w])
+                        / AppContextConstant.AIR_CONDITION_MAX_POWER
+                        * AppContextConstant.USER_NUM / AppContextConstant.AIR_CONDITION_NUM;
+                assertEquals(expectedTarget, result.getTargetValue(), 1e-3f);
+            }
+        }
+
+        // 每个室外温度只在调用线程中训练一次，再次扫描使用缓存
+        assertEquals(2, trainer.trainedTemps.size());
+        assertTrue(trainer.trainedTemps.containsAll(Arrays.asList(26f, 30f)));
+        for (Thread thread : trainer.trainThreads) {
+            assertSame(Thread.currentThread(), thread);
+        }
+        assertEquals(resultList.size(), sweeper.sweep(sweepGrid, result -> {
+        }));
+        assertEquals(2, trainer.trainedTemps.size());
+    }
+
+    @Test
+    public void testFullySkippedOutsideTempIsNotTrained() {
+        RecordingTrainer trainer = new RecordingTrainer();
+        ScenarioSweeper sweeper = newSweeper(trainer);
+        sweeper.registerFitFuncSet(30f, fitFuncSet(30f));
+
+        SweepGrid sweepGrid = new SweepGrid(new float[] { 18f, 30f }, new float[] { 22f, 26f },
+                new float[] { 0.5f });
+        assertEquals(2, sweeper.sweep(sweepGrid).size());
+        assertTrue(trainer.trainedTemps.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetPointBelowMinTempIsRejected() {
+        new SweepGrid(new float[] { 30f }, new float[] {
+                AppContextConstant.AIR_CONDITION_MIN_TEMP - 1f, 24f }, new float[] { 0.5f });
+    }
+}
@@ -0,0 +1,96 @@
+package com.leavesfly.iac.execute.domain;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * BatchComfortKernel批量舒适度计算测试
+ *
+ * 以逐个调用舒适度函数的结果为基准，测试分组、加权求和以及非高斯舒适度函数的回退
+ */
+public class BatchComfortKernelTest {
+
+    /**
+     * 舒适范围内恒为1的舒适度函数，用于测试回退路径
+     */
+    private static class StepUserComfortFunc extends UserComfortFunc {
+        private final UserTempRange userTempRange;
+
+        StepUserComfortFunc(String userId, UserTempRange userTempRange) {
+            super(userId);
+            this.userTempRange = userTempRange;
+        }
+
+        @Override
+        public float calUserComfort(float temperature) {
+            return userTempRange.isInRange(temperature) ? 1.0f : 0.0f;
+        }
+
+        @Override
+        public boolean isUpMinSatisfy(float temperature) {
+            return userTempRange.isInRange(temperature);
+        }
+
+        @Override
+        public UserTempRange getUserTempRange() {
+            return userTempRange;
+        }
+    }
+
+    @Test
+    public void testMatchesPerUserComfort() {
+        Random random = new Random(11);
+        List<UserComfortFunc> userComfortFuncs = new ArrayList<UserComfortFunc>();
+        for (int i = 0; i < 1000; i++) {
+            int from = 20 + random.nextInt(5);
+            userComfortFuncs.add(new ContiUserComfortFunc("u" + i, new UserTempRange(from, from + 4)));
+        }
+        userComfortFuncs.add(new StepUserComfortFunc("step", new UserTempRange(22, 26)));
+
+        BatchComfortKernel<Object> kernel = BatchComfortKernel.of(userComfortFuncs);
+        assertEquals(userComfortFuncs.size(), kernel.getUserNum());
+        assertEquals("参数相同的用户应归为一组", 6, kernel.getGroupNum());
+
+        float[] userTemps = new float[userComfortFuncs.size()];
+        double expected = 0.0;
+        for (int u = 0; u < userTemps.length; u++) {
+            userTemps[u] = 19.0f + 10.0f * random.nextFloat();
+            float comfort = userComfortFuncs.get(u).calUserComfort(userTemps[u]);
+            assertEquals(comfort, kernel.calUserComfort(u, userTemps[u]), 1e-6f);
+            expected += comfort;
+        }
+        assertEquals(expected, kernel.calTotalSatisfaction(userTemps), 1e-2);
+    }
+
+    @Test
+    public void testGroupedSatisfactionIsWeightedBySize() {
+        BatchComfortKernel.Builder<String> builder = BatchComfortKernel.builder();
+        builder.add(new ContiUserComfortFunc("u0", new UserTempRange(23, 27)), "s0");
+        builder.add(new ContiUserComfortFunc("u1", new UserTempRange(23, 27)), "s0");
+        builder.add(new ContiUserComfortFunc("u2", new UserTempRange(23, 27)), "s1");
+        BatchComfortKernel<String> kernel = builder.build();
+
+        assertEquals("位置键不同的用户不应归为一组", 2, kernel.getGroupNum());
+        assertEquals(kernel.getUserGroup(0), kernel.getUserGroup(1));
+        assertEquals(2, kernel.getGroupSize(kernel.getUserGroup(0)));
+        assertEquals("s1", kernel.getGroupLocation(kernel.getUserGroup(2)));
+
+        float[] groupTemps = new float[kernel.getGroupNum()];
+        groupTemps[kernel.getUserGroup(0)] = 25.0f;
+        groupTemps[kernel.getUserGroup(2)] = 30.0f;
+        assertEquals(2.0f, kernel.calGroupedSatisfaction(groupTemps), 1e-6f);
+        assertEquals(2.0f, kernel.calTotalSatisfaction(new float[] { 25.0f, 25.0f, 30.0f }), 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUserTempsLengthMismatch() {
+        List<UserComfortFunc> userComfortFuncs = new ArrayList<UserComfortFunc>();
+        userComfortFuncs.add(new ContiUserComfortFunc("u0", new UserTempRange(23, 27)));
+        BatchComfortKernel.of(userComfortFuncs).calTotalSatisfaction(new float[2]);
+    }
+}
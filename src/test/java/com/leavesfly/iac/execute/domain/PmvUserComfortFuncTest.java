@@ -0,0 +1,69 @@
+package com.leavesfly.iac.execute.domain;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * PMV/PPD舒适度函数测试
+ *
+ * 以ISO 7730附录中的算例校验PMV计算，并测试查找表插值误差、舒适范围和批量计算分组
+ */
+public class PmvUserComfortFuncTest {
+
+    @Test
+    public void testPmvMatchesIsoExample() {
+        // ISO 7730 表D.1：22℃、相对湿度60%、空气流速0.1m/s、1.2met、0.5clo
+        double pmv = PmvCalculator.calPmv(22, 22, 0.1, 60, 1.2, 0.5);
+        assertEquals(-0.75, pmv, 0.01);
+        assertEquals(17.0f, PmvCalculator.calPpd((float) pmv), 0.5f);
+        assertEquals("热中性时PPD为5%", 5.0f, PmvCalculator.calPpd(0.0f), 1e-4f);
+    }
+
+    @Test
+    public void testLookupTableInterpolationError() {
+        PmvLookupTable table = PmvLookupTable.getDefault();
+        for (float airTemp = 18.1f; airTemp < 30.0f; airTemp += 0.7f) {
+            for (float humidity = 15.0f; humidity < 90.0f; humidity += 17.0f) {
+                double exact = PmvCalculator.calPmv(airTemp, airTemp,
+                        PmvLookupTable.DEFAULT_AIR_VELOCITY, humidity, 1.1, 0.6);
+                assertEquals("查找表插值误差应较小", exact, table.lookup(airTemp, humidity, 0.6f, 1.1f),
+                        0.05);
+            }
+        }
+    }
+
+    @Test
+    public void testComfortRange() {
+        PmvUserComfortFunc func = new PmvUserComfortFunc("u0", 50.0f, 0.5f, 1.2f);
+        UserTempRange range = func.getUserTempRange();
+        assertTrue(range.getFrom() < range.getTo());
+
+        float neutral = (range.getFrom() + range.getTo()) / 2;
+        assertTrue("舒适范围中部的舒适度应接近1", func.calUserComfort(neutral) > 0.9f);
+        assertTrue(func.isUpMinSatisfy(neutral));
+        assertEquals(0.0f, func.calUserComfort(range.getTo() + 1.0f), 0.0f);
+        assertFalse(func.isUpMinSatisfy(range.getFrom() - 1.0f));
+        assertTrue("PMV应随温度升高而增大", func.calPmv(26.0f) > func.calPmv(22.0f));
+    }
+
+    @Test
+    public void testBatchKernelGroupsIdenticalPmvUsers() {
+        List<UserComfortFunc> userComfortFuncs = new ArrayList<UserComfortFunc>();
+        userComfortFuncs.add(new PmvUserComfortFunc("u0", 50.0f, 0.5f, 1.2f));
+        userComfortFuncs.add(new PmvUserComfortFunc("u1", 50.0f, 0.5f, 1.2f));
+        userComfortFuncs.add(new PmvUserComfortFunc("u2", 50.0f, 1.0f, 1.2f));
+        BatchComfortKernel<Object> kernel = BatchComfortKernel.of(userComfortFuncs);
+
+        assertEquals(2, kernel.getGroupNum());
+        float[] userTemps = { 24.0f, 24.0f, 22.0f };
+        float expected = 0.0f;
+        for (int u = 0; u < userTemps.length; u++) {
+            expected += userComfortFuncs.get(u).calUserComfort(userTemps[u]);
+        }
+        assertEquals(expected, kernel.calTotalSatisfaction(userTemps), 1e-5f);
+    }
+}
@@ -0,0 +1,246 @@
+package com.leavesfly.iac.train;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.async.AsyncExecutorManager;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.trainer.TrainModel;
+
+/**
+ * 分桶拟合函数注册表测试
+ *
+ * 使用预测值等于代表温度的常数模型，验证精确命中、插值、最近桶和后台训练，
+ * 没有训练数据的桶不缓存、训练失败的桶在重试间隔内不重复训练，以及后台训练不依赖计算线程池
+ */
+public class PtFitFuncRegistryTest {
+
+    private static final float[] FEATURES = new float[] { 100f, 200f };
+
+    /**
+     * 预测值为常数的模型
+     */
+    private static class ConstantModel implements TrainModel {
+
+        private final float value;
+
+        ConstantModel(float value) {
+            this.value = value;
+        }
+
+        @Override
+        public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+        }
+
+        @Override
+        public <T extends Number> float useMode(T[] feature) {
+            return value;
+        }
+    }
+
+    /**
+     * 记录调用参数的训练器，每个传感器的预测值为代表温度加上传感器序号
+     */
+    private static class RecordingTrainer implements PtTrainer {
+
+        private final List<float[]> calls = new ArrayList<float[]>();
+
+        private final CountDownLatch release;
+
+        /**
+         * 没有训练数据的代表温度，训练时返回空集合
+         */
+        private final Set<Float> emptyTemps = new HashSet<Float>();
+
+        RecordingTrainer(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Collection<PtFitFunc> buildFitFuncSet(float outsideTemp) {
+            return buildFitFuncSet(outsideTemp, outsideTemp, outsideTemp);
+        }
+
+        @Override
+        public Collection<PtFitFunc> buildFitFuncSet(float outsideTemp, float minOutsideTemp,
+                float maxOutsideTemp) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (calls) {
+                calls.add(new float[] { outsideTemp, minOutsideTemp, maxOutsideTemp });
+            }
+            if (emptyTemps.contains(outsideTemp)) {
+                return Collections.<PtFitFunc> emptyList();
+            }
+            return fitFuncSet(outsideTemp);
+        }
+
+        int callCount() {
+            synchronized (calls) {
+                return calls.size();
+            }
+        }
+    }
+
+    private static Collection<PtFitFunc> fitFuncSet(float outsideTemp) {
+        return Arrays.asList(new PtFitFunc("1", outsideTemp, new ConstantModel(outsideTemp)),
+                new PtFitFunc("2", outsideTemp, new ConstantModel(outsideTemp + 1)));
+    }
+
+    @Test
+    public void testExactAndInterpolatedLookup() {
+        PtFitFuncRegistry registry = new PtFitFuncRegistry(null, 1.0f);
+        registry.registerFitFuncSet(30f, fitFuncSet(30f));
+        registry.registerFitFuncSet(34f, fitFuncSet(34f));
+
+        assertEquals(30f, registry.getFitFuncMap(30f).get("1").predict(FEATURES), 0f);
+        Map<String, PtFitFunc> fitFuncMap = registry.getFitFuncMap(31f);
+        assertEquals(31f, fitFuncMap.get("1").predict(FEATURES), 1e-5f);
+        assertEquals(32f, fitFuncMap.get("2").predict(FEATURES), 1e-5f);
+        assertEquals(33.5f, registry.getFitFuncMap(33.5f).get("1").predict(FEATURES), 1e-5f);
+
+        float[] out = new float[2];
+        fitFuncMap.get("1").predictBatch(new float[] { 1f, 2f, 3f, 4f }, 2, out);
+        assertArrayEquals(new float[] { 31f, 31f }, out, 1e-5f);
+
+        // 范围外使用最近的桶
+        assertEquals(34f, registry.getFitFuncMap(40f).get("1").predict(FEATURES), 0f);
+        assertEquals(30f, registry.getFitFuncMap(20f).get("1").predict(FEATURES), 0f);
+    }
+
+    @Test
+    public void testFirstLookupTrainsSynchronously() {
+        RecordingTrainer trainer = new RecordingTrainer(new CountDownLatch(0));
+        PtFitFuncRegistry registry = new PtFitFuncRegistry(trainer, 2.0f);
+
+        Map<String, PtFitFunc> fitFuncMap = registry.getFitFuncMap(34.7f);
+        assertEquals(34f, fitFuncMap.get("1").predict(FEATURES), 0f);
+        assertEquals(1, trainer.callCount());
+        assertArrayEquals(new float[] { 34f, 33f, 35f }, trainer.calls.get(0), 0f);
+        assertTrue(registry.isBucketReady(33.5f));
+        assertEquals(Arrays.asList(34f), registry.getBucketTemps());
+    }
+
+    @Test
+    public void testMissingBucketTrainsInBackgroundOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingTrainer trainer = new RecordingTrainer(release);
+        PtFitFuncRegistry registry = new PtFitFuncRegistry(trainer, 1.0f);
+        registry.registerFitFuncSet(30f, fitFuncSet(30f));
+
+        // 训练完成前使用最近的桶，且不重复提交训练
+        for (int i = 0; i < 10; i++) {
+            assertEquals(30f, registry.getFitFuncMap(32.2f).get("1").predict(FEATURES), 0f);
+        }
+        assertFalse(registry.isBucketReady(32f));
+        release.countDown();
+
+        registry.prefetch(32f).get(5, TimeUnit.SECONDS);
+        assertEquals(1, trainer.callCount());
+        assertTrue(registry.isBucketReady(32f));
+        assertEquals(32f, registry.getFitFuncMap(32f).get("1").predict(FEATURES), 0f);
+        assertEquals(31f, registry.getFitFuncMap(31f).get("1").predict(FEATURES), 1e-5f);
+    }
+
+    @Test
+    public void testBackgroundTrainingDoesNotNeedComputeThreads() throws Exception {
+        final RecordingTrainer trainer = new RecordingTrainer(new CountDownLatch(0));
+        final PtFitFuncRegistry registry = new PtFitFuncRegistry(trainer, 1.0f);
+        registry.registerFitFuncSet(30f, fitFuncSet(30f));
+
+        // 所有计算线程都在等待后台训练时，训练仍能完成
+        int taskNum = Runtime.getRuntime().availableProcessors() + 1;
+        List<CompletableFuture<Map<String, PtFitFunc>>> futureList = new ArrayList<CompletableFuture<Map<String, PtFitFunc>>>();
+        for (int i = 0; i < taskNum; i++) {
+            final float outsideTemp = 31f + i;
+            futureList.add(AsyncExecutorManager.getInstance().executeCompute(
+                    () -> registry.prefetch(outsideTemp).join()));
+        }
+        for (CompletableFuture<Map<String, PtFitFunc>> future : futureList) {
+            assertEquals(2, future.get(10, TimeUnit.SECONDS).size());
+        }
+        assertEquals(taskNum, trainer.callCount());
+        assertEquals(taskNum + 1, registry.getBucketTemps().size());
+    }
+
+    @Test
+    public void testBucketWithoutDataIsNotCached() throws Exception {
+        RecordingTrainer trainer = new RecordingTrainer(new CountDownLatch(0));
+        trainer.emptyTemps.add(32f);
+        PtFitFuncRegistry registry = new PtFitFuncRegistry(trainer, 1.0f);
+        registry.registerFitFuncSet(30f, fitFuncSet(30f));
+
+        try {
+            registry.prefetch(32f).get(5, TimeUnit.SECONDS);
+            fail("没有训练数据的桶应训练失败");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(registry.isBucketReady(32f));
+        assertEquals(Arrays.asList(30f), registry.getBucketTemps());
+        // 继续使用最近的已训练桶，重试间隔内不再重新训练
+        for (int i = 0; i < 10; i++) {
+            assertEquals(30f, registry.getFitFuncMap(32.2f).get("1").predict(FEATURES), 0f);
+        }
+        assertEquals(1, trainer.callCount());
+    }
+
+    @Test
+    public void testFailedBucketIsRetriedAfterInterval() throws Exception {
+        RecordingTrainer trainer = new RecordingTrainer(new CountDownLatch(0));
+        trainer.emptyTemps.add(32f);
+        PtFitFuncRegistry registry = new PtFitFuncRegistry(trainer, 1.0f, 0L);
+        registry.registerFitFuncSet(30f, fitFuncSet(30f));
+        try {
+            registry.prefetch(32f).get(5, TimeUnit.SECONDS);
+            fail("没有训练数据的桶应训练失败");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        trainer.emptyTemps.clear();
+        registry.getFitFuncMap(32.2f);
+        registry.prefetch(32f).get(5, TimeUnit.SECONDS);
+        assertTrue(registry.isBucketReady(32f));
+        assertEquals(32f, registry.getFitFuncMap(32f).get("1").predict(FEATURES), 0f);
+    }
+
+    @Test
+    public void testEmptyRegistryWithoutDataFails() {
+        RecordingTrainer trainer = new RecordingTrainer(new CountDownLatch(0));
+        trainer.emptyTemps.add(34f);
+        PtFitFuncRegistry registry = new PtFitFuncRegistry(trainer, 2.0f);
+        for (int i = 0; i < 3; i++) {
+            try {
+                registry.getFitFuncMap(33.2f);
+                fail("附近没有训练数据时应抛出异常");
+            } catch (IllegalStateException e) {
+                // 预期的异常
+            }
+        }
+        assertEquals(1, trainer.callCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmptyRegistryWithoutTrainer() {
+        new PtFitFuncRegistry(null, 1.0f).getFitFuncMap(30f);
+    }
+}
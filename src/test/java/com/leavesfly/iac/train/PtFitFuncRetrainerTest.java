@@ -0,0 +1,156 @@
+package com.leavesfly.iac.train;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.datasource.FitFuncGeneration;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.store.TrainDataSetManager;
+import com.leavesfly.iac.train.trainer.TrainModel;
+import com.leavesfly.iac.train.trainer.bp.BpnnModel;
+import com.leavesfly.iac.train.trainer.lr.LineRegressModel;
+
+/**
+ * 后台增量训练器测试
+ *
+ * 使用线性回归模型，验证只有收到新数据的传感器换成在副本上继续训练的模型，
+ * 新的一代整体替换，旧的一代中的模型不被修改；BP神经网络继续训练时取回该温度下已保存的全部数据
+ */
+public class PtFitFuncRetrainerTest {
+
+    private static final float OUTSIDE_TEMP = 30f;
+
+    private static List<IntellacTrainDataItem> genDataSet(String sensorId, float offset,
+            float outsideTemp, int num, long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (int n = 0; n < num; n++) {
+            float[] powers = new float[AppContextConstant.AIR_CONDITION_NUM];
+            float temp = 28f + offset;
+            for (int i = 0; i < powers.length; i++) {
+                powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+                temp -= powers[i] * 0.001f * (i % 3 + 1);
+            }
+            dataSet.add(new IntellacTrainDataItem(sensorId, PowerVector.wrap(powers), temp,
+                    outsideTemp));
+        }
+        return dataSet;
+    }
+
+    private static PtFitFunc trainFitFunc(String sensorId, long seed) {
+        TrainModel model = LineRegressModel.getIntance();
+        model.train(genDataSet(sensorId, 0f, OUTSIDE_TEMP, 100, seed));
+        return new PtFitFunc(sensorId, OUTSIDE_TEMP, model);
+    }
+
+    @Test
+    public void testFineTunedGenerationReplacesWhole() {
+        DataFactory dataFactory = DataFactory.getInstance();
+        PtFitFunc fitFunc1 = trainFitFunc("1", 1);
+        PtFitFunc fitFunc2 = trainFitFunc("2", 2);
+        long number = dataFactory.registerFitFunc(Arrays.asList(fitFunc1, fitFunc2));
+
+        float[] powers = genDataSet("1", 0f, OUTSIDE_TEMP, 1, 3).get(0).getFeatureValues();
+        float before = fitFunc1.predict(powers);
+
+        PtFitFuncRetrainer retrainer = new PtFitFuncRetrainer(null);
+        retrainer.submit(genDataSet("1", 2f, OUTSIDE_TEMP, 300, 4));
+        assertEquals(number + 1, retrainer.retrainAsync().join().longValue());
+        assertEquals(0, retrainer.getPendingNum());
+
+        FitFuncGeneration generation = dataFactory.getFitFuncGeneration();
+        assertEquals(number + 1, generation.getNumber());
+        assertEquals(2, generation.getFitFuncSet().size());
+        assertSame(fitFunc2, generation.getFitFuncMap().get("2"));
+        PtFitFunc tuned = generation.getFitFuncMap().get("1");
+        assertNotSame(fitFunc1, tuned);
+        assertEquals(OUTSIDE_TEMP, tuned.getOutsideTemp(), 0f);
+
+        assertEquals(before, fitFunc1.predict(powers), 0f);
+        assertTrue(tuned.predict(powers) > before + 1f);
+    }
+
+    /**
+     * 记录区间查询参数的数据集管理器，单个温度的查询有结果数上限，不应被使用
+     */
+    private static class StoredDataSetManager implements TrainDataSetManager {
+
+        private final List<float[]> rangeCalls = new ArrayList<float[]>();
+
+        @Override
+        public Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(String sensorId,
+                float outsideTemp) {
+            throw new AssertionError("单个温度的查询最多返回100条，不能用于继续训练");
+        }
+
+        @Override
+        public synchronized Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(
+                String sensorId, float minOutsideTemp, float maxOutsideTemp) {
+            rangeCalls.add(new float[] { minOutsideTemp, maxOutsideTemp });
+            return new ArrayList<IntellacTrainDataItem>(genDataSet(sensorId, 0f, OUTSIDE_TEMP,
+                    150, 13));
+        }
+
+        @Override
+        public void storeTrainDataSet(Collection<IntellacTrainDataItem> tarinDataSet) {
+        }
+    }
+
+    @Test
+    public void testBpnnFineTuneUsesAllStoredSamples() {
+        DataFactory dataFactory = DataFactory.getInstance();
+        BpnnModel model = new BpnnModel(AppContextConstant.AIR_CONDITION_NUM, 1, 0.6f, 20);
+        model.train(genDataSet("1", 0f, OUTSIDE_TEMP, 50, 12));
+        long number = dataFactory.registerFitFunc(Collections.singletonList(new PtFitFunc("1",
+                OUTSIDE_TEMP, model)));
+
+        StoredDataSetManager manager = new StoredDataSetManager();
+        PtFitFuncRetrainer retrainer = new PtFitFuncRetrainer(manager);
+        retrainer.submit(genDataSet("1", 1f, OUTSIDE_TEMP, 20, 14));
+        assertEquals(number + 1, retrainer.retrainAsync().join().longValue());
+
+        assertEquals(1, manager.rangeCalls.size());
+        assertArrayEquals(new float[] { OUTSIDE_TEMP, OUTSIDE_TEMP }, manager.rangeCalls.get(0),
+                0f);
+        assertNotSame(model, dataFactory.getFitFuncGeneration().getFitFuncMap().get("1")
+                .getTrainModel());
+    }
+
+    @Test
+    public void testSamplesOutsideToleranceKeepGeneration() {
+        DataFactory dataFactory = DataFactory.getInstance();
+        long number = dataFactory.registerFitFunc(Collections.singletonList(trainFitFunc("1", 5)));
+
+        PtFitFuncRetrainer retrainer = new PtFitFuncRetrainer(null);
+        retrainer.submit(genDataSet("1", 2f, OUTSIDE_TEMP + 5f, 20, 6));
+        retrainer.submit(genDataSet("9", 2f, OUTSIDE_TEMP, 20, 7));
+        assertEquals(number, retrainer.retrainAsync().join().longValue());
+        assertEquals(number, dataFactory.getFitFuncGeneration().getNumber());
+    }
+
+    @Test
+    public void testStaleGenerationIsNotPublished() {
+        DataFactory dataFactory = DataFactory.getInstance();
+        long number = dataFactory.registerFitFunc(Collections.singletonList(trainFitFunc("1", 8)));
+        long newer = dataFactory.registerFitFunc(Collections.singletonList(trainFitFunc("1", 9)));
+
+        assertFalse(dataFactory.replaceFitFunc(number,
+                Collections.singletonList(trainFitFunc("1", 10))));
+        assertEquals(newer, dataFactory.getFitFuncGeneration().getNumber());
+        assertTrue(dataFactory.replaceFitFunc(newer,
+                Collections.singletonList(trainFitFunc("1", 11))));
+        assertEquals(newer + 1, dataFactory.getFitFuncGeneration().getNumber());
+    }
+}
@@ -0,0 +1,151 @@
+package com.leavesfly.iac.train.store;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.trainer.ModelEnum;
+import com.leavesfly.iac.train.trainer.TrainModel;
+import com.leavesfly.iac.train.trainer.bp.BpHyperParams;
+import com.leavesfly.iac.train.trainer.bp.BpTrainConfig.Optimizer;
+import com.leavesfly.iac.train.trainer.bp.BpWekaModel;
+import com.leavesfly.iac.train.trainer.bp.BpnnModel;
+import com.leavesfly.iac.train.trainer.lr.LineRegressModel;
+
+/**
+ * 模型存储测试
+ *
+ * 测试三种模型保存后读回的预测结果一致，训练数据变化后模型过期，以及超参数的保存和读取
+ */
+public class ModelStoreTest {
+
+    private static final float OUTSIDE_TEMP = AppContextConstant.OUTSIDE_TEMP;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<IntellacTrainDataItem> genDataSet(int num, long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (int n = 0; n < num; n++) {
+            float[] powers = new float[AppContextConstant.AIR_CONDITION_NUM];
+            float temp = 30.0f;
+            for (int i = 0; i < powers.length; i++) {
+                powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+                temp -= powers[i] * 0.002f * (i % 3 + 1);
+            }
+            dataSet.add(new IntellacTrainDataItem("1", PowerVector.wrap(powers), temp, OUTSIDE_TEMP));
+        }
+        return dataSet;
+    }
+
+    private void assertRoundTrip(ModelEnum modelType, TrainModel trainModel,
+            List<IntellacTrainDataItem> dataSet) throws Exception {
+        ModelStore modelStore = new ModelStore(folder.newFolder());
+        long dataHash = ModelStore.dataHash(dataSet);
+        modelStore.save("1", OUTSIDE_TEMP, modelType, dataHash, trainModel);
+
+        TrainModel loaded = modelStore.load("1", OUTSIDE_TEMP, modelType, dataHash);
+        assertNotNull(loaded);
+        assertSame(trainModel.getClass(), loaded.getClass());
+        for (IntellacTrainDataItem item : dataSet) {
+            assertEquals(trainModel.predict(item.getFeatureValues()),
+                    loaded.predict(item.getFeatureValues()), 0.0f);
+        }
+        assertNull(modelStore.load("1", OUTSIDE_TEMP, modelType, dataHash + 1));
+        assertNotNull(modelStore.load("1", OUTSIDE_TEMP, modelType));
+    }
+
+    @Test
+    public void testBpnnRoundTrip() throws Exception {
+        List<IntellacTrainDataItem> dataSet = genDataSet(50, 1);
+        TrainModel model = new BpnnModel(AppContextConstant.AIR_CONDITION_NUM, 1, 0.5f, 20);
+        model.train(dataSet);
+        assertRoundTrip(ModelEnum.BPNN, model, dataSet);
+    }
+
+    @Test
+    public void testLineRegressRoundTripKeepsOnlineState() throws Exception {
+        List<IntellacTrainDataItem> dataSet = genDataSet(50, 2);
+        LineRegressModel model = (LineRegressModel) LineRegressModel.getIntance();
+        model.train(dataSet);
+        assertRoundTrip(ModelEnum.LR, model, dataSet);
+
+        ModelStore modelStore = new ModelStore(folder.newFolder());
+        modelStore.save("1", OUTSIDE_TEMP, ModelEnum.LR, 0L, model);
+        LineRegressModel loaded = (LineRegressModel) modelStore.load("1", OUTSIDE_TEMP,
+                ModelEnum.LR, 0L);
+        for (IntellacTrainDataItem item : genDataSet(20, 3)) {
+            model.update(item);
+            loaded.update(item);
+        }
+        assertArrayEquals(model.getWeights(), loaded.getWeights(), 0.0);
+    }
+
+    @Test
+    public void testBpWekaRoundTrip() throws Exception {
+        List<IntellacTrainDataItem> dataSet = genDataSet(30, 4);
+        TrainModel model = BpWekaModel.getIntance();
+        model.train(dataSet);
+        assertRoundTrip(ModelEnum.BPWEKA, model, dataSet);
+    }
+
+    @Test
+    public void testDataHashIgnoresOrderButNotContent() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(20, 5);
+        List<IntellacTrainDataItem> shuffled = new ArrayList<IntellacTrainDataItem>(dataSet);
+        Collections.shuffle(shuffled, new Random(5));
+        assertEquals(ModelStore.dataHash(dataSet), ModelStore.dataHash(shuffled));
+
+        List<IntellacTrainDataItem> changed = new ArrayList<IntellacTrainDataItem>(dataSet);
+        IntellacTrainDataItem first = changed.get(0);
+        changed.set(0, new IntellacTrainDataItem("1", first.getPowerVector(),
+                first.getTemperature() + 0.1f, OUTSIDE_TEMP));
+        assertNotEquals(ModelStore.dataHash(dataSet), ModelStore.dataHash(changed));
+        assertNotEquals(ModelStore.dataHash(dataSet), ModelStore.dataHash(dataSet.subList(0, 19)));
+    }
+
+    @Test
+    public void testLoadFitFuncSetRequiresEverySensor() throws Exception {
+        File directory = folder.newFolder();
+        ModelStore modelStore = new ModelStore(directory);
+        LineRegressModel model = (LineRegressModel) LineRegressModel.getIntance();
+        model.train(genDataSet(30, 6));
+        modelStore.save("1", OUTSIDE_TEMP, ModelEnum.LR, 0L, model);
+        modelStore.save("2", OUTSIDE_TEMP, ModelEnum.LR, 0L, model);
+
+        Collection<PtFitFunc> fitFuncSet = modelStore.loadFitFuncSet(Arrays.asList("1", "2"),
+                OUTSIDE_TEMP, ModelEnum.LR);
+        assertEquals(2, fitFuncSet.size());
+        assertNull(modelStore.loadFitFuncSet(Arrays.asList("1", "3"), OUTSIDE_TEMP, ModelEnum.LR));
+        assertNull(modelStore.loadFitFuncSet(Arrays.asList("1"), OUTSIDE_TEMP, ModelEnum.BPNN));
+        assertEquals(2, directory.list().length);
+    }
+
+    @Test
+    public void testHyperParamsRoundTrip() throws Exception {
+        File directory = folder.newFolder();
+        ModelStore modelStore = new ModelStore(directory);
+        assertNull(modelStore.loadHyperParams("sensor/1"));
+
+        BpHyperParams hyperParams = new BpHyperParams(4, 0.3f, 200, 8, Optimizer.MOMENTUM);
+        modelStore.saveHyperParams("sensor/1", hyperParams);
+        assertEquals(hyperParams, modelStore.loadHyperParams("sensor/1"));
+        assertNull(modelStore.loadHyperParams("sensor/2"));
+        assertEquals(1, directory.list().length);
+    }
+}
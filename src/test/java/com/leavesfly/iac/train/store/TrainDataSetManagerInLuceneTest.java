@@ -0,0 +1,102 @@
+package com.leavesfly.iac.train.store;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.junit.Test;
+
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+
+/**
+ * 基于Lucene的训练数据集管理器测试
+ *
+ * 索引为所有实例共享，测试使用独立的传感器ID避免互相影响
+ */
+public class TrainDataSetManagerInLuceneTest {
+
+    private static List<IntellacTrainDataItem> genDataSet(String sensorId, float[] outsideTemps,
+            int numPerTemp) {
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (float outsideTemp : outsideTemps) {
+            for (int n = 0; n < numPerTemp; n++) {
+                dataSet.add(new IntellacTrainDataItem(sensorId, PowerVector.wrap(new float[] { n,
+                        outsideTemp }), 20f + n, outsideTemp));
+            }
+        }
+        return dataSet;
+    }
+
+    private static Set<String> keys(Collection<IntellacTrainDataItem> dataSet) {
+        Set<String> keys = new HashSet<String>();
+        for (IntellacTrainDataItem item : dataSet) {
+            keys.add(item.getSensorId() + "|" + Arrays.toString(item.getFeatureValues()) + "|"
+                    + item.getTemperature() + "|" + item.getOutsideTemp());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testGroupedFetchMatchesPerSensorFetch() {
+        TrainDataSetManagerInLucene manager = new TrainDataSetManagerInLucene();
+        manager.storeTrainDataSet(genDataSet("grouped-a", new float[] { 30f, 31f, 33f }, 5));
+        manager.storeTrainDataSet(genDataSet("grouped-b", new float[] { 30f, 32f }, 7));
+
+        List<String> sensorIds = Arrays.asList("grouped-a", "grouped-b", "grouped-none");
+        Map<String, Collection<IntellacTrainDataItem>> grouped = manager.fetchTrainDataSets(
+                sensorIds, 30f, 33f);
+        assertEquals(3, grouped.size());
+        assertEquals(10, grouped.get("grouped-a").size());
+        assertEquals(14, grouped.get("grouped-b").size());
+        assertTrue(grouped.get("grouped-none").isEmpty());
+        for (String sensorId : sensorIds) {
+            assertEquals(keys(manager.fetchTrainDataSetBySensorId(sensorId, 30f, 33f)),
+                    keys(grouped.get(sensorId)));
+        }
+
+        Map<String, Collection<IntellacTrainDataItem>> single = manager.fetchTrainDataSets(
+                sensorIds, 30f, 30f);
+        assertEquals(keys(manager.fetchTrainDataSetBySensorId("grouped-b", 30f)),
+                keys(single.get("grouped-b")));
+        assertEquals(7, single.get("grouped-b").size());
+    }
+
+    @Test
+    public void testGroupedSingleTempFetchKeepsResultLimit() {
+        TrainDataSetManagerInLucene manager = new TrainDataSetManagerInLucene();
+        manager.storeTrainDataSet(genDataSet("grouped-limit", new float[] { 36f }, 150));
+
+        Collection<IntellacTrainDataItem> dataSet = manager.fetchTrainDataSets(
+                Arrays.asList("grouped-limit"), 36f, 36f).get("grouped-limit");
+        assertEquals(manager.fetchTrainDataSetBySensorId("grouped-limit", 36f).size(),
+                dataSet.size());
+        assertEquals(150, manager.fetchTrainDataSetBySensorId("grouped-limit", 36f, 37f).size());
+    }
+
+    @Test
+    public void testStoreReleasesStaleReader() throws Exception {
+        TrainDataSetManagerInLucene manager = new TrainDataSetManagerInLucene();
+        manager.storeTrainDataSet(genDataSet("release-a", new float[] { 30f }, 3));
+        assertEquals(3, manager.fetchTrainDataSetBySensorId("release-a", 30f).size());
+
+        Field field = TrainDataSetManagerInLucene.class.getDeclaredField("indexSearcher");
+        field.setAccessible(true);
+        IndexReader staleReader = ((IndexSearcher) field.get(null)).getIndexReader();
+        assertEquals(1, staleReader.getRefCount());
+
+        manager.storeTrainDataSet(genDataSet("release-b", new float[] { 30f }, 2));
+        assertEquals(0, staleReader.getRefCount());
+        assertEquals(2, manager.fetchTrainDataSetBySensorId("release-b", 30f).size());
+        assertEquals(1, ((IndexSearcher) field.get(null)).getIndexReader().getRefCount());
+    }
+}
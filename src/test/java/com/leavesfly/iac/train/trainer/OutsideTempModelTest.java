@@ -0,0 +1,110 @@
+package com.leavesfly.iac.train.trainer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.trainer.lr.LineRegressModel;
+
+/**
+ * 以室外温度为附加输入的模型测试
+ *
+ * 用多个室外温度下的数据合并训练一个模型，验证在未训练过的室外温度下也能预测
+ */
+public class OutsideTempModelTest {
+
+    private static final int POWER_NUM = AppContextConstant.AIR_CONDITION_NUM;
+
+    private static float trueTemperature(float[] powers, float outsideTemp) {
+        float temp = 5.0f + 0.6f * outsideTemp;
+        for (int i = 0; i < powers.length; i++) {
+            temp -= powers[i] * 0.001f * (i % 4 + 1);
+        }
+        return temp;
+    }
+
+    private static List<IntellacTrainDataItem> genDataSet(float[] outsideTemps, int numPerTemp,
+            long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (float outsideTemp : outsideTemps) {
+            for (int n = 0; n < numPerTemp; n++) {
+                float[] powers = new float[POWER_NUM];
+                for (int i = 0; i < POWER_NUM; i++) {
+                    powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+                }
+                dataSet.add(new IntellacTrainDataItem("1", PowerVector.wrap(powers),
+                        trueTemperature(powers, outsideTemp), outsideTemp));
+            }
+        }
+        return dataSet;
+    }
+
+    @Test
+    public void testPooledModelServesUnseenOutsideTemp() {
+        OutsideTempModel model = new OutsideTempModel(LineRegressModel.getIntance());
+        model.train(genDataSet(new float[] { 26f, 30f, 35f }, 100, 1));
+
+        TrainModel view = model.atOutsideTemp(32.5f);
+        for (IntellacTrainDataItem item : genDataSet(new float[] { 32.5f }, 20, 2)) {
+            float[] powers = item.getFeatureValues();
+            assertEquals(item.getTemperature(), view.predict(powers), 1e-3f);
+            assertEquals(view.predict(powers), view.useMode(item.getFeature()), 1e-5f);
+
+            float[] augmented = new float[POWER_NUM + 1];
+            System.arraycopy(powers, 0, augmented, 0, POWER_NUM);
+            augmented[POWER_NUM] = 32.5f;
+            assertEquals(view.predict(powers), model.predict(augmented), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testViewBatchMatchesSinglePrediction() {
+        OutsideTempModel model = new OutsideTempModel(LineRegressModel.getIntance());
+        model.train(genDataSet(new float[] { 28f, 35f }, 60, 3));
+        TrainModel view = model.atOutsideTemp(31f);
+
+        List<IntellacTrainDataItem> dataSet = genDataSet(new float[] { 31f }, 5, 4);
+        float[] rowsMajor = new float[dataSet.size() * POWER_NUM];
+        for (int r = 0; r < dataSet.size(); r++) {
+            System.arraycopy(dataSet.get(r).getFeatureValues(), 0, rowsMajor, r * POWER_NUM,
+                    POWER_NUM);
+        }
+        float[] out = new float[dataSet.size()];
+        view.predictBatch(rowsMajor, dataSet.size(), out);
+        for (int r = 0; r < dataSet.size(); r++) {
+            assertEquals(view.predict(dataSet.get(r).getFeatureValues()), out[r], 1e-5f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrainingDataMustCarryOutsideTemp() {
+        TrainDataItem<Float, Float> item = new TrainDataItem<Float, Float>() {
+            @Override
+            public Float[] getFeature() {
+                return new Float[POWER_NUM];
+            }
+
+            @Override
+            public Float getResult() {
+                return 25f;
+            }
+        };
+        new OutsideTempModel(LineRegressModel.getIntance()).train(Collections.singletonList(item));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewCannotBeTrained() {
+        new OutsideTempModel(LineRegressModel.getIntance()).atOutsideTemp(30f).train(
+                genDataSet(new float[] { 30f }, 5, 5));
+    }
+}
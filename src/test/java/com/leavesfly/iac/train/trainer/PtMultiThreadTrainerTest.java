@@ -0,0 +1,286 @@
+package com.leavesfly.iac.train.trainer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.exception.IntelliAirConditionException;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+import com.leavesfly.iac.train.store.ModelStore;
+import com.leavesfly.iac.train.store.TrainDataSetManager;
+import com.leavesfly.iac.train.trainer.bp.BpHyperParamTuner;
+import com.leavesfly.iac.train.trainer.bp.BpHyperParams;
+import com.leavesfly.iac.train.trainer.bp.BpTrainConfig.Optimizer;
+
+/**
+ * 多线程训练器测试
+ *
+ * 使用内存中的训练数据集管理器和记录训练顺序的模型，验证线程池在多次调用之间复用、
+ * 训练数据量大的传感器先训练、没有数据的传感器不训练，以及训练或保存失败时抛出一个列出所有失败传感器的异常
+ */
+public class PtMultiThreadTrainerTest {
+
+    private static final float OUTSIDE_TEMP = 30f;
+
+    /**
+     * 传感器ID -> 训练数据量
+     */
+    private static final Map<String, Integer> DATA_SIZES = new HashMap<String, Integer>();
+
+    static {
+        DATA_SIZES.put("s1", 40);
+        DATA_SIZES.put("s2", 120);
+        DATA_SIZES.put("s3", 80);
+        DATA_SIZES.put("s4", 0);
+    }
+
+    /**
+     * 按传感器生成固定数量训练数据的管理器，记录批量获取的次数
+     */
+    private static class StubTrainDataSetManager implements TrainDataSetManager {
+
+        private int fetchCount = 0;
+
+        @Override
+        public Collection<IntellacTrainDataItem> fetchTrainDataSetBySensorId(String sensorId,
+                float outsideTemp) {
+            List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+            for (int n = 0; n < DATA_SIZES.get(sensorId); n++) {
+                float[] powers = new float[AppContextConstant.AIR_CONDITION_NUM];
+                Arrays.fill(powers, n);
+                dataSet.add(new IntellacTrainDataItem(sensorId, PowerVector.wrap(powers), 25f,
+                        outsideTemp));
+            }
+            return dataSet;
+        }
+
+        @Override
+        public synchronized Map<String, Collection<IntellacTrainDataItem>> fetchTrainDataSets(
+                Collection<String> sensorIds, float minOutsideTemp, float maxOutsideTemp) {
+            fetchCount++;
+            return TrainDataSetManager.super.fetchTrainDataSets(sensorIds, minOutsideTemp,
+                    maxOutsideTemp);
+        }
+
+        @Override
+        public void storeTrainDataSet(Collection<IntellacTrainDataItem> tarinDataSet) {
+        }
+    }
+
+    /**
+     * 指定传感器的模型和超参数保存失败的模型存储，记录保存成功的传感器
+     */
+    private static class FailingModelStore extends ModelStore {
+
+        private final Set<String> failingSensorIds = new LinkedHashSet<String>();
+
+        private final Set<String> savedSensorIds = new LinkedHashSet<String>();
+
+        FailingModelStore(File directory) {
+            super(directory);
+        }
+
+        @Override
+        public void save(String sensorId, float outsideTemp, ModelEnum modelType, long dataHash,
+                TrainModel trainModel) throws IOException {
+            if (failingSensorIds.contains(sensorId)) {
+                throw new IOException("磁盘已满: " + sensorId);
+            }
+            savedSensorIds.add(sensorId);
+        }
+
+        @Override
+        public void saveHyperParams(String sensorId, BpHyperParams hyperParams)
+                throws IOException {
+            if (failingSensorIds.contains(sensorId)) {
+                throw new IOException("磁盘已满: " + sensorId);
+            }
+            savedSensorIds.add(sensorId);
+        }
+    }
+
+    /**
+     * 只用一个训练线程的训练器，训练时记录传感器顺序，指定的传感器训练失败
+     */
+    private static class RecordingTrainer extends PtMultiThreadTrainer {
+
+        private final List<String> trainOrder = Collections.synchronizedList(new ArrayList<String>());
+
+        private final Set<String> failingSensorIds = new LinkedHashSet<String>();
+
+        private final Set<String> sensorIds = new LinkedHashSet<String>(Arrays.asList("s1",
+                "s2", "s3"));
+
+        RecordingTrainer(TrainDataSetManager trainDataSetManager) {
+            this(trainDataSetManager, ModelEnum.LR, null);
+        }
+
+        RecordingTrainer(TrainDataSetManager trainDataSetManager, ModelEnum modelSelect,
+                ModelStore modelStore) {
+            super(trainDataSetManager, modelSelect, modelStore, 1);
+        }
+
+        @Override
+        protected Set<String> getSensorIdSet() {
+            return sensorIds;
+        }
+
+        @Override
+        protected TrainTask newTrainTask(Collection<IntellacTrainDataItem> trainDataSet,
+                float outsideTemp, final String sensorId, BpHyperParams hyperParams) {
+            return new TrainTask(trainDataSet, outsideTemp, sensorId) {
+                @Override
+                protected TrainModel getTrainModelInstance() {
+                    return new TrainModel() {
+                        @Override
+                        public <T extends TrainDataItem<Float, Float>> void train(
+                                Collection<T> trainDataSet) {
+                            trainOrder.add(sensorId);
+                            if (failingSensorIds.contains(sensorId)) {
+                                throw new IllegalStateException("训练失败: " + sensorId);
+                            }
+                        }
+
+                        @Override
+                        public <T extends Number> float useMode(T[] feature) {
+                            return 25f;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RecordingTrainer trainer;
+
+    @After
+    public void tearDown() {
+        if (trainer != null) {
+            trainer.shutdown();
+        }
+    }
+
+    private static Set<String> sensorIds(Collection<PtFitFunc> fitFuncSet) {
+        Set<String> sensorIds = new LinkedHashSet<String>();
+        for (PtFitFunc fitFunc : fitFuncSet) {
+            sensorIds.add(fitFunc.getSensorId());
+        }
+        return sensorIds;
+    }
+
+    @Test
+    public void testTrainerIsReusableAndTrainsLargestFirst() {
+        StubTrainDataSetManager manager = new StubTrainDataSetManager();
+        trainer = new RecordingTrainer(manager);
+
+        Collection<PtFitFunc> first = trainer.buildFitFuncSet(OUTSIDE_TEMP);
+        assertEquals(trainer.sensorIds, sensorIds(first));
+        assertEquals(Arrays.asList("s2", "s3", "s1"), trainer.trainOrder);
+
+        Collection<PtFitFunc> second = trainer.buildFitFuncSet(OUTSIDE_TEMP + 1f);
+        assertEquals(trainer.sensorIds, sensorIds(second));
+        for (PtFitFunc fitFunc : second) {
+            assertEquals(OUTSIDE_TEMP + 1f, fitFunc.getOutsideTemp(), 0f);
+        }
+        assertEquals(Arrays.asList("s2", "s3", "s1", "s2", "s3", "s1"), trainer.trainOrder);
+        assertEquals(2, manager.fetchCount);
+        assertFalse(trainer.executorService.isShutdown());
+    }
+
+    @Test
+    public void testSensorWithoutDataIsNotTrained() {
+        trainer = new RecordingTrainer(new StubTrainDataSetManager());
+        trainer.sensorIds.add("s4");
+        Collection<PtFitFunc> fitFuncSet = trainer.buildFitFuncSet(OUTSIDE_TEMP);
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("s1", "s2", "s3")),
+                sensorIds(fitFuncSet));
+        assertFalse(trainer.trainOrder.contains("s4"));
+
+        trainer.sensorIds.retainAll(Collections.singleton("s4"));
+        assertTrue(trainer.buildFitFuncSet(OUTSIDE_TEMP).isEmpty());
+    }
+
+    @Test
+    public void testFailuresAreReportedTogether() {
+        trainer = new RecordingTrainer(new StubTrainDataSetManager());
+        trainer.failingSensorIds.addAll(Arrays.asList("s1", "s3"));
+        try {
+            trainer.buildFitFuncSet(OUTSIDE_TEMP);
+            fail("传感器训练失败时应抛出异常");
+        } catch (IntelliAirConditionException e) {
+            assertEquals("IAC_TRAINING", e.getErrorCode());
+            assertTrue(e.getMessage(), e.getMessage().contains("s1"));
+            assertTrue(e.getMessage(), e.getMessage().contains("s3"));
+            assertFalse(e.getMessage(), e.getMessage().contains("s2"));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals(1, e.getCause().getSuppressed().length);
+        }
+        // 其余传感器仍然训练完成，失败后训练器可以继续使用
+        assertEquals(3, trainer.trainOrder.size());
+        trainer.failingSensorIds.clear();
+        assertEquals(3, trainer.buildFitFuncSet(OUTSIDE_TEMP).size());
+    }
+
+    @Test
+    public void testSaveFailuresAreReported() throws IOException {
+        FailingModelStore modelStore = new FailingModelStore(folder.newFolder("models"));
+        modelStore.failingSensorIds.addAll(Arrays.asList("s1", "s2"));
+        trainer = new RecordingTrainer(new StubTrainDataSetManager(), ModelEnum.LR, modelStore);
+        try {
+            trainer.buildFitFuncSet(OUTSIDE_TEMP);
+            fail("模型保存失败时应抛出异常");
+        } catch (IntelliAirConditionException e) {
+            assertEquals("IAC_TRAINING", e.getErrorCode());
+            assertTrue(e.getMessage(), e.getMessage().contains("s1"));
+            assertTrue(e.getMessage(), e.getMessage().contains("s2"));
+            assertFalse(e.getMessage(), e.getMessage().contains("s3"));
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals(1, e.getCause().getSuppressed().length);
+        }
+        // 其余传感器的模型仍然保存
+        assertEquals(Collections.singleton("s3"), modelStore.savedSensorIds);
+    }
+
+    @Test
+    public void testHyperParamSaveFailuresAreReported() throws IOException {
+        FailingModelStore modelStore = new FailingModelStore(folder.newFolder("models"));
+        modelStore.failingSensorIds.add("s2");
+        trainer = new RecordingTrainer(new StubTrainDataSetManager(), ModelEnum.BPNN, modelStore);
+        BpHyperParamTuner tuner = new BpHyperParamTuner(Collections.singletonList(
+                new BpHyperParams(3, 0.6f, 10, 1, Optimizer.SGD)), 2, 5, 3, 0f, 7L);
+        try {
+            trainer.tuneHyperParams(OUTSIDE_TEMP, OUTSIDE_TEMP, tuner);
+            fail("超参数保存失败时应抛出异常");
+        } catch (IntelliAirConditionException e) {
+            assertEquals("IAC_TRAINING", e.getErrorCode());
+            assertTrue(e.getMessage(), e.getMessage().contains("s2"));
+            assertFalse(e.getMessage(), e.getMessage().contains("s1"));
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        // 其余传感器仍然搜索并保存
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("s1", "s3")),
+                modelStore.savedSensorIds);
+    }
+}
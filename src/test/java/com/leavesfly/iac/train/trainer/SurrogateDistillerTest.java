@@ -0,0 +1,161 @@
+package com.leavesfly.iac.train.trainer;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.datasource.DataFactory;
+import com.leavesfly.iac.domain.PtFitFunc;
+import com.leavesfly.iac.train.domain.TrainDataItem;
+
+/**
+ * 代理模型蒸馏器测试
+ *
+ * 使用解析式已知的模型，验证选用达到精度的最低阶多项式、报告的误差与实际误差一致、
+ * 达不到精度时继续使用原模型
+ */
+public class SurrogateDistillerTest {
+
+    private static final int POWER_NUM = AppContextConstant.AIR_CONDITION_NUM;
+
+    /**
+     * 用函数计算预测值的模型
+     */
+    private abstract static class FormulaModel implements TrainModel {
+
+        @Override
+        public <T extends TrainDataItem<Float, Float>> void train(Collection<T> trainDataSet) {
+        }
+
+        @Override
+        public <T extends Number> float useMode(T[] feature) {
+            float[] values = new float[feature.length];
+            for (int i = 0; i < feature.length; i++) {
+                values[i] = feature[i].floatValue();
+            }
+            return predict(values);
+        }
+
+        @Override
+        public abstract float predict(float[] features);
+    }
+
+    private static final TrainModel LINEAR = new FormulaModel() {
+        @Override
+        public float predict(float[] features) {
+            float temp = 28f;
+            for (int i = 0; i < features.length; i++) {
+                temp -= features[i] * 0.002f * (i % 3 + 1);
+            }
+            return temp;
+        }
+    };
+
+    private static final TrainModel QUADRATIC = new FormulaModel() {
+        @Override
+        public float predict(float[] features) {
+            float temp = 30f;
+            for (int i = 0; i < features.length; i++) {
+                temp -= features[i] * 0.01f - features[i] * features[i] * 1e-5f;
+            }
+            return temp - features[0] * features[1] * 1e-5f;
+        }
+    };
+
+    private static final TrainModel WAVY = new FormulaModel() {
+        @Override
+        public float predict(float[] features) {
+            return 25f + (float) Math.sin(features[0] / 20.0) * 2f;
+        }
+    };
+
+    private static float[] randomPowers(Random random) {
+        float[] powers = new float[POWER_NUM];
+        for (int i = 0; i < POWER_NUM; i++) {
+            powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+        }
+        return powers;
+    }
+
+    @Test
+    public void testLowestAcceptedDegreeIsChosen() {
+        SurrogateDistiller distiller = new SurrogateDistiller(0.01f, 500, 1);
+
+        SurrogateDistiller.Result linear = distiller.distill(new PtFitFunc("1", 30f, LINEAR));
+        assertTrue(linear.isAccepted());
+        assertEquals(1, linear.getSurrogate().getDegree());
+
+        SurrogateDistiller.Result quadratic = distiller.distill(new PtFitFunc("2", 30f, QUADRATIC));
+        assertTrue(quadratic.isAccepted());
+        assertEquals(2, quadratic.getSurrogate().getDegree());
+        assertTrue(quadratic.getRmse() <= quadratic.getMaxError());
+
+        PtFitFunc surrogateFunc = quadratic.toFitFunc();
+        assertSame(quadratic.getSurrogate(), surrogateFunc.getTrainModel());
+        assertEquals(30f, surrogateFunc.getOutsideTemp(), 0f);
+        Random random = new Random(2);
+        for (int n = 0; n < 200; n++) {
+            float[] powers = randomPowers(random);
+            assertEquals(QUADRATIC.predict(powers), surrogateFunc.predict(powers), 0.01f);
+        }
+    }
+
+    @Test
+    public void testInaccurateSurrogateKeepsSourceModel() {
+        SurrogateDistiller distiller = new SurrogateDistiller(0.05f, 500, 3);
+        PtFitFunc fitFunc = new PtFitFunc("1", 30f, WAVY);
+        SurrogateDistiller.Result result = distiller.distill(fitFunc);
+
+        assertFalse(result.isAccepted());
+        assertTrue(result.getMaxError() > 0.05f);
+        assertSame(fitFunc, result.toFitFunc());
+        assertSame(WAVY, result.getSurrogate().getSourceModel());
+
+        // 再次蒸馏代理模型时使用其原模型
+        PtFitFunc surrogateFunc = new PtFitFunc("1", 30f, result.getSurrogate());
+        SurrogateDistiller.Result again = distiller.distill(surrogateFunc);
+        assertSame(WAVY, again.toFitFunc().getTrainModel());
+    }
+
+    @Test
+    public void testBatchPredictionMatchesSingle() {
+        PolynomialSurrogateModel surrogate = new SurrogateDistiller(0.01f, 500, 4).distill(
+                new PtFitFunc("1", 30f, QUADRATIC)).getSurrogate();
+        Random random = new Random(5);
+        int rows = 16;
+        float[] rowsMajor = new float[rows * POWER_NUM];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(randomPowers(random), 0, rowsMajor, r * POWER_NUM, POWER_NUM);
+        }
+        float[] out = new float[rows];
+        surrogate.predictBatch(rowsMajor, rows, out);
+        for (int r = 0; r < rows; r++) {
+            float[] row = Arrays.copyOfRange(rowsMajor, r * POWER_NUM, (r + 1) * POWER_NUM);
+            assertEquals(surrogate.predict(row), out[r], 0f);
+        }
+    }
+
+    @Test
+    public void testDistillRegisteredSwapsAcceptedSensors() {
+        DataFactory dataFactory = DataFactory.getInstance();
+        PtFitFunc wavy = new PtFitFunc("2", 30f, WAVY);
+        long number = dataFactory.registerFitFunc(Arrays.asList(new PtFitFunc("1", 30f, LINEAR),
+                wavy));
+
+        Map<String, SurrogateDistiller.Result> resultMap = new SurrogateDistiller(0.01f, 500, 6)
+                .distillRegistered();
+        assertNotNull(resultMap);
+        assertEquals(2, resultMap.size());
+        assertEquals(number + 1, dataFactory.getFitFuncGeneration().getNumber());
+
+        Map<String, PtFitFunc> fitFuncMap = dataFactory.getSensorFitFuncMap();
+        assertTrue(fitFuncMap.get("1").getTrainModel() instanceof PolynomialSurrogateModel);
+        assertSame(wavy, fitFuncMap.get("2"));
+    }
+}
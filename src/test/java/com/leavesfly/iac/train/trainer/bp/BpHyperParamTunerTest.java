@@ -0,0 +1,102 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.config.BpAlgorithmConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+import com.leavesfly.iac.train.trainer.bp.BpTrainConfig.Optimizer;
+
+/**
+ * BP神经网络超参数搜索测试
+ *
+ * 使用小规模合成数据和较少的迭代次数，验证逐次减半的试验次数、结果可复现以及更小网络的优先选择
+ */
+public class BpHyperParamTunerTest {
+
+    private static final int INPUT_NUM = 3;
+
+    private static List<IntellacTrainDataItem> genDataSet(int num, long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (int n = 0; n < num; n++) {
+            float[] powers = new float[INPUT_NUM];
+            float sum = 0.0f;
+            for (int i = 0; i < INPUT_NUM; i++) {
+                powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+                sum += powers[i];
+            }
+            float temp = BpAlgorithmConstant.MAX_RESULT_NORMAL - sum
+                    / (INPUT_NUM * AppContextConstant.AIR_CONDITION_MAX_POWER) * 8.0f;
+            dataSet.add(new IntellacTrainDataItem("s0", PowerVector.wrap(powers), temp,
+                    AppContextConstant.OUTSIDE_TEMP));
+        }
+        return dataSet;
+    }
+
+    @Test
+    public void testSuccessiveHalvingPrunesCandidates() {
+        List<BpHyperParams> candidates = BpHyperParamTuner.gridCandidates(new int[] { 2, 4, 8 },
+                new float[] { 0.05f, 0.6f, 1.0f }, new int[] { 1 }, new Optimizer[] { Optimizer.SGD },
+                20);
+        BpHyperParamTuner tuner = new BpHyperParamTuner(candidates, 3, 5, 3, 0.0f, 7L);
+        List<IntellacTrainDataItem> dataSet = genDataSet(30, 1);
+
+        BpHyperParamTuner.Result result = tuner.tune(dataSet);
+        // 9个候选 -> 3个 -> 3个，迭代次数 5 -> 15 -> 20，每轮3折
+        assertEquals((9 + 3 + 3) * 3, result.getTrialNum());
+        assertEquals(20, result.getFinalIterateNum());
+        assertTrue(candidates.contains(result.getHyperParams()));
+        assertTrue(result.getCrossValidationError() >= 0
+                && !Double.isInfinite(result.getCrossValidationError()));
+
+        BpHyperParamTuner.Result again = tuner.tune(dataSet);
+        assertEquals(result.getHyperParams(), again.getHyperParams());
+        assertEquals(result.getCrossValidationError(), again.getCrossValidationError(), 1e-9);
+    }
+
+    @Test
+    public void testToleranceSelectsSmallerNetwork() {
+        List<BpHyperParams> candidates = Arrays.asList(
+                new BpHyperParams(8, 0.6f, 10, 1, Optimizer.SGD),
+                new BpHyperParams(3, 0.6f, 10, 1, Optimizer.SGD),
+                new BpHyperParams(5, 0.6f, 10, 1, Optimizer.SGD));
+        BpHyperParamTuner tuner = new BpHyperParamTuner(candidates, 2, 10, 3,
+                Float.MAX_VALUE, 3L);
+        BpHyperParamTuner.Result result = tuner.tune(genDataSet(20, 2));
+        assertEquals(3, result.getHyperParams().getHiddenLevelCellNum());
+        assertEquals(3 * 2, result.getTrialNum());
+    }
+
+    @Test
+    public void testRandomCandidatesAndRoundTrip() throws Exception {
+        List<BpHyperParams> candidates = BpHyperParamTuner.randomCandidates(20, INPUT_NUM, 100, 5L);
+        assertEquals(candidates, BpHyperParamTuner.randomCandidates(20, INPUT_NUM, 100, 5L));
+        for (BpHyperParams params : candidates) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            params.writeTo(new DataOutputStream(bytes));
+            BpHyperParams read = BpHyperParams.readFrom(new DataInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())));
+            assertEquals(params, read);
+            assertEquals(params.hashCode(), read.hashCode());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooFewSamples() {
+        new BpHyperParamTuner(Arrays.asList(BpHyperParams.defaults(INPUT_NUM))).tune(genDataSet(1,
+                3));
+    }
+}
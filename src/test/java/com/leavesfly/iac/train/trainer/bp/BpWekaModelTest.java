@@ -0,0 +1,83 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+
+/**
+ * Weka多层感知机模型测试
+ *
+ * 验证从Weka网络提取的前向计算器与Weka自身的推理结果一致，且保存读回后仍使用提取的权重
+ */
+public class BpWekaModelTest {
+
+    private static final int POWER_NUM = AppContextConstant.AIR_CONDITION_NUM;
+
+    private static List<IntellacTrainDataItem> genDataSet(int num, long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (int n = 0; n < num; n++) {
+            float[] powers = new float[POWER_NUM];
+            float temp = 30.0f;
+            for (int i = 0; i < POWER_NUM; i++) {
+                powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+                temp -= powers[i] * 0.002f * (i % 3 + 1);
+            }
+            dataSet.add(new IntellacTrainDataItem("1", PowerVector.wrap(powers), temp,
+                    AppContextConstant.OUTSIDE_TEMP));
+        }
+        return dataSet;
+    }
+
+    @Test
+    public void testFastPathMatchesWeka() {
+        BpWekaModel model = (BpWekaModel) BpWekaModel.getIntance();
+        model.train(genDataSet(40, 1));
+        assertTrue(model.isFastPathEnabled());
+
+        List<IntellacTrainDataItem> testSet = genDataSet(30, 2);
+        float[] rowsMajor = new float[testSet.size() * POWER_NUM];
+        for (int r = 0; r < testSet.size(); r++) {
+            IntellacTrainDataItem item = testSet.get(r);
+            float[] powers = item.getFeatureValues();
+            float expected = model.classifyWithWeka(powers);
+            assertEquals(expected, model.predict(powers), 1e-4f);
+            assertEquals(expected, model.useMode(item.getFeature()), 1e-4f);
+            System.arraycopy(powers, 0, rowsMajor, r * POWER_NUM, POWER_NUM);
+        }
+        float[] out = new float[testSet.size()];
+        model.predictBatch(rowsMajor, testSet.size(), out);
+        for (int r = 0; r < testSet.size(); r++) {
+            assertEquals(model.predict(testSet.get(r).getFeatureValues()), out[r], 0.0f);
+        }
+    }
+
+    @Test
+    public void testReadModelKeepsFastPath() throws Exception {
+        BpWekaModel model = (BpWekaModel) BpWekaModel.getIntance();
+        model.train(genDataSet(30, 3));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.writeModel(new DataOutputStream(bytes));
+        BpWekaModel loaded = BpWekaModel.readModel(new DataInputStream(new ByteArrayInputStream(
+                bytes.toByteArray())));
+
+        assertTrue(loaded.isFastPathEnabled());
+        for (IntellacTrainDataItem item : genDataSet(10, 4)) {
+            float[] powers = item.getFeatureValues();
+            assertEquals(model.predict(powers), loaded.predict(powers), 0.0f);
+            assertEquals(loaded.classifyWithWeka(powers), loaded.predict(powers), 1e-4f);
+        }
+    }
+}
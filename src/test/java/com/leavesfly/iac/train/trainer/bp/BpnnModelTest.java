@@ -0,0 +1,307 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.config.BpAlgorithmConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+
+/**
+ * BpnnModel神经网络模型测试
+ *
+ * 使用功率与温度呈线性关系的合成数据，测试训练效果、验证集早停、各预测接口的一致性以及参数校验
+ */
+public class BpnnModelTest {
+
+    private static final int INPUT_NUM = 3;
+
+    private static float targetTemp(float[] powers) {
+        float sum = 0.0f;
+        for (float power : powers) {
+            sum += power;
+        }
+        float ratio = sum / (INPUT_NUM * AppContextConstant.AIR_CONDITION_MAX_POWER);
+        return BpAlgorithmConstant.MAX_RESULT_NORMAL - ratio
+                * (BpAlgorithmConstant.MAX_RESULT_NORMAL - BpAlgorithmConstant.MIN_RESULT_NORMAL) * 0.8f;
+    }
+
+    private static List<IntellacTrainDataItem> genDataSet(int num, long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (int n = 0; n < num; n++) {
+            float[] powers = new float[INPUT_NUM];
+            for (int i = 0; i < INPUT_NUM; i++) {
+                powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+            }
+            dataSet.add(new IntellacTrainDataItem("s0", PowerVector.wrap(powers), targetTemp(powers),
+                    AppContextConstant.OUTSIDE_TEMP));
+        }
+        return dataSet;
+    }
+
+    private static List<IntellacTrainDataItem> genNoisyDataSet(int num, long seed) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (IntellacTrainDataItem item : genDataSet(num, seed)) {
+            dataSet.add(new IntellacTrainDataItem(item.getSensorId(), PowerVector.wrap(item
+                    .getFeatureValues()), item.getResult() + (float) random.nextGaussian() * 0.5f,
+                    item.getOutsideTemp()));
+        }
+        return dataSet;
+    }
+
+    @Test
+    public void testTrainReducesError() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(60, 1);
+        BpnnModel model = new BpnnModel(INPUT_NUM, 1, 0.6f, 300);
+        double before = model.evaluateModel(dataSet);
+        model.train(dataSet);
+        double after = model.evaluateModel(dataSet);
+        assertTrue("训练后误差应明显下降: " + before + " -> " + after, after < before / 4);
+        assertTrue("训练集均方误差应较小: " + after, after < 1.0);
+    }
+
+    @Test
+    public void testMiniBatchOptimizersReduceError() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(60, 3);
+        BpTrainConfig[] configs = {
+                BpTrainConfig.builder().batchSize(8).optimizer(BpTrainConfig.Optimizer.MOMENTUM)
+                        .seed(1).build(),
+                BpTrainConfig.builder().batchSize(8).optimizer(BpTrainConfig.Optimizer.NESTEROV)
+                        .seed(1).build(),
+                BpTrainConfig.builder().batchSize(8).optimizer(BpTrainConfig.Optimizer.ADAM)
+                        .seed(1).build() };
+        float[] learnRates = { 0.5f, 0.5f, 0.05f };
+        for (int c = 0; c < configs.length; c++) {
+            BpnnModel model = new BpnnModel(INPUT_NUM, 1, learnRates[c], 300, configs[c]);
+            double before = model.evaluateModel(dataSet);
+            model.train(dataSet);
+            double after = model.evaluateModel(dataSet);
+            String name = configs[c].getOptimizer().name();
+            assertTrue(name + "训练后误差应明显下降: " + before + " -> " + after, after < before / 4);
+            assertTrue(name + "训练集均方误差应较小: " + after, after < 1.0);
+        }
+    }
+
+    @Test
+    public void testTrainWithValidationSplit() {
+        List<IntellacTrainDataItem> dataSet = genNoisyDataSet(60, 4);
+        int patience = 5;
+        int maxIterateNum = 2000;
+        BpTrainConfig config = BpTrainConfig.builder().validationRatio(0.2f)
+                .earlyStopPatience(patience).seed(2).build();
+        BpnnModel model = new BpnnModel(INPUT_NUM, 1, 0.6f, maxIterateNum, config);
+        model.train(dataSet);
+
+        // 验证误差连续patience + 1轮没有刷新最优时停止
+        assertTrue("应在最大轮数之前早停: " + model.getTrainedEpochNum(),
+                model.getTrainedEpochNum() < maxIterateNum);
+        assertEquals(model.getBestEpoch() + patience + 1, model.getTrainedEpochNum());
+        assertFalse(Double.isNaN(model.getBestValidationError()));
+
+        // 同样的种子只训练到最优的一轮，参数应与早停后恢复的参数完全相同
+        BpnnModel reference = new BpnnModel(INPUT_NUM, 1, 0.6f, model.getBestEpoch(), config);
+        reference.train(dataSet);
+        assertEquals(model.getBestEpoch(), reference.getTrainedEpochNum());
+        assertEquals(model.getBestValidationError(), reference.getBestValidationError(), 0.0);
+        for (IntellacTrainDataItem item : dataSet) {
+            assertEquals(reference.predict(item.getFeatureValues()),
+                    model.predict(item.getFeatureValues()), 0.0f);
+        }
+        assertTrue(model.evaluateModel(dataSet) < 1.0);
+    }
+
+    @Test
+    public void testDefaultConfigHoldsOutValidationSet() {
+        assertTrue(BpTrainConfig.DEFAULT.getValidationRatio() > 0);
+        BpnnModel model = new BpnnModel(INPUT_NUM, 1, 0.6f, 300);
+        model.train(genDataSet(60, 6));
+        assertFalse("默认配置应使用验证集", Double.isNaN(model.getBestValidationError()));
+        assertTrue(model.getBestEpoch() <= model.getTrainedEpochNum());
+
+        // 样本太少留不出验证集时以训练误差驱动早停
+        BpnnModel small = new BpnnModel(INPUT_NUM, 1, 0.6f, 50);
+        small.train(genDataSet(10, 7));
+        assertTrue(Double.isNaN(small.getBestValidationError()));
+        assertEquals(small.getTrainedEpochNum(), small.getBestEpoch());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTrainConfig() {
+        BpTrainConfig.builder().batchSize(0).build();
+    }
+
+    @Test
+    public void testPredictionApisAgree() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(20, 2);
+        BpnnModel model = new BpnnModel(INPUT_NUM, 1, 0.6f, 50);
+        model.train(dataSet);
+
+        float[] rowsMajor = new float[dataSet.size() * INPUT_NUM];
+        for (int r = 0; r < dataSet.size(); r++) {
+            System.arraycopy(dataSet.get(r).getFeatureValues(), 0, rowsMajor, r * INPUT_NUM,
+                    INPUT_NUM);
+        }
+        float[] out = new float[dataSet.size()];
+        model.predictBatch(rowsMajor, dataSet.size(), out);
+        for (int r = 0; r < dataSet.size(); r++) {
+            IntellacTrainDataItem item = dataSet.get(r);
+            float expected = model.useMode(item.getFeature());
+            assertEquals(expected, model.predict(item.getFeatureValues()), 0.0f);
+            assertEquals(expected, out[r], 0.0f);
+        }
+    }
+
+    @Test
+    public void testConcurrentPredictionMatchesSingleThread() throws Exception {
+        List<IntellacTrainDataItem> dataSet = genDataSet(40, 5);
+        final BpnnModel model = new BpnnModel(INPUT_NUM, 1, 0.6f, 50);
+        model.train(dataSet);
+
+        final int rows = dataSet.size();
+        final float[] rowsMajor = new float[rows * INPUT_NUM];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(dataSet.get(r).getFeatureValues(), 0, rowsMajor, r * INPUT_NUM,
+                    INPUT_NUM);
+        }
+        final float[] expected = new float[rows];
+        model.predictBatch(rowsMajor, rows, expected);
+
+        int threadNum = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threadNum; t++) {
+                final int seed = t;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        Random random = new Random(seed);
+                        float[] row = new float[INPUT_NUM];
+                        float[] out = new float[rows];
+                        int mismatchNum = 0;
+                        for (int n = 0; n < 20000; n++) {
+                            int r = random.nextInt(rows);
+                            System.arraycopy(rowsMajor, r * INPUT_NUM, row, 0, INPUT_NUM);
+                            if (model.predict(row) != expected[r]) {
+                                mismatchNum++;
+                            }
+                            if (n % 1000 == 0) {
+                                model.predictBatch(rowsMajor, rows, out);
+                                for (int i = 0; i < rows; i++) {
+                                    if (out[i] != expected[i]) {
+                                        mismatchNum++;
+                                    }
+                                }
+                            }
+                        }
+                        return mismatchNum;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals("多线程推理结果应与单线程一致", 0, future.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPredictionDuringRetrainUsesPublishedParameters() throws Exception {
+        List<IntellacTrainDataItem> dataSet = genDataSet(40, 6);
+        final BpnnModel model = new BpnnModel(INPUT_NUM, 1, 0.6f, 50);
+        model.train(dataSet);
+        final float[] row = dataSet.get(0).getFeatureValues();
+        final float before = model.predict(row);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> retrain = executor.submit(() -> model.train(genDataSet(40, 7)));
+            Set<Float> predictions = new HashSet<Float>();
+            while (!retrain.isDone()) {
+                predictions.add(model.predict(row));
+            }
+            retrain.get();
+            // 重新训练期间的推理只能看到训练前或训练后发布的完整参数
+            predictions.remove(before);
+            predictions.remove(model.predict(row));
+            assertTrue("出现了训练中间状态的预测结果: " + predictions, predictions.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMultiOutputNetworkLearnsEachSensor() {
+        Random random = new Random(8);
+        int rows = 60;
+        float[] features = new float[rows * INPUT_NUM];
+        float[] targets = new float[rows * 2];
+        for (int r = 0; r < rows; r++) {
+            float[] powers = new float[INPUT_NUM];
+            for (int i = 0; i < INPUT_NUM; i++) {
+                powers[i] = AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+            }
+            System.arraycopy(powers, 0, features, r * INPUT_NUM, INPUT_NUM);
+            targets[r * 2] = targetTemp(powers);
+            // 第二个传感器只受第一台空调影响，并缺少部分观测值
+            float[] nearPowers = { powers[0], powers[0], powers[0] };
+            targets[r * 2 + 1] = r % 5 == 0 ? Float.NaN : targetTemp(nearPowers);
+        }
+        BpnnModel model = new BpnnModel(INPUT_NUM, 2, 0.6f, 300);
+        model.trainMultiOutput(features, targets, rows);
+
+        BpnnOutputModel[] views = { new BpnnOutputModel(model, 0), new BpnnOutputModel(model, 1) };
+        float[] row = new float[INPUT_NUM];
+        float[] all = new float[2];
+        double[] squaredErrors = new double[2];
+        int[] counts = new int[2];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(features, r * INPUT_NUM, row, 0, INPUT_NUM);
+            model.predictAll(row, all);
+            for (int k = 0; k < 2; k++) {
+                float prediction = views[k].predict(row);
+                assertEquals(all[k], prediction, 0.0f);
+                float target = targets[r * 2 + k];
+                if (!Float.isNaN(target)) {
+                    squaredErrors[k] += (prediction - target) * (prediction - target);
+                    counts[k]++;
+                }
+            }
+        }
+        for (int k = 0; k < 2; k++) {
+            double mse = squaredErrors[k] / counts[k];
+            assertTrue("第" + k + "个输出的均方误差应较小: " + mse, mse < 1.0);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOutputViewCannotBeTrainedAlone() {
+        new BpnnOutputModel(new BpnnModel(INPUT_NUM, 2), 1).train(genDataSet(5, 9));
+    }
+
+    @Test
+    public void testParameterCount() {
+        BpnnModel model = new BpnnModel(INPUT_NUM, 4, 1);
+        assertEquals(INPUT_NUM * 4 + 4 + 4 + 1, model.getTotalParameterCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFeatureNumMismatch() {
+        new BpnnModel(INPUT_NUM, 1).predict(new float[INPUT_NUM + 1]);
+    }
+}
@@ -0,0 +1,59 @@
+package com.leavesfly.iac.train.trainer.bp;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+
+/**
+ * 多输出训练数据集测试
+ *
+ * 测试按功率向量合并各传感器记录、缺失值填充和重复记录取平均
+ */
+public class MultiOutputTrainDataSetTest {
+
+    private static IntellacTrainDataItem item(String sensorId, float temp, float... powers) {
+        return new IntellacTrainDataItem(sensorId, PowerVector.wrap(powers), temp, 30.0f);
+    }
+
+    @Test
+    public void testJoinBySameFeatures() {
+        Map<String, Collection<IntellacTrainDataItem>> sensorDataSets =
+                new LinkedHashMap<String, Collection<IntellacTrainDataItem>>();
+        sensorDataSets.put("s1", Arrays.asList(item("s1", 24.0f, 100, 200),
+                item("s1", 26.0f, 300, 400), item("s1", 28.0f, 300, 400)));
+        sensorDataSets.put("s2", Arrays.asList(item("s2", 22.0f, 100, 200),
+                item("s2", 23.0f, 500, 600)));
+
+        MultiOutputTrainDataSet dataSet = MultiOutputTrainDataSet.join(sensorDataSets);
+        assertEquals(Arrays.asList("s1", "s2"), dataSet.getSensorIds());
+        assertEquals(2, dataSet.getInputNum());
+        assertEquals(3, dataSet.getRowNum());
+        assertArrayEquals(new float[] { 100, 200, 300, 400, 500, 600 }, dataSet.getFeatures(),
+                0.0f);
+
+        float[] targets = dataSet.getTargets();
+        assertEquals(24.0f, targets[0], 0.0f);
+        assertEquals(22.0f, targets[1], 0.0f);
+        assertEquals("重复记录应取平均", 27.0f, targets[2], 1e-6f);
+        assertTrue(Float.isNaN(targets[3]));
+        assertTrue(Float.isNaN(targets[4]));
+        assertEquals(23.0f, targets[5], 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInconsistentFeatureNum() {
+        Map<String, Collection<IntellacTrainDataItem>> sensorDataSets =
+                new LinkedHashMap<String, Collection<IntellacTrainDataItem>>();
+        sensorDataSets.put("s1", Arrays.asList(item("s1", 24.0f, 100, 200),
+                item("s1", 26.0f, 300)));
+        MultiOutputTrainDataSet.join(sensorDataSets);
+    }
+}
@@ -0,0 +1,186 @@
+package com.leavesfly.iac.train.trainer.lr;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.config.AppContextConstant;
+import com.leavesfly.iac.domain.PowerVector;
+import com.leavesfly.iac.train.domain.IntellacTrainDataItem;
+
+/**
+ * 线性回归模型测试
+ *
+ * 使用已知系数的线性数据，测试系数恢复、岭回归收缩、奇异情形、累加器合并和递推更新
+ */
+public class LineRegressModelTest {
+
+    private static final int INPUT_NUM = AppContextConstant.AIR_CONDITION_NUM;
+
+    private static final double[] TRUE_WEIGHTS = { 30.0, -0.002, -0.001, -0.003, -0.0005, -0.004,
+            -0.0015, -0.0025, -0.001 };
+
+    private static List<IntellacTrainDataItem> genDataSet(int num, long seed, boolean constantFirst) {
+        Random random = new Random(seed);
+        List<IntellacTrainDataItem> dataSet = new ArrayList<IntellacTrainDataItem>();
+        for (int n = 0; n < num; n++) {
+            float[] powers = new float[INPUT_NUM];
+            double temp = TRUE_WEIGHTS[0];
+            for (int i = 0; i < INPUT_NUM; i++) {
+                powers[i] = constantFirst && i == 0 ? 500.0f
+                        : AppContextConstant.AIR_CONDITION_MAX_POWER * random.nextFloat();
+                temp += powers[i] * TRUE_WEIGHTS[i + 1];
+            }
+            dataSet.add(new IntellacTrainDataItem("s0", PowerVector.wrap(powers), (float) temp,
+                    AppContextConstant.OUTSIDE_TEMP));
+        }
+        return dataSet;
+    }
+
+    @Test
+    public void testRecoversLinearWeights() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(2000, 1, false);
+        LineRegressModel model = (LineRegressModel) LineRegressModel.getIntance();
+        model.train(dataSet);
+
+        double[] weights = model.getWeights();
+        assertEquals(INPUT_NUM + 1, weights.length);
+        assertEquals(TRUE_WEIGHTS[0], weights[0], 1e-3);
+        for (int i = 1; i < weights.length; i++) {
+            assertEquals(TRUE_WEIGHTS[i], weights[i], 1e-6);
+        }
+        IntellacTrainDataItem item = dataSet.get(0);
+        assertEquals(item.getTemperature(), model.predict(item.getFeatureValues()), 1e-3f);
+        assertEquals(model.predict(item.getFeatureValues()), model.useMode(item.getFeature()), 1e-4f);
+    }
+
+    @Test
+    public void testRidgeShrinksWeights() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(200, 2, false);
+        LineRegressModel plain = (LineRegressModel) LineRegressModel.getIntance();
+        LineRegressModel ridge = (LineRegressModel) LineRegressModel.getIntance(1e9);
+        plain.train(dataSet);
+        ridge.train(dataSet);
+
+        double plainNorm = 0.0;
+        double ridgeNorm = 0.0;
+        for (int i = 1; i <= INPUT_NUM; i++) {
+            plainNorm += plain.getWeights()[i] * plain.getWeights()[i];
+            ridgeNorm += ridge.getWeights()[i] * ridge.getWeights()[i];
+        }
+        assertTrue("岭回归应收缩权重: " + plainNorm + " -> " + ridgeNorm, ridgeNorm < plainNorm / 2);
+    }
+
+    @Test
+    public void testConstantFeatureStaysFinite() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(500, 3, true);
+        LineRegressModel model = (LineRegressModel) LineRegressModel.getIntance();
+        model.train(dataSet);
+
+        for (double weight : model.getWeights()) {
+            assertFalse(Double.isNaN(weight) || Double.isInfinite(weight));
+        }
+        for (IntellacTrainDataItem item : dataSet.subList(0, 20)) {
+            assertEquals(item.getTemperature(), model.predict(item.getFeatureValues()), 1e-2f);
+        }
+    }
+
+    @Test
+    public void testMergedAccumulatorMatchesSequential() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(300, 4, false);
+        LeastSquaresAccumulator sequential = new LeastSquaresAccumulator(INPUT_NUM);
+        LeastSquaresAccumulator first = new LeastSquaresAccumulator(INPUT_NUM);
+        LeastSquaresAccumulator second = new LeastSquaresAccumulator(INPUT_NUM);
+        for (int n = 0; n < dataSet.size(); n++) {
+            IntellacTrainDataItem item = dataSet.get(n);
+            sequential.add(item.getFeatureValues(), item.getTemperature());
+            (n < 120 ? first : second).add(item.getFeatureValues(), item.getTemperature());
+        }
+        first.merge(second);
+        assertEquals(sequential.getSampleNum(), first.getSampleNum());
+
+        double[] expected = sequential.solve(0.0);
+        double[] actual = first.solve(0.0);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], Math.abs(expected[i]) * 1e-6 + 1e-9);
+        }
+    }
+
+    @Test
+    public void testOnlineUpdateFromScratchConverges() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(2000, 5, false);
+        LineRegressModel model = (LineRegressModel) LineRegressModel.getIntance();
+        for (IntellacTrainDataItem item : dataSet) {
+            model.update(item);
+        }
+
+        double[] weights = model.getWeights();
+        assertEquals(TRUE_WEIGHTS[0], weights[0], 1e-2);
+        for (int i = 1; i < weights.length; i++) {
+            assertEquals(TRUE_WEIGHTS[i], weights[i], 1e-5);
+        }
+    }
+
+    @Test
+    public void testBatchThenUpdateMatchesFullBatch() {
+        List<IntellacTrainDataItem> dataSet = genDataSet(400, 6, false);
+        // 加入噪声，使结果依赖于全部样本而不是只依赖于真实系数
+        Random random = new Random(6);
+        List<IntellacTrainDataItem> noisy = new ArrayList<IntellacTrainDataItem>();
+        for (IntellacTrainDataItem item : dataSet) {
+            noisy.add(new IntellacTrainDataItem("s0", PowerVector.wrap(item.getFeatureValues()),
+                    item.getTemperature() + (float) random.nextGaussian() * 0.5f,
+                    AppContextConstant.OUTSIDE_TEMP));
+        }
+
+        LineRegressModel full = (LineRegressModel) LineRegressModel.getIntance();
+        full.train(noisy);
+        LineRegressModel online = (LineRegressModel) LineRegressModel.getIntance();
+        online.train(noisy.subList(0, 100));
+        for (IntellacTrainDataItem item : noisy.subList(100, noisy.size())) {
+            online.update(item);
+        }
+
+        double[] expected = full.getWeights();
+        double[] actual = online.getWeights();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], Math.abs(expected[i]) * 1e-4 + 1e-7);
+        }
+    }
+
+    @Test
+    public void testForgettingFactorTracksDrift() {
+        List<IntellacTrainDataItem> before = genDataSet(500, 7, false);
+        List<IntellacTrainDataItem> after = new ArrayList<IntellacTrainDataItem>();
+        float shift = 3.0f;
+        for (IntellacTrainDataItem item : genDataSet(300, 8, false)) {
+            after.add(new IntellacTrainDataItem("s0", PowerVector.wrap(item.getFeatureValues()),
+                    item.getTemperature() + shift, AppContextConstant.OUTSIDE_TEMP));
+        }
+
+        LineRegressModel steady = (LineRegressModel) LineRegressModel.getIntance();
+        LineRegressModel forgetting = (LineRegressModel) LineRegressModel.getIntance(0.0, 0.95);
+        steady.train(before);
+        forgetting.train(before);
+        for (IntellacTrainDataItem item : after) {
+            steady.update(item);
+            forgetting.update(item);
+        }
+
+        double expected = TRUE_WEIGHTS[0] + shift;
+        double steadyError = Math.abs(steady.getWeights()[0] - expected);
+        double forgettingError = Math.abs(forgetting.getWeights()[0] - expected);
+        assertTrue(forgettingError < 1e-2);
+        assertTrue("遗忘因子应更快跟上漂移: " + steadyError + " vs " + forgettingError,
+                forgettingError < steadyError / 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidForgettingFactor() {
+        LineRegressModel.getIntance(0.0, 1.5);
+    }
+}
@@ -0,0 +1,78 @@
+package com.leavesfly.iac.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.leavesfly.iac.domain.PowerBounds;
+import com.leavesfly.iac.domain.PowerRange;
+import com.leavesfly.iac.domain.PowerValue;
+import com.leavesfly.iac.domain.PowerVector;
+
+/**
+ * PowerVectorCodec编解码测试
+ *
+ * 测试精确编码的往返一致性、量化误差上界以及拒绝不支持的数据
+ */
+public class PowerVectorCodecTest {
+
+    private static final float[] VALUES = { 0.0f, 123.4f, 250.5f, 399.9f, 7.25f };
+
+    @Test
+    public void testExactRoundTrip() {
+        PowerVector powerVector = PowerVector.wrap(VALUES.clone());
+        byte[] bytes = PowerVectorCodec.encode(powerVector);
+        assertEquals("默认边界不应写入边界数据", 3 + 4 * VALUES.length, bytes.length);
+
+        PowerVector decoded = PowerVectorCodec.decode(bytes);
+        assertArrayEquals(VALUES, decoded.getPowerValueArray(), 0.0f);
+        assertSame(powerVector.getBounds(), decoded.getBounds());
+    }
+
+    @Test
+    public void testQuantizedErrorBound() {
+        PowerVector powerVector = PowerVector.wrap(VALUES.clone());
+        byte[] bytes = PowerVectorCodec.encode(powerVector, true);
+        assertEquals(3 + 8 + 2 * VALUES.length, bytes.length);
+
+        PowerVector decoded = PowerVectorCodec.decode(bytes);
+        float maxError = (399.9f - 0.0f) / 131070 + 1e-4f;
+        for (int i = 0; i < VALUES.length; i++) {
+            assertEquals(VALUES[i], decoded.getPowerValue(i), maxError);
+        }
+    }
+
+    @Test
+    public void testPerElementBoundsWithOffset() {
+        PowerVector powerVector = new PowerVector(new PowerValue[] {
+                new PowerValue(10.0f, new PowerRange(0.0f, 100.0f)),
+                new PowerValue(150.0f, new PowerRange(100.0f, 200.0f)) });
+        byte[] encoded = PowerVectorCodec.encode(powerVector);
+        byte[] padded = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, padded, 2, encoded.length);
+
+        PowerVector decoded = PowerVectorCodec.decode(padded, 2, encoded.length);
+        assertEquals(powerVector.getBounds(), decoded.getBounds());
+        assertEquals(150.0f, decoded.getPowerValue(1), 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJavaSerializedDataIsRejected() {
+        PowerVector powerVector = new PowerVector(VALUES.clone(), PowerBounds.uniform(0.0f,
+                400.0f, VALUES.length));
+        PowerVectorCodec.decode(SerializeUtil.object2ByteArray(powerVector));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersion() {
+        PowerVectorCodec.decode(new byte[] { 9, 0, 0 });
+    }
+
+    @Test
+    public void testDeepCopyDoesNotShareValues() {
+        PowerVector powerVector = PowerVector.wrap(VALUES.clone());
+        PowerVector copy = (PowerVector) SerializeUtil.deepCopyBySerializable(powerVector);
+        assertNotSame(powerVector.getPowerValueArray(), copy.getPowerValueArray());
+        assertArrayEquals(VALUES, copy.getPowerValueArray(), 0.0f);
+    }
+}